@@ -32,6 +32,22 @@ import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import org.dataone.bookkeeper.api.Customer;
 import org.dataone.bookkeeper.config.BookkeeperConfiguration;
+import org.dataone.bookkeeper.config.UsageJournalConfiguration;
+import org.dataone.bookkeeper.core.OrderArchiver;
+import org.dataone.bookkeeper.core.ProductCatalog;
+import org.dataone.bookkeeper.core.ProductResponseCache;
+import org.dataone.bookkeeper.core.QuotaCache;
+import org.dataone.bookkeeper.core.UsageCache;
+import org.dataone.bookkeeper.core.QuotaEvents;
+import org.dataone.bookkeeper.core.UsageCompactor;
+import org.dataone.bookkeeper.core.UsageJournal;
+import org.dataone.bookkeeper.core.UsageJournalReplayer;
+import org.dataone.bookkeeper.core.UsageReconciler;
+import org.dataone.bookkeeper.jdbi.OrderStore;
+import org.dataone.bookkeeper.jdbi.ProductStore;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.ReconciliationStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
 import org.dataone.bookkeeper.resources.CustomersResource;
 import org.dataone.bookkeeper.resources.OrdersResource;
 import org.dataone.bookkeeper.resources.ProductsResource;
@@ -39,10 +55,15 @@ import org.dataone.bookkeeper.resources.QuotasResource;
 import org.dataone.bookkeeper.security.DataONEAuthHelper;
 import org.dataone.bookkeeper.security.DataONEAuthenticator;
 import org.dataone.bookkeeper.security.DataONEAuthorizer;
+import org.dataone.bookkeeper.tasks.ProductCatalogTask;
+import org.dataone.bookkeeper.tasks.QuotaCacheTask;
+import org.dataone.bookkeeper.tasks.UsageInventoryTask;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.jdbi.v3.core.Jdbi;
 
 import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * The main Bookkeeper REST service application
@@ -89,6 +110,8 @@ public class Bookkeeper extends Application<BookkeeperConfiguration> {
         final JdbiFactory factory = new JdbiFactory();
         final Jdbi database = factory.build(environment,
             configuration.getDataSourceFactory(), "postgresql");
+        // Bind Integer arrays and collections as Postgres integer arrays, such as for id = ANY(:ids)
+        database.registerArrayType(Integer.class, "integer");
 
         final DataONEAuthHelper dataoneHelper =
             new DataONEAuthHelper(environment, database, configuration.getDataONEConfiguration());
@@ -96,17 +119,74 @@ public class Bookkeeper extends Application<BookkeeperConfiguration> {
         // TODO: Do we need to enable CORS, or let the ingress controller handle it?
         // https://stackoverflow.com/questions/25775364/enabling-cors-in-dropwizard-not-working#25801822
 
+        // Serve products from an in-memory catalog loaded at startup, and let admins reload it
+        final ProductCatalog productCatalog = new ProductCatalog(database.onDemand(ProductStore.class));
+        environment.lifecycle().manage(productCatalog);
+        environment.admin().addTask(new ProductCatalogTask(productCatalog));
+
         // Register the products resource
-        environment.jersey().register(new ProductsResource(database, dataoneHelper));
+        environment.jersey().register(new ProductsResource(database, dataoneHelper,
+            productCatalog, new ProductResponseCache(productCatalog, environment.getObjectMapper())));
+
+        // Cache quota snapshots and usage lookups, and let admins inspect or clear the caches
+        final QuotaCache quotaCache = new QuotaCache(
+            database.onDemand(QuotaStore.class), configuration.getQuotaCachePolicy());
+        final UsageCache usageCache = new UsageCache(
+            database.onDemand(UsageStore.class), quotaCache, configuration.getUsageCachePolicy());
+        environment.admin().addTask(new QuotaCacheTask(quotaCache, usageCache));
+
+        // Let admins reconcile a quota's usages against a storage inventory file
+        environment.admin().addTask(new UsageInventoryTask(database.onDemand(UsageStore.class),
+            database.onDemand(QuotaStore.class), quotaCache, usageCache));
+
+        // Push quota threshold crossings to event stream subscribers
+        final QuotaEvents quotaEvents = new QuotaEvents(configuration.getQuotaEventsConfiguration());
+        environment.lifecycle().manage(quotaEvents);
+
+        // Journal usage writes locally while the database is unavailable, replaying them later
+        UsageJournal usageJournal = null;
+        final UsageJournalConfiguration journalConfiguration = configuration.getUsageJournalConfiguration();
+        if ( journalConfiguration.isEnabled() ) {
+            try {
+                usageJournal = new UsageJournal(Paths.get(journalConfiguration.getDirectory()),
+                    (int) journalConfiguration.getSegmentSize().toBytes(), journalConfiguration.isSync());
+            } catch (IOException e) {
+                throw new WebApplicationException("Couldn't open the usage journal: " + e.getMessage());
+            }
+            environment.lifecycle().manage(new UsageJournalReplayer(usageJournal,
+                database.onDemand(UsageStore.class), database.onDemand(QuotaStore.class),
+                quotaCache, usageCache, quotaEvents, journalConfiguration.getBatchSize(), journalConfiguration.getReplayInterval().toMilliseconds(),
+                environment.metrics()));
+        }
 
         // Register the quotas resource
-        environment.jersey().register(new QuotasResource(database, dataoneHelper));
+        environment.jersey().register(
+            new QuotasResource(database, dataoneHelper, quotaCache, usageCache, quotaEvents, usageJournal));
+
+        // Move archived usages out of the usages table in the background
+        if ( configuration.getUsageCompactionConfiguration().isEnabled() ) {
+            environment.lifecycle().manage(new UsageCompactor(
+                database.onDemand(UsageStore.class), configuration.getUsageCompactionConfiguration()));
+        }
+
+        // Correct drifted quota usage totals in the background
+        if ( configuration.getUsageReconciliationConfiguration().isEnabled() ) {
+            environment.lifecycle().manage(new UsageReconciler(
+                database.onDemand(ReconciliationStore.class), quotaCache,
+                configuration.getUsageReconciliationConfiguration(), environment.metrics()));
+        }
 
         // Register the customers resource
         environment.jersey().register(new CustomersResource(database, dataoneHelper));
 
         // Register the orders resource
-        environment.jersey().register(new OrdersResource(database, dataoneHelper));
+        environment.jersey().register(new OrdersResource(database, dataoneHelper, productCatalog));
+
+        // Keep the monthly orders partitions ahead of time, and archive expired ones
+        if ( configuration.getOrderArchiveConfiguration().isEnabled() ) {
+            environment.lifecycle().manage(new OrderArchiver(
+                database.onDemand(OrderStore.class), configuration.getOrderArchiveConfiguration()));
+        }
 
         // Register role-based authorization
         environment.jersey().register(RolesAllowedDynamicFeature.class);
@@ -0,0 +1,294 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Effective quotas total the quotas of the same name across a set of subjects,
+ * such as a person and the groups they belong to, and name the quota with the
+ * most headroom to charge usage against.
+ */
+@JsonIgnoreProperties(ignoreUnknown=true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EffectiveQuota {
+
+    /* The effective quota object type */
+    private String object = "effective_quota";
+
+    /* The quota name */
+    private String name;
+
+    /* The quota unit */
+    private String unit;
+
+    /* The total soft limit across the quotas */
+    private Long softLimit;
+
+    /* The total hard limit across the quotas */
+    private Long hardLimit;
+
+    /* The total usage across the quotas */
+    private Long usage;
+
+    /* The number of quotas that were totaled */
+    private Integer quotaCount;
+
+    /* The identifier of the quota with the most remaining headroom */
+    private Integer quotaId;
+
+    /* The subject of the quota with the most remaining headroom */
+    private String subject;
+
+    /**
+     * Construct an empty effective quota
+     */
+    public EffectiveQuota() {
+        super();
+    }
+
+    /**
+     * Construct an effective quota
+     * @param name        the quota name
+     * @param unit        the quota unit
+     * @param softLimit   the total soft limit
+     * @param hardLimit   the total hard limit
+     * @param usage       the total usage
+     * @param quotaCount  the number of quotas totaled
+     * @param quotaId     the identifier of the quota to charge against
+     * @param subject     the subject of the quota to charge against
+     */
+    public EffectiveQuota(String name,
+                          String unit,
+                          Long softLimit,
+                          Long hardLimit,
+                          Long usage,
+                          Integer quotaCount,
+                          Integer quotaId,
+                          String subject) {
+        this.name = name;
+        this.unit = unit;
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.usage = usage;
+        this.quotaCount = quotaCount;
+        this.quotaId = quotaId;
+        this.subject = subject;
+    }
+
+    /**
+     * Get the effective quota object type
+     * @return object  the effective quota object type
+     */
+    @JsonProperty
+    public String getObject() {
+        return object;
+    }
+
+    /**
+     * Set the effective quota object type
+     * @param object  the effective quota object type
+     */
+    @JsonProperty
+    public void setObject(String object) {
+        this.object = object;
+    }
+
+    /**
+     * Get the quota name
+     * @return name  the quota name
+     */
+    @JsonProperty
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the quota name
+     * @param name  the quota name
+     */
+    @JsonProperty
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the quota unit
+     * @return unit  the quota unit
+     */
+    @JsonProperty
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Set the quota unit
+     * @param unit  the quota unit
+     */
+    @JsonProperty
+    public void setUnit(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Get the total soft limit
+     * @return softLimit  the total soft limit
+     */
+    @JsonProperty
+    public Long getSoftLimit() {
+        return softLimit;
+    }
+
+    /**
+     * Set the total soft limit
+     * @param softLimit  the total soft limit
+     */
+    @JsonProperty
+    public void setSoftLimit(Long softLimit) {
+        this.softLimit = softLimit;
+    }
+
+    /**
+     * Get the total hard limit
+     * @return hardLimit  the total hard limit
+     */
+    @JsonProperty
+    public Long getHardLimit() {
+        return hardLimit;
+    }
+
+    /**
+     * Set the total hard limit
+     * @param hardLimit  the total hard limit
+     */
+    @JsonProperty
+    public void setHardLimit(Long hardLimit) {
+        this.hardLimit = hardLimit;
+    }
+
+    /**
+     * Get the total usage
+     * @return usage  the total usage
+     */
+    @JsonProperty
+    public Long getUsage() {
+        return usage;
+    }
+
+    /**
+     * Set the total usage
+     * @param usage  the total usage
+     */
+    @JsonProperty
+    public void setUsage(Long usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * Get the number of quotas totaled
+     * @return quotaCount  the number of quotas totaled
+     */
+    @JsonProperty
+    public Integer getQuotaCount() {
+        return quotaCount;
+    }
+
+    /**
+     * Set the number of quotas totaled
+     * @param quotaCount  the number of quotas totaled
+     */
+    @JsonProperty
+    public void setQuotaCount(Integer quotaCount) {
+        this.quotaCount = quotaCount;
+    }
+
+    /**
+     * Get the identifier of the quota to charge against
+     * @return quotaId  the quota identifier
+     */
+    @JsonProperty
+    public Integer getQuotaId() {
+        return quotaId;
+    }
+
+    /**
+     * Set the identifier of the quota to charge against
+     * @param quotaId  the quota identifier
+     */
+    @JsonProperty
+    public void setQuotaId(Integer quotaId) {
+        this.quotaId = quotaId;
+    }
+
+    /**
+     * Get the subject of the quota to charge against
+     * @return subject  the quota subject
+     */
+    @JsonProperty
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Set the subject of the quota to charge against
+     * @param subject  the quota subject
+     */
+    @JsonProperty
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    /**
+     * Determine object equality based on the equality of all fields
+     * @param o the object to be compared
+     * @return  true if the given object is equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EffectiveQuota that = (EffectiveQuota) o;
+        return Objects.equals(getObject(), that.getObject()) &&
+            Objects.equals(getName(), that.getName()) &&
+            Objects.equals(getUnit(), that.getUnit()) &&
+            Objects.equals(getSoftLimit(), that.getSoftLimit()) &&
+            Objects.equals(getHardLimit(), that.getHardLimit()) &&
+            Objects.equals(getUsage(), that.getUsage()) &&
+            Objects.equals(getQuotaCount(), that.getQuotaCount()) &&
+            Objects.equals(getQuotaId(), that.getQuotaId()) &&
+            Objects.equals(getSubject(), that.getSubject());
+    }
+
+    /**
+     * Calculate a hash based on all fields
+     * @return hashcode  the hashcode of the object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getObject(), getName(), getUnit(), getSoftLimit(), getHardLimit(),
+            getUsage(), getQuotaCount(), getQuotaId(), getSubject());
+    }
+}
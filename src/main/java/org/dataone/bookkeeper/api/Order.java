@@ -24,8 +24,6 @@ package org.dataone.bookkeeper.api;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.dropwizard.jackson.Jackson;
 
@@ -33,14 +31,13 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
-import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Orders represent a list of purchased products by customers
  */
-@JsonIgnoreProperties({"chargeJSON", "metadataJSON", "itemsJSON", "statusTransitionsJSON"})
+@JsonIgnoreProperties({"chargeJSON", "metadataJSON"})
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Order {
 
@@ -402,25 +399,6 @@ public class Order {
     }
 
 
-    /**
-     * Return the items list as a JSON array
-     * @return items the order items list
-     * @throws IOException
-     */
-    public String getItemsJSON() throws IOException {
-        if ( items != null ) {
-            ObjectMapper mapper = Jackson.newObjectMapper();
-            ArrayNode itemsArray = mapper.createArrayNode();
-
-            for (OrderItem item : items) {
-                itemsArray.add(mapper.readTree(mapper.writeValueAsString(item)));
-            }
-            return itemsArray.toString();
-        } else {
-            return "[]";
-        }
-    }
-
     /**
      * Return the metadata hash as a JSON string
      * @return metadata the metadata hash as a JSON string
@@ -434,19 +412,6 @@ public class Order {
         }
     }
 
-    /**
-     * Return the charge hash as a JSON string
-     * @return charge the charge hash as a JSON string
-     * @throws JsonProcessingException
-     */
-    public String getStatusTransitionsJSON() throws JsonProcessingException {
-        if ( statusTransitions != null ) {
-            return Jackson.newObjectMapper().writeValueAsString(getStatusTransitions());
-        } else {
-            return "{}";
-        }
-    }
-
     /**
      * Determine equality of another order
      * @param o
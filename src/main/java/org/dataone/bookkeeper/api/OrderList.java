@@ -34,6 +34,9 @@ public class OrderList extends BaseList {
 
     private List<Order> orders;
 
+    /* The paging cursor of the next page, or null for the last page */
+    private Integer next;
+
     /**
      * Construct an empty order list
      */
@@ -58,4 +61,22 @@ public class OrderList extends BaseList {
     public void setOrders(List<Order> orders) {
         this.orders = orders;
     }
+
+    /**
+     * Get the paging cursor of the next page
+     * @return next  the last order id of this page, or null for the last page
+     */
+    @JsonProperty
+    public Integer getNext() {
+        return next;
+    }
+
+    /**
+     * Set the paging cursor of the next page
+     * @param next  the last order id of this page, or null for the last page
+     */
+    @JsonProperty
+    public void setNext(Integer next) {
+        this.next = next;
+    }
 }
@@ -24,6 +24,7 @@ package org.dataone.bookkeeper.api;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import io.dropwizard.jackson.Jackson;
 
 import javax.validation.constraints.NotEmpty;
@@ -53,13 +54,16 @@ public class Quota {
     private String name;
 
     /* The quota soft limit */
-    private @NotNull Double softLimit;
+    @JsonDeserialize(using = WholeUnitsDeserializer.class)
+    private @NotNull Long softLimit;
 
     /* The quota hard limit */
-    private @NotNull Double hardLimit;
+    @JsonDeserialize(using = WholeUnitsDeserializer.class)
+    private @NotNull Long hardLimit;
 
     /* The total usage of the quota */
-    private Double usage;
+    @JsonDeserialize(using = WholeUnitsDeserializer.class)
+    private Long usage;
 
     /* The quota unit */
     @NotEmpty
@@ -72,6 +76,15 @@ public class Quota {
     /* The quota subject id */
     private String subject;
 
+    /* The parent quota id, whose usage includes this quota's usage */
+    private Integer parentId;
+
+    /* The recent usage growth rate, in quota units per day (read-only) */
+    private Double growthRate;
+
+    /* The projected seconds until the usage reaches the hard limit (read-only) */
+    private Long timeToLimit;
+
     /**
      * Construct an empty Quota
      */
@@ -101,6 +114,9 @@ public class Quota {
             this.unit = quota.unit;
             this.subscriptionId = quota.subscriptionId;
             this.subject = quota.subject;
+            this.parentId = quota.parentId;
+            this.growthRate = quota.growthRate;
+            this.timeToLimit = quota.timeToLimit;
         }
     }
 
@@ -119,9 +135,9 @@ public class Quota {
     public Quota(Integer id,
                  @NotNull @NotEmpty String object,
                  @NotNull @NotEmpty String name,
-                 @NotNull Double softLimit,
-                 @NotNull Double hardLimit,
-                 Double usage,
+                 @NotNull Long softLimit,
+                 @NotNull Long hardLimit,
+                 Long usage,
                  @NotNull @NotEmpty String unit,
                  Integer subscriptionId,
                  String subject) {
@@ -199,7 +215,7 @@ public class Quota {
      * @return softLimit  the quota soft limit
      */
     @JsonProperty
-    public @NotNull Double getSoftLimit() {
+    public @NotNull Long getSoftLimit() {
         return softLimit;
     }
 
@@ -208,7 +224,7 @@ public class Quota {
      * @param softLimit the quota soft limit
      */
     @JsonProperty
-    public void setSoftLimit(@NotNull Double softLimit) {
+    public void setSoftLimit(@NotNull Long softLimit) {
         this.softLimit = softLimit;
     }
 
@@ -217,7 +233,7 @@ public class Quota {
      * @return hardLimit  the quota hard limit
      */
     @JsonProperty
-    public @NotNull Double getHardLimit() {
+    public @NotNull Long getHardLimit() {
         return hardLimit;
     }
 
@@ -226,7 +242,7 @@ public class Quota {
      * @param hardLimit  the quota hard limit
      */
     @JsonProperty
-    public void setHardLimit(@NotNull Double hardLimit) {
+    public void setHardLimit(@NotNull Long hardLimit) {
         this.hardLimit = hardLimit;
     }
 
@@ -236,7 +252,7 @@ public class Quota {
      * @return usage  the quota total usage
      */
     @JsonProperty
-    public Double getUsage() {
+    public Long getUsage() {
         return usage;
     }
 
@@ -245,7 +261,7 @@ public class Quota {
      * @param usage  the quota total usage
      */
     @JsonProperty
-    public void setUsage(Double usage) {
+    public void setUsage(Long usage) {
         this.usage = usage;
     }
 
@@ -304,7 +320,62 @@ public class Quota {
     }
 
     /**
-     * Determine object equality based on the equality of all fields
+     * Get the parent quota id
+     * @return parentId  the parent quota identifier, or null for a top level quota
+     */
+    @JsonProperty
+    public Integer getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Set the parent quota id
+     * @param parentId  the parent quota identifier, or null for a top level quota
+     */
+    @JsonProperty
+    public void setParentId(Integer parentId) {
+        this.parentId = parentId;
+    }
+
+    /**
+     * Get the recent usage growth rate, weighting recent usage changes most
+     * @return growthRate  the growth rate in quota units per day, or null without usage changes
+     */
+    @JsonProperty
+    public Double getGrowthRate() {
+        return growthRate;
+    }
+
+    /**
+     * Set the recent usage growth rate
+     * @param growthRate  the growth rate in quota units per day
+     */
+    @JsonProperty
+    public void setGrowthRate(Double growthRate) {
+        this.growthRate = growthRate;
+    }
+
+    /**
+     * Get the projected time until the usage reaches the hard limit at the growth rate
+     * @return timeToLimit  the seconds until the hard limit, 0 if reached, or null if not growing
+     */
+    @JsonProperty
+    public Long getTimeToLimit() {
+        return timeToLimit;
+    }
+
+    /**
+     * Set the projected time until the usage reaches the hard limit
+     * @param timeToLimit  the seconds until the hard limit
+     */
+    @JsonProperty
+    public void setTimeToLimit(Long timeToLimit) {
+        this.timeToLimit = timeToLimit;
+    }
+
+    /**
+     * Determine object equality based on the equality of all fields except the
+     * growth rate and time to limit, which are derived as of when they were read
      * @param o the object to be compared
      * @return  true if the given object is equal
      */
@@ -321,16 +392,17 @@ public class Quota {
             Objects.equals(getUsage(), quota.getUsage()) &&
             Objects.equals(getUnit(), quota.getUnit()) &&
             Objects.equals(getSubscriptionId(), quota.getSubscriptionId()) &&
-            Objects.equals(getSubject(), quota.getSubject());
+            Objects.equals(getSubject(), quota.getSubject()) &&
+            Objects.equals(getParentId(), quota.getParentId());
     }
 
     /**
-     * Calculate a hash based on all fields
+     * Calculate a hash based on all fields except the derived growth rate and time to limit
      * @return hashcode  the hashcode of the object
      */
     @Override
     public int hashCode() {
         return Objects.hash(getId(), getObject(), getName(), getSoftLimit(),
-            getHardLimit(), getUsage(), getUnit(), getSubscriptionId(), getSubject());
+            getHardLimit(), getUsage(), getUnit(), getSubscriptionId(), getSubject(), getParentId());
     }
 }
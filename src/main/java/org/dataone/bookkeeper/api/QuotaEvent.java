@@ -0,0 +1,293 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Quota events report a change in usage that crossed one of a quota's thresholds,
+ * and are pushed to subscribers of the quota events stream
+ */
+@JsonIgnoreProperties(ignoreUnknown=true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QuotaEvent {
+
+    /* The quota event object type */
+    private String object = "quota_event";
+
+    /* The identifier of the quota */
+    private Integer quotaId;
+
+    /* The quota name */
+    private String name;
+
+    /* The quota subject */
+    private String subject;
+
+    /* The crossed threshold, such as 80%, softLimit, or hardLimit */
+    private String threshold;
+
+    /* The usage level of the threshold */
+    private Long limit;
+
+    /* The quota usage after the change */
+    private Long usage;
+
+    /* The crossing direction, either exceeded or cleared */
+    private String direction;
+
+    /* The time of the crossing, in seconds since the epoch */
+    private Integer created;
+
+    /**
+     * Construct an empty quota event
+     */
+    public QuotaEvent() {
+        super();
+    }
+
+    /**
+     * Construct a quota event
+     * @param quotaId    the identifier of the quota
+     * @param name       the quota name
+     * @param subject    the quota subject
+     * @param threshold  the crossed threshold, such as 80%, softLimit, or hardLimit
+     * @param limit      the usage level of the threshold
+     * @param usage      the quota usage after the change
+     * @param direction  the crossing direction, either exceeded or cleared
+     * @param created    the time of the crossing, in seconds since the epoch
+     */
+    public QuotaEvent(Integer quotaId,
+                      String name,
+                      String subject,
+                      String threshold,
+                      Long limit,
+                      Long usage,
+                      String direction,
+                      Integer created) {
+        this.quotaId = quotaId;
+        this.name = name;
+        this.subject = subject;
+        this.threshold = threshold;
+        this.limit = limit;
+        this.usage = usage;
+        this.direction = direction;
+        this.created = created;
+    }
+
+    /**
+     * Get the quota event object type
+     * @return object  the quota event object type
+     */
+    @JsonProperty
+    public String getObject() {
+        return object;
+    }
+
+    /**
+     * Set the quota event object type
+     * @param object  the quota event object type
+     */
+    @JsonProperty
+    public void setObject(String object) {
+        this.object = object;
+    }
+
+    /**
+     * Get the quota identifier
+     * @return quotaId  the quota identifier
+     */
+    @JsonProperty
+    public Integer getQuotaId() {
+        return quotaId;
+    }
+
+    /**
+     * Set the quota identifier
+     * @param quotaId  the quota identifier
+     */
+    @JsonProperty
+    public void setQuotaId(Integer quotaId) {
+        this.quotaId = quotaId;
+    }
+
+    /**
+     * Get the quota name
+     * @return name  the quota name
+     */
+    @JsonProperty
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the quota name
+     * @param name  the quota name
+     */
+    @JsonProperty
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the quota subject
+     * @return subject  the quota subject
+     */
+    @JsonProperty
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Set the quota subject
+     * @param subject  the quota subject
+     */
+    @JsonProperty
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    /**
+     * Get the crossed threshold
+     * @return threshold  the crossed threshold
+     */
+    @JsonProperty
+    public String getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Set the crossed threshold
+     * @param threshold  the crossed threshold
+     */
+    @JsonProperty
+    public void setThreshold(String threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Get the threshold usage level
+     * @return limit  the threshold usage level
+     */
+    @JsonProperty
+    public Long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the threshold usage level
+     * @param limit  the threshold usage level
+     */
+    @JsonProperty
+    public void setLimit(Long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Get the quota usage
+     * @return usage  the quota usage
+     */
+    @JsonProperty
+    public Long getUsage() {
+        return usage;
+    }
+
+    /**
+     * Set the quota usage
+     * @param usage  the quota usage
+     */
+    @JsonProperty
+    public void setUsage(Long usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * Get the crossing direction
+     * @return direction  the crossing direction
+     */
+    @JsonProperty
+    public String getDirection() {
+        return direction;
+    }
+
+    /**
+     * Set the crossing direction
+     * @param direction  the crossing direction
+     */
+    @JsonProperty
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * Get the crossing time
+     * @return created  the crossing time
+     */
+    @JsonProperty
+    public Integer getCreated() {
+        return created;
+    }
+
+    /**
+     * Set the crossing time
+     * @param created  the crossing time
+     */
+    @JsonProperty
+    public void setCreated(Integer created) {
+        this.created = created;
+    }
+
+    /**
+     * Determine object equality based on the equality of all fields
+     * @param o the object to be compared
+     * @return  true if the given object is equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        QuotaEvent that = (QuotaEvent) o;
+        return Objects.equals(getObject(), that.getObject()) &&
+            Objects.equals(getQuotaId(), that.getQuotaId()) &&
+            Objects.equals(getName(), that.getName()) &&
+            Objects.equals(getSubject(), that.getSubject()) &&
+            Objects.equals(getThreshold(), that.getThreshold()) &&
+            Objects.equals(getLimit(), that.getLimit()) &&
+            Objects.equals(getUsage(), that.getUsage()) &&
+            Objects.equals(getDirection(), that.getDirection()) &&
+            Objects.equals(getCreated(), that.getCreated());
+    }
+
+    /**
+     * Calculate a hash based on all fields
+     * @return hashcode  the hashcode of the object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getObject(), getQuotaId(), getName(), getSubject(), getThreshold(),
+            getLimit(), getUsage(), getDirection(), getCreated());
+    }
+}
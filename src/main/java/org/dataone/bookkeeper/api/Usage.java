@@ -21,6 +21,8 @@
 
 package org.dataone.bookkeeper.api;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
@@ -47,11 +49,19 @@ public class Usage {
 
     /* The identifier of the quota usage */
     @NotNull
-    private Double quantity;
+    @JsonDeserialize(using = WholeUnitsDeserializer.class)
+    private Long quantity;
 
     /*  The status of the usage, either active or archived */
     @Pattern(regexp = "active|archived")
     private String status;
+
+    /* The usage creation timestamp, in seconds since the epoch */
+    private Integer created;
+
+    /* The usage update timestamp, in seconds since the epoch */
+    private Integer updated;
+
     /**
      * Construct an empty usage instance
      */
@@ -71,7 +81,7 @@ public class Usage {
                  @NotEmpty @NotNull @Pattern(regexp = "usage") String object,
                  @NotNull Integer quotaId,
                  @NotNull String instanceId,
-                 @NotNull Double quantity,
+                 @NotNull Long quantity,
                  String status) {
         this.id = id;
         this.object = object;
@@ -149,7 +159,7 @@ public class Usage {
      * Get the quota usage quantity
      * @return quantity  the quota usage quantity
      */
-    public @NotNull Double getQuantity() {
+    public @NotNull Long getQuantity() {
         return quantity;
     }
 
@@ -157,7 +167,7 @@ public class Usage {
      * Set the quota usage quantity
      * @param quantity  the quota usage quantity
      */
-    public void setQuantity(@NotNull Double quantity) {
+    public void setQuantity(@NotNull Long quantity) {
         this.quantity = quantity;
     }
 
@@ -177,6 +187,38 @@ public class Usage {
         this.status = status;
     }
 
+    /**
+     * Get the usage creation timestamp
+     * @return created  the usage creation timestamp, in seconds since the epoch
+     */
+    public Integer getCreated() {
+        return created;
+    }
+
+    /**
+     * Set the usage creation timestamp
+     * @param created  the usage creation timestamp, in seconds since the epoch
+     */
+    public void setCreated(Integer created) {
+        this.created = created;
+    }
+
+    /**
+     * Get the usage update timestamp
+     * @return updated  the usage update timestamp, in seconds since the epoch
+     */
+    public Integer getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Set the usage update timestamp
+     * @param updated  the usage update timestamp, in seconds since the epoch
+     */
+    public void setUpdated(Integer updated) {
+        this.updated = updated;
+    }
+
     /**
      * Determine equality with the given object
      * @param o  the object to compare
@@ -192,7 +234,9 @@ public class Usage {
             getQuotaId().equals(usage.getQuotaId()) &&
             getInstanceId().equals(usage.getInstanceId()) &&
             getQuantity().equals(usage.getQuantity()) &&
-            Objects.equals(getStatus(), usage.getStatus());
+            Objects.equals(getStatus(), usage.getStatus()) &&
+            Objects.equals(getCreated(), usage.getCreated()) &&
+            Objects.equals(getUpdated(), usage.getUpdated());
     }
 
     /**
@@ -201,7 +245,8 @@ public class Usage {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(getId(), getObject(), getQuotaId(), getInstanceId(), getQuantity(), getStatus());
+        return Objects.hash(getId(), getObject(), getQuotaId(), getInstanceId(), getQuantity(),
+            getStatus(), getCreated(), getUpdated());
     }
 }
 
@@ -0,0 +1,243 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Usage rollups are time buckets of the change in usage of a quota, used to
+ * report usage history without scanning individual usages
+ */
+@JsonIgnoreProperties(ignoreUnknown=true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UsageRollup {
+
+    /* The usage rollup object type */
+    private String object = "usage_rollup";
+
+    /* The identifier of the rolled up quota */
+    private Integer quotaId;
+
+    /* The bucket interval, either day or month */
+    private String interval;
+
+    /* The start of the bucket, in seconds since the epoch */
+    private Integer start;
+
+    /* The net change in usage during the bucket */
+    private Long quantity;
+
+    /* The number of usage events during the bucket */
+    private Integer events;
+
+    /* The total usage of the quota at the end of the bucket */
+    private Long usage;
+
+    /**
+     * Construct an empty usage rollup
+     */
+    public UsageRollup() {
+        super();
+    }
+
+    /**
+     * Construct a usage rollup
+     * @param quotaId   the identifier of the rolled up quota
+     * @param interval  the bucket interval, either day or month
+     * @param start     the start of the bucket, in seconds since the epoch
+     * @param quantity  the net change in usage during the bucket
+     * @param events    the number of usage events during the bucket
+     * @param usage     the total usage of the quota at the end of the bucket
+     */
+    public UsageRollup(Integer quotaId,
+                       String interval,
+                       Integer start,
+                       Long quantity,
+                       Integer events,
+                       Long usage) {
+        this.quotaId = quotaId;
+        this.interval = interval;
+        this.start = start;
+        this.quantity = quantity;
+        this.events = events;
+        this.usage = usage;
+    }
+
+    /**
+     * Get the usage rollup object type
+     * @return object  the usage rollup object type
+     */
+    @JsonProperty
+    public String getObject() {
+        return object;
+    }
+
+    /**
+     * Set the usage rollup object type
+     * @param object  the usage rollup object type
+     */
+    @JsonProperty
+    public void setObject(String object) {
+        this.object = object;
+    }
+
+    /**
+     * Get the quota identifier
+     * @return quotaId  the quota identifier
+     */
+    @JsonProperty
+    public Integer getQuotaId() {
+        return quotaId;
+    }
+
+    /**
+     * Set the quota identifier
+     * @param quotaId  the quota identifier
+     */
+    @JsonProperty
+    public void setQuotaId(Integer quotaId) {
+        this.quotaId = quotaId;
+    }
+
+    /**
+     * Get the bucket interval
+     * @return interval  the bucket interval, either day or month
+     */
+    @JsonProperty
+    public String getInterval() {
+        return interval;
+    }
+
+    /**
+     * Set the bucket interval
+     * @param interval  the bucket interval, either day or month
+     */
+    @JsonProperty
+    public void setInterval(String interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Get the bucket start
+     * @return start  the start of the bucket, in seconds since the epoch
+     */
+    @JsonProperty
+    public Integer getStart() {
+        return start;
+    }
+
+    /**
+     * Set the bucket start
+     * @param start  the start of the bucket, in seconds since the epoch
+     */
+    @JsonProperty
+    public void setStart(Integer start) {
+        this.start = start;
+    }
+
+    /**
+     * Get the net change in usage
+     * @return quantity  the net change in usage during the bucket
+     */
+    @JsonProperty
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Set the net change in usage
+     * @param quantity  the net change in usage during the bucket
+     */
+    @JsonProperty
+    public void setQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Get the number of usage events
+     * @return events  the number of usage events during the bucket
+     */
+    @JsonProperty
+    public Integer getEvents() {
+        return events;
+    }
+
+    /**
+     * Set the number of usage events
+     * @param events  the number of usage events during the bucket
+     */
+    @JsonProperty
+    public void setEvents(Integer events) {
+        this.events = events;
+    }
+
+    /**
+     * Get the total usage at the end of the bucket
+     * @return usage  the total usage of the quota at the end of the bucket
+     */
+    @JsonProperty
+    public Long getUsage() {
+        return usage;
+    }
+
+    /**
+     * Set the total usage at the end of the bucket
+     * @param usage  the total usage of the quota at the end of the bucket
+     */
+    @JsonProperty
+    public void setUsage(Long usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * Determine object equality based on the equality of all fields
+     * @param o the object to be compared
+     * @return  true if the given object is equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UsageRollup that = (UsageRollup) o;
+        return Objects.equals(getObject(), that.getObject()) &&
+            Objects.equals(getQuotaId(), that.getQuotaId()) &&
+            Objects.equals(getInterval(), that.getInterval()) &&
+            Objects.equals(getStart(), that.getStart()) &&
+            Objects.equals(getQuantity(), that.getQuantity()) &&
+            Objects.equals(getEvents(), that.getEvents()) &&
+            Objects.equals(getUsage(), that.getUsage());
+    }
+
+    /**
+     * Calculate a hash based on all fields
+     * @return hashcode  the hashcode of the object
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(getObject(), getQuotaId(), getInterval(), getStart(),
+            getQuantity(), getEvents(), getUsage());
+    }
+}
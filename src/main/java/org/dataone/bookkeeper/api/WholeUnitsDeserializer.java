@@ -0,0 +1,59 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.NumberDeserializers;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserializes whole-unit quantities like quota limits and usage quantities,
+ * rejecting fractional JSON numbers so clients get a 400 rather than a
+ * silently truncated value. Other values are read as any Long field is.
+ */
+public class WholeUnitsDeserializer extends StdDeserializer<Long> {
+
+    /* The standard deserializer for Long values */
+    private static final NumberDeserializers.LongDeserializer LONGS =
+        new NumberDeserializers.LongDeserializer(Long.class, null);
+
+    /**
+     * Construct a whole units deserializer
+     */
+    public WholeUnitsDeserializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+        if ( parser.hasToken(JsonToken.VALUE_NUMBER_FLOAT) ) {
+            return (Long) context.handleWeirdNumberValue(Long.class, parser.getNumberValue(),
+                "The value must be a whole number");
+        }
+        return LONGS.deserialize(parser, context);
+    }
+}
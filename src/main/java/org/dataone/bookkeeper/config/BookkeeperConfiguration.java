@@ -43,12 +43,64 @@ public class BookkeeperConfiguration extends Configuration {
     /* The Caffeine caching YAML configuration keyword */
     private static final String CAFFEINE = "authenticationCachePolicy";
 
+    /* The quota cache YAML configuration keyword */
+    private static final String QUOTA_CACHE = "quotaCachePolicy";
+
+    /* The usage cache YAML configuration keyword */
+    private static final String USAGE_CACHE = "usageCachePolicy";
+
+    /* The usage compaction YAML configuration keyword */
+    private static final String USAGE_COMPACTION = "usageCompaction";
+
+    /* The usage reconciliation YAML configuration keyword */
+    private static final String USAGE_RECONCILIATION = "usageReconciliation";
+
+    /* The quota events YAML configuration keyword */
+    private static final String QUOTA_EVENTS = "quotaEvents";
+
+    /* The usage journal YAML configuration keyword */
+    private static final String USAGE_JOURNAL = "usageJournal";
+
+    /* The order archive YAML configuration keyword */
+    private static final String ORDER_ARCHIVE = "orderArchive";
+
     /* The authentication cache policy string */
     private String authenticationCachePolicy;
 
+    /* The quota cache policy string */
+    private String quotaCachePolicy = "maximumSize=10000, expireAfterWrite=10m, recordStats";
+
+    /* The usage cache policy string */
+    private String usageCachePolicy = "maximumSize=10000, expireAfterWrite=1m, recordStats";
+
     /* The DataONE configuration */
     private DataONEConfiguration dataone = new DataONEConfiguration();
 
+    /* The usage compaction configuration */
+    @Valid
+    @NotNull
+    private UsageCompactionConfiguration usageCompaction = new UsageCompactionConfiguration();
+
+    /* The usage reconciliation configuration */
+    @Valid
+    @NotNull
+    private UsageReconciliationConfiguration usageReconciliation = new UsageReconciliationConfiguration();
+
+    /* The quota events configuration */
+    @Valid
+    @NotNull
+    private QuotaEventsConfiguration quotaEvents = new QuotaEventsConfiguration();
+
+    /* The usage journal configuration */
+    @Valid
+    @NotNull
+    private UsageJournalConfiguration usageJournal = new UsageJournalConfiguration();
+
+    /* The order archive configuration */
+    @Valid
+    @NotNull
+    private OrderArchiveConfiguration orderArchive = new OrderArchiveConfiguration();
+
     /* The DataSource to be used for persistence */
     @Valid
     @NotNull
@@ -107,4 +159,130 @@ public class BookkeeperConfiguration extends Configuration {
     public void setAuthenticationCachePolicy(String authenticationCachePolicy) {
         this.authenticationCachePolicy = authenticationCachePolicy;
     }
+
+    /**
+     * Get the quota cache policy
+     * @return quotaCachePolicy  the parsed quota cache policy
+     */
+    @JsonProperty(QUOTA_CACHE)
+    public CaffeineSpec getQuotaCachePolicy() {
+        return CaffeineSpec.parse(this.quotaCachePolicy);
+    }
+
+    /**
+     * Set the quota cache policy
+     * @param quotaCachePolicy the quota cache policy
+     */
+    @JsonProperty(QUOTA_CACHE)
+    public void setQuotaCachePolicy(String quotaCachePolicy) {
+        this.quotaCachePolicy = quotaCachePolicy;
+    }
+
+    /**
+     * Get the usage cache policy
+     * @return usageCachePolicy  the parsed usage cache policy
+     */
+    @JsonProperty(USAGE_CACHE)
+    public CaffeineSpec getUsageCachePolicy() {
+        return CaffeineSpec.parse(this.usageCachePolicy);
+    }
+
+    /**
+     * Set the usage cache policy
+     * @param usageCachePolicy the usage cache policy
+     */
+    @JsonProperty(USAGE_CACHE)
+    public void setUsageCachePolicy(String usageCachePolicy) {
+        this.usageCachePolicy = usageCachePolicy;
+    }
+
+    /**
+     * Get the usage compaction configuration
+     * @return usageCompaction  the usage compaction configuration
+     */
+    @JsonProperty(USAGE_COMPACTION)
+    public UsageCompactionConfiguration getUsageCompactionConfiguration() {
+        return usageCompaction;
+    }
+
+    /**
+     * Set the usage compaction configuration
+     * @param usageCompaction  the usage compaction configuration
+     */
+    @JsonProperty(USAGE_COMPACTION)
+    public void setUsageCompactionConfiguration(UsageCompactionConfiguration usageCompaction) {
+        this.usageCompaction = usageCompaction;
+    }
+
+    /**
+     * Get the usage reconciliation configuration
+     * @return usageReconciliation  the usage reconciliation configuration
+     */
+    @JsonProperty(USAGE_RECONCILIATION)
+    public UsageReconciliationConfiguration getUsageReconciliationConfiguration() {
+        return usageReconciliation;
+    }
+
+    /**
+     * Set the usage reconciliation configuration
+     * @param usageReconciliation  the usage reconciliation configuration
+     */
+    @JsonProperty(USAGE_RECONCILIATION)
+    public void setUsageReconciliationConfiguration(UsageReconciliationConfiguration usageReconciliation) {
+        this.usageReconciliation = usageReconciliation;
+    }
+
+    /**
+     * Get the quota events configuration
+     * @return quotaEvents  the quota events configuration
+     */
+    @JsonProperty(QUOTA_EVENTS)
+    public QuotaEventsConfiguration getQuotaEventsConfiguration() {
+        return quotaEvents;
+    }
+
+    /**
+     * Set the quota events configuration
+     * @param quotaEvents  the quota events configuration
+     */
+    @JsonProperty(QUOTA_EVENTS)
+    public void setQuotaEventsConfiguration(QuotaEventsConfiguration quotaEvents) {
+        this.quotaEvents = quotaEvents;
+    }
+
+    /**
+     * Get the usage journal configuration
+     * @return usageJournal  the usage journal configuration
+     */
+    @JsonProperty(USAGE_JOURNAL)
+    public UsageJournalConfiguration getUsageJournalConfiguration() {
+        return usageJournal;
+    }
+
+    /**
+     * Set the usage journal configuration
+     * @param usageJournal  the usage journal configuration
+     */
+    @JsonProperty(USAGE_JOURNAL)
+    public void setUsageJournalConfiguration(UsageJournalConfiguration usageJournal) {
+        this.usageJournal = usageJournal;
+    }
+
+    /**
+     * Get the order archive configuration
+     * @return orderArchive  the order archive configuration
+     */
+    @JsonProperty(ORDER_ARCHIVE)
+    public OrderArchiveConfiguration getOrderArchiveConfiguration() {
+        return orderArchive;
+    }
+
+    /**
+     * Set the order archive configuration
+     * @param orderArchive  the order archive configuration
+     */
+    @JsonProperty(ORDER_ARCHIVE)
+    public void setOrderArchiveConfiguration(OrderArchiveConfiguration orderArchive) {
+        this.orderArchive = orderArchive;
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for the maintenance of the monthly orders partitions
+ */
+public class OrderArchiveConfiguration {
+
+    /* Whether the maintenance job runs, off unless operators opt in to archiving */
+    private boolean enabled = false;
+
+    /* The time between maintenance runs */
+    @NotNull
+    private Duration interval = Duration.days(1);
+
+    /* The number of months of orders kept in the orders table */
+    @Min(1)
+    private int retentionMonths = 24;
+
+    /* The number of monthly partitions created ahead of the current month */
+    @Min(1)
+    private int premadeMonths = 3;
+
+    /**
+     * Get whether the maintenance job runs
+     * @return enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the maintenance job runs
+     * @param enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the time between maintenance runs
+     * @return interval  the time between runs
+     */
+    @JsonProperty("interval")
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Set the time between maintenance runs
+     * @param interval  the time between runs
+     */
+    @JsonProperty("interval")
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Get the number of months of orders kept in the orders table
+     * @return retentionMonths  the number of months
+     */
+    @JsonProperty("retentionMonths")
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    /**
+     * Set the number of months of orders kept in the orders table
+     * @param retentionMonths  the number of months
+     */
+    @JsonProperty("retentionMonths")
+    public void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Get the number of monthly partitions created ahead of the current month
+     * @return premadeMonths  the number of months
+     */
+    @JsonProperty("premadeMonths")
+    public int getPremadeMonths() {
+        return premadeMonths;
+    }
+
+    /**
+     * Set the number of monthly partitions created ahead of the current month
+     * @param premadeMonths  the number of months
+     */
+    @JsonProperty("premadeMonths")
+    public void setPremadeMonths(int premadeMonths) {
+        this.premadeMonths = premadeMonths;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration for the quota threshold events stream
+ */
+public class QuotaEventsConfiguration {
+
+    /* The thresholds that trigger events: percentages of the hard limit, softLimit, or hardLimit */
+    @NotNull
+    private List<String> thresholds = Arrays.asList("80%", "softLimit", "hardLimit");
+
+    /* The maximum number of unsent events per connection before it is closed */
+    @Min(1)
+    private int bufferSize = 64;
+
+    /* The time between keep-alive comments sent to idle connections */
+    @NotNull
+    private Duration heartbeatInterval = Duration.seconds(15);
+
+    /**
+     * Get the thresholds that trigger events
+     * @return thresholds  the thresholds, such as 80%, softLimit, or hardLimit
+     */
+    @JsonProperty("thresholds")
+    public List<String> getThresholds() {
+        return thresholds;
+    }
+
+    /**
+     * Set the thresholds that trigger events
+     * @param thresholds  the thresholds, such as 80%, softLimit, or hardLimit
+     */
+    @JsonProperty("thresholds")
+    public void setThresholds(List<String> thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Get the maximum number of unsent events per connection
+     * @return bufferSize  the per-connection buffer size
+     */
+    @JsonProperty("bufferSize")
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Set the maximum number of unsent events per connection
+     * @param bufferSize  the per-connection buffer size
+     */
+    @JsonProperty("bufferSize")
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Get the time between keep-alive comments
+     * @return heartbeatInterval  the time between keep-alive comments
+     */
+    @JsonProperty("heartbeatInterval")
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * Set the time between keep-alive comments
+     * @param heartbeatInterval  the time between keep-alive comments
+     */
+    @JsonProperty("heartbeatInterval")
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for the background compaction of archived usages
+ */
+public class UsageCompactionConfiguration {
+
+    /* Whether the compaction job runs */
+    private boolean enabled = true;
+
+    /* The time between compaction runs */
+    @NotNull
+    private Duration interval = Duration.hours(1);
+
+    /* The number of usages moved per transaction */
+    @Min(1)
+    private int batchSize = 1000;
+
+    /* The maximum number of batches per run */
+    @Min(1)
+    private int maxBatches = 100;
+
+    /**
+     * Get whether the compaction job runs
+     * @return enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the compaction job runs
+     * @param enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the time between compaction runs
+     * @return interval  the time between runs
+     */
+    @JsonProperty("interval")
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Set the time between compaction runs
+     * @param interval  the time between runs
+     */
+    @JsonProperty("interval")
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Get the number of usages moved per transaction
+     * @return batchSize  the batch size
+     */
+    @JsonProperty("batchSize")
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of usages moved per transaction
+     * @param batchSize  the batch size
+     */
+    @JsonProperty("batchSize")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the maximum number of batches per run
+     * @return maxBatches  the maximum number of batches
+     */
+    @JsonProperty("maxBatches")
+    public int getMaxBatches() {
+        return maxBatches;
+    }
+
+    /**
+     * Set the maximum number of batches per run
+     * @param maxBatches  the maximum number of batches
+     */
+    @JsonProperty("maxBatches")
+    public void setMaxBatches(int maxBatches) {
+        this.maxBatches = maxBatches;
+    }
+}
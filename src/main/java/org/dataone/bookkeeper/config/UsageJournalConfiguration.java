@@ -0,0 +1,166 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for the local journal of usage writes made while the database is unavailable
+ */
+public class UsageJournalConfiguration {
+
+    /* Whether usage writes are journaled when the database is unavailable */
+    private boolean enabled = false;
+
+    /* The journal directory */
+    @NotEmpty
+    private String directory = "/var/lib/bookkeeper/journal";
+
+    /* The size of each journal segment file */
+    @NotNull
+    private Size segmentSize = Size.megabytes(64);
+
+    /* Whether each journaled write is forced to disk before it is acknowledged */
+    private boolean sync = true;
+
+    /* The time between attempts to replay the journal */
+    @NotNull
+    private Duration replayInterval = Duration.seconds(5);
+
+    /* The number of usages replayed per transaction */
+    @Min(1)
+    private int batchSize = 500;
+
+    /**
+     * Get whether usage writes are journaled
+     * @return enabled  true if usage writes are journaled
+     */
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether usage writes are journaled
+     * @param enabled  true if usage writes are journaled
+     */
+    @JsonProperty("enabled")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the journal directory
+     * @return directory  the journal directory
+     */
+    @JsonProperty("directory")
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the journal directory
+     * @param directory  the journal directory
+     */
+    @JsonProperty("directory")
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the size of each journal segment file
+     * @return segmentSize  the segment size
+     */
+    @JsonProperty("segmentSize")
+    public Size getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Set the size of each journal segment file
+     * @param segmentSize  the segment size
+     */
+    @JsonProperty("segmentSize")
+    public void setSegmentSize(Size segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Get whether each journaled write is forced to disk
+     * @return sync  true if each write is forced to disk
+     */
+    @JsonProperty("sync")
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Set whether each journaled write is forced to disk
+     * @param sync  true if each write is forced to disk
+     */
+    @JsonProperty("sync")
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Get the time between replay attempts
+     * @return replayInterval  the time between replay attempts
+     */
+    @JsonProperty("replayInterval")
+    public Duration getReplayInterval() {
+        return replayInterval;
+    }
+
+    /**
+     * Set the time between replay attempts
+     * @param replayInterval  the time between replay attempts
+     */
+    @JsonProperty("replayInterval")
+    public void setReplayInterval(Duration replayInterval) {
+        this.replayInterval = replayInterval;
+    }
+
+    /**
+     * Get the number of usages replayed per transaction
+     * @return batchSize  the batch size
+     */
+    @JsonProperty("batchSize")
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of usages replayed per transaction
+     * @param batchSize  the batch size
+     */
+    @JsonProperty("batchSize")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for the background reconciliation of quota usage totals
+ */
+public class UsageReconciliationConfiguration {
+
+    /* Whether the reconciliation job runs */
+    private boolean enabled = true;
+
+    /* The number of quotas reconciled per chunk */
+    @Min(1)
+    private int chunkSize = 500;
+
+    /* The fraction of wall-clock time the job may spend working */
+    @DecimalMin("0.01")
+    @DecimalMax("1.0")
+    private double dutyCycle = 0.05;
+
+    /* The pause between complete passes over the quotas */
+    @NotNull
+    private Duration passInterval = Duration.hours(6);
+
+    /**
+     * Get whether the reconciliation job runs
+     * @return enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether the reconciliation job runs
+     * @param enabled  true if the job runs
+     */
+    @JsonProperty("enabled")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the number of quotas reconciled per chunk
+     * @return chunkSize  the chunk size
+     */
+    @JsonProperty("chunkSize")
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of quotas reconciled per chunk
+     * @param chunkSize  the chunk size
+     */
+    @JsonProperty("chunkSize")
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the fraction of wall-clock time the job may spend working
+     * @return dutyCycle  the duty cycle, between 0.01 and 1.0
+     */
+    @JsonProperty("dutyCycle")
+    public double getDutyCycle() {
+        return dutyCycle;
+    }
+
+    /**
+     * Set the fraction of wall-clock time the job may spend working
+     * @param dutyCycle  the duty cycle, between 0.01 and 1.0
+     */
+    @JsonProperty("dutyCycle")
+    public void setDutyCycle(double dutyCycle) {
+        this.dutyCycle = dutyCycle;
+    }
+
+    /**
+     * Get the pause between complete passes
+     * @return passInterval  the pause between passes
+     */
+    @JsonProperty("passInterval")
+    public Duration getPassInterval() {
+        return passInterval;
+    }
+
+    /**
+     * Set the pause between complete passes
+     * @param passInterval  the pause between passes
+     */
+    @JsonProperty("passInterval")
+    public void setPassInterval(Duration passInterval) {
+        this.passInterval = passInterval;
+    }
+}
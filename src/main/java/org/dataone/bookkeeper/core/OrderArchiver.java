@@ -0,0 +1,118 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.config.OrderArchiveConfiguration;
+import org.dataone.bookkeeper.jdbi.OrderStore;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that maintains the monthly orders partitions. Each run
+ * creates the partitions of the coming months, so new orders don't land in the
+ * default partition, and moves the partitions older than the retention period
+ * into the archive schema, where only history queries read them, and where
+ * they can no longer be changed. The job is off unless configured, and until
+ * it runs, new orders of months without a partition land in the default
+ * partition. The first run moves them into their monthly partitions.
+ *
+ * On servers where orders aren't partitioned, runs have no effect.
+ */
+public class OrderArchiver implements Managed {
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(OrderArchiver.class);
+
+    /* The order store used to maintain partitions */
+    private final OrderStore orderStore;
+
+    /* The archive configuration */
+    private final OrderArchiveConfiguration configuration;
+
+    /* The scheduler running maintenance */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Construct an order archiver
+     * @param orderStore  the order store used to maintain partitions
+     * @param configuration  the archive configuration
+     */
+    public OrderArchiver(OrderStore orderStore, OrderArchiveConfiguration configuration) {
+        this.orderStore = orderStore;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Schedule the maintenance runs, starting with one right away
+     */
+    @Override
+    public void start() {
+        long interval = this.configuration.getInterval().toMilliseconds();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler.scheduleWithFixedDelay(this::run, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop scheduling maintenance runs, letting a running one finish
+     * @throws InterruptedException  if interrupted while waiting for the run
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if ( this.scheduler != null ) {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Create the coming monthly partitions and archive the expired ones
+     * @return archived  the number of partitions archived
+     */
+    public int archive() {
+        int created = this.orderStore.createPartitions(this.configuration.getPremadeMonths());
+        if ( created > 0 ) {
+            log.info("Created " + created + " monthly orders partitions.");
+        }
+        ZonedDateTime before = ZonedDateTime.now(ZoneOffset.UTC)
+            .minusMonths(this.configuration.getRetentionMonths());
+        return this.orderStore.archivePartitions((int) before.toEpochSecond());
+    }
+
+    /* Run scheduled maintenance, keeping the schedule alive on failure */
+    private void run() {
+        try {
+            int archived = archive();
+            if ( archived > 0 ) {
+                log.info("Archived " + archived + " monthly orders partitions.");
+            }
+        } catch (Exception e) {
+            log.error("Couldn't maintain the orders partitions: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.api.Product;
+import org.dataone.bookkeeper.jdbi.ProductStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An in-memory, versioned catalog of products and their compiled quota templates.
+ *
+ * The products table holds a handful of rows that rarely change, while orders
+ * and catalog pages read them constantly. The catalog is loaded at startup and
+ * serves product reads, except description searches, which are ranked by the
+ * database. ProductsResource writes products through to the
+ * catalog after writing them to the store, and the product-catalog admin task
+ * reloads it after out-of-band database edits. Each change replaces the whole
+ * snapshot and increments the version, so readers never see a partial update.
+ * Catalog products are shared between callers and must be treated as read-only.
+ */
+public class ProductCatalog implements Managed {
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(ProductCatalog.class);
+
+    /* The catalog order of products, as in ProductStore.ORDER_CLAUSE */
+    private static final Comparator<Product> ORDER =
+        Comparator.comparing(Product::getName, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+            .thenComparing(Product::getCreated, Comparator.nullsLast(Comparator.<Integer>reverseOrder()));
+
+    /* The mapper used to read product features */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    /* The product store used to load the catalog */
+    private final ProductStore productStore;
+
+    /* The current catalog snapshot */
+    private volatile Snapshot snapshot = new Snapshot(0L, Collections.<Product>emptyList());
+
+    /**
+     * Construct a product catalog
+     * @param productStore  the product store used to load the catalog
+     */
+    public ProductCatalog(ProductStore productStore) {
+        this.productStore = productStore;
+    }
+
+    /**
+     * Load the catalog at startup
+     */
+    @Override
+    public void start() {
+        refresh();
+    }
+
+    /**
+     * Nothing to release
+     */
+    @Override
+    public void stop() {
+    }
+
+    /**
+     * Reload the whole catalog from the product store
+     * @return version  the new catalog version
+     */
+    public synchronized long refresh() {
+        List<Product> products = this.productStore.listProducts();
+        this.snapshot = new Snapshot(this.snapshot.version + 1, products);
+        log.info("Loaded " + products.size() + " products into catalog version " + this.snapshot.version);
+        return this.snapshot.version;
+    }
+
+    /**
+     * Add or replace a product after it was written to the store
+     * @param product  the product as read back from the store
+     */
+    public synchronized void put(Product product) {
+        if ( product == null ) {
+            return;
+        }
+        Map<Integer, Product> products = new HashMap<Integer, Product>(this.snapshot.productsById);
+        products.put(product.getId(), product);
+        this.snapshot = new Snapshot(this.snapshot.version + 1, products.values());
+    }
+
+    /**
+     * Add or replace products in one change
+     * @param products  the products as read back from the store
+     */
+    private synchronized void putAll(Collection<Product> products) {
+        Map<Integer, Product> catalog = new HashMap<Integer, Product>(this.snapshot.productsById);
+        for (Product product : products) {
+            catalog.put(product.getId(), product);
+        }
+        this.snapshot = new Snapshot(this.snapshot.version + 1, catalog.values());
+    }
+
+    /**
+     * Remove a product after it was deleted from the store
+     * @param productId  the product identifier
+     */
+    public synchronized void remove(Integer productId) {
+        if ( ! this.snapshot.productsById.containsKey(productId) ) {
+            return;
+        }
+        Map<Integer, Product> products = new HashMap<Integer, Product>(this.snapshot.productsById);
+        products.remove(productId);
+        this.snapshot = new Snapshot(this.snapshot.version + 1, products.values());
+    }
+
+    /**
+     * Get the catalog version, incremented by every change
+     * @return version  the catalog version
+     */
+    public long getVersion() {
+        return this.snapshot.version;
+    }
+
+    /**
+     * Get a product by identifier
+     * @param productId  the product identifier
+     * @return product  the product, or null if it isn't in the catalog
+     */
+    public Product getProduct(Integer productId) {
+        return this.snapshot.productsById.get(productId);
+    }
+
+    /**
+     * Get products by identifier, such as the parents of an order's items.
+     * Products missing from the catalog, such as those added by another server,
+     * are loaded from the store in one query and added to the catalog.
+     * @param productIds  the product identifiers
+     * @return products  the products that exist, by identifier
+     */
+    public Map<Integer, Product> getProducts(Collection<Integer> productIds) {
+        Map<Integer, Product> products = new HashMap<Integer, Product>();
+        Set<Integer> missing = new LinkedHashSet<Integer>();
+        Snapshot current = this.snapshot;
+        for (Integer productId : productIds) {
+            Product product = current.productsById.get(productId);
+            if ( product != null ) {
+                products.put(productId, product);
+            } else if ( productId != null ) {
+                missing.add(productId);
+            }
+        }
+        if ( ! missing.isEmpty() ) {
+            List<Product> loaded = this.productStore.findProductsByIds(missing.toArray(new Integer[0]));
+            if ( ! loaded.isEmpty() ) {
+                putAll(loaded);
+                for (Product product : loaded) {
+                    products.put(product.getId(), product);
+                }
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Get the compiled quota template of a product
+     * @param productId  the product identifier
+     * @return template  the template, or null if the product isn't in the catalog
+     *                   or its features couldn't be read
+     */
+    public ProductTemplate getTemplate(Integer productId) {
+        return this.snapshot.templatesById.get(productId);
+    }
+
+    /**
+     * List all products, ordered by name and then newest first
+     * @return products  the products
+     */
+    public List<Product> listProducts() {
+        return this.snapshot.products;
+    }
+
+    /**
+     * Find products by name
+     * @param name  the product name
+     * @return products  the products with the name
+     */
+    public List<Product> findProductsByName(String name) {
+        return filter(product -> name.equals(product.getName()));
+    }
+
+    /**
+     * Find products by active status
+     * @param active  the active status
+     * @return products  the products with the status
+     */
+    public List<Product> findProductsByActiveStatus(boolean active) {
+        return filter(product -> product.isActive() == active);
+    }
+
+    /**
+     * Find products by description. Descriptions containing the % or _ wildcards
+     * are matched as a SQL LIKE pattern, and other descriptions are searched as
+     * terms, most similar first. Searches use the description trigram index.
+     * @param description  the description pattern or search terms
+     * @return products  the products with matching descriptions
+     */
+    public List<Product> findProductsByDescription(String description) {
+        if ( isPattern(description) ) {
+            return this.productStore.findProductsByDescription(description);
+        }
+        return this.productStore.searchProductsByDescription(description);
+    }
+
+    /* Select catalog products in catalog order */
+    private List<Product> filter(Predicate<Product> predicate) {
+        List<Product> products = new ArrayList<Product>();
+        for (Product product : this.snapshot.products) {
+            if ( predicate.test(product) ) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /* Determine if a description has an unescaped SQL LIKE wildcard */
+    private static boolean isPattern(String description) {
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if ( c == '\\' ) {
+                i++;
+            } else if ( c == '%' || c == '_' ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An immutable version of the catalog
+     */
+    private final class Snapshot {
+
+        private final long version;
+        private final List<Product> products;
+        private final Map<Integer, Product> productsById;
+        private final Map<Integer, ProductTemplate> templatesById;
+
+        Snapshot(long version, Collection<Product> products) {
+            List<Product> ordered = new ArrayList<Product>(products);
+            ordered.sort(ORDER);
+            Map<Integer, Product> productsById = new HashMap<Integer, Product>();
+            Map<Integer, ProductTemplate> templatesById = new HashMap<Integer, ProductTemplate>();
+            for (Product product : ordered) {
+                productsById.put(product.getId(), product);
+                try {
+                    templatesById.put(product.getId(), ProductTemplate.compile(product, MAPPER));
+                } catch (Exception e) {
+                    log.error("Couldn't compile the quotas of product " + product.getId() + ": " +
+                        e.getMessage());
+                }
+            }
+            this.version = version;
+            this.products = Collections.unmodifiableList(ordered);
+            this.productsById = productsById;
+            this.templatesById = templatesById;
+        }
+    }
+}
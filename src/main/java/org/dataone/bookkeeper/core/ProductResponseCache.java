@@ -0,0 +1,172 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of serialized product catalog responses, keyed by catalog version and filter.
+ *
+ * Catalog responses are identical for every caller and only change with the
+ * catalog version, so each is serialized once, and gzipped once if it is large
+ * enough to benefit. Each response carries a strong ETag of its content, so
+ * conditional requests can be answered without serializing anything, and the
+ * ETags agree between servers holding the same catalog.
+ */
+public class ProductResponseCache {
+
+    /* The smallest response worth gzipping, as in Dropwizard's default gzip configuration */
+    private static final int MINIMUM_GZIP_SIZE = 256;
+
+    /* The maximum number of cached responses, bounding the distinct filters callers send */
+    private static final long MAXIMUM_SIZE = 1000L;
+
+    /* The catalog the responses are rendered from */
+    private final ProductCatalog productCatalog;
+
+    /* The mapper used to serialize responses, as configured for the Jersey environment */
+    private final ObjectMapper mapper;
+
+    /* The rendered responses for each catalog version and filter */
+    private final Cache<String, Rendered> responses;
+
+    /**
+     * Construct a product response cache
+     * @param productCatalog  the catalog the responses are rendered from
+     * @param mapper  the mapper used to serialize responses
+     */
+    public ProductResponseCache(ProductCatalog productCatalog, ObjectMapper mapper) {
+        this.productCatalog = productCatalog;
+        this.mapper = mapper;
+        this.responses = Caffeine.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+    }
+
+    /**
+     * Get the rendered response for a filter of the current catalog, rendering it if needed
+     * @param filter  the filter that distinguishes the response, such as its query parameters
+     * @param body  the function selecting the response entity from the catalog
+     * @return rendered  the rendered response
+     */
+    public Rendered get(String filter, Function<ProductCatalog, Object> body) {
+        String key = this.productCatalog.getVersion() + "\n" + filter;
+        return this.responses.get(key, k -> render(body.apply(this.productCatalog)));
+    }
+
+    /* Serialize, hash, and gzip a response entity */
+    private Rendered render(Object entity) {
+        try {
+            byte[] bytes = this.mapper.writeValueAsBytes(entity);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+            byte[] gzipped = null;
+            if ( bytes.length >= MINIMUM_GZIP_SIZE ) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(bytes);
+                }
+                gzipped = out.toByteArray();
+            }
+            return new Rendered(bytes, gzipped, hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Couldn't render the product response: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A serialized response, with its gzipped form if worth sending
+     */
+    public static final class Rendered {
+
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String etag;
+        private final String gzipEtag;
+
+        Rendered(byte[] bytes, byte[] gzipped, String hash) {
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gzip\"";
+        }
+
+        /**
+         * Get the serialized response. The array is shared and must not be modified.
+         * @return bytes  the serialized response
+         */
+        public byte[] getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Get the gzipped response. The array is shared and must not be modified.
+         * @return gzipped  the gzipped response, or null if it is too small to gzip
+         */
+        public byte[] getGzipped() {
+            return this.gzipped;
+        }
+
+        /**
+         * Get the strong ETag of a representation of the response
+         * @param gzip  true for the gzipped representation
+         * @return etag  the quoted entity tag
+         */
+        public String getEtag(boolean gzip) {
+            return gzip ? this.gzipEtag : this.etag;
+        }
+
+        /**
+         * Determine if an If-None-Match header matches either representation
+         * @param ifNoneMatch  the If-None-Match header value, or null
+         * @return matches  true if the client has the current response
+         */
+        public boolean matches(String ifNoneMatch) {
+            if ( ifNoneMatch == null ) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                // If-None-Match uses weak comparison
+                if ( tag.startsWith("W/") ) {
+                    tag = tag.substring(2);
+                }
+                if ( tag.equals("*") || tag.equals(this.etag) || tag.equals(this.gzipEtag) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
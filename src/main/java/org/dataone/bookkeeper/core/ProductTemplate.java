@@ -0,0 +1,148 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.dataone.bookkeeper.api.Feature;
+import org.dataone.bookkeeper.api.Product;
+import org.dataone.bookkeeper.api.Quota;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The quotas a product grants to each subscriber, compiled once from the
+ * product's feature metadata.
+ *
+ * Quotas of the same name across features are combined by summing their
+ * limits, in the order the names first appear. Templates are immutable, and
+ * provisioning copies the compiled quotas for a subscriber. The product the
+ * template was compiled from is shared between callers and must be treated as
+ * read-only.
+ */
+public final class ProductTemplate {
+
+    /* The product the template was compiled from */
+    private final Product product;
+
+    /* The combined quotas of the product's features, by first appearance of each name */
+    private final List<QuotaTemplate> quotas;
+
+    /**
+     * Construct a product template
+     * @param product  the product the template was compiled from
+     * @param quotas  the combined quotas of the product's features
+     */
+    private ProductTemplate(Product product, List<QuotaTemplate> quotas) {
+        this.product = product;
+        this.quotas = Collections.unmodifiableList(quotas);
+    }
+
+    /**
+     * Compile the quota template of a product
+     * @param product  the product
+     * @param mapper  the mapper used to read the product's features
+     * @return template  the product template
+     * @throws JsonProcessingException  if a feature can't be read
+     */
+    public static ProductTemplate compile(Product product, ObjectMapper mapper)
+        throws JsonProcessingException {
+        Map<String, QuotaTemplate> quotas = new LinkedHashMap<String, QuotaTemplate>();
+        JsonNode features = product.getMetadata() == null ? null : product.getMetadata().get("features");
+        if ( features != null ) {
+            for (JsonNode featureNode : features) {
+                Quota quota = mapper.treeToValue(featureNode, Feature.class).getQuota();
+                if ( quota != null ) {
+                    // Combine quotas of the same name
+                    quotas.merge(quota.getName(), new QuotaTemplate(quota), QuotaTemplate::combine);
+                }
+            }
+        }
+        return new ProductTemplate(product, new ArrayList<QuotaTemplate>(quotas.values()));
+    }
+
+    /**
+     * Get the product the template was compiled from
+     * @return product  the product
+     */
+    public Product getProduct() {
+        return this.product;
+    }
+
+    /**
+     * Get the number of quotas the product grants
+     * @return count  the number of quotas
+     */
+    public int getQuotaCount() {
+        return this.quotas.size();
+    }
+
+    /**
+     * Provision the product's quotas for a subscriber, with no usage
+     * @param subject  the subject of the subscriber
+     * @return quotas  new quotas for the subject, in template order
+     */
+    public List<Quota> provision(String subject) {
+        List<Quota> provisioned = new ArrayList<Quota>(this.quotas.size());
+        for (QuotaTemplate quota : this.quotas) {
+            provisioned.add(new Quota(null, quota.object, quota.name, quota.softLimit, quota.hardLimit,
+                0L, quota.unit, null, subject));
+        }
+        return provisioned;
+    }
+
+    /**
+     * The immutable limits of a product quota
+     */
+    private static final class QuotaTemplate {
+
+        private final String object;
+        private final String name;
+        private final Long softLimit;
+        private final Long hardLimit;
+        private final String unit;
+
+        QuotaTemplate(Quota quota) {
+            this(quota.getObject(), quota.getName(), quota.getSoftLimit(), quota.getHardLimit(),
+                quota.getUnit());
+        }
+
+        QuotaTemplate(String object, String name, Long softLimit, Long hardLimit, String unit) {
+            this.object = object;
+            this.name = name;
+            this.softLimit = softLimit;
+            this.hardLimit = hardLimit;
+            this.unit = unit;
+        }
+
+        /* Combine an earlier quota of the same name with a later one, summing the limits */
+        static QuotaTemplate combine(QuotaTemplate earlier, QuotaTemplate later) {
+            return new QuotaTemplate(later.object, later.name, earlier.softLimit + later.softLimit,
+                earlier.hardLimit + later.hardLimit, later.unit);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-process cache of quota snapshots, keyed by subject and by quota id.
+ *
+ * Quota limits rarely change, and usage only changes through bookkeeper's own
+ * usage writes, so reads are served from memory and writes invalidate the
+ * affected entries. Cached quotas are shared between callers and must be
+ * treated as read-only.
+ */
+public class QuotaCache {
+
+    /* The quota store used to load cache misses */
+    private final QuotaStore quotaStore;
+
+    /* The quota snapshots for each subject */
+    private final LoadingCache<String, List<Quota>> quotasBySubject;
+
+    /* The quota snapshots for each quota id */
+    private final LoadingCache<Integer, Quota> quotasById;
+
+    /**
+     * Construct a quota cache
+     * @param quotaStore  the quota store used to load cache misses
+     * @param policy  the Caffeine cache policy applied to both caches
+     */
+    public QuotaCache(QuotaStore quotaStore, CaffeineSpec policy) {
+        this.quotaStore = quotaStore;
+        this.quotasBySubject = Caffeine.from(policy).build(new SubjectQuotasLoader());
+        this.quotasById = Caffeine.from(policy).build(quotaStore::getQuota);
+    }
+
+    /**
+     * Find the quotas for the given subjects, loading missing subjects in one query
+     * @param subjects  the subjects of the quotas
+     * @return quotas  the list of quotas for the subjects
+     */
+    public List<Quota> findQuotasBySubjects(Collection<String> subjects) {
+        List<Quota> quotas = new ArrayList<Quota>();
+        for (List<Quota> subjectQuotas : this.quotasBySubject.getAll(subjects).values()) {
+            quotas.addAll(subjectQuotas);
+        }
+        return quotas;
+    }
+
+    /**
+     * Get a quota by quota identifier
+     * @param quotaId  the quota identifier
+     * @return quota  the quota, or null if it doesn't exist
+     */
+    public Quota getQuota(Integer quotaId) {
+        return this.quotasById.get(quotaId);
+    }
+
+    /**
+     * Get a cached quota snapshot without loading it
+     * @param quotaId  the quota identifier
+     * @return quota  the cached quota, or null if it isn't cached
+     */
+    public Quota getQuotaIfPresent(Integer quotaId) {
+        return this.quotasById.getIfPresent(quotaId);
+    }
+
+    /**
+     * Refresh the snapshot of a quota that was written, such as after a usage change.
+     *
+     * The quota is read back under the cache's lock for its id rather than taken
+     * from the caller, so concurrent writers refreshing in any order leave the
+     * last committed total cached, never an older snapshot one of them read.
+     * @param quotaId  the quota identifier
+     * @return quota  the refreshed quota, or null if it no longer exists
+     */
+    public Quota refresh(Integer quotaId) {
+        if ( quotaId == null ) {
+            return null;
+        }
+        Quota previous = this.quotasById.getIfPresent(quotaId);
+        Quota quota = this.quotasById.asMap().compute(quotaId, (id, cached) -> this.quotaStore.getQuota(id));
+        if ( previous != null ) {
+            invalidateSubject(previous.getSubject());
+        }
+        if ( quota != null ) {
+            invalidateSubject(quota.getSubject());
+        }
+        return quota;
+    }
+
+    /**
+     * Invalidate the snapshot of a quota that was written or deleted
+     * @param quota  the quota that changed
+     */
+    public void invalidate(Quota quota) {
+        if ( quota == null ) {
+            return;
+        }
+        this.quotasById.invalidate(quota.getId());
+        invalidateSubject(quota.getSubject());
+    }
+
+    /**
+     * Invalidate the quota snapshots of a subject
+     * @param subject  the quota subject
+     */
+    public void invalidateSubject(String subject) {
+        if ( subject != null ) {
+            this.quotasBySubject.invalidate(subject);
+        }
+    }
+
+    /**
+     * Invalidate all cached quota snapshots
+     */
+    public void invalidateAll() {
+        this.quotasBySubject.invalidateAll();
+        this.quotasById.invalidateAll();
+    }
+
+    /**
+     * Get the statistics of the subject cache
+     * @return stats  the subject cache statistics
+     */
+    public CacheStats getSubjectStats() {
+        return this.quotasBySubject.stats();
+    }
+
+    /**
+     * Get the statistics of the quota id cache
+     * @return stats  the quota id cache statistics
+     */
+    public CacheStats getQuotaStats() {
+        return this.quotasById.stats();
+    }
+
+    /**
+     * Get the estimated number of cached subjects
+     * @return size  the estimated number of cached subjects
+     */
+    public long getSubjectCount() {
+        return this.quotasBySubject.estimatedSize();
+    }
+
+    /**
+     * Get the estimated number of cached quotas
+     * @return size  the estimated number of cached quotas
+     */
+    public long getQuotaCount() {
+        return this.quotasById.estimatedSize();
+    }
+
+    /**
+     * Loads subject quota snapshots, batching bulk loads into a single query.
+     * Subjects without quotas are cached as empty lists.
+     */
+    private class SubjectQuotasLoader implements CacheLoader<String, List<Quota>> {
+
+        @Override
+        public List<Quota> load(String subject) {
+            return Collections.unmodifiableList(quotaStore.findQuotasBySubject(subject));
+        }
+
+        @Override
+        public Map<String, List<Quota>> loadAll(Iterable<? extends String> subjects) {
+            Map<String, List<Quota>> loaded = new HashMap<String, List<Quota>>();
+            for (String subject : subjects) {
+                loaded.put(subject, new ArrayList<Quota>());
+            }
+            if ( ! loaded.isEmpty() ) {
+                List<String> subjectsList = new ArrayList<String>(loaded.keySet());
+                for (Quota quota : quotaStore.findQuotasBySubjects(subjectsList)) {
+                    loaded.get(quota.getSubject()).add(quota);
+                }
+            }
+            for (Map.Entry<String, List<Quota>> entry : loaded.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            return loaded;
+        }
+    }
+}
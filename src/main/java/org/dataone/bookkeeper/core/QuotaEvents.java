@@ -0,0 +1,291 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.QuotaEvent;
+import org.dataone.bookkeeper.config.QuotaEventsConfiguration;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes quota threshold crossings to server-sent event subscribers.
+ *
+ * The usage write path reports each quota's usage before and after a change,
+ * and an event is raised for every configured threshold the change crossed.
+ * Each subscriber only receives events for the subjects it was authorized for
+ * when it subscribed. Events are queued in a bounded buffer per connection and
+ * sent from a separate pool, one send at a time per connection without waiting
+ * on it, so neither writers nor other subscribers wait on slow clients, and a
+ * client that lets its buffer fill up is disconnected.
+ */
+public class QuotaEvents implements Managed {
+
+    /* The SSE event name of threshold crossings */
+    public static final String EVENT_NAME = "quota_threshold";
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(QuotaEvents.class);
+
+    /* The thresholds that raise events */
+    private final List<QuotaThreshold> thresholds = new ArrayList<QuotaThreshold>();
+
+    /* The events stream configuration */
+    private final QuotaEventsConfiguration configuration;
+
+    /* The connected subscribers */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /* The source of event ids */
+    private final AtomicLong eventIds = new AtomicLong();
+
+    /* The pool sending events and heartbeats */
+    private ScheduledExecutorService sender;
+
+    /**
+     * Construct a quota events publisher
+     * @param configuration  the events stream configuration
+     * @throws IllegalArgumentException  if a threshold can't be parsed
+     */
+    public QuotaEvents(QuotaEventsConfiguration configuration) {
+        this.configuration = configuration;
+        for (String threshold : configuration.getThresholds()) {
+            this.thresholds.add(QuotaThreshold.parse(threshold));
+        }
+    }
+
+    /**
+     * Start sending heartbeats to keep idle connections open
+     */
+    @Override
+    public void start() {
+        long interval = this.configuration.getHeartbeatInterval().toMilliseconds();
+        this.sender = Executors.newScheduledThreadPool(2);
+        this.sender.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Disconnect all subscribers and stop sending
+     */
+    @Override
+    public void stop() {
+        for (Subscriber subscriber : this.subscribers) {
+            subscriber.close();
+        }
+        if ( this.sender != null ) {
+            this.sender.shutdownNow();
+        }
+    }
+
+    /**
+     * Subscribe a connection to the threshold events of the given subjects
+     * @param sink  the connection event sink
+     * @param sse  the SSE context used to build events
+     * @param subjects  the quota subjects the subscriber may see, or null for all subjects
+     */
+    public void subscribe(SseEventSink sink, Sse sse, Set<String> subjects) {
+        this.subscribers.add(new Subscriber(sink, sse, subjects));
+    }
+
+    /**
+     * Publish the threshold crossings of a quota usage change
+     * @param before  the quota before the change, or null if unknown
+     * @param after  the quota after the change
+     */
+    public void usageChanged(Quota before, Quota after) {
+        if ( this.subscribers.isEmpty() ) {
+            return;
+        }
+        for (QuotaEvent event : crossings(before, after)) {
+            for (Subscriber subscriber : this.subscribers) {
+                if ( subscriber.accepts(event) ) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the thresholds crossed by a quota usage change
+     * @param before  the quota before the change, or null if unknown
+     * @param after  the quota after the change
+     * @return events  the crossing events, with exceeded or cleared directions
+     */
+    public List<QuotaEvent> crossings(Quota before, Quota after) {
+        List<QuotaEvent> events = new ArrayList<QuotaEvent>();
+        if ( before == null || after == null ) {
+            return events;
+        }
+        long previous = before.getUsage() == null ? 0L : before.getUsage();
+        long current = after.getUsage() == null ? 0L : after.getUsage();
+        Integer created = (int) (System.currentTimeMillis() / 1000);
+        for (QuotaThreshold threshold : this.thresholds) {
+            Long level = threshold.getLevel(after);
+            if ( level == null ) {
+                continue;
+            }
+            String direction = null;
+            if ( previous < level && current >= level ) {
+                direction = "exceeded";
+            } else if ( previous >= level && current < level ) {
+                direction = "cleared";
+            }
+            if ( direction != null ) {
+                events.add(new QuotaEvent(after.getId(), after.getName(), after.getSubject(),
+                    threshold.getName(), level, current, direction, created));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Get the number of connected subscribers
+     * @return count  the number of subscribers
+     */
+    public int getSubscriberCount() {
+        return this.subscribers.size();
+    }
+
+    /* Send a keep-alive comment to every subscriber */
+    private void heartbeat() {
+        for (Subscriber subscriber : this.subscribers) {
+            subscriber.offer(subscriber.sse.newEventBuilder().comment("keep-alive").build());
+        }
+    }
+
+    /**
+     * A subscribed connection with its authorized subjects and bounded send buffer
+     */
+    private class Subscriber {
+
+        /* The connection event sink */
+        private final SseEventSink sink;
+
+        /* The SSE context used to build events */
+        private final Sse sse;
+
+        /* The authorized subjects, or null for all subjects */
+        private final Set<String> subjects;
+
+        /* The events waiting to be sent */
+        private final BlockingQueue<OutboundSseEvent> buffer;
+
+        /* Whether a drain of the buffer is scheduled or running */
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        Subscriber(SseEventSink sink, Sse sse, Set<String> subjects) {
+            this.sink = sink;
+            this.sse = sse;
+            this.subjects = subjects;
+            this.buffer = new ArrayBlockingQueue<OutboundSseEvent>(configuration.getBufferSize());
+        }
+
+        /* Determine if the subscriber may see the event */
+        boolean accepts(QuotaEvent event) {
+            return this.subjects == null || this.subjects.contains(event.getSubject());
+        }
+
+        /* Queue a threshold event */
+        void offer(QuotaEvent event) {
+            offer(this.sse.newEventBuilder()
+                .id(Long.toString(eventIds.incrementAndGet()))
+                .name(EVENT_NAME)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(QuotaEvent.class, event)
+                .build());
+        }
+
+        /* Queue an event, disconnecting the subscriber if its buffer is full */
+        void offer(OutboundSseEvent event) {
+            if ( this.sink.isClosed() ) {
+                close();
+                return;
+            }
+            if ( ! this.buffer.offer(event) ) {
+                log.warn("Disconnecting a quota events subscriber with a full buffer.");
+                close();
+                return;
+            }
+            if ( this.draining.compareAndSet(false, true) ) {
+                try {
+                    sender.execute(this::drain);
+                } catch (Exception e) {
+                    close();
+                }
+            }
+        }
+
+        /*
+         * Send the next buffered event, chaining the following send on its completion
+         * so that a slow client holds no sender thread while its event is in flight
+         */
+        void drain() {
+            OutboundSseEvent event;
+            while ( (event = this.buffer.poll()) == null ) {
+                this.draining.set(false);
+                // Check for events queued after the poll, but before the flag was cleared
+                if ( this.buffer.isEmpty() || ! this.draining.compareAndSet(false, true) ) {
+                    return;
+                }
+            }
+            try {
+                this.sink.send(event).whenCompleteAsync((sent, error) -> {
+                    if ( error != null ) {
+                        close();
+                    } else {
+                        drain();
+                    }
+                }, sender);
+            } catch (Exception e) {
+                close();
+            }
+        }
+
+        /* Disconnect the subscriber */
+        void close() {
+            subscribers.remove(this);
+            this.buffer.clear();
+            try {
+                this.sink.close();
+            } catch (Exception e) {
+                // Already disconnected
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.api.Quota;
+
+/**
+ * A usage level of a quota that raises an event when crossed. Thresholds are
+ * the soft limit, the hard limit, or a percentage of the hard limit.
+ */
+public class QuotaThreshold {
+
+    /* The threshold name, as configured */
+    private final String name;
+
+    /* The percentage of the hard limit, or null for the soft limit */
+    private final Double percent;
+
+    /**
+     * Construct a threshold
+     * @param name  the threshold name
+     * @param percent  the percentage of the hard limit, or null for the soft limit
+     */
+    private QuotaThreshold(String name, Double percent) {
+        this.name = name;
+        this.percent = percent;
+    }
+
+    /**
+     * Parse a configured threshold
+     * @param threshold  softLimit, hardLimit, or a percentage of the hard limit such as 80%
+     * @return threshold  the parsed threshold
+     * @throws IllegalArgumentException  if the threshold can't be parsed
+     */
+    public static QuotaThreshold parse(String threshold) {
+        String trimmed = threshold.trim();
+        if ( "softLimit".equals(trimmed) ) {
+            return new QuotaThreshold(trimmed, null);
+        } else if ( "hardLimit".equals(trimmed) ) {
+            return new QuotaThreshold(trimmed, 100.0);
+        } else if ( trimmed.endsWith("%") ) {
+            try {
+                double percent = Double.parseDouble(trimmed.substring(0, trimmed.length() - 1));
+                if ( percent > 0 ) {
+                    return new QuotaThreshold(trimmed, percent);
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the error
+            }
+        }
+        throw new IllegalArgumentException("Couldn't parse the quota threshold " + threshold +
+            ", expected softLimit, hardLimit, or a percentage like 80%");
+    }
+
+    /**
+     * Get the threshold name
+     * @return name  the threshold name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the usage level of this threshold for a quota
+     * @param quota  the quota
+     * @return level  the usage level, rounded up to a whole unit, or null if the quota has no such limit
+     */
+    public Long getLevel(Quota quota) {
+        if ( this.percent == null ) {
+            return quota.getSoftLimit();
+        }
+        // Divide last, so whole percentages of whole limits stay exact
+        return quota.getHardLimit() == null ? null : (long) Math.ceil(quota.getHardLimit() * this.percent / 100.0);
+    }
+}
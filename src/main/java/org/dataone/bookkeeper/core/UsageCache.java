@@ -0,0 +1,137 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+
+import java.util.Objects;
+
+/**
+ * An in-process cache of usages, keyed by instance identifier and quota name.
+ *
+ * Repositories look up the usage of an object when they replace or delete it,
+ * usually shortly after recording it. Usage writes invalidate the entry for
+ * their instance and quota name, which is found through the quota cache.
+ * Instances without a usage aren't cached, so a usage inserted after a miss is
+ * found by the next lookup. Cached usages are shared between callers and must
+ * be treated as read-only.
+ */
+public class UsageCache {
+
+    /* The quota cache used to find the quota names of written usages */
+    private final QuotaCache quotaCache;
+
+    /* The usages for each instance identifier and quota name */
+    private final LoadingCache<Key, Usage> usages;
+
+    /**
+     * Construct a usage cache
+     * @param usageStore  the usage store used to load cache misses
+     * @param quotaCache  the quota cache used to find the quota names of written usages
+     * @param policy  the Caffeine cache policy
+     */
+    public UsageCache(UsageStore usageStore, QuotaCache quotaCache, CaffeineSpec policy) {
+        this.quotaCache = quotaCache;
+        this.usages = Caffeine.from(policy).build(key ->
+            usageStore.findUsageByInstanceIdAndQuotaName(key.instanceId, key.quotaName));
+    }
+
+    /**
+     * Get the usage of an instance against a quota of the given name
+     * @param instanceId  the instance identifier of the usage
+     * @param quotaName  the name of the quota
+     * @return usage  the usage, or null if there is none
+     */
+    public Usage getUsage(String instanceId, String quotaName) {
+        return this.usages.get(new Key(instanceId, quotaName));
+    }
+
+    /**
+     * Invalidate the cached usage of an instance after a usage was written
+     * @param usage  the usage that was inserted, updated, or deleted
+     */
+    public void invalidate(Usage usage) {
+        if ( usage == null || usage.getInstanceId() == null || usage.getQuotaId() == null ) {
+            return;
+        }
+        Quota quota = this.quotaCache.getQuota(usage.getQuotaId());
+        if ( quota != null ) {
+            this.usages.invalidate(new Key(usage.getInstanceId(), quota.getName()));
+        }
+    }
+
+    /**
+     * Invalidate all cached usages, such as after bulk usage writes
+     */
+    public void invalidateAll() {
+        this.usages.invalidateAll();
+    }
+
+    /**
+     * Get the statistics of the usage cache
+     * @return stats  the usage cache statistics
+     */
+    public CacheStats getStats() {
+        return this.usages.stats();
+    }
+
+    /**
+     * Get the estimated number of cached usages
+     * @return size  the estimated number of cached usages
+     */
+    public long getCount() {
+        return this.usages.estimatedSize();
+    }
+
+    /**
+     * A usage cache key of an instance identifier and quota name
+     */
+    private static final class Key {
+
+        private final String instanceId;
+        private final String quotaName;
+
+        Key(String instanceId, String quotaName) {
+            this.instanceId = instanceId;
+            this.quotaName = quotaName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return instanceId.equals(key.instanceId) && quotaName.equals(key.quotaName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(instanceId, quotaName);
+        }
+    }
+}
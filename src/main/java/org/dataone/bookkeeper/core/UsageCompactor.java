@@ -0,0 +1,115 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.config.UsageCompactionConfiguration;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that periodically moves archived usages out of the usages
+ * table into the usages archive and per-quota summaries, in bounded batches.
+ *
+ * Each batch is its own short transaction, and a run stops after the configured
+ * number of batches so a large backlog is worked off over several runs.
+ */
+public class UsageCompactor implements Managed {
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(UsageCompactor.class);
+
+    /* The usage store used to compact usages */
+    private final UsageStore usageStore;
+
+    /* The compaction configuration */
+    private final UsageCompactionConfiguration configuration;
+
+    /* The scheduler running compactions */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Construct a usage compactor
+     * @param usageStore  the usage store used to compact usages
+     * @param configuration  the compaction configuration
+     */
+    public UsageCompactor(UsageStore usageStore, UsageCompactionConfiguration configuration) {
+        this.usageStore = usageStore;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Schedule the compaction runs
+     */
+    @Override
+    public void start() {
+        long interval = this.configuration.getInterval().toMilliseconds();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop scheduling compaction runs, letting a running batch finish
+     * @throws InterruptedException  if interrupted while waiting for the batch
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if ( this.scheduler != null ) {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Compact archived usages until none remain or the batch limit is reached
+     * @return compacted  the number of usages compacted
+     */
+    public int compact() {
+        int batchSize = this.configuration.getBatchSize();
+        int compacted = 0;
+        for (int batch = 0; batch < this.configuration.getMaxBatches(); batch++) {
+            int moved = this.usageStore.compactArchivedUsages(batchSize);
+            compacted += moved;
+            if ( moved < batchSize || Thread.currentThread().isInterrupted() ) {
+                break;
+            }
+        }
+        return compacted;
+    }
+
+    /* Run a scheduled compaction, keeping the schedule alive on failure */
+    private void run() {
+        try {
+            int compacted = compact();
+            if ( compacted > 0 ) {
+                log.info("Compacted " + compacted + " archived usages.");
+            }
+        } catch (Exception e) {
+            log.error("Couldn't compact archived usages: " + e.getMessage(), e);
+        }
+    }
+}
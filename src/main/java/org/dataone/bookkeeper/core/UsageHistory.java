@@ -0,0 +1,62 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.api.UsageRollup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Usage history helpers for shaping rollup buckets into a chart-sized series
+ */
+public class UsageHistory {
+
+    /**
+     * Downsample rollups to at most the given number of points by merging
+     * runs of adjacent buckets. Merged buckets start at the first bucket of the
+     * run, sum the quantities and events, and keep the usage level of the last.
+     * @param rollups  the rollups to downsample, oldest first
+     * @param points  the maximum number of points
+     * @return downsampled  the downsampled rollups
+     */
+    public static List<UsageRollup> downsample(List<UsageRollup> rollups, int points) {
+        if ( points <= 0 || rollups.size() <= points ) {
+            return rollups;
+        }
+        int run = (rollups.size() + points - 1) / points;
+        List<UsageRollup> downsampled = new ArrayList<UsageRollup>(points);
+        for (int index = 0; index < rollups.size(); index += run) {
+            List<UsageRollup> buckets = rollups.subList(index, Math.min(index + run, rollups.size()));
+            UsageRollup first = buckets.get(0);
+            long quantity = 0L;
+            int events = 0;
+            for (UsageRollup bucket : buckets) {
+                quantity += bucket.getQuantity() == null ? 0L : bucket.getQuantity();
+                events += bucket.getEvents() == null ? 0 : bucket.getEvents();
+            }
+            downsampled.add(new UsageRollup(first.getQuotaId(), first.getInterval(), first.getStart(),
+                quantity, events, buckets.get(buckets.size() - 1).getUsage()));
+        }
+        return downsampled;
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles a quota's usages against a storage inventory file of instance
+ * identifiers and sizes.
+ *
+ * The inventory is sorted externally in bounded runs, then merged against the
+ * quota's usages, which are read in keyset-ordered pages. Instances missing
+ * from bookkeeper are inserted, changed sizes are updated, and usages missing
+ * from the inventory are archived, all in batches. Memory is bounded by the
+ * sort buffer and batch sizes, not by the inventory size.
+ *
+ * Instances whose archived usages were already compacted aren't inserted
+ * again, since the quota's usage summary still counts their quantities.
+ *
+ * Inventories are either CSV lines of instanceId,quantity, with an optional
+ * header, or NDJSON lines with instanceId and quantity fields.
+ */
+public class UsageInventory {
+
+    /** The default number of inventory items sorted in memory per run */
+    public static final int DEFAULT_SORT_BUFFER_SIZE = 1000000;
+
+    /** The default number of usages read and written per batch */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The order of instance identifiers, by code point. This matches the byte
+     * order of the "C" collation the usages are paged in.
+     */
+    public static final Comparator<String> INSTANCE_ORDER = (first, second) -> {
+        int firstIndex = 0;
+        int secondIndex = 0;
+        while ( firstIndex < first.length() && secondIndex < second.length() ) {
+            int firstCodePoint = first.codePointAt(firstIndex);
+            int secondCodePoint = second.codePointAt(secondIndex);
+            if ( firstCodePoint != secondCodePoint ) {
+                return Integer.compare(firstCodePoint, secondCodePoint);
+            }
+            firstIndex += Character.charCount(firstCodePoint);
+            secondIndex += Character.charCount(secondCodePoint);
+        }
+        return Integer.compare(first.length() - firstIndex, second.length() - secondIndex);
+    };
+
+    /* The inventory item order */
+    private static final Comparator<Item> ITEM_ORDER =
+        (first, second) -> INSTANCE_ORDER.compare(first.instanceId, second.instanceId);
+
+    /* The mapper used to parse NDJSON inventories */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    /* The usage store used to read and write the quota's usages */
+    private final UsageStore usageStore;
+
+    /* The number of inventory items sorted in memory per run */
+    private final int sortBufferSize;
+
+    /* The number of usages read and written per batch */
+    private final int batchSize;
+
+    /**
+     * The supported inventory formats
+     */
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Guess the format of an inventory file from its extension
+         * @param path  the inventory file
+         * @return format  NDJSON for .ndjson, .jsonl, and .json files, otherwise CSV
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            if ( name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ) {
+                return NDJSON;
+            }
+            return CSV;
+        }
+    }
+
+    /**
+     * The counts of a reconciliation
+     */
+    public static class Result {
+
+        /* The number of inventory items read */
+        private long read;
+
+        /* The number of duplicate inventory items ignored */
+        private long duplicates;
+
+        /* The number of usages that matched the inventory */
+        private long matched;
+
+        /* The number of usages inserted */
+        private long inserted;
+
+        /* The number of usages updated */
+        private long updated;
+
+        /* The number of usages archived */
+        private long archived;
+
+        /* The number of inventory items skipped because their usages were compacted */
+        private long compacted;
+
+        /**
+         * Get the number of inventory items read
+         * @return read  the number of inventory items read
+         */
+        public long getRead() {
+            return read;
+        }
+
+        /**
+         * Get the number of duplicate inventory items ignored
+         * @return duplicates  the number of duplicates
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Get the number of usages that matched the inventory
+         * @return matched  the number of matched usages
+         */
+        public long getMatched() {
+            return matched;
+        }
+
+        /**
+         * Get the number of usages inserted
+         * @return inserted  the number of inserted usages
+         */
+        public long getInserted() {
+            return inserted;
+        }
+
+        /**
+         * Get the number of usages updated
+         * @return updated  the number of updated usages
+         */
+        public long getUpdated() {
+            return updated;
+        }
+
+        /**
+         * Get the number of usages archived
+         * @return archived  the number of archived usages
+         */
+        public long getArchived() {
+            return archived;
+        }
+
+        /**
+         * Get the number of inventory items skipped because their usages were compacted
+         * @return compacted  the number of compacted items
+         */
+        public long getCompacted() {
+            return compacted;
+        }
+    }
+
+    /**
+     * Construct a usage inventory reconciler
+     * @param usageStore  the usage store
+     * @param sortBufferSize  the number of inventory items sorted in memory per run
+     * @param batchSize  the number of usages read and written per batch
+     */
+    public UsageInventory(UsageStore usageStore, int sortBufferSize, int batchSize) {
+        if ( sortBufferSize < 1 || batchSize < 1 ) {
+            throw new IllegalArgumentException("The sort buffer and batch sizes must be positive.");
+        }
+        this.usageStore = usageStore;
+        this.sortBufferSize = sortBufferSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reconcile a quota's usages against an inventory file. The whole inventory
+     * is parsed and sorted before any usage is written, so a malformed file
+     * leaves the usages unchanged.
+     * @param quotaId  the quota identifier
+     * @param inventory  the inventory file
+     * @param format  the inventory format
+     * @param dryRun  count the changes without writing them
+     * @return result  the reconciliation counts
+     * @throws IOException  if the inventory can't be read or parsed
+     */
+    public Result reconcile(Integer quotaId, Path inventory, Format format, boolean dryRun) throws IOException {
+        Result result = new Result();
+        Path runDirectory = Files.createTempDirectory("usage-inventory");
+        try (SortedItems items = sort(inventory, format, runDirectory, result)) {
+            merge(quotaId, items, dryRun, result);
+        } finally {
+            try (Stream<Path> runs = Files.list(runDirectory)) {
+                for (Path run : (Iterable<Path>) runs::iterator) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            Files.deleteIfExists(runDirectory);
+        }
+        return result;
+    }
+
+    /* Merge the sorted inventory with the quota's usages, applying the differences */
+    private void merge(Integer quotaId, SortedItems items, boolean dryRun, Result result) {
+        List<Usage> inserts = new ArrayList<Usage>();
+        List<Usage> updates = new ArrayList<Usage>();
+        UsagePages usages = new UsagePages(quotaId);
+        Item item = nextUnique(items, null, result);
+        Usage usage = usages.next();
+        while ( item != null || usage != null ) {
+            int order = item == null ? 1 : usage == null ? -1 :
+                INSTANCE_ORDER.compare(item.instanceId, usage.getInstanceId());
+            Item previous = item;
+            if ( order < 0 ) {
+                // In the inventory only
+                inserts.add(new Usage(null, "usage", quotaId, item.instanceId, item.quantity, "active"));
+                item = nextUnique(items, previous, result);
+            } else if ( order > 0 ) {
+                // In bookkeeper only
+                if ( ! "archived".equals(usage.getStatus()) ) {
+                    usage.setStatus("archived");
+                    updates.add(usage);
+                    result.archived++;
+                }
+                usage = usages.next();
+            } else {
+                if ( ! item.quantity.equals(usage.getQuantity()) || ! "active".equals(usage.getStatus()) ) {
+                    usage.setQuantity(item.quantity);
+                    usage.setStatus("active");
+                    updates.add(usage);
+                    result.updated++;
+                } else {
+                    result.matched++;
+                }
+                item = nextUnique(items, previous, result);
+                usage = usages.next();
+            }
+            if ( inserts.size() + updates.size() >= this.batchSize ) {
+                apply(quotaId, inserts, updates, dryRun, result);
+            }
+        }
+        apply(quotaId, inserts, updates, dryRun, result);
+    }
+
+    /* Write and clear a batch of changes, skipping inserts of compacted instances */
+    private void apply(Integer quotaId, List<Usage> inserts, List<Usage> updates, boolean dryRun,
+                       Result result) {
+        if ( ! inserts.isEmpty() ) {
+            List<String> instanceIds = new ArrayList<String>();
+            for (Usage insert : inserts) {
+                instanceIds.add(insert.getInstanceId());
+            }
+            Set<String> compacted =
+                new HashSet<String>(this.usageStore.findCompactedInstanceIds(quotaId, instanceIds));
+            if ( ! compacted.isEmpty() ) {
+                inserts.removeIf(insert -> compacted.contains(insert.getInstanceId()));
+                result.compacted += compacted.size();
+            }
+            result.inserted += inserts.size();
+        }
+        if ( ! dryRun && ( ! inserts.isEmpty() || ! updates.isEmpty() ) ) {
+            this.usageStore.applyAll(inserts, updates);
+        }
+        inserts.clear();
+        updates.clear();
+    }
+
+    /* Get the next inventory item, skipping repeats of the previous instance */
+    private Item nextUnique(SortedItems items, Item previous, Result result) {
+        Item item = items.next();
+        while ( item != null && previous != null && item.instanceId.equals(previous.instanceId) ) {
+            result.duplicates++;
+            item = items.next();
+        }
+        return item;
+    }
+
+    /* Parse the inventory into sorted runs, spilling full sort buffers to disk */
+    private SortedItems sort(Path inventory, Format format, Path runDirectory, Result result)
+        throws IOException {
+        List<Path> runs = new ArrayList<Path>();
+        List<Item> buffer = new ArrayList<Item>();
+        try (BufferedReader reader = Files.newBufferedReader(inventory, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ( (line = reader.readLine()) != null ) {
+                lineNumber++;
+                Item item = parse(line, lineNumber, format);
+                if ( item == null ) {
+                    continue;
+                }
+                buffer.add(item);
+                result.read++;
+                if ( buffer.size() >= this.sortBufferSize ) {
+                    runs.add(spill(buffer, runDirectory, runs.size()));
+                }
+            }
+        }
+        buffer.sort(ITEM_ORDER);
+        return new SortedItems(runs, buffer);
+    }
+
+    /* Sort a full buffer and write it to a run file */
+    private Path spill(List<Item> buffer, Path runDirectory, int index) throws IOException {
+        buffer.sort(ITEM_ORDER);
+        Path run = runDirectory.resolve("run-" + index);
+        try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (Item item : buffer) {
+                output.writeUTF(item.instanceId);
+                output.writeLong(item.quantity);
+            }
+        }
+        buffer.clear();
+        return run;
+    }
+
+    /* Parse an inventory line, returning null for blank lines and a CSV header */
+    private Item parse(String line, long lineNumber, Format format) throws IOException {
+        String trimmed = line.trim();
+        if ( trimmed.isEmpty() ) {
+            return null;
+        }
+        String instanceId;
+        String quantity;
+        if ( format == Format.NDJSON ) {
+            JsonNode node = MAPPER.readTree(trimmed);
+            instanceId = node.path("instanceId").asText(null);
+            quantity = node.path("quantity").asText(null);
+        } else {
+            // Split on the last comma, since identifiers may contain commas
+            int comma = trimmed.lastIndexOf(',');
+            instanceId = comma < 0 ? null : unquote(trimmed.substring(0, comma).trim());
+            quantity = comma < 0 ? null : unquote(trimmed.substring(comma + 1).trim());
+        }
+        if ( instanceId == null || instanceId.isEmpty() || quantity == null ) {
+            throw new IOException("Couldn't parse inventory line " + lineNumber +
+                ", expected an instanceId and a quantity.");
+        }
+        try {
+            return new Item(instanceId, Long.parseLong(quantity));
+        } catch (NumberFormatException e) {
+            if ( format == Format.CSV && lineNumber == 1 ) {
+                return null;
+            }
+            throw new IOException("Couldn't parse the quantity on inventory line " + lineNumber +
+                ", expected a whole number but got " + quantity);
+        }
+    }
+
+    /* Remove the double quotes around a CSV field */
+    private static String unquote(String field) {
+        if ( field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"") ) {
+            return field.substring(1, field.length() - 1).replace("\"\"", "\"");
+        }
+        return field;
+    }
+
+    /**
+     * An inventory item
+     */
+    private static class Item {
+
+        /* The instance identifier */
+        private final String instanceId;
+
+        /* The instance size, in quota units */
+        private final Long quantity;
+
+        /* The run the item was read from, used to merge runs */
+        private int run;
+
+        private Item(String instanceId, Long quantity) {
+            this.instanceId = instanceId;
+            this.quantity = quantity;
+        }
+    }
+
+    /**
+     * The sorted inventory, merged from the spilled runs and the final in-memory buffer
+     */
+    private static class SortedItems implements Closeable {
+
+        /* The open run files */
+        private final List<DataInputStream> inputs = new ArrayList<DataInputStream>();
+
+        /* The in-memory buffer, merged as the last run */
+        private final Iterator<Item> buffer;
+
+        /* The next item of each run, ordered by instance identifier, then run */
+        private final PriorityQueue<Item> heads = new PriorityQueue<Item>(
+            ITEM_ORDER.thenComparingInt(item -> item.run));
+
+        private SortedItems(List<Path> runs, List<Item> buffer) throws IOException {
+            for (Path run : runs) {
+                this.inputs.add(new DataInputStream(new BufferedInputStream(Files.newInputStream(run))));
+            }
+            this.buffer = buffer.iterator();
+            for (int run = 0; run <= this.inputs.size(); run++) {
+                advance(run);
+            }
+        }
+
+        /* Get the next item in order, or null at the end */
+        private Item next() {
+            Item item = this.heads.poll();
+            if ( item != null ) {
+                advance(item.run);
+            }
+            return item;
+        }
+
+        /* Queue the next item of a run */
+        private void advance(int run) {
+            Item item = null;
+            if ( run == this.inputs.size() ) {
+                item = this.buffer.hasNext() ? this.buffer.next() : null;
+            } else {
+                try {
+                    DataInputStream input = this.inputs.get(run);
+                    item = new Item(input.readUTF(), input.readLong());
+                } catch (EOFException e) {
+                    // The run is exhausted
+                } catch (IOException e) {
+                    throw new IllegalStateException("Couldn't read an inventory sort run: " + e.getMessage(), e);
+                }
+            }
+            if ( item != null ) {
+                item.run = run;
+                this.heads.add(item);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream input : this.inputs) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * The quota's usages, read in keyset-ordered pages of instance identifiers
+     */
+    private class UsagePages {
+
+        /* The quota identifier */
+        private final Integer quotaId;
+
+        /* The current page */
+        private Iterator<Usage> page;
+
+        /* The instance identifier of the last usage read */
+        private String after = "";
+
+        /* The id of the last usage read */
+        private Integer afterId = 0;
+
+        /* Whether the last page was read */
+        private boolean exhausted;
+
+        private UsagePages(Integer quotaId) {
+            this.quotaId = quotaId;
+        }
+
+        /* Get the next usage in order, or null at the end */
+        private Usage next() {
+            if ( (this.page == null || ! this.page.hasNext()) && ! this.exhausted ) {
+                List<Usage> usages =
+                    usageStore.findUsagesAfterInstanceId(this.quotaId, this.after, this.afterId, batchSize);
+                this.exhausted = usages.size() < batchSize;
+                this.page = usages.iterator();
+                if ( ! usages.isEmpty() ) {
+                    Usage last = usages.get(usages.size() - 1);
+                    this.after = last.getInstanceId();
+                    this.afterId = last.getId();
+                }
+            }
+            return this.page.hasNext() ? this.page.next() : null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.dropwizard.jackson.Jackson;
+import org.dataone.bookkeeper.api.Usage;
+import org.jdbi.v3.core.ConnectionException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A local append-only journal of usage writes, used while the database is unavailable.
+ *
+ * Usages are appended as records to fixed-size, memory-mapped segment files.
+ * Each record is a payload length, a CRC32 of the payload, and the entry as JSON,
+ * which is the usage and a unique entry id.
+ * A zero length marks the end of a segment's records, and a record whose CRC
+ * doesn't match is treated as a torn write and ends the segment as well.
+ *
+ * Records are read in order from the replay position, which is saved to a
+ * position file when a batch has been committed. Fully replayed segments are
+ * deleted. Records are replayed at least once, so replays must be idempotent,
+ * such as by recording the ids of the entries replayed.
+ */
+public class UsageJournal implements Closeable {
+
+    /* The size of a record header, the payload length and CRC */
+    private static final int HEADER_SIZE = 8;
+
+    /* The segment file name prefix */
+    private static final String SEGMENT_PREFIX = "usages-";
+
+    /* The segment file name suffix */
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /* The replay position file name */
+    private static final String POSITION_FILE = "replay.position";
+
+    /* The JSON mapper for usage payloads */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    /* The journal directory */
+    private final Path directory;
+
+    /* The size of each segment file */
+    private final int segmentSize;
+
+    /* Whether each append is forced to disk before returning */
+    private final boolean sync;
+
+    /* The number of records not yet replayed */
+    private final AtomicLong depth = new AtomicLong();
+
+    /* The sequence number of the segment being appended to */
+    private long writeSegment;
+
+    /* The mapped segment being appended to */
+    private MappedByteBuffer writeBuffer;
+
+    /* The replay position segment */
+    private long readSegment;
+
+    /* The replay position offset within the segment */
+    private int readOffset;
+
+    /**
+     * A journaled usage and the replay position following it
+     */
+    public static class Entry {
+
+        /* The unique entry id */
+        private final UUID id;
+
+        /* The journaled usage */
+        private final Usage usage;
+
+        /* The segment following the record */
+        private final long segment;
+
+        /* The offset following the record */
+        private final int offset;
+
+        Entry(UUID id, Usage usage, long segment, int offset) {
+            this.id = id;
+            this.usage = usage;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        /**
+         * Get the unique entry id, assigned when the usage was journaled
+         * @return id  the entry id
+         */
+        public UUID getId() {
+            return id;
+        }
+
+        /**
+         * Get the journaled usage
+         * @return usage  the journaled usage
+         */
+        public Usage getUsage() {
+            return usage;
+        }
+    }
+
+    /**
+     * Open a journal, recovering its segments and replay position
+     * @param directory  the journal directory, created if missing
+     * @param segmentSize  the size of each segment file, in bytes
+     * @param sync  whether each append is forced to disk before returning
+     * @throws IOException  if the journal can't be opened
+     */
+    public UsageJournal(Path directory, int segmentSize, boolean sync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        Files.createDirectories(directory);
+
+        TreeMap<Long, File> segments = listSegments();
+        readPosition(segments);
+
+        // Remove segments replayed before a crash, then count the unreplayed
+        // records and find the end of the records in the last segment
+        for (Long segment : segments.headMap(this.readSegment, false).keySet()) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        this.writeSegment = this.readSegment;
+        int end = this.readOffset;
+        for (Long segment : segments.tailMap(this.readSegment, true).keySet()) {
+            ByteBuffer buffer = map(segment);
+            int offset = segment == this.readSegment ? this.readOffset : 0;
+            int next;
+            while ( (next = skipRecord(buffer, offset)) > 0 ) {
+                this.depth.incrementAndGet();
+                offset = next;
+            }
+            this.writeSegment = segment;
+            end = offset;
+        }
+        this.writeBuffer = map(this.writeSegment);
+
+        // Clear any torn write so the next append starts on a clean header
+        this.writeBuffer.position(end);
+        if ( this.writeBuffer.remaining() >= HEADER_SIZE ) {
+            this.writeBuffer.putLong(end, 0L);
+        }
+    }
+
+    /**
+     * Append a usage to the journal
+     * @param usage  the usage to journal
+     * @throws IOException  if the usage can't be serialized or doesn't fit in a segment
+     */
+    public synchronized void append(Usage usage) throws IOException {
+        ObjectNode record = MAPPER.createObjectNode();
+        record.put("id", UUID.randomUUID().toString());
+        record.set("usage", MAPPER.valueToTree(usage));
+        byte[] payload = MAPPER.writeValueAsBytes(record);
+        int size = HEADER_SIZE + payload.length;
+        if ( size + HEADER_SIZE > this.segmentSize ) {
+            throw new IOException("The usage is too large for a journal segment.");
+        }
+        // Leave room for the end marker, rolling to a new segment when full
+        if ( this.writeBuffer.remaining() < size + HEADER_SIZE ) {
+            this.writeSegment++;
+            this.writeBuffer = map(this.writeSegment);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int offset = this.writeBuffer.position();
+        this.writeBuffer.position(offset + HEADER_SIZE);
+        this.writeBuffer.put(payload);
+        this.writeBuffer.putLong(offset + size, 0L);
+        // Publish the record by writing its header last
+        this.writeBuffer.putInt(offset + 4, (int) crc.getValue());
+        this.writeBuffer.putInt(offset, payload.length);
+        if ( this.sync ) {
+            this.writeBuffer.force();
+        }
+        this.depth.incrementAndGet();
+    }
+
+    /**
+     * Read journaled usages from the replay position, without advancing it
+     * @param max  the maximum number of usages to read
+     * @return entries  the journaled usages, oldest first
+     * @throws IOException  if a segment can't be read
+     */
+    public synchronized List<Entry> read(int max) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        long segment = this.readSegment;
+        int offset = this.readOffset;
+        ByteBuffer buffer = null;
+        while ( entries.size() < max && segment <= this.writeSegment ) {
+            if ( buffer == null ) {
+                buffer = segment == this.writeSegment ? this.writeBuffer.duplicate() : map(segment);
+            }
+            int next = skipRecord(buffer, offset);
+            if ( next < 0 ) {
+                segment++;
+                offset = 0;
+                buffer = null;
+                continue;
+            }
+            byte[] payload = new byte[next - offset - HEADER_SIZE];
+            buffer.position(offset + HEADER_SIZE);
+            buffer.get(payload);
+            JsonNode record = MAPPER.readTree(payload);
+            entries.add(new Entry(UUID.fromString(record.get("id").asText()),
+                MAPPER.treeToValue(record.get("usage"), Usage.class), segment, next));
+            offset = next;
+        }
+        return entries;
+    }
+
+    /**
+     * Advance the replay position past a replayed entry, deleting replayed segments
+     * @param entry  the last replayed entry
+     * @param count  the number of entries replayed
+     * @throws IOException  if the position can't be saved
+     */
+    public synchronized void commit(Entry entry, int count) throws IOException {
+        long previous = this.readSegment;
+        this.readSegment = entry.segment;
+        this.readOffset = entry.offset;
+        writePosition();
+        for (long segment = previous; segment < this.readSegment; segment++) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        this.depth.addAndGet(-count);
+    }
+
+    /**
+     * Get the number of journaled usages not yet replayed
+     * @return depth  the journal depth
+     */
+    public long getDepth() {
+        return this.depth.get();
+    }
+
+    /**
+     * Force any unsynced appends to disk
+     */
+    @Override
+    public synchronized void close() {
+        this.writeBuffer.force();
+    }
+
+    /* Return the offset after the record at the given offset, or -1 if there is none */
+    private int skipRecord(ByteBuffer buffer, int offset) {
+        if ( offset + HEADER_SIZE > this.segmentSize ) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if ( length <= 0 || offset + HEADER_SIZE + length > this.segmentSize ) {
+            return -1;
+        }
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ( buffer.getInt(offset + 4) != (int) crc.getValue() ) {
+            return -1;
+        }
+        return offset + HEADER_SIZE + length;
+    }
+
+    /* Map a segment file, creating it at the segment size if missing */
+    private MappedByteBuffer map(long segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(segment).toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        }
+    }
+
+    /* List the segment files by sequence number */
+    private TreeMap<Long, File> listSegments() {
+        TreeMap<Long, File> segments = new TreeMap<Long, File>();
+        File[] files = this.directory.toFile().listFiles();
+        if ( files != null ) {
+            for (File file : files) {
+                String name = file.getName();
+                if ( name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) ) {
+                    String sequence = name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length());
+                    segments.put(Long.parseLong(sequence), file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /* Get the path of a segment file */
+    private Path segmentPath(long segment) {
+        return this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /* Read the saved replay position, defaulting to the start of the oldest segment */
+    private void readPosition(TreeMap<Long, File> segments) throws IOException {
+        Path position = this.directory.resolve(POSITION_FILE);
+        if ( Files.exists(position) ) {
+            String[] saved = new String(Files.readAllBytes(position), StandardCharsets.UTF_8).trim().split(" ");
+            this.readSegment = Long.parseLong(saved[0]);
+            this.readOffset = Integer.parseInt(saved[1]);
+        } else {
+            this.readSegment = segments.isEmpty() ? 0 : segments.firstKey();
+            this.readOffset = 0;
+        }
+    }
+
+    /* Save the replay position, replacing the previous one atomically */
+    private void writePosition() throws IOException {
+        Path position = this.directory.resolve(POSITION_FILE);
+        Path temporary = this.directory.resolve(POSITION_FILE + ".tmp");
+        String saved = this.readSegment + " " + this.readOffset;
+        Files.write(temporary, saved.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, position, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Determine if an exception was caused by the database being unavailable,
+     * rather than by the statement, so the write may be journaled and retried
+     * @param throwable  the exception
+     * @return unavailable  true if the database couldn't be reached
+     */
+    public static boolean isDatabaseUnavailable(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if ( cause instanceof ConnectionException ) {
+                return true;
+            }
+            if ( cause instanceof SQLException ) {
+                String state = ((SQLException) cause).getSQLState();
+                // Connection exceptions, and operator intervention such as shutdowns
+                if ( state != null && (state.startsWith("08") || state.startsWith("57P")) ) {
+                    return true;
+                }
+            }
+            if ( cause.getCause() == cause ) {
+                break;
+            }
+        }
+        return false;
+    }
+}
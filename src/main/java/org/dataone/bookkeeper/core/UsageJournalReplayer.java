@@ -0,0 +1,261 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that drains the usage journal into the usages table once the
+ * database is reachable, a batch per transaction.
+ *
+ * A batch that fails for a reason other than the database being unavailable is
+ * replayed one usage at a time, and usages that still fail, such as those of a
+ * deleted quota, are logged and skipped so they don't block the journal.
+ *
+ * Inserts are recorded by journal entry id as they are replayed, so a batch
+ * replayed again after its position couldn't be saved has no further effect.
+ * The records are kept for a week after the journal drains.
+ *
+ * Like direct usage updates, each batch refreshes the snapshots of the charged
+ * quotas and their ancestors, and publishes their threshold crossings against
+ * the totals read before the batch.
+ */
+public class UsageJournalReplayer implements Managed {
+
+    /* The time replayed entries are remembered, in seconds */
+    private static final long REPLAYS_KEPT = TimeUnit.DAYS.toSeconds(7);
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(UsageJournalReplayer.class);
+
+    /* The journal to replay */
+    private final UsageJournal journal;
+
+    /* The usage store used to replay usages */
+    private final UsageStore usageStore;
+
+    /* The quota store used to read the charged quota chains */
+    private final QuotaStore quotaStore;
+
+    /* The quota cache holding snapshots of replayed quotas */
+    private final QuotaCache quotaCache;
+
+    /* The usage cache holding replayed usages */
+    private final UsageCache usageCache;
+
+    /* The quota events publishing threshold crossings */
+    private final QuotaEvents quotaEvents;
+
+    /* The number of usages replayed per transaction */
+    private final int batchSize;
+
+    /* The time between replay attempts, in milliseconds */
+    private final long interval;
+
+    /* The rate of replayed usages */
+    private final Meter replayed;
+
+    /* The scheduler running replays */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Construct a journal replayer
+     * @param journal  the journal to replay
+     * @param usageStore  the usage store
+     * @param quotaStore  the quota store
+     * @param quotaCache  the quota snapshot cache
+     * @param usageCache  the usage cache
+     * @param quotaEvents  the quota threshold events
+     * @param batchSize  the number of usages replayed per transaction
+     * @param interval  the time between replay attempts, in milliseconds
+     * @param metrics  the registry for the journal depth and replay rate
+     */
+    public UsageJournalReplayer(UsageJournal journal,
+                                UsageStore usageStore,
+                                QuotaStore quotaStore,
+                                QuotaCache quotaCache,
+                                UsageCache usageCache,
+                                QuotaEvents quotaEvents,
+                                int batchSize,
+                                long interval,
+                                MetricRegistry metrics) {
+        this.journal = journal;
+        this.usageStore = usageStore;
+        this.quotaStore = quotaStore;
+        this.quotaCache = quotaCache;
+        this.usageCache = usageCache;
+        this.quotaEvents = quotaEvents;
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.replayed = metrics.meter(MetricRegistry.name(UsageJournal.class, "replayed"));
+        metrics.register(MetricRegistry.name(UsageJournal.class, "depth"),
+            (Gauge<Long>) journal::getDepth);
+    }
+
+    /**
+     * Schedule the replays
+     */
+    @Override
+    public void start() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.scheduler.scheduleWithFixedDelay(this::run, 0, this.interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop replaying, letting a running batch finish, and sync the journal
+     * @throws InterruptedException  if interrupted while waiting for the batch
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if ( this.scheduler != null ) {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        this.journal.close();
+    }
+
+    /**
+     * Replay the journal until it is empty
+     * @return count  the number of usages replayed or skipped
+     * @throws IOException  if the journal can't be read or its position saved
+     */
+    public int replay() throws IOException {
+        int count = 0;
+        List<UsageJournal.Entry> entries;
+        while ( ! (entries = this.journal.read(this.batchSize)).isEmpty() ) {
+            List<UUID> entryIds = new ArrayList<UUID>();
+            List<Usage> usages = new ArrayList<Usage>();
+            Set<Integer> quotaIds = new HashSet<Integer>();
+            for (UsageJournal.Entry entry : entries) {
+                entryIds.add(entry.getId());
+                usages.add(entry.getUsage());
+                quotaIds.add(entry.getUsage().getQuotaId());
+            }
+            // The quota and ancestor totals before the batch, used to detect threshold crossings
+            Map<Integer, Quota> previous = new HashMap<Integer, Quota>();
+            for (Integer quotaId : quotaIds) {
+                for (Quota pooled : this.quotaStore.findQuotaChain(quotaId)) {
+                    previous.put(pooled.getId(), pooled);
+                }
+            }
+            try {
+                this.usageStore.replay(entryIds, usages);
+                this.journal.commit(entries.get(entries.size() - 1), entries.size());
+            } catch (RuntimeException e) {
+                if ( UsageJournal.isDatabaseUnavailable(e) ) {
+                    throw e;
+                }
+                replayEach(entries);
+            }
+            this.replayed.mark(entries.size());
+            refresh(usages, quotaIds, previous);
+            count += entries.size();
+        }
+        if ( count > 0 ) {
+            this.usageStore.deleteReplays((int) (System.currentTimeMillis() / 1000 - REPLAYS_KEPT));
+        }
+        return count;
+    }
+
+    /* Replay entries one at a time, skipping those that can't be applied */
+    private void replayEach(List<UsageJournal.Entry> entries) throws IOException {
+        for (UsageJournal.Entry entry : entries) {
+            try {
+                this.usageStore.replay(Collections.singletonList(entry.getId()),
+                    Collections.singletonList(entry.getUsage()));
+            } catch (RuntimeException e) {
+                if ( UsageJournal.isDatabaseUnavailable(e) ) {
+                    throw e;
+                }
+                log.error("Skipping journaled usage of instance " + entry.getUsage().getInstanceId() +
+                    " for quota " + entry.getUsage().getQuotaId() + ": " + e.getMessage());
+            }
+            this.journal.commit(entry, 1);
+        }
+    }
+
+    /*
+     * Refresh the snapshots of the quotas charged by replayed usages and their
+     * ancestors, publish their usage changes, and invalidate the usages
+     */
+    private void refresh(List<Usage> usages, Set<Integer> quotaIds, Map<Integer, Quota> previous) {
+        boolean updated = false;
+        for (Usage usage : usages) {
+            this.usageCache.invalidate(usage);
+            updated |= usage.getId() != null;
+        }
+        // Replayed updates may have moved usages off instances that are no longer known
+        if ( updated ) {
+            this.usageCache.invalidateAll();
+        }
+        // The usage triggers have updated the totals of the quotas and their ancestors
+        Set<Integer> refreshed = new HashSet<Integer>();
+        for (Integer quotaId : quotaIds) {
+            for (Quota charged : this.quotaStore.findQuotaChain(quotaId)) {
+                if ( refreshed.add(charged.getId()) ) {
+                    this.quotaCache.refresh(charged.getId());
+                    this.quotaEvents.usageChanged(previous.get(charged.getId()), charged);
+                }
+            }
+        }
+    }
+
+    /* Run a scheduled replay, keeping the schedule alive on failure */
+    private void run() {
+        if ( this.journal.getDepth() == 0 ) {
+            return;
+        }
+        try {
+            int count = replay();
+            log.info("Replayed " + count + " journaled usages.");
+        } catch (Exception e) {
+            if ( UsageJournal.isDatabaseUnavailable(e) ) {
+                log.warn("The database is still unavailable, " + this.journal.getDepth() +
+                    " usages remain journaled.");
+            } else {
+                log.error("Couldn't replay journaled usages: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dataone.bookkeeper.config.UsageReconciliationConfiguration;
+import org.dataone.bookkeeper.jdbi.ReconciliationStore;
+
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that reconciles quota usage totals with their usages.
+ *
+ * The job walks the quotas in keyset-ordered chunks, checkpointing the last
+ * quota of each chunk so a restart resumes where it left off. Drifted totals
+ * are recomputed under a row lock and corrected. After each chunk the job
+ * sleeps in proportion to the time it worked, keeping its share of database
+ * time within the configured duty cycle.
+ */
+public class UsageReconciler implements Managed {
+
+    /* The checkpoint name of this job */
+    public static final String CHECKPOINT = "quota-usage";
+
+    /* The logging facility for this class */
+    private Log log = LogFactory.getLog(UsageReconciler.class);
+
+    /* The reconciliation store used to find and correct drift */
+    private final ReconciliationStore reconciliationStore;
+
+    /* The quota cache holding snapshots of corrected quotas */
+    private final QuotaCache quotaCache;
+
+    /* The reconciliation configuration */
+    private final UsageReconciliationConfiguration configuration;
+
+    /* The rate of quotas checked */
+    private final Meter checked;
+
+    /* The rate of quotas corrected */
+    private final Meter corrected;
+
+    /* The distribution of absolute corrections, in quota units */
+    private final Histogram drift;
+
+    /* The epoch second the last complete pass finished */
+    private volatile long lastPassCompleted = 0;
+
+    /* The scheduler running chunks */
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Construct a usage reconciler
+     * @param reconciliationStore  the reconciliation store
+     * @param quotaCache  the quota snapshot cache
+     * @param configuration  the reconciliation configuration
+     * @param metrics  the registry for drift metrics
+     */
+    public UsageReconciler(ReconciliationStore reconciliationStore,
+                           QuotaCache quotaCache,
+                           UsageReconciliationConfiguration configuration,
+                           MetricRegistry metrics) {
+        this.reconciliationStore = reconciliationStore;
+        this.quotaCache = quotaCache;
+        this.configuration = configuration;
+        this.checked = metrics.meter(MetricRegistry.name(UsageReconciler.class, "checked"));
+        this.corrected = metrics.meter(MetricRegistry.name(UsageReconciler.class, "corrected"));
+        this.drift = metrics.histogram(MetricRegistry.name(UsageReconciler.class, "drift"));
+        metrics.register(MetricRegistry.name(UsageReconciler.class, "lastPassCompleted"),
+            (Gauge<Long>) () -> lastPassCompleted);
+    }
+
+    /**
+     * Start reconciling from the saved checkpoint
+     */
+    @Override
+    public void start() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1);
+        // Drop the next chunk on stop, rather than waiting out its pause to run it
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler.schedule(this::run, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reconciling, letting a running chunk finish
+     * @throws InterruptedException  if interrupted while waiting for the chunk
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if ( this.scheduler != null ) {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Reconcile the next chunk of quotas after the checkpoint
+     * @return more  true if the pass continues, false if it completed
+     */
+    public boolean reconcileChunk() {
+        Integer after = this.reconciliationStore.getCheckpoint(CHECKPOINT);
+        if ( after == null ) {
+            after = 0;
+        }
+        int chunkSize = this.configuration.getChunkSize();
+        Map<Integer, Long> drifts = this.reconciliationStore.findDrifts(after, chunkSize);
+
+        int last = after;
+        for (Map.Entry<Integer, Long> entry : drifts.entrySet()) {
+            Integer quotaId = entry.getKey();
+            last = Math.max(last, quotaId);
+            if ( entry.getValue() == null || entry.getValue() == 0L ) {
+                continue;
+            }
+            // Recheck under the quota lock, since usage writes may have caught up
+            Long correction = this.reconciliationStore.reconcileQuota(quotaId);
+            if ( correction != null && correction != 0L ) {
+                this.corrected.mark();
+                this.drift.update(Math.abs(correction));
+                this.quotaCache.refresh(quotaId);
+                log.warn("Corrected the usage of quota " + quotaId + " by " + correction);
+            }
+        }
+        this.checked.mark(drifts.size());
+
+        if ( drifts.size() < chunkSize ) {
+            this.reconciliationStore.saveCheckpoint(CHECKPOINT, 0);
+            this.lastPassCompleted = System.currentTimeMillis() / 1000;
+            return false;
+        }
+        this.reconciliationStore.saveCheckpoint(CHECKPOINT, last);
+        return true;
+    }
+
+    /**
+     * Get the pause after a chunk that keeps the job within its duty cycle
+     * @param worked  the time the chunk took, in milliseconds
+     * @return pause  the time to pause before the next chunk, in milliseconds
+     */
+    public long getPause(long worked) {
+        double dutyCycle = this.configuration.getDutyCycle();
+        return (long) (worked * (1.0 - dutyCycle) / dutyCycle);
+    }
+
+    /* Reconcile a chunk, then schedule the next one within the duty cycle */
+    private void run() {
+        long delay;
+        long started = System.nanoTime();
+        try {
+            if ( reconcileChunk() ) {
+                delay = getPause(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } else {
+                delay = this.configuration.getPassInterval().toMilliseconds();
+            }
+        } catch (Exception e) {
+            log.error("Couldn't reconcile quota usages: " + e.getMessage(), e);
+            delay = this.configuration.getPassInterval().toMilliseconds();
+        }
+        if ( ! this.scheduler.isShutdown() ) {
+            this.scheduler.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.jdbi;
+
+import org.dataone.bookkeeper.api.Order;
+import org.dataone.bookkeeper.api.OrderItem;
+import org.dataone.bookkeeper.jdbi.mappers.OrderMapper;
+import org.jdbi.v3.core.result.LinkedHashMapRowReducer;
+import org.jdbi.v3.core.result.RowView;
+import org.jdbi.v3.sqlobject.config.RegisterBeanMapper;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+
+import java.util.Map;
+
+/**
+ * Row reducer that accumulates the items of an order into its item list
+ * based on a SQL join between the orders and order_items tables.
+ */
+@RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+@RegisterRowMapper(value = OrderMapper.class)
+public class OrderItemsReducer implements LinkedHashMapRowReducer<Integer, Order> {
+
+    /**
+     * Accumulate order items into the item list of the order instance
+     * @param map The map of order id to order instances
+     * @param rowView The view of the result set row from the joined tables
+     */
+    @Override
+    public void accumulate(Map<Integer, Order> map, RowView rowView) {
+        // Build an order from the resultset if one isn't in the map given the id
+        Order order =
+            map.computeIfAbsent(rowView.getColumn("id", Integer.class),
+            id -> rowView.getRow(Order.class));
+
+        // Orders without items have a row with null item columns
+        if ( rowView.getColumn("i_id", Integer.class) != null ) {
+            order.getItems().add(rowView.getRow(OrderItem.class));
+        }
+    }
+}
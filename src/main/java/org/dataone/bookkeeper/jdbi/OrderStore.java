@@ -22,16 +22,31 @@
 package org.dataone.bookkeeper.jdbi;
 
 import org.dataone.bookkeeper.api.Order;
+import org.dataone.bookkeeper.api.OrderItem;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Subscription;
 import org.dataone.bookkeeper.jdbi.mappers.OrderMapper;
+import org.jdbi.v3.sqlobject.CreateSqlObject;
+import org.jdbi.v3.sqlobject.config.KeyColumn;
+import org.jdbi.v3.sqlobject.config.RegisterBeanMapper;
 import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.config.ValueColumn;
+import org.jdbi.v3.sqlobject.customizer.AllowUnusedBindings;
 import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
 import org.jdbi.v3.sqlobject.customizer.BindMethods;
+import org.jdbi.v3.sqlobject.customizer.Define;
 import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
-import org.jdbi.v3.sqlobject.statement.UseRowMapper;
+import org.jdbi.v3.sqlobject.statement.UseRowReducer;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The order data access interfaces used to create, read, update, and delete
@@ -39,8 +54,15 @@ import java.util.List;
  */
 public interface OrderStore {
 
-    /** The query used to find all orders */
-    String SELECT_CLAUSE = "SELECT " +
+    /** The status transitions of an order as a JSON object of status to seconds since the epoch */
+    String SELECT_STATUS_TRANSITIONS =
+        "SELECT json_object_agg(t.status, date_part('epoch', t.at)::int ORDER BY t.at, t.id) " +
+            "AS statusTransitions " +
+        "FROM order_status_transitions t " +
+        "WHERE t.orderId = o.id";
+
+    /** The order columns, with the customer subject, status transitions, and items */
+    String SELECT_COLUMNS = "SELECT " +
         "o.id, " +
         "o.object, " +
         "o.amount, " +
@@ -50,34 +72,114 @@ public interface OrderStore {
         "o.currency, " +
         "o.customer, " +
         "o.email, " +
-        "o.items::json AS items, " +
         "o.metadata::json AS metadata, " +
         "o.status, " +
-        "o.statusTransitions::json AS statusTransitions, " +
+        "st.statusTransitions, " +
         "date_part('epoch', o.updated)::int AS updated, " +
-        "c.subject AS subject " +
-        "FROM orders o " +
-        "INNER JOIN customers c ON o.customer = c.id ";
+        "c.subject AS subject, " +
+        "i.id AS i_id, " +
+        "i.object AS i_object, " +
+        "i.amount AS i_amount, " +
+        "i.currency AS i_currency, " +
+        "i.description AS i_description, " +
+        "i.parent AS i_parent, " +
+        "i.quantity AS i_quantity, " +
+        "i.type AS i_type ";
 
-    /** Clause to order listed results */
-    String ORDER_CLAUSE = "ORDER BY o.id, o.created, o.updated ";
+    /** The joins of orders to their customers, status transitions, and items */
+    String JOIN_CLAUSE =
+        "INNER JOIN customers c ON o.customer = c.id " +
+        "LEFT JOIN LATERAL (" + SELECT_STATUS_TRANSITIONS + ") st ON true " +
+        "LEFT JOIN order_items i ON i.orderId = o.id ";
+
+    /** The query used to find all orders */
+    String SELECT_CLAUSE = SELECT_COLUMNS + "FROM orders o " + JOIN_CLAUSE;
+
+    /** Clause to order listed results, keeping each order's items in order */
+    String ORDER_CLAUSE = "ORDER BY o.id, i.id ";
 
     /** The full ordered query */
     String SELECT_ALL = SELECT_CLAUSE + ORDER_CLAUSE;
 
-    String SELECT_ONE = SELECT_CLAUSE + "WHERE o.id = :id ";
+    String SELECT_ONE = SELECT_CLAUSE + "WHERE o.id = :id ORDER BY i.id ";
 
-    String SELECT_CUSTOMER = SELECT_CLAUSE + "WHERE customer = :customer ";
+    String SELECT_CUSTOMER = SELECT_CLAUSE + "WHERE customer = :customer " + ORDER_CLAUSE;
 
     String SELECT_SUBJECT = SELECT_CLAUSE + "WHERE subject = :subject " + ORDER_CLAUSE;
 
+    /**
+     * The orders of the recent partitions and of the archive. Queries of the
+     * orders table only read the recent partitions, and opt in to history here.
+     */
+    String HISTORY = "(SELECT * FROM orders UNION ALL SELECT * FROM archive.orders)";
+
+    /** The query used to find an individual order, including archived orders */
+    String SELECT_HISTORY_ONE =
+        SELECT_COLUMNS + "FROM " + HISTORY + " o " + JOIN_CLAUSE + "WHERE o.id = :id ORDER BY i.id ";
+
+    /**
+     * The filters and limit of a page of orders after a cursor. Only the filters
+     * given are defined, so each combination is planned against its own indexes.
+     */
+    String PAGE_CLAUSE =
+        "WHERE o.id > :after " +
+        "<filters>" +
+        "ORDER BY o.id " +
+        "LIMIT :count";
+
+    /**
+     * The query used to find a page of orders after a cursor, optionally by customer,
+     * status, and created range. Orders are paged by id in a subquery, so the page
+     * is read through the indexes without sorting all orders, and then joined.
+     */
+    String SELECT_PAGE = SELECT_COLUMNS +
+        "FROM (SELECT * FROM orders o " + PAGE_CLAUSE + ") o " +
+        JOIN_CLAUSE +
+        "ORDER BY o.id, i.id";
+
+    /** The query used to find a page of orders after a cursor, including archived orders */
+    String SELECT_HISTORY_PAGE = SELECT_COLUMNS +
+        "FROM (SELECT * FROM " + HISTORY + " o " + PAGE_CLAUSE + ") o " +
+        JOIN_CLAUSE +
+        "ORDER BY o.id, i.id";
+
+    /** Clause to filter orders that entered a status in a time window */
+    String TRANSITIONED_CLAUSE =
+        "WHERE o.id IN (" +
+            "SELECT t.orderId FROM order_status_transitions t " +
+            "WHERE t.status = :status " +
+            "AND t.at >= to_timestamp(:from) " +
+            "AND t.at < to_timestamp(:to)) ";
+
+    /** The query used to find orders that entered a status in a time window */
+    String SELECT_TRANSITIONED = SELECT_CLAUSE + TRANSITIONED_CLAUSE + ORDER_CLAUSE;
+
+    /** The query used to find orders that entered a status in a time window, including archived orders */
+    String SELECT_HISTORY_TRANSITIONED =
+        SELECT_COLUMNS + "FROM " + HISTORY + " o " + JOIN_CLAUSE + TRANSITIONED_CLAUSE + ORDER_CLAUSE;
+
+    /** The SKU item amounts by product, joined to the orders given after the clause */
+    String REVENUE_CLAUSE =
+        "SELECT i.parent AS productId, SUM(i.amount)::bigint AS revenue " +
+        "FROM order_items i " +
+        "INNER JOIN ";
+
+    /** Clause to filter and group the revenue of orders by status and currency */
+    String REVENUE_FILTER_CLAUSE =
+        " o ON o.id = i.orderId " +
+        "WHERE i.type = 'sku' " +
+        "AND i.currency = :currency " +
+        "AND o.status = :status " +
+        "GROUP BY i.parent";
+
     /**
      * List all orders
      * @return
      */
     @SqlQuery(SELECT_ALL)
     @RegisterRowMapper(OrderMapper.class)
-    @UseRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
     List<Order> listOrders();
 
     /**
@@ -87,9 +189,29 @@ public interface OrderStore {
      */
     @SqlQuery(SELECT_ONE)
     @RegisterRowMapper(OrderMapper.class)
-    @UseRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
     Order getOrder(@Bind("id") Integer id);
 
+    /**
+     * Get an order by order id, including archived orders
+     * @param id the order id
+     * @return order the order, or null if it doesn't exist
+     */
+    @SqlQuery(SELECT_HISTORY_ONE)
+    @RegisterRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
+    Order getOrderWithHistory(@Bind("id") Integer id);
+
+    /**
+     * Determine whether an order was archived, and so is read only
+     * @param id the order id
+     * @return archived  true if the order is in the archive
+     */
+    @SqlQuery("SELECT EXISTS (SELECT 1 FROM archive.orders WHERE id = :id)")
+    boolean isArchived(@Bind("id") Integer id);
+
     /**
      * Find orders by customer id
      * @param customerId the id of the customer
@@ -97,7 +219,8 @@ public interface OrderStore {
      */
     @SqlQuery(SELECT_CUSTOMER)
     @RegisterRowMapper(OrderMapper.class)
-    @UseRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
     List<Order> findOrdersByCustomerId(@Bind("customer") Integer customerId);
 
     /**
@@ -107,11 +230,174 @@ public interface OrderStore {
      */
     @SqlQuery(SELECT_SUBJECT)
     @RegisterRowMapper(OrderMapper.class)
-    @UseRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
     List<Order> findOrdersBySubject(@Bind("subject") String subject);
 
     /**
-     * Insert an order
+     * Find a page of orders in id order, optionally by customer, status, and created range
+     * @param customerId  the customer id, or null for all customers
+     * @param status  the order status, or null for all statuses
+     * @param from  the earliest created date, inclusive, in seconds since the epoch, or null
+     * @param to  the latest created date, exclusive, in seconds since the epoch, or null
+     * @param after  the cursor, the last order id of the previous page, or 0 for the first page
+     * @param count  the maximum number of orders in the page
+     * @return orders  the page of orders
+     */
+    default List<Order> findOrders(Integer customerId, String status, Integer from, Integer to,
+                                   Integer after, Integer count) {
+        return findOrdersPage(getPageFilters(customerId, status, from, to),
+            customerId, status, from, to, after, count);
+    }
+
+    /**
+     * Find a page of orders in id order with the given filter predicates
+     * @param filters  the filter predicates of the given values
+     * @return orders  the page of orders
+     */
+    @SqlQuery(SELECT_PAGE)
+    @AllowUnusedBindings
+    @RegisterRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
+    List<Order> findOrdersPage(@Define("filters") String filters,
+                               @Bind("customer") Integer customerId, @Bind("status") String status,
+                               @Bind("from") Integer from, @Bind("to") Integer to,
+                               @Bind("after") Integer after, @Bind("count") Integer count);
+
+    /**
+     * Find a page of orders in id order, including archived orders, optionally by
+     * customer, status, and created range
+     * @param customerId  the customer id, or null for all customers
+     * @param status  the order status, or null for all statuses
+     * @param from  the earliest created date, inclusive, in seconds since the epoch, or null
+     * @param to  the latest created date, exclusive, in seconds since the epoch, or null
+     * @param after  the cursor, the last order id of the previous page, or 0 for the first page
+     * @param count  the maximum number of orders in the page
+     * @return orders  the page of orders
+     */
+    default List<Order> findOrdersWithHistory(Integer customerId, String status, Integer from, Integer to,
+                                              Integer after, Integer count) {
+        return findOrdersPageWithHistory(getPageFilters(customerId, status, from, to),
+            customerId, status, from, to, after, count);
+    }
+
+    /**
+     * Find a page of orders in id order, including archived orders, with the given filter predicates
+     * @param filters  the filter predicates of the given values
+     * @return orders  the page of orders
+     */
+    @SqlQuery(SELECT_HISTORY_PAGE)
+    @AllowUnusedBindings
+    @RegisterRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
+    List<Order> findOrdersPageWithHistory(@Define("filters") String filters,
+                                          @Bind("customer") Integer customerId, @Bind("status") String status,
+                                          @Bind("from") Integer from, @Bind("to") Integer to,
+                                          @Bind("after") Integer after, @Bind("count") Integer count);
+
+    /**
+     * Get the predicates filtering a page of orders by the given values, which are
+     * bound separately, so that no predicate is planned for an absent filter
+     * @param customerId  the customer id, or null for all customers
+     * @param status  the order status, or null for all statuses
+     * @param from  the earliest created date, or null
+     * @param to  the latest created date, or null
+     * @return filters  the filter predicates, each starting with AND
+     */
+    static String getPageFilters(Integer customerId, String status, Integer from, Integer to) {
+        StringBuilder filters = new StringBuilder();
+        if ( customerId != null ) {
+            filters.append("AND o.customer = :customer ");
+        }
+        if ( status != null ) {
+            filters.append("AND o.status = :status ");
+        }
+        if ( from != null ) {
+            filters.append("AND o.created >= to_timestamp(:from) ");
+        }
+        if ( to != null ) {
+            filters.append("AND o.created < to_timestamp(:to) ");
+        }
+        return filters.toString();
+    }
+
+    /**
+     * Find orders that entered a status in a time window, such as the orders paid in the last day.
+     * Only orders in the recent partitions are found, even when the window reaches into archived
+     * months; see findOrdersByStatusTransitionWithHistory
+     * @param status  the order status
+     * @param from  the start of the window, inclusive, in seconds since the epoch
+     * @param to  the end of the window, exclusive, in seconds since the epoch
+     * @return orders  the orders that entered the status in the window
+     */
+    @SqlQuery(SELECT_TRANSITIONED)
+    @RegisterRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
+    List<Order> findOrdersByStatusTransition(@Bind("status") String status,
+                                             @Bind("from") Integer from, @Bind("to") Integer to);
+
+    /**
+     * Find orders that entered a status in a time window, including archived orders
+     * @param status  the order status
+     * @param from  the start of the window, inclusive, in seconds since the epoch
+     * @param to  the end of the window, exclusive, in seconds since the epoch
+     * @return orders  the orders that entered the status in the window
+     */
+    @SqlQuery(SELECT_HISTORY_TRANSITIONED)
+    @RegisterRowMapper(OrderMapper.class)
+    @RegisterBeanMapper(value = OrderItem.class, prefix = "i")
+    @UseRowReducer(OrderItemsReducer.class)
+    List<Order> findOrdersByStatusTransitionWithHistory(@Bind("status") String status,
+                                                        @Bind("from") Integer from, @Bind("to") Integer to);
+
+    /**
+     * Count the orders entering each status in a time window, such as for an order funnel.
+     * Transitions are not archived, so the counts include archived orders
+     * @param from  the start of the window, inclusive, in seconds since the epoch
+     * @param to  the end of the window, exclusive, in seconds since the epoch
+     * @return counts  the number of orders entering each status
+     */
+    @SqlQuery("SELECT t.status, COUNT(DISTINCT t.orderId) AS orders " +
+        "FROM order_status_transitions t " +
+        "WHERE t.at >= to_timestamp(:from) " +
+        "AND t.at < to_timestamp(:to) " +
+        "GROUP BY t.status")
+    @KeyColumn("status")
+    @ValueColumn("orders")
+    Map<String, Integer> countStatusTransitions(@Bind("from") Integer from, @Bind("to") Integer to);
+
+    /**
+     * Insert an order, its items, and its status transitions in a transaction.
+     * Given transitions are kept, so callers inserting client orders must clear
+     * them, and the current status is recorded as of the creation date unless it
+     * is already the latest transition.
+     * @param order the order to insert
+     * @return id the id of the order
+     */
+    @Transaction
+    default Integer insert(Order order) {
+        Integer id = insertOrder(order);
+        insertItems(id, order.getItems());
+        if ( order.getStatusTransitions() != null ) {
+            List<String> statuses = new ArrayList<String>();
+            List<Integer> ats = new ArrayList<Integer>();
+            order.getStatusTransitions().fields().forEachRemaining(transition -> {
+                statuses.add(transition.getKey());
+                ats.add(transition.getValue().asInt());
+            });
+            if ( ! statuses.isEmpty() ) {
+                insertStatusTransitions(id, statuses, ats);
+            }
+        }
+        insertStatusTransition(id, order.getStatus(), order.getCreated());
+        return id;
+    }
+
+    /**
+     * Insert an order, without its items
      * @param order the order to insert
      */
     @SqlUpdate("INSERT INTO orders (" +
@@ -123,31 +409,45 @@ public interface OrderStore {
         "currency, " +
         "customer, " +
         "email, " +
-        "items, " +
         "metadata, " +
         "status, " +
-        "statusTransitions, " +
         "updated " +
         ") VALUES (" +
         ":getObject, " +
         ":getAmount, " +
         ":getAmountReturned, " +
         ":getChargeJSON::json, " +
-        "to_timestamp(:getCreated), " +
+        "COALESCE(to_timestamp(:getCreated), now()), " +
         ":getCurrency, " +
         ":getCustomer, " +
         ":getEmail, " +
-        ":getItemsJSON::json, " +
         ":getMetadataJSON::json, " +
         ":getStatus, " +
-        ":getStatusTransitionsJSON::json, " +
         "to_timestamp(:getUpdated)) " +
         "RETURNING id")
     @GetGeneratedKeys
-    Integer insert(@BindMethods Order order);
+    Integer insertOrder(@BindMethods Order order);
 
     /**
-     * Update an order
+     * Update an order and replace its items in a transaction, recording a status
+     * transition as of the update date if the status changed. Transitions are
+     * never rewritten, so the given status transitions are ignored.
+     * @param order the order to update
+     * @return id the id of the order, or null if it doesn't exist
+     */
+    @Transaction
+    default Integer update(Order order) {
+        Integer id = updateOrder(order);
+        if ( id != null ) {
+            deleteItems(id);
+            insertItems(id, order.getItems());
+            insertStatusTransition(id, order.getStatus(), order.getUpdated());
+        }
+        return id;
+    }
+
+    /**
+     * Update an order, without its items
      * @param order the order to update
      */
     @SqlUpdate("UPDATE orders SET " +
@@ -155,19 +455,136 @@ public interface OrderStore {
         "amount = :getAmount, " +
         "amountReturned = :getAmountReturned, " +
         "charge = :getChargeJSON::json, " +
-        "created = to_timestamp(:getCreated), " +
+        "created = COALESCE(to_timestamp(:getCreated), created), " +
         "currency = :getCurrency, " +
         "customer = :getCustomer, " +
         "email = :getEmail, " +
-        "items = :getItemsJSON::json, " +
         "metadata = :getMetadataJSON::json, " +
         "status = :getStatus, " +
-        "statusTransitions = :getStatusTransitionsJSON::json, " +
         "updated = to_timestamp(:getUpdated) " +
         "WHERE id = :getId " +
         "RETURNING id")
     @GetGeneratedKeys
-    Integer update(@BindMethods Order order);
+    Integer updateOrder(@BindMethods Order order);
+
+    /**
+     * Insert a batch of order items
+     * @param orderId  the order identifier
+     * @param items  the order items to insert, in order
+     */
+    @SqlBatch("INSERT INTO order_items " +
+        "(orderId, object, amount, currency, description, parent, quantity, type) " +
+        "VALUES " +
+        "(:orderId, :object, :amount, :currency, :description, :parent, :quantity, :type)")
+    void insertAllItems(@Bind("orderId") Integer orderId, @BindBean List<OrderItem> items);
+
+    /**
+     * Insert the items of an order, if it has any
+     * @param orderId  the order identifier
+     * @param items  the order items to insert, in order
+     */
+    default void insertItems(Integer orderId, List<OrderItem> items) {
+        if ( items != null && ! items.isEmpty() ) {
+            insertAllItems(orderId, items);
+        }
+    }
+
+    /**
+     * Delete the items of an order
+     * @param orderId  the order identifier
+     */
+    @SqlUpdate("DELETE FROM order_items WHERE orderId = :orderId")
+    void deleteItems(@Bind("orderId") Integer orderId);
+
+    /**
+     * Append a batch of status transitions to an order's history
+     * @param orderId  the order identifier
+     * @param statuses  the statuses entered
+     * @param ats  the dates each status was entered, in seconds since the epoch
+     */
+    @SqlBatch("INSERT INTO order_status_transitions (orderId, status, at) " +
+        "VALUES (:orderId, :status, to_timestamp(:at))")
+    void insertStatusTransitions(@Bind("orderId") Integer orderId,
+                                 @Bind("status") List<String> statuses, @Bind("at") List<Integer> ats);
+
+    /**
+     * Append a status transition to an order's history, unless the order is already in the status
+     * @param orderId  the order identifier
+     * @param status  the status entered
+     * @param at  the date the status was entered, in seconds since the epoch, or null for now
+     */
+    @SqlUpdate("INSERT INTO order_status_transitions (orderId, status, at) " +
+        "SELECT :orderId, :status, COALESCE(to_timestamp(:at), now()) " +
+        "WHERE :status IS DISTINCT FROM (" +
+            "SELECT t.status FROM order_status_transitions t " +
+            "WHERE t.orderId = :orderId " +
+            "ORDER BY t.at DESC, t.id DESC " +
+            "LIMIT 1)")
+    void insertStatusTransition(@Bind("orderId") Integer orderId,
+                                @Bind("status") String status, @Bind("at") Integer at);
+
+    /**
+     * Create the monthly orders partitions from this month through a number of months ahead
+     * @param months  the number of months ahead
+     * @return created  the number of partitions created, always 0 on unpartitioned servers
+     */
+    @SqlQuery("SELECT create_orders_partitions(:months)")
+    Integer createPartitions(@Bind("months") Integer months);
+
+    /**
+     * Move the monthly orders partitions that end before a date into the archive
+     * @param before  the date, in seconds since the epoch
+     * @return archived  the number of partitions archived, always 0 on unpartitioned servers
+     */
+    @SqlQuery("SELECT archive_orders_partitions(to_timestamp(:before))")
+    Integer archivePartitions(@Bind("before") Integer before);
+
+    /**
+     * Total the SKU item amounts of orders with a given status and currency by product.
+     * Only orders in the recent partitions are totaled; see findRevenueByProductWithHistory
+     * @param status  the order status, such as paid
+     * @param currency  the order item currency code
+     * @return revenue  the total amount, in the smallest unit of the currency, by product identifier
+     */
+    @SqlQuery(REVENUE_CLAUSE + "orders" + REVENUE_FILTER_CLAUSE)
+    @KeyColumn("productId")
+    @ValueColumn("revenue")
+    Map<Integer, Long> findRevenueByProduct(@Bind("status") String status, @Bind("currency") String currency);
+
+    /**
+     * Total the SKU item amounts of orders with a given status and currency by product,
+     * including archived orders
+     * @param status  the order status, such as paid
+     * @param currency  the order item currency code
+     * @return revenue  the total amount, in the smallest unit of the currency, by product identifier
+     */
+    @SqlQuery(REVENUE_CLAUSE + HISTORY + REVENUE_FILTER_CLAUSE)
+    @KeyColumn("productId")
+    @ValueColumn("revenue")
+    Map<Integer, Long> findRevenueByProductWithHistory(@Bind("status") String status,
+                                                       @Bind("currency") String currency);
+
+    /**
+     * Get a subscription store that shares this store's handle, and so its transactions
+     * @return subscriptionStore  the subscription store
+     */
+    @CreateSqlObject
+    SubscriptionStore subscriptionStore();
+
+    /**
+     * Pay an order in a transaction, inserting its subscriptions and their quotas
+     * in batches and updating the order
+     * @param order  the order to update
+     * @param subscriptions  the subscriptions to insert
+     * @param quotas  the quotas to insert for each subscription, in the same order
+     * @return id  the id of the order
+     */
+    @Transaction
+    default Integer pay(Order order, List<Subscription> subscriptions,
+                        List<? extends Collection<Quota>> quotas) {
+        subscriptionStore().insertAllWithQuotas(subscriptions, quotas);
+        return update(order);
+    }
 
     /**
      * Delete an order
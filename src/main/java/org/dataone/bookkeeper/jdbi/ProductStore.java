@@ -64,12 +64,23 @@ public interface ProductStore {
 
     String SELECT_BY_ID = SELECT_CLAUSE + "WHERE id = :id " + ORDER_CLAUSE;
 
+    String SELECT_BY_IDS = SELECT_CLAUSE + "WHERE id = ANY(:ids) " + ORDER_CLAUSE;
+
     String SELECT_BY_NAME = SELECT_CLAUSE + "WHERE name = :name " + ORDER_CLAUSE;
 
     String SELECT_BY_ACTIVE = SELECT_CLAUSE + "WHERE active = :active " + ORDER_CLAUSE;
 
     String SELECT_BY_DESCRIPTION = SELECT_CLAUSE + "WHERE description LIKE :description " + ORDER_CLAUSE;
 
+    /**
+     * Search descriptions for terms, as a substring or by trigram word similarity,
+     * most similar first. Both conditions are served by the description trigram index.
+     */
+    String SEARCH_BY_DESCRIPTION = SELECT_CLAUSE +
+        "WHERE description ILIKE :contains " +
+        "OR :terms <% description " +
+        "ORDER BY word_similarity(:terms, description) DESC, name, created DESC";
+
     /**
      * List all products
      */
@@ -87,6 +98,17 @@ public interface ProductStore {
     @UseRowMapper(ProductMapper.class)
     Product getProduct(@Bind("id") Integer id);
 
+    /**
+     * Find products by a list of identifiers in one query. The identifiers are
+     * bound as one integer array, so the statement text is the same for any count.
+     * @param ids  the product identifiers
+     * @return products  the products that exist, in catalog order
+     */
+    @SqlQuery(SELECT_BY_IDS)
+    @RegisterRowMapper(ProductMapper.class)
+    @UseRowMapper(ProductMapper.class)
+    List<Product> findProductsByIds(@Bind("ids") Integer[] ids);
+
     /**
      * Find products by name
      * @param name
@@ -114,6 +136,27 @@ public interface ProductStore {
     @UseRowMapper(ProductMapper.class)
     List<Product> findProductsByDescription(@Bind("description") String description);
 
+    /**
+     * Search products by description terms, ranking the most similar descriptions first
+     * @param terms  the search terms
+     * @param contains  the terms as an ILIKE pattern, escaped and wrapped in wildcards
+     * @return products  the matching products, most similar first
+     */
+    @SqlQuery(SEARCH_BY_DESCRIPTION)
+    @RegisterRowMapper(ProductMapper.class)
+    @UseRowMapper(ProductMapper.class)
+    List<Product> searchProductsByDescription(@Bind("terms") String terms, @Bind("contains") String contains);
+
+    /**
+     * Search products by description terms, ranking the most similar descriptions first
+     * @param terms  the search terms
+     * @return products  the matching products, most similar first
+     */
+    default List<Product> searchProductsByDescription(String terms) {
+        String escaped = terms.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return searchProductsByDescription(terms, "%" + escaped + "%");
+    }
+
     /**
      * Insert a product
      * @param product the product to insert
@@ -21,6 +21,7 @@
 
 package org.dataone.bookkeeper.jdbi;
 
+import org.dataone.bookkeeper.api.EffectiveQuota;
 import org.dataone.bookkeeper.api.Quota;
 import org.jdbi.v3.sqlobject.config.RegisterBeanMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
@@ -50,7 +51,13 @@ public interface QuotaStore {
             "q.usage, " +
             "q.unit, " +
             "q.subscriptionId, " +
-            "q.subject " +
+            "q.subject, " +
+            "q.parentId, " +
+            "CASE WHEN q.growthUpdated IS NULL THEN NULL " +
+                "ELSE decayed_growth_rate(q.growthRate, q.growthUpdated, 0) * 86400 END AS growthRate, " +
+            "CASE WHEN q.growthUpdated IS NULL THEN NULL " +
+                "ELSE quota_time_to_limit(q.usage, q.hardLimit, " +
+                "decayed_growth_rate(q.growthRate, q.growthUpdated, 0)) END AS timeToLimit " +
             "FROM quotas q ";
 
     /** The full ordered query */
@@ -71,6 +78,42 @@ public interface QuotaStore {
     /** The query used to find quotas by multiple subject identifiers */
     String SELECT_SUBJECTS = SELECT_CLAUSE + "WHERE q.subject IN (<subjects>) ";
 
+    /** The query used to find a quota and its ancestors, the quota first and the root last */
+    String SELECT_CHAIN = SELECT_CLAUSE +
+        "WHERE q.id = ANY((SELECT l.path || l.id FROM quotas l WHERE l.id = :quotaId)::integer[]) ";
+
+    /** The query used to find the quotas pooled directly under a quota */
+    String SELECT_CHILDREN = SELECT_CLAUSE + "WHERE q.parentId = :parentId ";
+
+    /** The order of a quota chain, from the quota to the root */
+    String CHAIN_ORDER = "ORDER BY cardinality(q.path) DESC";
+
+    /** The query used to list the quotas projected to reach their hard limits soonest */
+    String SELECT_EXHAUSTING = SELECT_CLAUSE +
+        "WHERE q.exhaustAt IS NOT NULL " +
+        "AND q.exhaustAt <= to_timestamp(:before) " +
+        "ORDER BY q.exhaustAt " +
+        "LIMIT :count";
+
+    /** The remaining headroom of a quota, used to choose the quota to charge against */
+    String HEADROOM = "q.hardLimit - COALESCE(q.usage, 0)";
+
+    /** The query used to total quotas by name across multiple subject identifiers */
+    String SELECT_EFFECTIVE =
+        "SELECT " +
+            "q.name, " +
+            "q.unit, " +
+            "SUM(q.softLimit)::bigint AS softLimit, " +
+            "SUM(q.hardLimit)::bigint AS hardLimit, " +
+            "SUM(COALESCE(q.usage, 0))::bigint AS usage, " +
+            "COUNT(*) AS quotaCount, " +
+            "(array_agg(q.id ORDER BY " + HEADROOM + " DESC, q.id))[1] AS quotaId, " +
+            "(array_agg(q.subject ORDER BY " + HEADROOM + " DESC, q.id))[1] AS subject " +
+        "FROM quotas q " +
+        "WHERE q.subject IN (<subjects>) " +
+        "AND (CAST(:name AS text) IS NULL OR q.name = :name) " +
+        "GROUP BY q.name, q.unit " +
+        "ORDER BY q.name, q.unit";
 
     /**
      * List all quotas
@@ -123,6 +166,56 @@ public interface QuotaStore {
     @SqlQuery(SELECT_SUBJECTS)
     List<Quota> findQuotasBySubjects(@BindList("subjects") List<String> subjects);
 
+    /**
+     * Find a quota and the ancestor quotas that pool its usage
+     * @param quotaId  the quota identifier
+     * @return quotas  the quota and its ancestors, the quota first and the root last
+     */
+    @SqlQuery(SELECT_CHAIN + CHAIN_ORDER)
+    List<Quota> findQuotaChain(@Bind("quotaId") Integer quotaId);
+
+    /**
+     * Find the quotas pooled directly under a parent quota
+     * @param parentId  the parent quota identifier
+     * @return quotas  the child quotas
+     */
+    @SqlQuery(SELECT_CHILDREN)
+    List<Quota> findChildQuotas(@Bind("parentId") Integer parentId);
+
+    /**
+     * Find the quotas in a quota's chain whose hard limit an additional usage would exceed
+     * @param quotaId  the quota identifier
+     * @param requestedUsage  the additional usage, in the quota units
+     * @return quotas  the exceeded quotas, the quota first and the root last, or an empty list
+     */
+    @SqlQuery(SELECT_CHAIN + "AND COALESCE(q.usage, 0) + :requestedUsage > q.hardLimit " + CHAIN_ORDER)
+    List<Quota> findExceededQuotas(@Bind("quotaId") Integer quotaId,
+                                   @Bind("requestedUsage") Long requestedUsage);
+
+    /**
+     * List the quotas projected to reach their hard limits soonest. Projections
+     * are made as of each quota's last usage change.
+     * @param before  the latest projected exhaustion, in seconds since the epoch
+     * @param count  the maximum number of quotas to list
+     * @return quotas  the quotas, soonest to exhaust first
+     */
+    @SqlQuery(SELECT_EXHAUSTING)
+    List<Quota> listExhaustingQuotas(@Bind("before") Integer before, @Bind("count") Integer count);
+
+    /**
+     * Total the quotas of each name across a list of subject identifiers
+     *
+     * Each effective quota sums the limits and usage of the subjects' quotas with
+     * the same name, and names the quota with the most remaining headroom.
+     * @param subjects the subject identifiers list (such as a person and their groups)
+     * @param name the quota name to total, or null for all quota names
+     * @return effectiveQuotas the list of effective quotas for the subjects
+     */
+    @SqlQuery(SELECT_EFFECTIVE)
+    @RegisterBeanMapper(EffectiveQuota.class)
+    List<EffectiveQuota> findEffectiveQuotasBySubjects(
+        @BindList("subjects") List<String> subjects, @Bind("name") String name);
+
     /**
      * Insert a quota with a given Quota instance
      * @param quota the quota to insert
@@ -134,7 +227,8 @@ public interface QuotaStore {
         "hardLimit, " +
         "unit, " +
         "subscriptionId, " +
-        "subject) " +
+        "subject, " +
+        "parentId) " +
         "VALUES " +
         "(:object, " +
         ":name, " +
@@ -142,13 +236,15 @@ public interface QuotaStore {
         ":hardLimit, " +
         ":unit, " +
         ":subscriptionId, " +
-        ":subject) " +
+        ":subject, " +
+        ":parentId) " +
         "RETURNING id")
     @GetGeneratedKeys
     Integer insert(@BindBean Quota quota);
 
     /**
-     * Update a quota for a given id
+     * Update a quota for a given id, projecting its exhaustion against the new
+     * hard limit at its growth rate as of its last usage change
      * @param quota the quota to update
      */
    @SqlUpdate("UPDATE quotas " +
@@ -156,9 +252,12 @@ public interface QuotaStore {
        "name = :name, " +
        "softLimit = :softLimit, " +
        "hardLimit = :hardLimit, " +
+       "exhaustAt = growthUpdated + " +
+           "quota_time_to_limit(usage, :hardLimit, growthRate) * interval '1 second', " +
        "unit = :unit, " +
        "subscriptionId = :subscriptionId, " +
-       "subject = :subject " +
+       "subject = :subject, " +
+       "parentId = :parentId " +
        "WHERE id = :id " +
        "RETURNING id")
    @GetGeneratedKeys
@@ -0,0 +1,123 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.jdbi;
+
+import org.jdbi.v3.sqlobject.config.KeyColumn;
+import org.jdbi.v3.sqlobject.config.ValueColumn;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+
+import java.util.Map;
+
+/**
+ * The reconciliation data access interfaces used to compare quota usage totals
+ * with their usages, correct drifted totals, and checkpoint progress
+ */
+public interface ReconciliationStore {
+
+    /** The quota and its descendant quotas, whose usages it pools */
+    String SUBTREE = "(SELECT c.id FROM quotas c WHERE c.id = q.id OR c.path @> ARRAY[q.id])";
+
+    /** The actual usage of a quota, the live usages plus the compacted summaries of its subtree */
+    String ACTUAL_USAGE =
+        "(SELECT COALESCE(SUM(u.quantity), 0)::bigint FROM usages u WHERE u.quotaId IN " + SUBTREE + ") + " +
+        "(SELECT COALESCE(SUM(s.quantity), 0)::bigint FROM usage_summaries s WHERE s.quotaId IN " + SUBTREE + ")";
+
+    /**
+     * Find the drift of a keyset-ordered chunk of quotas. Drift is null for
+     * quotas that have never had usages, whose totals are left as given.
+     * @param after  the last quota identifier of the previous chunk
+     * @param chunkSize  the number of quotas in the chunk
+     * @return drifts  the actual minus the recorded usage, by quota identifier
+     */
+    @SqlQuery(
+        "SELECT q.id AS quotaId, " +
+            "CASE WHEN NOT EXISTS (SELECT 1 FROM usages u WHERE u.quotaId IN " + SUBTREE + ") " +
+            "AND NOT EXISTS (SELECT 1 FROM usage_summaries s WHERE s.quotaId IN " + SUBTREE + ") " +
+            "THEN NULL " +
+            "ELSE " + ACTUAL_USAGE + " - COALESCE(q.usage, 0) END AS drift " +
+        "FROM quotas q " +
+        "WHERE q.id > :after " +
+        "ORDER BY q.id " +
+        "LIMIT :chunkSize")
+    @KeyColumn("quotaId")
+    @ValueColumn("drift")
+    Map<Integer, Long> findDrifts(@Bind("after") Integer after, @Bind("chunkSize") Integer chunkSize);
+
+    /**
+     * Lock a quota row, waiting for in-flight usage writes to commit
+     * @param quotaId  the quota identifier
+     * @return quotaId  the locked quota identifier, or null if it doesn't exist
+     */
+    @SqlQuery("SELECT id FROM quotas WHERE id = :quotaId FOR UPDATE")
+    Integer lockQuota(@Bind("quotaId") Integer quotaId);
+
+    /**
+     * Set a quota usage total to its actual usage, and project its exhaustion from
+     * the corrected usage at its growth rate as of its last usage change
+     * @param quotaId  the quota identifier
+     * @return drift  the correction applied to the total
+     */
+    @SqlQuery(
+        "UPDATE quotas t SET usage = a.actual, " +
+            "exhaustAt = t.growthUpdated + " +
+            "quota_time_to_limit(a.actual, t.hardLimit, t.growthRate) * interval '1 second' " +
+        "FROM (SELECT q.id, q.usage, " + ACTUAL_USAGE + " AS actual FROM quotas q WHERE q.id = :quotaId) a " +
+        "WHERE t.id = a.id " +
+        "RETURNING a.actual - COALESCE(a.usage, 0) AS drift")
+    Long correctUsage(@Bind("quotaId") Integer quotaId);
+
+    /**
+     * Recompute and correct a quota usage total. The quota is locked first, so
+     * usage writes made before the recompute are included and later ones wait.
+     * @param quotaId  the quota identifier
+     * @return drift  the correction applied, or null if the quota doesn't exist
+     */
+    @Transaction
+    default Long reconcileQuota(Integer quotaId) {
+        if ( lockQuota(quotaId) == null ) {
+            return null;
+        }
+        return correctUsage(quotaId);
+    }
+
+    /**
+     * Get the last quota identifier reconciled by a job
+     * @param name  the reconciliation job name
+     * @return lastQuotaId  the last quota identifier, or null if there is no checkpoint
+     */
+    @SqlQuery("SELECT lastQuotaId FROM reconciliation_checkpoints WHERE name = :name")
+    Integer getCheckpoint(@Bind("name") String name);
+
+    /**
+     * Save the last quota identifier reconciled by a job
+     * @param name  the reconciliation job name
+     * @param lastQuotaId  the last quota identifier
+     */
+    @SqlUpdate("INSERT INTO reconciliation_checkpoints (name, lastQuotaId, updated) " +
+        "VALUES (:name, :lastQuotaId, now()) " +
+        "ON CONFLICT (name) DO UPDATE " +
+        "SET lastQuotaId = EXCLUDED.lastQuotaId, updated = EXCLUDED.updated")
+    void saveCheckpoint(@Bind("name") String name, @Bind("lastQuotaId") Integer lastQuotaId);
+}
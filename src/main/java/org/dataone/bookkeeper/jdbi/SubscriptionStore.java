@@ -31,6 +31,7 @@ import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.BindBean;
 import org.jdbi.v3.sqlobject.customizer.BindMethods;
 import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.jdbi.v3.sqlobject.statement.UseRowReducer;
@@ -38,7 +39,9 @@ import org.jdbi.v3.sqlobject.transaction.Transaction;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -87,7 +90,8 @@ public interface SubscriptionStore {
             "q.usage AS q_usage, " +
             "q.unit AS q_unit, " +
             "q.subscriptionId AS q_subscriptionId, " +
-            "q.subject AS q_subject " +
+            "q.subject AS q_subject, " +
+            "q.parentId AS q_parentId " +
         "FROM subscriptions s " +
         "LEFT JOIN quotas q ON s.id = q.subscriptionId " +
         "LEFT JOIN customers c ON s.customerId = c.id " +
@@ -105,6 +109,43 @@ public interface SubscriptionStore {
     /** The query used to find a subscription by subject identifier */
     String SELECT_SUBJECT = SELECT_CLAUSE + "WHERE c.subject = :subject";
 
+    /** The statement used to insert a subscription */
+    String INSERT =
+        "INSERT INTO subscriptions (" +
+            "object, " +
+            "canceledAt, " +
+            "collectionMethod, " +
+            "created, " +
+            "customerId, " +
+            "metadata, " +
+            "productId, " +
+            "quantity, " +
+            "startDate, " +
+            "status, " +
+            "trialEnd, " +
+            "trialStart " +
+        ") VALUES (" +
+            ":getObject, " +
+            "to_timestamp(:getCanceledAt), " +
+            ":getCollectionMethod, " +
+            "to_timestamp(:getCreated), " +
+            ":getCustomerId, " +
+            ":getMetadataJSON::json, " +
+            ":getProductId, " +
+            ":getQuantity, " +
+            "to_timestamp(:getStartDate), " +
+            ":getStatus, " +
+            "to_timestamp(:getTrialEnd), " +
+            "to_timestamp(:getTrialStart) " +
+        ") ";
+
+    /** The statement used to insert a subscription quota */
+    String INSERT_QUOTA =
+        "INSERT INTO quotas " +
+        "(object, name, softLimit, hardLimit, usage, unit, subscriptionId, subject, parentId) " +
+        "VALUES " +
+        "(:object, :name, :softLimit, :hardLimit, :usage, :unit, :subscriptionId, :subject, :parentId) ";
+
     /**
      * List all subscriptions with their quotas
      * @return subscriptions The list of subscriptions
@@ -144,38 +185,19 @@ public interface SubscriptionStore {
      * Insert a subscription
      * @param subscription the subscription to insert
      */
-    @SqlUpdate(
-        "INSERT INTO subscriptions (" +
-            "object, " +
-            "canceledAt, " +
-            "collectionMethod, " +
-            "created, " +
-            "customerId, " +
-            "metadata, " +
-            "productId, " +
-            "quantity, " +
-            "startDate, " +
-            "status, " +
-            "trialEnd, " +
-            "trialStart " +
-        ") VALUES (" +
-            ":getObject, " +
-            "to_timestamp(:getCanceledAt), " +
-            ":getCollectionMethod, " +
-            "to_timestamp(:getCreated), " +
-            ":getCustomerId, " +
-            ":getMetadataJSON::json, " +
-            ":getProductId, " +
-            ":getQuantity, " +
-            "to_timestamp(:getStartDate), " +
-            ":getStatus, " +
-            "to_timestamp(:getTrialEnd), " +
-            "to_timestamp(:getTrialStart) " +
-        ") RETURNING id"
-    )
+    @SqlUpdate(INSERT + "RETURNING id")
     @GetGeneratedKeys
     Integer insert(@BindMethods Subscription subscription);
 
+    /**
+     * Insert a batch of subscriptions
+     * @param subscriptions  the subscriptions to insert
+     * @return ids  the ids of the subscriptions, in the given order
+     */
+    @SqlBatch(INSERT)
+    @GetGeneratedKeys("id")
+    List<Integer> insertAll(@BindMethods List<Subscription> subscriptions);
+
     /**
      * Insert a subscription and its quotas in a transaction
      * @param subscription the subscription to insert
@@ -184,26 +206,58 @@ public interface SubscriptionStore {
      */
     @Transaction
     default Integer insertWithQuotas(Subscription subscription, @NotNull @Valid Collection<Quota> quotas) {
-        Integer id = insert(subscription);
-        for ( Quota quota : quotas) {
-            quota.setSubscriptionId(id);
-            Integer quotaId = insertQuota(quota);
+        return insertAllWithQuotas(
+            Collections.singletonList(subscription),
+            Collections.singletonList(quotas)).get(0);
+    }
+
+    /**
+     * Insert subscriptions and their quotas in a transaction, with one batch of
+     * subscriptions and one batch of quotas
+     * @param subscriptions  the subscriptions to insert
+     * @param quotas  the quotas to insert for each subscription, in the same order
+     * @return ids  the ids of the subscriptions, in the given order
+     */
+    @Transaction
+    default List<Integer> insertAllWithQuotas(List<Subscription> subscriptions,
+                                              List<? extends Collection<Quota>> quotas) {
+        if ( subscriptions.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = insertAll(subscriptions);
+        List<Quota> allQuotas = new ArrayList<Quota>();
+        for (int i = 0; i < ids.size(); i++) {
+            for (Quota quota : quotas.get(i)) {
+                quota.setSubscriptionId(ids.get(i));
+                allQuotas.add(quota);
+            }
+        }
+        if ( ! allQuotas.isEmpty() ) {
+            List<Integer> quotaIds = insertQuotas(allQuotas);
+            for (int i = 0; i < quotaIds.size(); i++) {
+                allQuotas.get(i).setId(quotaIds.get(i));
+            }
         }
-        return id;
+        return ids;
     }
 
     /**
      * Insert a quota with a given Quota instance
      * @param quota the quota to insert
      */
-    @SqlUpdate("INSERT INTO quotas " +
-        "(object, name, softLimit, hardLimit, usage, unit, subscriptionId, subject) " +
-        "VALUES " +
-        "(:object, :name, :softLimit, :hardLimit, :usage, :unit, :subscriptionId, :subject) " +
-        "RETURNING id")
+    @SqlUpdate(INSERT_QUOTA + "RETURNING id")
     @GetGeneratedKeys
     Integer insertQuota(@BindBean Quota quota);
 
+    /**
+     * Insert a batch of quotas
+     * @param quotas  the quotas to insert
+     * @return ids  the ids of the quotas, in the given order
+     */
+    @SqlBatch(INSERT_QUOTA)
+    @GetGeneratedKeys("id")
+    List<Integer> insertQuotas(@BindBean List<Quota> quotas);
+
     /**
      * Update a subscription
      * @param subscription the subscription to update
@@ -22,8 +22,27 @@
 package org.dataone.bookkeeper.jdbi;
 
 import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.api.UsageRollup;
 import org.jdbi.v3.sqlobject.config.RegisterBeanMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
 
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The usage data access interfaces used to create, read, update, and delete
+ * quota usages from the database.
+ *
+ * The usages table is hash partitioned by quotaId, so writes are qualified by
+ * quotaId to touch a single partition.
+ */
 @RegisterBeanMapper(Usage.class)
 public interface UsageStore {
 
@@ -35,7 +54,9 @@ public interface UsageStore {
             "u.quotaId, " +
             "u.instanceId, " +
             "u.quantity, " +
-            "u.status " +
+            "u.status, " +
+            "date_part('epoch', u.created)::int AS created, " +
+            "date_part('epoch', u.updated)::int AS updated " +
         "FROM usages u " +
         "INNER JOIN quotas q ON u.quotaId = q.id ";
 
@@ -45,11 +66,350 @@ public interface UsageStore {
     /** Select by identifier */
     String SELECT_ONE = SELECT_CLAUSE + "WHERE u.id = :id";
 
-    /** Select by name and instance identifer */
+    /**
+     * Select a page of a quota's usages in byte order of instance identifier,
+     * after the last usage of the previous page. The usage id breaks ties
+     * between usages of the same instance.
+     */
+    String SELECT_INSTANCE_PAGE = SELECT_CLAUSE +
+        "WHERE u.quotaId = :quotaId " +
+        "AND (u.instanceId COLLATE \"C\", u.id) > (:after, :afterId) " +
+        "ORDER BY u.instanceId COLLATE \"C\", u.id " +
+        "LIMIT :pageSize";
+
+    /**
+     * Select by name and instance identifer. If quotas of more than one subject
+     * have a usage for the instance, the most recent usage is selected.
+     */
     String SELECT_BY_NAME_AND_INSTANCE_ID = SELECT_CLAUSE +
         "WHERE u.instanceId = :instanceId " +
-        "AND q.name = :quotaName";
+        "AND q.name = :quotaName " +
+        "ORDER BY u.id DESC " +
+        "LIMIT 1";
+
+    /**
+     * Select the daily rollups of a quota within a time range. The running usage
+     * level is summed over all of the quota's buckets before the range is applied.
+     */
+    String SELECT_DAILY_ROLLUPS =
+        "SELECT quotaId, start, quantity, events, usage FROM (" +
+            "SELECT " +
+                "r.quotaId, " +
+                "r.day, " +
+                "date_part('epoch', r.day)::int AS start, " +
+                "r.quantity, " +
+                "r.events, " +
+                "(SUM(r.quantity) OVER (ORDER BY r.day))::bigint AS usage " +
+            "FROM usage_daily_rollups r " +
+            "WHERE r.quotaId = :quotaId " +
+            "AND r.day <= (to_timestamp(:to) AT TIME ZONE 'UTC')::date " +
+        ") b " +
+        "WHERE b.day >= (to_timestamp(:from) AT TIME ZONE 'UTC')::date " +
+        "ORDER BY b.day";
+
+    /** Select the monthly rollups of a quota within a time range */
+    String SELECT_MONTHLY_ROLLUPS =
+        "SELECT quotaId, start, quantity, events, usage FROM (" +
+            "SELECT " +
+                "r.quotaId, " +
+                "r.month, " +
+                "date_part('epoch', r.month)::int AS start, " +
+                "r.quantity, " +
+                "r.events, " +
+                "(SUM(r.quantity) OVER (ORDER BY r.month))::bigint AS usage " +
+            "FROM usage_monthly_rollups r " +
+            "WHERE r.quotaId = :quotaId " +
+            "AND r.month <= (to_timestamp(:to) AT TIME ZONE 'UTC')::date " +
+        ") b " +
+        "WHERE b.month >= date_trunc('month', to_timestamp(:from) AT TIME ZONE 'UTC')::date " +
+        "ORDER BY b.month";
+
+    /** The selection of archived usages to compact, followed by an optional quota filter */
+    String COMPACT_BATCH =
+        "WITH batch AS (" +
+            "SELECT u.quotaId, u.id FROM usages u " +
+            "WHERE u.status = 'archived' ";
+
+    /**
+     * Move a batch of archived usages to the usages archive, adding their
+     * quantities to the per-quota usage summaries. Batches lock with SKIP LOCKED
+     * so concurrent compactions and usage writes don't wait on each other.
+     */
+    String COMPACT_MOVE =
+            "ORDER BY u.id " +
+            "LIMIT :batchSize " +
+            "FOR UPDATE SKIP LOCKED" +
+        "), moved AS (" +
+            "DELETE FROM usages u USING batch b " +
+            "WHERE u.quotaId = b.quotaId AND u.id = b.id " +
+            "RETURNING u.id, u.object, u.quotaId, u.instanceId, u.quantity, u.status, u.created, u.updated" +
+        "), archived AS (" +
+            "INSERT INTO usages_archive " +
+            "(id, object, quotaId, instanceId, quantity, status, created, updated, archived) " +
+            "SELECT m.id, m.object, m.quotaId, m.instanceId, m.quantity, m.status, m.created, m.updated, now() " +
+            "FROM moved m " +
+            "RETURNING id" +
+        "), summarized AS (" +
+            "INSERT INTO usage_summaries AS s (quotaId, quantity, usages, updated) " +
+            "SELECT m.quotaId, SUM(m.quantity), COUNT(*), now() FROM moved m GROUP BY m.quotaId " +
+            "ON CONFLICT (quotaId) DO UPDATE " +
+            "SET quantity = s.quantity + EXCLUDED.quantity, " +
+            "usages = s.usages + EXCLUDED.usages, " +
+            "updated = EXCLUDED.updated " +
+            "RETURNING quotaId" +
+        ") " +
+        "SELECT COUNT(*) FROM archived";
+
+    /** Compact a batch of archived usages of any quota */
+    String COMPACT_ARCHIVED = COMPACT_BATCH + COMPACT_MOVE;
+
+    /** Compact a batch of the archived usages of one quota */
+    String COMPACT_QUOTA_ARCHIVED = COMPACT_BATCH + "AND u.quotaId = :quotaId " + COMPACT_MOVE;
+
+    /** Select the instances of a quota, among the given ones, that were compacted into the archive */
+    String SELECT_COMPACTED_INSTANCE_IDS =
+        "SELECT DISTINCT a.instanceId FROM usages_archive a " +
+        "WHERE a.quotaId = :quotaId " +
+        "AND a.instanceId IN (<instanceIds>)";
+
+    /**
+     * Get a usage by usage identifier
+     * @param id  the usage identifier
+     * @return usage  the usage for the identifier
+     */
+    @SqlQuery(SELECT_ONE)
+    Usage getUsage(@Bind("id") Integer id);
+
+    /**
+     * Find the usage of an instance against a quota of the given name
+     * @param instanceId  the instance identifier of the usage
+     * @param quotaName  the name of the quota
+     * @return usage  the usage, or null if there is none
+     */
+    @SqlQuery(SELECT_BY_NAME_AND_INSTANCE_ID)
+    Usage findUsageByInstanceIdAndQuotaName(@Bind("instanceId") String instanceId,
+                                            @Bind("quotaName") String quotaName);
+
+    /**
+     * Find a page of a quota's usages in byte order of instance identifier
+     * @param quotaId  the quota identifier
+     * @param after  the instance identifier of the last usage of the previous page, or an empty string
+     * @param afterId  the id of the last usage of the previous page, or 0
+     * @param pageSize  the maximum number of usages in the page
+     * @return usages  the usages after the given usage
+     */
+    @SqlQuery(SELECT_INSTANCE_PAGE)
+    List<Usage> findUsagesAfterInstanceId(@Bind("quotaId") Integer quotaId,
+                                          @Bind("after") String after,
+                                          @Bind("afterId") Integer afterId,
+                                          @Bind("pageSize") int pageSize);
+
+    /**
+     * Find the daily usage rollups of a quota
+     * @param quotaId  the quota identifier
+     * @param from  the start of the range, in seconds since the epoch
+     * @param to  the end of the range, in seconds since the epoch
+     * @return rollups  the daily rollups in the range, oldest first
+     */
+    @SqlQuery(SELECT_DAILY_ROLLUPS)
+    @RegisterBeanMapper(UsageRollup.class)
+    List<UsageRollup> findDailyRollups(@Bind("quotaId") Integer quotaId,
+                                       @Bind("from") Integer from,
+                                       @Bind("to") Integer to);
+
+    /**
+     * Find the monthly usage rollups of a quota
+     * @param quotaId  the quota identifier
+     * @param from  the start of the range, in seconds since the epoch
+     * @param to  the end of the range, in seconds since the epoch
+     * @return rollups  the monthly rollups in the range, oldest first
+     */
+    @SqlQuery(SELECT_MONTHLY_ROLLUPS)
+    @RegisterBeanMapper(UsageRollup.class)
+    List<UsageRollup> findMonthlyRollups(@Bind("quotaId") Integer quotaId,
+                                         @Bind("from") Integer from,
+                                         @Bind("to") Integer to);
+
+    /**
+     * Insert a usage with a given Usage instance
+     * @param usage  the usage to insert
+     * @return id  the identifier of the inserted usage
+     */
+    @SqlUpdate("INSERT INTO usages " +
+        "(object, quotaId, instanceId, quantity, status, created, updated) " +
+        "VALUES " +
+        "(:object, :quotaId, :instanceId, :quantity, :status, " +
+        "COALESCE(to_timestamp(:created), now()), now()) " +
+        "RETURNING id")
+    @GetGeneratedKeys
+    Integer insert(@BindBean Usage usage);
+
+    /**
+     * Insert a batch of usages
+     * @param usages  the usages to insert
+     */
+    @SqlBatch("INSERT INTO usages " +
+        "(object, quotaId, instanceId, quantity, status, created, updated) " +
+        "VALUES " +
+        "(:object, :quotaId, :instanceId, :quantity, :status, " +
+        "COALESCE(to_timestamp(:created), now()), now())")
+    void insertAll(@BindBean List<Usage> usages);
+
+    /**
+     * Insert a journaled usage unless its journal entry was already replayed, so
+     * that replaying it more than once has no further effect. Like a direct insert,
+     * it is added alongside other usages of the instance, even those journaled in
+     * the same second.
+     * @param entryId  the unique journal entry id
+     * @param usage  the usage to insert, with its journaled creation time
+     * @return count  the number of usages inserted
+     */
+    @SqlUpdate("WITH entry AS (" +
+            "INSERT INTO usage_journal_replays (entryId) VALUES (:entryId) " +
+            "ON CONFLICT DO NOTHING RETURNING entryId" +
+        ") " +
+        "INSERT INTO usages " +
+        "(object, quotaId, instanceId, quantity, status, created, updated) " +
+        "SELECT :object, :quotaId, :instanceId, :quantity, :status, " +
+        "to_timestamp(:created), now() " +
+        "FROM entry")
+    int insertIfAbsent(@Bind("entryId") UUID entryId, @BindBean Usage usage);
+
+    /**
+     * Forget the journal entries replayed before a date, once they can't be replayed again
+     * @param before  the date, in seconds since the epoch
+     * @return count  the number of entries forgotten
+     */
+    @SqlUpdate("DELETE FROM usage_journal_replays WHERE replayed < to_timestamp(:before)")
+    int deleteReplays(@Bind("before") Integer before);
+
+    /**
+     * Update a usage for a given id. The usage must belong to its quotaId.
+     * @param usage  the usage to update
+     * @return id  the identifier of the updated usage, or null if there was no match
+     */
+    @SqlUpdate("UPDATE usages " +
+        "SET object = :object, " +
+        "quotaId = :quotaId, " +
+        "instanceId = :instanceId, " +
+        "quantity = :quantity, " +
+        "status = :status, " +
+        "updated = now() " +
+        "WHERE quotaId = :quotaId " +
+        "AND id = :id " +
+        "RETURNING id")
+    @GetGeneratedKeys
+    Integer update(@BindBean Usage usage);
+
+    /**
+     * Update the quantity and status of a batch of usages
+     * @param usages  the usages to update
+     */
+    @SqlBatch("UPDATE usages " +
+        "SET quantity = :quantity, " +
+        "status = :status, " +
+        "updated = now() " +
+        "WHERE quotaId = :quotaId " +
+        "AND id = :id")
+    void updateAll(@BindBean List<Usage> usages);
+
+    /**
+     * Apply a batch of inserts and updates in a transaction
+     * @param inserts  the usages to insert
+     * @param updates  the usages to update
+     */
+    @Transaction
+    default void applyAll(List<Usage> inserts, List<Usage> updates) {
+        if ( ! inserts.isEmpty() ) {
+            insertAll(inserts);
+        }
+        if ( ! updates.isEmpty() ) {
+            updateAll(updates);
+        }
+    }
+
+    /**
+     * Delete a usage given the quota id and usage id
+     * @param quotaId  the quota of the usage
+     * @param id  the usage to delete
+     */
+    @SqlUpdate("DELETE FROM usages WHERE quotaId = :quotaId AND id = :id")
+    void delete(@Bind("quotaId") Integer quotaId, @Bind("id") Integer id);
+
+    /**
+     * Mark the current transaction as compacting, so the usage triggers leave
+     * quota totals and rollups unchanged when archived usages are moved
+     */
+    @SqlUpdate("SET LOCAL bookkeeper.compacting = 'on'")
+    void setCompacting();
+
+    /**
+     * Move a batch of archived usages to the archive
+     * @param batchSize  the maximum number of usages to move
+     * @return count  the number of usages moved
+     */
+    @SqlQuery(COMPACT_ARCHIVED)
+    int moveArchivedUsages(@Bind("batchSize") int batchSize);
+
+    /**
+     * Move a batch of one quota's archived usages to the archive
+     * @param quotaId  the quota identifier
+     * @param batchSize  the maximum number of usages to move
+     * @return count  the number of usages moved
+     */
+    @SqlQuery(COMPACT_QUOTA_ARCHIVED)
+    int moveArchivedUsages(@Bind("quotaId") Integer quotaId, @Bind("batchSize") int batchSize);
+
+    /**
+     * Compact a batch of archived usages in a transaction. Quota totals still
+     * include the compacted quantities, which are kept in the usage summaries.
+     * @param batchSize  the maximum number of usages to compact
+     * @return count  the number of usages compacted
+     */
+    @Transaction
+    default int compactArchivedUsages(int batchSize) {
+        setCompacting();
+        return moveArchivedUsages(batchSize);
+    }
+
+    /**
+     * Compact a batch of one quota's archived usages in a transaction
+     * @param quotaId  the quota identifier
+     * @param batchSize  the maximum number of usages to compact
+     * @return count  the number of usages compacted
+     */
+    @Transaction
+    default int compactArchivedUsages(Integer quotaId, int batchSize) {
+        setCompacting();
+        return moveArchivedUsages(quotaId, batchSize);
+    }
 
-    // TODO: Define interfaces
+    /**
+     * Find which of the given instances of a quota were compacted into the usages
+     * archive. Their quantities still count toward the quota in its usage summary.
+     * @param quotaId  the quota identifier
+     * @param instanceIds  the instance identifiers to look for
+     * @return instanceIds  the compacted instance identifiers
+     */
+    @SqlQuery(SELECT_COMPACTED_INSTANCE_IDS)
+    List<String> findCompactedInstanceIds(@Bind("quotaId") Integer quotaId,
+                                          @BindList("instanceIds") List<String> instanceIds);
 
+    /**
+     * Replay journaled usages in a transaction. Usages without an id are inserted
+     * unless their entry was already replayed, and usages with an id are updated.
+     * @param entryIds  the unique journal entry ids of the usages
+     * @param usages  the journaled usages, oldest first
+     */
+    @Transaction
+    default void replay(List<UUID> entryIds, List<Usage> usages) {
+        for (int index = 0; index < usages.size(); index++) {
+            Usage usage = usages.get(index);
+            if ( usage.getId() == null ) {
+                insertIfAbsent(entryIds.get(index), usage);
+            } else {
+                update(usage);
+            }
+        }
+    }
 }
@@ -21,9 +21,7 @@
 
 package org.dataone.bookkeeper.jdbi.mappers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.dropwizard.jackson.Jackson;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.dataone.bookkeeper.api.Address;
 import org.dataone.bookkeeper.api.Customer;
 import org.dataone.bookkeeper.api.Quota;
@@ -43,6 +41,9 @@ import java.util.List;
  */
 public class CustomerMapper implements RowMapper<Customer> {
 
+    /* The reader of customer address columns */
+    private static final ObjectReader ADDRESS_READER = JsonColumns.readerFor(Address.class);
+
     /**
      * Construct a CustomerMapper
      */
@@ -61,7 +62,6 @@ public class CustomerMapper implements RowMapper<Customer> {
     @Override
     public Customer map(ResultSet rs, StatementContext ctx) throws SQLException {
         Customer customer = null;
-        ObjectMapper mapper = Jackson.newObjectMapper();
 
         try {
             // Create a customer instance from the resultset
@@ -70,19 +70,16 @@ public class CustomerMapper implements RowMapper<Customer> {
                 rs.getString("c_object"),
                 rs.getString("c_subject"),
                 new Integer(rs.getInt("c_balance")),
-                mapper.readValue(rs.getString("c_address"), Address.class),
+                ADDRESS_READER.readValue(rs.getString("c_address")),
                 new Integer(rs.getInt("c_created")),
                 rs.getString("c_currency"),
                 rs.getBoolean("c_delinquent"),
                 rs.getString("c_description"),
-                rs.getString("c_discount") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("c_discount")) : null,
+                JsonColumns.readObject(rs.getString("c_discount")),
                 rs.getString("c_email"),
                 rs.getString("c_invoicePrefix"),
-                rs.getString("c_invoiceSettings") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("c_invoiceSettings")) : null,
-                rs.getString("c_metadata") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("c_metadata")) : null,
+                JsonColumns.readObject(rs.getString("c_invoiceSettings")),
+                JsonColumns.readObject(rs.getString("c_metadata")),
                 rs.getString("c_givenName"),
                 rs.getString("c_surName"),
                 rs.getString("c_phone")
@@ -0,0 +1,65 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.jdbi.mappers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.dropwizard.jackson.Jackson;
+
+import java.io.IOException;
+
+/**
+ * Reads the JSON columns of result rows for the row mappers. The readers are
+ * built once and are thread safe, so every row shares their configuration and
+ * deserializer caches rather than building a new ObjectMapper.
+ */
+public final class JsonColumns {
+
+    /* The mapper the readers are built from */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    /* The reader of JSON object columns, such as metadata */
+    private static final ObjectReader OBJECT_READER = MAPPER.readerFor(ObjectNode.class);
+
+    private JsonColumns() {
+    }
+
+    /**
+     * Read a JSON object column
+     * @param json  the column value
+     * @return object  the JSON object, or null if the column is null
+     * @throws IOException  if the value isn't a JSON object
+     */
+    public static ObjectNode readObject(String json) throws IOException {
+        return json != null ? OBJECT_READER.readValue(json) : null;
+    }
+
+    /**
+     * Get a reader that binds JSON columns directly to a type
+     * @param type  the type to bind to
+     * @return reader  the shared reader for the type
+     */
+    public static ObjectReader readerFor(Class<?> type) {
+        return MAPPER.readerFor(type);
+    }
+}
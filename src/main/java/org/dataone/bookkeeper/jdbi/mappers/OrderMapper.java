@@ -21,11 +21,6 @@
 
 package org.dataone.bookkeeper.jdbi.mappers;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.dropwizard.jackson.Jackson;
 import org.dataone.bookkeeper.api.Order;
 import org.dataone.bookkeeper.api.OrderItem;
 import org.jdbi.v3.core.mapper.RowMapper;
@@ -34,9 +29,7 @@ import org.jdbi.v3.core.statement.StatementContext;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayList;
 
 public class OrderMapper implements RowMapper<Order> {
 
@@ -59,40 +52,25 @@ public class OrderMapper implements RowMapper<Order> {
     @Override
     public Order map(ResultSet rs, StatementContext ctx) throws SQLException {
 
-        ObjectMapper mapper = Jackson.newObjectMapper();
         /* The order to return */
         Order order;
-        /* The list of order items */
-        List<OrderItem> items = new LinkedList<OrderItem>();
-        /* The list of items as a JSON array */
-        ArrayNode itemsArray;
 
         try {
-            itemsArray =
-                (ArrayNode) mapper.readTree(rs.getString("items"));
-
-            Iterator<JsonNode> iterator = itemsArray.elements();
-            while ( iterator.hasNext() ) {
-                ObjectNode item = (ObjectNode) iterator.next();
-                items.add(mapper.readValue(item.toString(), OrderItem.class));
-            }
             order = new Order(
                 new Integer(rs.getInt("id")),
                 rs.getString("object"),
                 new Integer(rs.getInt("amount")),
                 new Integer(rs.getInt("amountReturned")),
-                rs.getString("charge") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("charge")) : null,
+                JsonColumns.readObject(rs.getString("charge")),
                 new Integer(rs.getInt("created")),
                 rs.getString("currency"),
                 new Integer(rs.getInt("customer")),
                 rs.getString("email"),
-                items,
-                rs.getString("metadata") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("metadata")) : null,
+                // Items are read from the order_items table by the OrderItemsReducer
+                new ArrayList<OrderItem>(),
+                JsonColumns.readObject(rs.getString("metadata")),
                 rs.getString("status"),
-                rs.getString("statusTransitions") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("statusTransitions")) : null,
+                JsonColumns.readObject(rs.getString("statusTransitions")),
                 new Integer(rs.getInt("updated"))
             );
         } catch (IOException e) {
@@ -21,8 +21,6 @@
 
 package org.dataone.bookkeeper.jdbi.mappers;
 
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.dropwizard.jackson.Jackson;
 import org.dataone.bookkeeper.api.Product;
 import org.jdbi.v3.core.mapper.RowMapper;
 import org.jdbi.v3.core.statement.StatementContext;
@@ -71,9 +69,7 @@ public class ProductMapper implements RowMapper<Product> {
                 rs.getString("type"),
                 rs.getString("unitLabel"),
                 rs.getString("url"),
-                rs.getString("metadata") != null ?
-                    (ObjectNode) Jackson.newObjectMapper().readTree(
-                        rs.getString("metadata")) : null
+                JsonColumns.readObject(rs.getString("metadata"))
             );
         } catch (IOException e) {
             throw new SQLException(e);
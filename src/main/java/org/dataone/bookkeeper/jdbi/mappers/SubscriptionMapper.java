@@ -21,9 +21,6 @@
 
 package org.dataone.bookkeeper.jdbi.mappers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.dropwizard.jackson.Jackson;
 import org.dataone.bookkeeper.api.Product;
 import org.dataone.bookkeeper.api.Quota;
 import org.dataone.bookkeeper.api.Subscription;
@@ -62,7 +59,6 @@ public class SubscriptionMapper implements RowMapper<Subscription> {
     public Subscription map(ResultSet rs, StatementContext ctx) throws SQLException {
         Subscription subscription = null;
         Product product = null;
-        ObjectMapper mapper = Jackson.newObjectMapper();
 
         try {
             // If we have product fields in the resultset, build and add a product
@@ -82,8 +78,7 @@ public class SubscriptionMapper implements RowMapper<Subscription> {
                     rs.getString("p_type"),
                     rs.getString("p_unitLabel"),
                     rs.getString("p_url"),
-                    rs.getString("p_metadata") != null ?
-                        (ObjectNode) mapper.readTree(rs.getString("p_metadata")) : null
+                    JsonColumns.readObject(rs.getString("p_metadata"))
                 );
             }
         } catch (PSQLException psqle) {
@@ -102,8 +97,7 @@ public class SubscriptionMapper implements RowMapper<Subscription> {
                 rs.getString("s_collectionMethod"),
                 new Integer(rs.getInt("s_created")),
                 new Integer(rs.getInt("s_customerId")),
-                rs.getString("s_metadata") != null ?
-                    (ObjectNode) mapper.readTree(rs.getString("s_metadata")) : null,
+                JsonColumns.readObject(rs.getString("s_metadata")),
                 product,
                 new Integer(rs.getInt("s_quantity")),
                 new Integer(rs.getInt("s_startDate")),
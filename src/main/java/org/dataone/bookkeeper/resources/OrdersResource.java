@@ -22,24 +22,19 @@
 package org.dataone.bookkeeper.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.dropwizard.jackson.Jackson;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dataone.bookkeeper.api.Customer;
-import org.dataone.bookkeeper.api.Feature;
 import org.dataone.bookkeeper.api.Order;
 import org.dataone.bookkeeper.api.OrderItem;
 import org.dataone.bookkeeper.api.OrderList;
 import org.dataone.bookkeeper.api.Product;
 import org.dataone.bookkeeper.api.Quota;
 import org.dataone.bookkeeper.api.Subscription;
+import org.dataone.bookkeeper.core.ProductCatalog;
+import org.dataone.bookkeeper.core.ProductTemplate;
 import org.dataone.bookkeeper.jdbi.CustomerStore;
 import org.dataone.bookkeeper.jdbi.OrderStore;
-import org.dataone.bookkeeper.jdbi.ProductStore;
-import org.dataone.bookkeeper.jdbi.SubscriptionStore;
 import org.dataone.bookkeeper.security.DataONEAuthHelper;
 import org.jdbi.v3.core.Jdbi;
 
@@ -65,10 +60,10 @@ import javax.ws.rs.core.SecurityContext;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The entry point to the orders collection
@@ -84,17 +79,11 @@ public class OrdersResource extends BaseResource {
     /* The order store for database calls */
     private final OrderStore orderStore;
 
-    /* The product store for database calls */
-    private final ProductStore productStore;
-
-    /* The subscription store for database calls */
-    private final SubscriptionStore subscriptionStore;
-
     /* The customer store for database calls */
     private final CustomerStore customerStore;
 
-    /* A Jackson mapper for marshaling types */
-    private final ObjectMapper mapper = Jackson.newObjectMapper();
+    /* The in-memory product catalog, with the quota templates used to provision subscriptions */
+    private final ProductCatalog productCatalog;
 
     /* An instance of the DataONE authn and authz delegate */
     private final DataONEAuthHelper dataoneAuthHelper;
@@ -102,22 +91,33 @@ public class OrdersResource extends BaseResource {
     /**
      * Construct an order collection
      * @param database  the jdbi database access reference
+     * @param dataoneAuthHelper  the DataONE authn and authz delegate
+     * @param productCatalog  the in-memory product catalog
      */
-    public OrdersResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper) {
+    public OrdersResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper,
+                          ProductCatalog productCatalog) {
         this.orderStore = database.onDemand(OrderStore.class);
-        this.productStore = database.onDemand(ProductStore.class);
-        this.subscriptionStore = database.onDemand(SubscriptionStore.class);
         this.customerStore = database.onDemand(CustomerStore.class);
         this.dataoneAuthHelper = dataoneAuthHelper;
+        this.productCatalog = productCatalog;
     }
 
     /**
-     * List orders, optionally by subscriptionId or subject.
-     * Use start and count to get paginated results
+     * List orders, optionally by customerId or subject.
+     * Filter orders by customerId, or all orders for admins, by status and created
+     * range, and page through them with the after cursor: pass the next value of
+     * a page as the after value of the following request. Orders older than the
+     * retention period are archived, and only listed when history is requested.
+     * Orders listed by subject aren't paged or filtered.
      * @param start  the paging start index
      * @param count  the paging size count
-     * @param customerId  the subscriptionId
      * @param subject  the order subject
+     * @param customerId  the customer id
+     * @param status  the order status
+     * @param from  the earliest order creation date, inclusive, in seconds since the epoch
+     * @param to  the latest order creation date, exclusive, in seconds since the epoch
+     * @param after  the paging cursor, the next value of the previous page
+     * @param history  whether to include archived orders
      * @return orders  the order list
      */
     @Timed
@@ -129,14 +129,32 @@ public class OrdersResource extends BaseResource {
         @QueryParam("start") @DefaultValue("0") Integer start,
         @QueryParam("count") @DefaultValue("1000") Integer count,
         @QueryParam("subject") String subject,
-        @QueryParam("customerId") Integer customerId)
+        @QueryParam("customerId") Integer customerId,
+        @QueryParam("status") String status,
+        @QueryParam("from") Integer from,
+        @QueryParam("to") Integer to,
+        @QueryParam("after") @DefaultValue("0") Integer after,
+        @QueryParam("history") @DefaultValue("false") boolean history)
         throws WebApplicationException {
 
         Customer caller = (Customer) context.getUserPrincipal();
         boolean isAdmin = this.dataoneAuthHelper.isAdmin(caller.getSubject());
 
+        if ( count < 1 ) {
+            throw new WebApplicationException("The count must be positive.", Response.Status.BAD_REQUEST);
+        }
+
+        // Listing by subject isn't paged or filtered, so reject filters rather than ignore them
+        boolean bySubject = customerId == null && subject != null && ! subject.isEmpty();
+        if ( bySubject && (status != null || from != null || to != null || after != 0 || history) ) {
+            throw new WebApplicationException(
+                "Orders listed by subject can't be filtered by status, from, to, after, or history.",
+                Response.Status.BAD_REQUEST);
+        }
+
         List<Order> orders = new ArrayList<Order>();
         Customer existing;
+        boolean paged = false;
         try {
             if (customerId != null) {
                 if ( ! isAdmin ) {
@@ -146,8 +164,11 @@ public class OrdersResource extends BaseResource {
                         throw new Exception("Customer doesn't have access to this record.");
                     }
                 }
-                orders = orderStore.findOrdersByCustomerId(customerId);
-            } else if ( ! subject.isEmpty() ) {
+                orders = history ?
+                    orderStore.findOrdersWithHistory(customerId, status, from, to, after, count) :
+                    orderStore.findOrders(customerId, status, from, to, after, count);
+                paged = true;
+            } else if ( bySubject ) {
                 if ( ! isAdmin ) {
                     // Customer subjects must match
                     existing = this.customerStore.getCustomer(customerId);
@@ -158,16 +179,26 @@ public class OrdersResource extends BaseResource {
                 orders = orderStore.findOrdersBySubject(subject);
 
             } else if ( isAdmin ) {
-                // Allow admins to list all orders
-                orders = orderStore.listOrders();
+                // Allow admins to page through all orders
+                orders = history ?
+                    orderStore.findOrdersWithHistory(null, status, from, to, after, count) :
+                    orderStore.findOrders(null, status, from, to, after, count);
+                paged = true;
             }
         } catch (Exception e) {
             String message = "Couldn't list orders: " + e.getMessage();
             throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
         }
 
-        // TODO: Incorporate paging params - new OrderList(start, count, total, orders)
-        return new OrderList(orders);
+        OrderList orderList = new OrderList(orders);
+        if ( paged ) {
+            orderList.setCount(orders.size());
+            // A full page may have more orders after it
+            if ( orders.size() == count ) {
+                orderList.setNext(orders.get(orders.size() - 1).getId());
+            }
+        }
+        return orderList;
     }
 
     /**
@@ -189,11 +220,14 @@ public class OrdersResource extends BaseResource {
         try {
             order.setStatus("created");
             order.setCreated(new Integer((int) Instant.now().getEpochSecond()));
+            // Only record transitions the server made, not a client-supplied history
+            order.setStatusTransitions(null);
 
             // Update order item details from the listed product
+            Map<Integer, Product> products = resolveProducts(order.getItems());
             Product product = null;
             for (OrderItem item : order.getItems() ) {
-                product = productStore.getProduct(item.getParent());
+                product = products.get(item.getParent());
                 if ( product == null ) {
                     String message = "Couldn't find parent product for order item.";
                     throw new WebApplicationException(message, Response.Status.NOT_FOUND);
@@ -222,8 +256,9 @@ public class OrdersResource extends BaseResource {
     }
 
     /**
-     * Get the order given an id
+     * Get the order given an id, looking in the archive when history is requested
      * @param orderId  the order id
+     * @param history  whether to include archived orders
      * @return  the order for the id
      */
     @Timed
@@ -232,7 +267,8 @@ public class OrdersResource extends BaseResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{orderId}")
     public Order retrieve(@Context SecurityContext context,
-        @PathParam("orderId") @NotNull Integer orderId)
+        @PathParam("orderId") @NotNull Integer orderId,
+        @QueryParam("history") @DefaultValue("false") boolean history)
         throws WebApplicationException {
 
         Customer caller = (Customer) context.getUserPrincipal();
@@ -241,7 +277,7 @@ public class OrdersResource extends BaseResource {
         Order order = null;
         // Get the order from the store
         try {
-            order = orderStore.getOrder(orderId);
+            order = history ? orderStore.getOrderWithHistory(orderId) : orderStore.getOrder(orderId);
             if ( ! isAdmin ) {
                 // Allow customers to get their own order
                 if ( ! order.getCustomer().equals(caller.getId()) ) {
@@ -276,6 +312,7 @@ public class OrdersResource extends BaseResource {
 
         // Does the order exist?
         if ( existing == null ) {
+            checkNotArchived(order.getId());
             String message = "Couldn't find the order with id " + order.getId();
             throw new WebApplicationException(message, Response.Status.NOT_FOUND);
         }
@@ -303,9 +340,10 @@ public class OrdersResource extends BaseResource {
             order.setUpdated(new Integer((int) Instant.now().getEpochSecond()));
 
             // Update order item details from the listed product
+            Map<Integer, Product> products = resolveProducts(order.getItems());
             Product product = null;
             for (OrderItem item : order.getItems() ) {
-                product = productStore.getProduct(item.getParent());
+                product = products.get(item.getParent());
                 if ( product == null ) {
                     String message = "Couldn't find parent product for order item.";
                     throw new WebApplicationException(message, Response.Status.NOT_FOUND);
@@ -349,6 +387,8 @@ public class OrdersResource extends BaseResource {
             ).getEpochSecond()
             );
 
+        checkNotArchived(orderId);
+
         // Confirm a trial without payment
         // TODO: Pay the order through the Aventri callback proxy
         try {
@@ -366,15 +406,22 @@ public class OrdersResource extends BaseResource {
                 List<OrderItem> orderItems = order.getItems();
                 Customer customer = customerStore.getCustomer(order.getCustomer());
                 Integer productId = null;
+                List<Subscription> subscriptions = new ArrayList<Subscription>();
+                List<List<Quota>> quotas = new ArrayList<List<Quota>>();
+                // Load any products missing from the catalog in one query
+                resolveProducts(orderItems);
                 for (OrderItem item : orderItems) {
 
                     // For SKUs, subscribe customer to the service and set quotas
                     if ( item.getType().equals("sku") ) {
                         productId = item.getParent();
-                        Product product = productStore.getProduct(productId);
+                        ProductTemplate template = productCatalog.getTemplate(productId);
+                        if ( template == null ) {
+                            throw new Exception("The product " + productId + " doesn't exist.");
+                        }
                         Subscription subscription = new Subscription();
                         subscription.setObject("subscription");
-                        subscription.setProduct(product);
+                        subscription.setProduct(template.getProduct());
                         subscription.setStatus("trialing");
                         subscription.setCanceledAt(null);
                         subscription.setCollectionMethod("send_invoice");
@@ -385,45 +432,16 @@ public class OrdersResource extends BaseResource {
                         subscription.setTrialEnd(trialEndSecondsSinceEpoch);
                         subscription.setStartDate(trialEndSecondsSinceEpoch);
 
-                        // Translate the product's feature quota into a customer/subject quota
-                        Map<String, Quota> quotas = new LinkedHashMap<String, Quota>();
-                        Iterator<JsonNode> featuresIterator =
-                            (product.getMetadata().get("features")).elements();
-                        Quota quota = null;
-                        Quota existingQuota = null;
-                        Double newSoftLimit;
-                        Double newHardLimit;
-                        while ( featuresIterator.hasNext() ) {
-                            // Find quotas in each feature, combining equivalent quotas
-                            ObjectNode featureNode = (ObjectNode) featuresIterator.next();
-                            Feature feature = mapper.readValue(featureNode.toString(), Feature.class);
-                            quota = feature.getQuota();
-                            if ( quota != null ) {
-                                quota.setUsage(0.0);
-                                quota.setSubject(customer.getSubject());
-                                if ( ! quotas.containsKey(quota.getName()) ) {
-                                    // Add new quotas
-                                    quotas.put(quota.getName(), quota);
-                                } else {
-                                    // Combine quotas of the same name
-                                    existingQuota = quotas.get(quota.getName());
-                                    newSoftLimit = existingQuota.getSoftLimit() + quota.getSoftLimit();
-                                    quota.setSoftLimit(newSoftLimit);
-                                    newHardLimit = existingQuota.getHardLimit() + quota.getHardLimit();
-                                    quota.setHardLimit(newHardLimit);
-                                    quotas.put(quota.getName(), quota);
-                                }
-                            }
-                        }
-                        Integer subscriptionId =
-                            subscriptionStore.insertWithQuotas(subscription, quotas.values());
+                        // Translate the product's feature quotas into customer/subject quotas
+                        subscriptions.add(subscription);
+                        quotas.add(template.provision(customer.getSubject()));
                     }
 
                 }
                 order.setUpdated(new Integer((int) Instant.now().getEpochSecond()));
                 order.setStatus("paid");
-                // TODO: Decide if this call should be a transaction with the subscription/quota
-                orderStore.update(order);
+                // Insert the subscriptions and quotas and mark the order paid in one transaction
+                orderStore.pay(order, subscriptions, quotas);
             } else {
                 String message = "Couldn't find the order for order id " + orderId;
                 throw new WebApplicationException(message, Response.Status.NOT_FOUND);
@@ -437,6 +455,32 @@ public class OrdersResource extends BaseResource {
     }
 
 
+    /**
+     * Resolve the parent products of order items from the catalog, loading any
+     * missing products in one query
+     * @param items  the order items
+     * @return products  the parent products that exist, by product id
+     */
+    private Map<Integer, Product> resolveProducts(List<OrderItem> items) {
+        Set<Integer> productIds = new HashSet<Integer>();
+        for (OrderItem item : items) {
+            productIds.add(item.getParent());
+        }
+        return productCatalog.getProducts(productIds);
+    }
+
+    /**
+     * Reject changes to an archived order, which is read only
+     * @param orderId  the order id
+     * @throws WebApplicationException  a conflict if the order is archived
+     */
+    private void checkNotArchived(Integer orderId) throws WebApplicationException {
+        if ( orderStore.isArchived(orderId) ) {
+            String message = "The order with id " + orderId + " is archived, and can't be changed.";
+            throw new WebApplicationException(message, Response.Status.CONFLICT);
+        }
+    }
+
     /**
      * Delete the order
      * @param orderId  the order id
@@ -452,6 +496,7 @@ public class OrdersResource extends BaseResource {
         if (orderId == null) {
             throw new WebApplicationException(message, Response.Status.BAD_REQUEST);
         }
+        checkNotArchived(orderId);
         try {
             orderStore.delete(orderId);
         } catch (Exception e) {
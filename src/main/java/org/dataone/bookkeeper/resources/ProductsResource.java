@@ -26,6 +26,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dataone.bookkeeper.api.Product;
 import org.dataone.bookkeeper.api.ProductList;
+import org.dataone.bookkeeper.core.ProductCatalog;
+import org.dataone.bookkeeper.core.ProductResponseCache;
 import org.dataone.bookkeeper.jdbi.ProductStore;
 import org.dataone.bookkeeper.security.DataONEAuthHelper;
 import org.jdbi.v3.core.Jdbi;
@@ -36,6 +38,7 @@ import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -44,10 +47,11 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.time.Instant;
-import java.util.List;
 
 /**
  * The entry point to the products collection
@@ -63,51 +67,107 @@ public class ProductsResource extends BaseResource {
     /* The product store for database calls */
     private final ProductStore productStore;
 
+    /* How long clients and proxies may reuse a catalog listing without revalidating it */
+    private static final int CATALOG_MAX_AGE = 60;
+
+    /* The in-memory product catalog, written through on product writes */
+    private final ProductCatalog productCatalog;
+
+    /* The serialized catalog listings */
+    private final ProductResponseCache productResponses;
+
     /* An instance of the DataONE authn and authz delegate */
     private final DataONEAuthHelper dataoneAuthHelper;
 
     /**
      * Construct a product collection
      * @param database  the jdbi database access reference
+     * @param dataoneAuthHelper  the DataONE authn and authz delegate
+     * @param productCatalog  the in-memory product catalog
+     * @param productResponses  the serialized catalog listings
      */
-    public ProductsResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper) {
+    public ProductsResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper,
+                            ProductCatalog productCatalog, ProductResponseCache productResponses) {
         this.productStore = database.onDemand(ProductStore.class);
         this.dataoneAuthHelper = dataoneAuthHelper;
+        this.productCatalog = productCatalog;
+        this.productResponses = productResponses;
     }
 
     /**
      * List products, optionally by name, description, or active status.
-     * Use start and count to get paginated results
+     * Use start and count to get paginated results.
+     *
+     * Listings are served pre-serialized, gzipped when the client accepts it, with
+     * a strong ETag. A request whose If-None-Match has the current ETag gets 304.
      * @param start  the paging start index
      * @param count  the paging size count
      * @param name  the product name
-     * @param description  the product description
+     * @param description  the product description pattern, or search terms ranked by similarity
      * @param status  the product active status
-     * @return products  the product list
+     * @param ifNoneMatch  the ETags of listings the client already has
+     * @param acceptEncoding  the content codings the client accepts
+     * @return response  the product list, or 304 Not Modified
      */
     @Timed
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public ProductList listProducts(
+    public Response listProducts(
         @QueryParam("start") @DefaultValue("0") Integer start,
         @QueryParam("count") @DefaultValue("1000") Integer count,
         @QueryParam("name") String name,
         @QueryParam("description") String description,
-        @QueryParam("status") Boolean status) throws WebApplicationException {
+        @QueryParam("status") Boolean status,
+        @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) throws WebApplicationException {
 
-        List<Product> products;
+        // TODO: Incorporate paging params - new ProductList(start, count, total, products)
+        // Only the filter that applies distinguishes listings
+        ProductResponseCache.Rendered rendered;
         if (name != null) {
-            products = productStore.findProductsByName(name);
+            rendered = productResponses.get("name=" + name, catalog ->
+                new ProductList(catalog.findProductsByName(name)));
         } else if (description != null) {
-            products = productStore.findProductsByDescription(description);
+            rendered = productResponses.get("description=" + description, catalog ->
+                new ProductList(catalog.findProductsByDescription(description)));
         } else if (status != null) {
-            products = productStore.findProductsByActiveStatus(status);
+            rendered = productResponses.get("status=" + status, catalog ->
+                new ProductList(catalog.findProductsByActiveStatus(status)));
         } else {
-            products = productStore.listProducts();
+            rendered = productResponses.get("", catalog -> new ProductList(catalog.listProducts()));
         }
 
-        // TODO: Incorporate paging params - new ProductList(start, count, total, products)
-        return new ProductList(products);
+        boolean gzip = rendered.getGzipped() != null && acceptsGzip(acceptEncoding);
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(CATALOG_MAX_AGE);
+        Response.ResponseBuilder response;
+        if ( rendered.matches(ifNoneMatch) ) {
+            response = Response.notModified();
+        } else if ( gzip ) {
+            response = Response.ok(rendered.getGzipped()).header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        } else {
+            response = Response.ok(rendered.getBytes());
+        }
+        return response
+            .header(HttpHeaders.ETAG, rendered.getEtag(gzip))
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .cacheControl(cacheControl)
+            .build();
+    }
+
+    /* Determine if an Accept-Encoding header accepts gzip */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if ( acceptEncoding == null ) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ( "gzip".equalsIgnoreCase(parts[0].trim()) ) {
+                // A quality of zero refuses the coding
+                return parts.length < 2 || ! parts[1].trim().matches("q=0(\\.0{0,3})?");
+            }
+        }
+        return false;
     }
 
     /**
@@ -126,6 +186,7 @@ public class ProductsResource extends BaseResource {
             product.setCreated(new Integer((int) Instant.now().getEpochSecond()));
             Integer id = productStore.insert(product);
             product = productStore.getProduct(id);
+            productCatalog.put(product);
         } catch (Exception e) {
             String message = "Couldn't insert the product: " + e.getMessage();
             throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
@@ -148,7 +209,7 @@ public class ProductsResource extends BaseResource {
         Product product = null;
         // Get the product from the store
         try {
-            product = productStore.getProduct(productId);
+            product = productCatalog.getProduct(productId);
         } catch (Exception e) {
             String message = "Couldn't get the product: " + e.getMessage();
             throw new WebApplicationException(message, Response.Status.NOT_FOUND);
@@ -175,6 +236,7 @@ public class ProductsResource extends BaseResource {
 
             product.setCreated(existing.getCreated());
             productStore.update(product);
+            productCatalog.put(productStore.getProduct(product.getId()));
         } catch (Exception e) {
             String message = "Couldn't update the product: " + e.getMessage();
             throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
@@ -199,6 +261,7 @@ public class ProductsResource extends BaseResource {
         }
         try {
             productStore.delete(productId);
+            productCatalog.remove(productId);
         } catch (Exception e) {
             message = "Deleting the product with id " + productId + " failed: " + e.getMessage();
             log.error(message);
@@ -25,9 +25,18 @@ import com.codahale.metrics.annotation.Timed;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dataone.bookkeeper.api.Customer;
+import org.dataone.bookkeeper.api.EffectiveQuota;
+import org.dataone.bookkeeper.api.EffectiveQuotaList;
 import org.dataone.bookkeeper.api.Quota;
 import org.dataone.bookkeeper.api.QuotaList;
 import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.api.UsageRollup;
+import org.dataone.bookkeeper.api.UsageRollupList;
+import org.dataone.bookkeeper.core.QuotaCache;
+import org.dataone.bookkeeper.core.QuotaEvents;
+import org.dataone.bookkeeper.core.UsageCache;
+import org.dataone.bookkeeper.core.UsageHistory;
+import org.dataone.bookkeeper.core.UsageJournal;
 import org.dataone.bookkeeper.jdbi.QuotaStore;
 import org.dataone.bookkeeper.jdbi.UsageStore;
 import org.dataone.bookkeeper.security.DataONEAuthHelper;
@@ -53,9 +62,16 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -73,18 +89,41 @@ public class QuotasResource extends BaseResource {
     private final QuotaStore quotaStore;
     private final UsageStore usageStore;
 
+    /* The cache of quota snapshots by subject and id */
+    private final QuotaCache quotaCache;
+
+    /* The cache of usages by instance identifier and quota name */
+    private final UsageCache usageCache;
+
+    /* The publisher of quota threshold crossings */
+    private final QuotaEvents quotaEvents;
+
+    /* The journal of usage writes made while the database is unavailable, or null if disabled */
+    private final UsageJournal usageJournal;
+
     /* An instance of the DataONE authn and authz delegate */
     private final DataONEAuthHelper dataoneAuthHelper;
 
     /**
      * Construct a quota collection
      * @param database  the jdbi database access reference
+     * @param dataoneAuthHelper  the DataONE authn and authz delegate
+     * @param quotaCache  the quota snapshot cache
+     * @param usageCache  the usage cache
+     * @param quotaEvents  the publisher of quota threshold crossings
+     * @param usageJournal  the journal of usage writes made while the database is
+     *                      unavailable, or null to fail those writes
      */
-    public QuotasResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper) {
+    public QuotasResource(Jdbi database, DataONEAuthHelper dataoneAuthHelper,
+                          QuotaCache quotaCache, UsageCache usageCache,
+                          QuotaEvents quotaEvents, UsageJournal usageJournal) {
         this.quotaStore = database.onDemand(QuotaStore.class);
         this.usageStore = database.onDemand(UsageStore.class);
         this.dataoneAuthHelper = dataoneAuthHelper;
-
+        this.quotaCache = quotaCache;
+        this.usageCache = usageCache;
+        this.quotaEvents = quotaEvents;
+        this.usageJournal = usageJournal;
     }
 
     /**
@@ -127,7 +166,7 @@ public class QuotasResource extends BaseResource {
                 // Get quotas if the subject list is non-zero
                 if ( subjects.size() > 0 ) {
                     subjectsList = new ArrayList<String>(subjects);
-                    quotas = quotaStore.findQuotasBySubjects(subjectsList);
+                    quotas = quotaCache.findQuotasBySubjects(subjectsList);
                 }
             } else if (subscriptionId != null) {
 
@@ -150,7 +189,7 @@ public class QuotasResource extends BaseResource {
                     subjects.addAll(associatedSubjects);
                 }
                 subjectsList = new ArrayList<String>(subjects);
-                quotas = quotaStore.findQuotasBySubjects(subjectsList);
+                quotas = quotaCache.findQuotasBySubjects(subjectsList);
             }
         } catch (Exception e) {
             String message = "Couldn't list quotas: " + e.getMessage();
@@ -161,6 +200,81 @@ public class QuotasResource extends BaseResource {
         return new QuotaList(quotas);
     }
 
+    /**
+     * List effective quotas, totaling the quotas of each name across a set of subjects.
+     * Non-admins may total their own quotas and those of their associated subjects
+     * (groups and equivalent identities), which are all used when no subject is given.
+     * @param context  the security context of the authenticated user
+     * @param subjects  the quota subjects (repeatable and treated as a list)
+     * @param name  the quota name to total, or all quota names if not given
+     * @return effectiveQuotas  the effective quota list
+     * @throws WebApplicationException  a web app exception
+     */
+    @Timed
+    @GET
+    @PermitAll
+    @Path("effective")
+    @Produces(MediaType.APPLICATION_JSON)
+    public EffectiveQuotaList listEffectiveQuotas(
+        @Context SecurityContext context,
+        @QueryParam("subject") Set<String> subjects,
+        @QueryParam("name") String name) throws WebApplicationException {
+
+        // The calling user injected in the security context via authentication
+        Customer caller = (Customer) context.getUserPrincipal();
+        Set<String> effectiveSubjects = getPermittedSubjects(caller, subjects);
+
+        List<EffectiveQuota> effectiveQuotas = new ArrayList<EffectiveQuota>();
+        try {
+            if ( effectiveSubjects.size() > 0 ) {
+                effectiveQuotas = quotaStore.findEffectiveQuotasBySubjects(
+                    new ArrayList<String>(effectiveSubjects), name);
+            }
+        } catch (Exception e) {
+            String message = "Couldn't list effective quotas: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
+        }
+        return new EffectiveQuotaList(effectiveQuotas);
+    }
+
+    /**
+     * List the quotas projected to reach their hard limits soonest, for admins.
+     * Projections use each quota's growth rate as of its last usage change.
+     * @param context  the security context of the authenticated user
+     * @param within  the projection horizon in seconds, 30 days if not given
+     * @param count  the maximum number of quotas to list
+     * @return quotas  the quota list, soonest to exhaust first
+     * @throws WebApplicationException  a web app exception
+     */
+    @Timed
+    @GET
+    @PermitAll
+    @Path("exhausting")
+    @Produces(MediaType.APPLICATION_JSON)
+    public QuotaList listExhaustingQuotas(
+        @Context SecurityContext context,
+        @QueryParam("within") @DefaultValue("2592000") @Positive Integer within,
+        @QueryParam("count") @DefaultValue("100") @Positive Integer count) throws WebApplicationException {
+
+        // The calling user injected in the security context via authentication
+        Customer caller = (Customer) context.getUserPrincipal();
+        if ( ! this.dataoneAuthHelper.isAdmin(caller.getSubject()) ) {
+            throw new WebApplicationException(
+                caller.getSubject() + " doesn't have access to quota forecasts.",
+                Response.Status.FORBIDDEN);
+        }
+
+        List<Quota> quotas;
+        try {
+            long before = System.currentTimeMillis() / 1000 + within;
+            quotas = quotaStore.listExhaustingQuotas((int) Math.min(before, Integer.MAX_VALUE), count);
+        } catch (Exception e) {
+            String message = "Couldn't list exhausting quotas: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
+        }
+        return new QuotaList(quotas);
+    }
+
     /**
      * Create the given quota
      * @param quota  the quota to create
@@ -176,6 +290,7 @@ public class QuotasResource extends BaseResource {
         // Insert the quota after it is validated
         try {
             Integer id = quotaStore.insert(quota);
+            refreshChain(id);
             quota = quotaStore.getQuota(id);
         } catch (Exception e) {
             String message = "Couldn't insert the quota: " + e.getMessage();
@@ -204,7 +319,7 @@ public class QuotasResource extends BaseResource {
         Quota quota = null;
         // Get the quota from the store
         try {
-            quota = quotaStore.getQuota(quotaId);
+            quota = quotaCache.getQuota(quotaId);
 
             if ( this.dataoneAuthHelper.isAdmin(caller.getSubject()) ) {
                 return quota;
@@ -242,7 +357,15 @@ public class QuotasResource extends BaseResource {
         @NotNull @Valid Quota quota) throws WebApplicationException {
         // Update the quota after validation
         try {
+            // Invalidate the previous subject's snapshot too, in case the subject changed
+            Quota previous = quotaStore.getQuota(quota.getId());
+            quotaCache.invalidate(previous);
             quotaStore.update(quota);
+            // Re-parenting moves the quota's usage from its old ancestors to its new ones
+            if ( previous != null ) {
+                refreshChain(previous.getParentId());
+            }
+            refreshChain(quota.getId());
         } catch (Exception e) {
             String message = "Couldn't update the quota: " + e.getMessage();
             throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
@@ -268,7 +391,17 @@ public class QuotasResource extends BaseResource {
             throw new WebApplicationException(message, Response.Status.BAD_REQUEST);
         }
         try {
+            Quota quota = quotaStore.getQuota(quotaId);
+            List<Quota> children = quotaStore.findChildQuotas(quotaId);
             quotaStore.delete(quotaId);
+            quotaCache.invalidate(quota);
+            // Deleting releases the quota's usage from its ancestors and detaches its children
+            if ( quota != null ) {
+                refreshChain(quota.getParentId());
+            }
+            for (Quota child : children) {
+                quotaCache.refresh(child.getId());
+            }
         } catch (Exception e) {
             message = "Deleting the quota with id " + quotaId + " failed: " + e.getMessage();
             log.error(message);
@@ -279,17 +412,18 @@ public class QuotasResource extends BaseResource {
     }
 
     /**
-     * Check if the requested usage exceeds the quota soft limit for the given
-     * quota subject and quota name.  Administrators can use the submitterSubject
-     * as the calling subject for authorization, otherwise the authenticated subject is used.
+     * Check if the requested usage exceeds the quota hard limit for the given
+     * quota subject and quota name, or the hard limit of any ancestor quota
+     * pooling it. The whole chain is checked in one query.  Administrators can
+     * check any subject, otherwise the subject must be the caller or one of their
+     * associated subjects.
      *
      * @param context  the security context of the authenticated user
      * @param subject  the subject of the quota to be checked (person or group)
-     * @param submitterSubject  the subject of the calling user, used by admins (repositories)
      * @param quotaName  the name of the quota to be checked
-     * @param requestedUsage  the total requested usage to be checked
-     * @return quota  The quota object if the usage does not exceed the soft limit
-     * @throws WebApplicationException  an exception if the usage exceeds the hard limit
+     * @param requestedUsage  the additional usage requested, in the quota units
+     * @return quota  The quota object if the usage does not exceed a hard limit
+     * @throws WebApplicationException  an exception if the usage exceeds a hard limit
      */
     @Timed
     @GET
@@ -298,30 +432,51 @@ public class QuotasResource extends BaseResource {
     public Quota hasRemaining(
         @Context SecurityContext context,
         @QueryParam("subject") @NotNull String subject,
-        @QueryParam("submitterSubject") String submitterSubject,
-        @QueryParam("quotaName") @NotNull String quotaName,
-        @QueryParam("requestedUsage") @NotNull Double requestedUsage
+        @PathParam("quotaName") @NotNull String quotaName,
+        @QueryParam("requestedUsage") @NotNull Long requestedUsage
     ) throws WebApplicationException {
         Quota quota = null;
 
         // The calling user injected in the security context via authentication
         Customer caller = (Customer) context.getUserPrincipal();
-        boolean isAdmin = this.dataoneAuthHelper.isAdmin(caller.getSubject());
+        Set<String> subjects = new HashSet<String>();
+        subjects.add(subject);
+        if ( getPermittedSubjects(caller, subjects).isEmpty() ) {
+            throw new WebApplicationException(
+                caller.getSubject() + " is not associated with " + subject,
+                Response.Status.FORBIDDEN);
+        }
 
-        if ( isAdmin ) {
-            // TODO: Finish this
-        } else {
-            // TODO: Finish this
+        for (Quota subjectQuota : quotaCache.findQuotasBySubjects(subjects)) {
+            if ( quotaName.equals(subjectQuota.getName()) ) {
+                quota = subjectQuota;
+                break;
+            }
+        }
+        if ( quota == null ) {
+            throw new WebApplicationException(
+                "Couldn't find a " + quotaName + " quota for " + subject,
+                Response.Status.NOT_FOUND);
+        }
+
+        List<Quota> exceeded = quotaStore.findExceededQuotas(quota.getId(), requestedUsage);
+        if ( ! exceeded.isEmpty() ) {
+            Quota limiting = exceeded.get(0);
+            throw new WebApplicationException("The requested usage would exceed the hard limit of " +
+                limiting.getHardLimit() + " " + limiting.getUnit() + " of quota " + limiting.getId() +
+                " (" + limiting.getSubject() + ")", Response.Status.FORBIDDEN);
         }
         return quota;
     }
 
     /**
-     * Get the usage for a given instance identifier and quota type
+     * Get the usage for a given instance identifier and quota type, such as when a
+     * repository replaces or deletes an object.  Requires administrative authorization.
      * @param context  the security context of the authenticated user
      * @param instanceIdentifier  the instance identifier of the usage
      * @param quotaName  the name of the quota being used
      * @return usage  the usage object for the given instance identifier
+     * @throws WebApplicationException  if the usage isn't found or can't be read
      */
     @Timed
     @GET
@@ -329,38 +484,53 @@ public class QuotasResource extends BaseResource {
     @Path("{quotaName}/usage")
     public Usage getUsage(@Context SecurityContext context,
         @QueryParam("instanceId") @NotNull String instanceIdentifier,
-        @PathParam("quotaName") @NotNull String quotaName) {
+        @PathParam("quotaName") @NotNull String quotaName) throws WebApplicationException {
         Usage usage = null;
         // The calling user injected in the security context via authentication
         Customer caller = (Customer) context.getUserPrincipal();
         boolean isAdmin = this.dataoneAuthHelper.isAdmin(caller.getSubject());
 
-        if ( isAdmin ) {
-            // TODO: Finish this
-        } else {
-            // TODO: Finish this
-            // Throw an exception, this is an admin-only call
+        if ( ! isAdmin ) {
+            throw new WebApplicationException(
+                caller.getSubject() + " doesn't have access to get usages.",
+                Response.Status.FORBIDDEN);
+        }
+
+        try {
+            usage = usageCache.getUsage(instanceIdentifier, quotaName);
+        } catch (Exception e) {
+            String message = "Couldn't get the usage: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
+        }
+        if ( usage == null ) {
+            throw new WebApplicationException(
+                "Couldn't find a " + quotaName + " usage for " + instanceIdentifier,
+                Response.Status.NOT_FOUND);
         }
         return usage;
     }
 
     /**
-     * Update the usage of the given quota, adding or removing the usage row to the
+     * Update the usage of the given quota, adding or updating the usage row in the
      * usages table.  Requires administrative authorization.
      * @param context  the security context of the authenticated user
      * @param quotaId  the quota identifier
-     * @param usage  the used or gained quota amount in units of the given quota
-     * @return quota  the quota object with the updated usage
+     * @param usage  the usage of the instance, in units of the given quota. Usages
+     *               with an id update the existing row
+     * @return response  the quota object with the updated usage, or 202 Accepted with
+     *                   the last known quota if the database is unavailable, or earlier
+     *                   usages are still journaled, and the usage was journaled for replay
      * @throws WebApplicationException  if adjusting the quota fails
      */
     @Timed
     @PUT
     @PermitAll
+    @Consumes(MediaType.APPLICATION_JSON)
     @Path("{quotaId}/usage")
-    public Quota updateUsage(
+    public Response updateUsage(
         @Context SecurityContext context,
         @PathParam("quotaId") @NotNull @Positive Integer quotaId,
-        @NotNull Double usage
+        @NotNull @Valid Usage usage
         ) throws WebApplicationException {
         Quota quota = null;
 
@@ -368,12 +538,207 @@ public class QuotasResource extends BaseResource {
         Customer caller = (Customer) context.getUserPrincipal();
         boolean isAdmin = this.dataoneAuthHelper.isAdmin(caller.getSubject());
 
-        if ( isAdmin ) {
-            // TODO: Finish this
+        if ( ! isAdmin ) {
+            throw new WebApplicationException(
+                caller.getSubject() + " doesn't have access to update usages.",
+                Response.Status.FORBIDDEN);
+        }
+
+        try {
+            usage.setQuotaId(quotaId);
+            if ( usage.getStatus() == null ) {
+                usage.setStatus("active");
+            }
+            // Keep writes in order by queueing behind journaled usages until they are replayed
+            if ( usageJournal != null && usageJournal.getDepth() > 0 ) {
+                return journalUsage(usage);
+            }
+            // The quota and ancestor totals before the write, used to detect threshold
+            // crossings. Read them from the database, since cached snapshots may be
+            // missing or stale
+            Map<Integer, Quota> previous = new HashMap<Integer, Quota>();
+            for (Quota pooled : quotaStore.findQuotaChain(quotaId)) {
+                previous.put(pooled.getId(), pooled);
+            }
+            if ( usage.getId() == null ) {
+                usageStore.insert(usage);
+            } else {
+                // The update may change the instance, so invalidate the previous one too
+                Usage existing = usageStore.getUsage(usage.getId());
+                if ( usageStore.update(usage) == null ) {
+                    throw new Exception("The usage " + usage.getId() +
+                        " doesn't exist for quota " + quotaId);
+                }
+                usageCache.invalidate(existing);
+            }
+            usageCache.invalidate(usage);
+            // The usage triggers have updated the totals of the quota and its
+            // ancestors, so refresh their snapshots
+            for (Quota charged : quotaStore.findQuotaChain(quotaId)) {
+                if ( charged.getId().equals(quotaId) ) {
+                    quota = charged;
+                }
+                quotaCache.refresh(charged.getId());
+                quotaEvents.usageChanged(previous.get(charged.getId()), charged);
+            }
+        } catch (Exception e) {
+            if ( usageJournal != null && UsageJournal.isDatabaseUnavailable(e) ) {
+                return journalUsage(usage);
+            }
+            String message = "Couldn't update the usage: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
+        }
+        return Response.ok(quota).build();
+    }
+
+    /**
+     * Refresh the cached snapshots of a quota and its ancestors, whose usage
+     * totals the usage triggers may have changed
+     * @param quotaId  the quota identifier, or null for no quota
+     */
+    private void refreshChain(Integer quotaId) {
+        if ( quotaId == null ) {
+            return;
+        }
+        for (Quota charged : quotaStore.findQuotaChain(quotaId)) {
+            quotaCache.refresh(charged.getId());
+        }
+    }
+
+    /**
+     * Journal a usage for replay once the database is available again
+     * @param usage  the usage to journal
+     * @return response  202 Accepted with the last known quota, if cached
+     * @throws WebApplicationException  if the usage can't be journaled
+     */
+    private Response journalUsage(Usage usage) throws WebApplicationException {
+        if ( usage.getCreated() == null ) {
+            usage.setCreated((int) (System.currentTimeMillis() / 1000));
+        }
+        try {
+            usageJournal.append(usage);
+        } catch (IOException e) {
+            String message = "Couldn't update or journal the usage: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.SERVICE_UNAVAILABLE);
+        }
+        log.warn("Journaled a usage for quota " + usage.getQuotaId() +
+            " while the database is unavailable or earlier usages await replay.");
+        return Response.accepted(quotaCache.getQuotaIfPresent(usage.getQuotaId())).build();
+    }
+
+    /**
+     * Get the usage history of a quota from its daily or monthly rollups
+     * @param quotaId  the quota id
+     * @param interval  the rollup interval, either day or month
+     * @param from  the start of the history, in seconds since the epoch (defaults to a year ago)
+     * @param to  the end of the history, in seconds since the epoch (defaults to now)
+     * @param points  the maximum number of points to return, merging adjacent buckets
+     * @return rollups  the usage rollups, oldest first
+     */
+    @Timed
+    @GET
+    @PermitAll
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("{quotaId}/usage/history")
+    public UsageRollupList getUsageHistory(
+        @Context SecurityContext context,
+        @PathParam("quotaId") @NotNull Integer quotaId,
+        @QueryParam("interval") @DefaultValue("day") String interval,
+        @QueryParam("from") Integer from,
+        @QueryParam("to") Integer to,
+        @QueryParam("points") @DefaultValue("400") @Positive Integer points)
+        throws WebApplicationException {
+
+        if ( ! "day".equals(interval) && ! "month".equals(interval) ) {
+            throw new WebApplicationException(
+                "The interval must be either day or month.", Response.Status.BAD_REQUEST);
+        }
+        if ( to == null ) {
+            to = (int) Instant.now().getEpochSecond();
+        }
+        if ( from == null ) {
+            from = (int) Instant.ofEpochSecond(to).minus(365, ChronoUnit.DAYS).getEpochSecond();
+        }
+
+        // Ensures the quota exists and the caller may see it
+        retrieve(context, quotaId);
+
+        List<UsageRollup> rollups;
+        try {
+            if ( "month".equals(interval) ) {
+                rollups = usageStore.findMonthlyRollups(quotaId, from, to);
+            } else {
+                rollups = usageStore.findDailyRollups(quotaId, from, to);
+            }
+            for (UsageRollup rollup : rollups) {
+                rollup.setInterval(interval);
+            }
+        } catch (Exception e) {
+            String message = "Couldn't get the usage history: " + e.getMessage();
+            throw new WebApplicationException(message, Response.Status.EXPECTATION_FAILED);
+        }
+        return new UsageRollupList(UsageHistory.downsample(rollups, points));
+    }
+
+    /**
+     * Subscribe to a server-sent event stream of quota threshold crossings, such as
+     * a quota usage reaching 80% of its hard limit, its soft limit, or its hard limit.
+     * Non-admins receive the events of their own quotas and those of their associated
+     * subjects, which are all used when no subject is given. Admins receive the events
+     * of the given subjects, or of all subjects if none are given.
+     * @param context  the security context of the authenticated user
+     * @param subjects  the quota subjects (repeatable and treated as a list)
+     * @param eventSink  the event stream of the connection
+     * @param sse  the SSE context used to build events
+     */
+    @GET
+    @PermitAll
+    @Path("events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribeEvents(
+        @Context SecurityContext context,
+        @QueryParam("subject") Set<String> subjects,
+        @Context SseEventSink eventSink,
+        @Context Sse sse) {
+
+        // The calling user injected in the security context via authentication
+        Customer caller = (Customer) context.getUserPrincipal();
+        boolean isAdmin = this.dataoneAuthHelper.isAdmin(caller.getSubject());
+
+        Set<String> permittedSubjects = null;
+        if ( ! isAdmin || (subjects != null && subjects.size() > 0) ) {
+            permittedSubjects = getPermittedSubjects(caller, subjects);
+        }
+        quotaEvents.subscribe(eventSink, sse, permittedSubjects);
+    }
+
+    /**
+     * Get the subjects a caller may see quota information for. Admins may see the
+     * given subjects. Non-admins may see themselves and their associated subjects
+     * (groups and equivalent identities) among the given subjects. Without given
+     * subjects, the caller and all of their associated subjects are used.
+     * @param caller  the calling customer
+     * @param subjects  the requested subjects, or null
+     * @return permittedSubjects  the subjects the caller may see
+     */
+    private Set<String> getPermittedSubjects(Customer caller, Set<String> subjects) {
+        Set<String> permittedSubjects = new HashSet<String>();
+        if ( subjects != null && subjects.size() > 0 ) {
+            if ( this.dataoneAuthHelper.isAdmin(caller.getSubject()) ) {
+                permittedSubjects.addAll(subjects);
+            } else {
+                // Filter out non-associated subjects
+                if ( subjects.contains(caller.getSubject()) ) {
+                    permittedSubjects.add(caller.getSubject());
+                }
+                permittedSubjects.addAll(
+                    this.dataoneAuthHelper.getAssociatedSubjects(caller, subjects));
+            }
         } else {
-            // TODO: Finish this
-            // Throw an exception, this is an admin-only call
+            // Fall back to the caller and all of their associated subjects
+            permittedSubjects.add(caller.getSubject());
+            permittedSubjects.addAll(this.dataoneAuthHelper.getAssociatedSubjects(caller));
         }
-        return quota;
+        return permittedSubjects;
     }
 }
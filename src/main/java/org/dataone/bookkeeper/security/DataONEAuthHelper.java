@@ -347,6 +347,28 @@ public class DataONEAuthHelper {
         return getConfiguration().getAdminSubjects().contains(subject);
     }
 
+    /**
+     * For a given customer, return all associated subjects from the customer subjectInfo,
+     * being the groups they are a member of and their equivalent identities
+     * @param customer  the calling customer
+     * @return subjects the list of subjects they are associated with
+     */
+    public Set<String> getAssociatedSubjects(Customer customer) {
+
+        SubjectInfo subjectInfo = customer.getSubjectInfo();
+        Set<String> associatedSubjects = new HashSet<String>(); // no dupes with a Set
+
+        if ( subjectInfo != null ) {
+            for (Group group : subjectInfo.getGroupList()) {
+                associatedSubjects.add(group.getSubject().getValue());
+            }
+            for (Person person : subjectInfo.getPersonList()) {
+                associatedSubjects.add(person.getSubject().getValue());
+            }
+        }
+        return associatedSubjects;
+    }
+
     /**
      * For a given customer, return a filtered subject list with only associated subjects
      *
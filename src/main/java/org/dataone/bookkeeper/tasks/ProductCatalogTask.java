@@ -0,0 +1,63 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.tasks;
+
+import io.dropwizard.servlets.tasks.Task;
+import org.dataone.bookkeeper.core.ProductCatalog;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An admin task that reloads the product catalog after out-of-band database edits.
+ *
+ * POST /admin/tasks/product-catalog reloads the catalog and reports its new
+ * version and size.
+ */
+public class ProductCatalogTask extends Task {
+
+    /* The product catalog to reload */
+    private final ProductCatalog productCatalog;
+
+    /**
+     * Construct a product catalog task
+     * @param productCatalog  the product catalog
+     */
+    public ProductCatalogTask(ProductCatalog productCatalog) {
+        super("product-catalog");
+        this.productCatalog = productCatalog;
+    }
+
+    /**
+     * Reload the catalog and report its version and size
+     * @param parameters  the task parameters
+     * @param output  the task response writer
+     */
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        long version = this.productCatalog.refresh();
+        output.println("version: " + version);
+        output.println("products: " + this.productCatalog.listProducts().size());
+        output.flush();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.tasks;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.dropwizard.servlets.tasks.Task;
+import org.dataone.bookkeeper.core.QuotaCache;
+import org.dataone.bookkeeper.core.UsageCache;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An admin task that reports quota and usage cache statistics, and optionally invalidates entries.
+ *
+ * POST /admin/tasks/quota-cache reports the statistics.  Add one or more
+ * subject=... parameters to invalidate those subjects, or invalidate=all to
+ * clear both caches after out-of-band database edits.
+ */
+public class QuotaCacheTask extends Task {
+
+    /* The quota cache to report on */
+    private final QuotaCache quotaCache;
+
+    /* The usage cache to report on */
+    private final UsageCache usageCache;
+
+    /**
+     * Construct a quota cache task
+     * @param quotaCache  the quota cache
+     * @param usageCache  the usage cache
+     */
+    public QuotaCacheTask(QuotaCache quotaCache, UsageCache usageCache) {
+        super("quota-cache");
+        this.quotaCache = quotaCache;
+        this.usageCache = usageCache;
+    }
+
+    /**
+     * Report the cache statistics, invalidating entries first if requested
+     * @param parameters  the task parameters
+     * @param output  the task response writer
+     */
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        List<String> invalidate = parameters.get("invalidate");
+        if ( invalidate != null && invalidate.contains("all") ) {
+            this.quotaCache.invalidateAll();
+            this.usageCache.invalidateAll();
+            output.println("Invalidated all quota and usage cache entries.");
+        }
+        List<String> subjects = parameters.get("subject");
+        if ( subjects != null ) {
+            for (String subject : subjects) {
+                this.quotaCache.invalidateSubject(subject);
+                output.println("Invalidated quota cache entries for " + subject);
+            }
+        }
+        print(output, "subjects", this.quotaCache.getSubjectCount(), this.quotaCache.getSubjectStats());
+        print(output, "quotas", this.quotaCache.getQuotaCount(), this.quotaCache.getQuotaStats());
+        print(output, "usages", this.usageCache.getCount(), this.usageCache.getStats());
+        output.flush();
+    }
+
+    /* Print the statistics of one of the caches */
+    private void print(PrintWriter output, String name, long size, CacheStats stats) {
+        output.println(name + ".size: " + size);
+        output.println(name + ".requests: " + stats.requestCount());
+        output.println(name + ".hits: " + stats.hitCount());
+        output.println(name + ".misses: " + stats.missCount());
+        output.println(name + ".hitRate: " + stats.hitRate());
+        output.println(name + ".loads: " + stats.loadCount());
+        output.println(name + ".averageLoadPenaltyNanos: " + stats.averageLoadPenalty());
+        output.println(name + ".evictions: " + stats.evictionCount());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.tasks;
+
+import io.dropwizard.servlets.tasks.Task;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.core.QuotaCache;
+import org.dataone.bookkeeper.core.UsageCache;
+import org.dataone.bookkeeper.core.UsageInventory;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An admin task that reconciles a quota's usages against a storage inventory file.
+ *
+ * POST /admin/tasks/usage-inventory?quotaId=...&file=... streams the inventory
+ * from the server's local disk. Add dryRun=true to report the changes without
+ * writing them, and format=csv or format=ndjson when the file extension doesn't
+ * say. batchSize and sortBufferSize tune the batch and in-memory sort run sizes.
+ */
+public class UsageInventoryTask extends Task {
+
+    /* The usage store to reconcile */
+    private final UsageStore usageStore;
+
+    /* The quota store used to refresh the reconciled quota */
+    private final QuotaStore quotaStore;
+
+    /* The quota cache holding the reconciled quota */
+    private final QuotaCache quotaCache;
+
+    /* The usage cache holding reconciled usages */
+    private final UsageCache usageCache;
+
+    /**
+     * Construct a usage inventory task
+     * @param usageStore  the usage store
+     * @param quotaStore  the quota store
+     * @param quotaCache  the quota cache
+     * @param usageCache  the usage cache
+     */
+    public UsageInventoryTask(UsageStore usageStore, QuotaStore quotaStore,
+                              QuotaCache quotaCache, UsageCache usageCache) {
+        super("usage-inventory");
+        this.usageStore = usageStore;
+        this.quotaStore = quotaStore;
+        this.quotaCache = quotaCache;
+        this.usageCache = usageCache;
+    }
+
+    /**
+     * Reconcile the quota's usages with the inventory and report the counts
+     * @param parameters  the task parameters
+     * @param output  the task response writer
+     * @throws Exception  if the inventory can't be read or parsed
+     */
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) throws Exception {
+        String quotaIdParameter = getParameter(parameters, "quotaId");
+        String file = getParameter(parameters, "file");
+        if ( quotaIdParameter == null || file == null ) {
+            output.println("The quotaId and file parameters are required.");
+            return;
+        }
+        Integer quotaId = Integer.valueOf(quotaIdParameter);
+        Quota quota = this.quotaStore.getQuota(quotaId);
+        if ( quota == null ) {
+            output.println("The quota " + quotaId + " doesn't exist.");
+            return;
+        }
+        Path inventory = Paths.get(file);
+        if ( ! Files.isReadable(inventory) ) {
+            output.println("The inventory file " + file + " can't be read.");
+            return;
+        }
+        String format = getParameter(parameters, "format");
+        boolean dryRun = Boolean.parseBoolean(getParameter(parameters, "dryRun"));
+        String batchSize = getParameter(parameters, "batchSize");
+        String sortBufferSize = getParameter(parameters, "sortBufferSize");
+
+        UsageInventory usageInventory = new UsageInventory(this.usageStore,
+            sortBufferSize == null ? UsageInventory.DEFAULT_SORT_BUFFER_SIZE : Integer.parseInt(sortBufferSize),
+            batchSize == null ? UsageInventory.DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize));
+        long started = System.currentTimeMillis();
+        UsageInventory.Result result = usageInventory.reconcile(quotaId, inventory,
+            format == null ? UsageInventory.Format.of(inventory) : UsageInventory.Format.valueOf(format.toUpperCase()),
+            dryRun);
+        if ( ! dryRun ) {
+            this.quotaCache.refresh(quotaId);
+            this.usageCache.invalidateAll();
+        }
+
+        output.println((dryRun ? "Dry run of quota " : "Reconciled quota ") + quotaId +
+            " against " + file + " in " + (System.currentTimeMillis() - started) + "ms");
+        output.println("read: " + result.getRead());
+        output.println("duplicates: " + result.getDuplicates());
+        output.println("matched: " + result.getMatched());
+        output.println("inserted: " + result.getInserted());
+        output.println("updated: " + result.getUpdated());
+        output.println("archived: " + result.getArchived());
+        output.println("compacted: " + result.getCompacted());
+        output.flush();
+    }
+
+    /* Get the first value of a task parameter, or null */
+    private String getParameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,6 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Index quotas by subject and name so effective quotas can be totaled
+--- for a set of subjects with a single index scan
+CREATE INDEX IF NOT EXISTS quotas_subject_name_idx ON quotas USING btree(subject, name);
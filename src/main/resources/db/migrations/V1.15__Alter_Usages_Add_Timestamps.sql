@@ -0,0 +1,9 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Timestamp usage events so they can be rolled up over time
+ALTER TABLE usages ADD COLUMN created timestamp with time zone DEFAULT now();
+ALTER TABLE usages ADD COLUMN updated timestamp with time zone DEFAULT now();
+
+COMMENT ON COLUMN usages.created IS 'The timestamp when the usage was created.';
+COMMENT ON COLUMN usages.updated IS 'The timestamp when the usage was last updated.';
@@ -0,0 +1,40 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the daily usage rollups table
+CREATE TABLE IF NOT EXISTS usage_daily_rollups (
+    quotaId integer NOT NULL,
+    day date NOT NULL,
+    quantity double precision NOT NULL,
+    events integer NOT NULL,
+    PRIMARY KEY (quotaId, day)
+);
+
+ALTER TABLE usage_daily_rollups
+    ADD CONSTRAINT usage_daily_rollups_quotas_id_fk
+    FOREIGN KEY (quotaId) REFERENCES quotas (id) ON DELETE CASCADE;
+
+COMMENT ON TABLE  usage_daily_rollups IS 'The net change in usage of each quota per UTC day.';
+COMMENT ON COLUMN usage_daily_rollups.quotaId IS 'The quota identifier.';
+COMMENT ON COLUMN usage_daily_rollups.day IS 'The UTC day of the bucket.';
+COMMENT ON COLUMN usage_daily_rollups.quantity IS 'The net change in usage during the day, in the quota units.';
+COMMENT ON COLUMN usage_daily_rollups.events IS 'The number of usage events during the day.';
+
+--- Create the monthly usage rollups table
+CREATE TABLE IF NOT EXISTS usage_monthly_rollups (
+    quotaId integer NOT NULL,
+    month date NOT NULL,
+    quantity double precision NOT NULL,
+    events integer NOT NULL,
+    PRIMARY KEY (quotaId, month)
+);
+
+ALTER TABLE usage_monthly_rollups
+    ADD CONSTRAINT usage_monthly_rollups_quotas_id_fk
+    FOREIGN KEY (quotaId) REFERENCES quotas (id) ON DELETE CASCADE;
+
+COMMENT ON TABLE  usage_monthly_rollups IS 'The net change in usage of each quota per UTC month.';
+COMMENT ON COLUMN usage_monthly_rollups.quotaId IS 'The quota identifier.';
+COMMENT ON COLUMN usage_monthly_rollups.month IS 'The first UTC day of the month of the bucket.';
+COMMENT ON COLUMN usage_monthly_rollups.quantity IS 'The net change in usage during the month, in the quota units.';
+COMMENT ON COLUMN usage_monthly_rollups.events IS 'The number of usage events during the month.';
@@ -0,0 +1,60 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the function adding a usage change to the daily and monthly rollups
+CREATE OR REPLACE FUNCTION add_usage_rollup(
+    rollupQuotaId integer, delta double precision, changed timestamp with time zone)
+    RETURNS void
+    AS $add_usage_rollup$
+    BEGIN
+        INSERT INTO usage_daily_rollups AS r (quotaId, day, quantity, events)
+            VALUES (rollupQuotaId, (changed AT TIME ZONE 'UTC')::date, delta, 1)
+            ON CONFLICT (quotaId, day) DO UPDATE
+            SET quantity = r.quantity + EXCLUDED.quantity, events = r.events + 1;
+
+        INSERT INTO usage_monthly_rollups AS r (quotaId, month, quantity, events)
+            VALUES (rollupQuotaId, date_trunc('month', changed AT TIME ZONE 'UTC')::date, delta, 1)
+            ON CONFLICT (quotaId, month) DO UPDATE
+            SET quantity = r.quantity + EXCLUDED.quantity, events = r.events + 1;
+    END;
+    $add_usage_rollup$
+    LANGUAGE plpgsql;
+
+--- Create the function rolling up usage inserts, updates, and deletes
+CREATE OR REPLACE FUNCTION rollup_usage()
+    RETURNS trigger
+    AS $rollup_usage$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity, COALESCE(NEW.created, now()));
+            RETURN NEW;
+        ELSIF (TG_OP = 'UPDATE') THEN
+            IF NEW.quotaId = OLD.quotaId THEN
+                IF NEW.quantity <> OLD.quantity THEN
+                    PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity - OLD.quantity, COALESCE(NEW.updated, now()));
+                END IF;
+            ELSE
+                -- The usage moved, so remove it from the old quota and add it to the new one
+                PERFORM add_usage_rollup(OLD.quotaId, -OLD.quantity, COALESCE(NEW.updated, now()));
+                PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity, COALESCE(NEW.updated, now()));
+            END IF;
+            RETURN NEW;
+        ELSE
+            -- Skip usages deleted along with their quota
+            IF EXISTS (SELECT 1 FROM quotas WHERE id = OLD.quotaId) THEN
+                PERFORM add_usage_rollup(OLD.quotaId, -OLD.quantity, now());
+            END IF;
+            RETURN OLD;
+        END IF;
+    END;
+    $rollup_usage$
+    LANGUAGE plpgsql;
+
+--- Create the usage rollup trigger
+DROP TRIGGER IF EXISTS rollup_usage_on_insert_update_or_delete ON usages;
+CREATE TRIGGER rollup_usage_on_insert_update_or_delete AFTER INSERT OR UPDATE OR DELETE ON usages
+    FOR EACH ROW
+        EXECUTE PROCEDURE rollup_usage();
+
+--- Seed the rollups with the existing usages
+SELECT add_usage_rollup(u.quotaId, u.quantity, u.created) FROM usages u ORDER BY u.id;
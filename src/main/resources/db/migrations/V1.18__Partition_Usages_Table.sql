@@ -0,0 +1,127 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Hash partition the usages table by quotaId. Each partition keeps its own
+--- small indexes and is vacuumed independently, and lookups by quotaId only
+--- touch one partition. Hash partitioning needs PostgreSQL 11 or later, so
+--- older servers keep the unpartitioned table.
+DO $partition_usages$
+    DECLARE
+        remainder integer;
+    BEGIN
+        IF current_setting('server_version_num')::integer < 110000 THEN
+            RAISE NOTICE 'Hash partitioning needs PostgreSQL 11, leaving usages unpartitioned';
+            RETURN;
+        END IF;
+
+        ALTER TABLE usages RENAME TO usages_unpartitioned;
+        ALTER TABLE usages_unpartitioned RENAME CONSTRAINT usages_pkey TO usages_unpartitioned_pkey;
+        ALTER TABLE usages_unpartitioned
+            RENAME CONSTRAINT usages_quotas_id_fk TO usages_unpartitioned_quotas_id_fk;
+        ALTER INDEX usages_quotaId_idx RENAME TO usages_unpartitioned_quotaId_idx;
+        ALTER INDEX usages_instanceId_idx RENAME TO usages_unpartitioned_instanceId_idx;
+
+        --- The partition key must be part of the primary key
+        CREATE TABLE usages (
+            id integer NOT NULL DEFAULT nextval('usages_id_seq'),
+            object text NOT NULL,
+            quotaId integer NOT NULL,
+            instanceId text NOT NULL,
+            quantity double precision NOT NULL,
+            status text,
+            created timestamp with time zone DEFAULT now(),
+            updated timestamp with time zone DEFAULT now(),
+            PRIMARY KEY (quotaId, id)
+        ) PARTITION BY HASH (quotaId);
+
+        FOR remainder IN 0..15 LOOP
+            EXECUTE format(
+                'CREATE TABLE usages_p%s PARTITION OF usages FOR VALUES WITH (MODULUS 16, REMAINDER %s)',
+                remainder, remainder);
+        END LOOP;
+
+        --- Lookups by quotaId use the leading column of the primary key
+        CREATE INDEX usages_id_idx ON usages USING btree(id);
+        CREATE INDEX usages_instanceId_idx ON usages USING btree(instanceId);
+
+        ALTER TABLE usages
+            ADD CONSTRAINT usages_quotas_id_fk
+            FOREIGN KEY (quotaId) REFERENCES quotas (id) ON DELETE CASCADE;
+
+        --- Copy the rows before the triggers exist so quotas and rollups are unchanged
+        INSERT INTO usages (id, object, quotaId, instanceId, quantity, status, created, updated)
+            SELECT id, object, quotaId, instanceId, quantity, status, created, updated
+            FROM usages_unpartitioned;
+
+        ALTER SEQUENCE usages_id_seq OWNED BY usages.id;
+        DROP TABLE usages_unpartitioned;
+
+        COMMENT ON TABLE  usages IS 'Usages records each instance a portion of a quota is used, hash partitioned by quotaId.';
+        COMMENT ON COLUMN usages.id IS 'The unique usage identifier.';
+        COMMENT ON COLUMN usages.object IS 'The serialized object type, set to "usage".';
+        COMMENT ON COLUMN usages.quotaId IS 'The quota identifier, and the partition key.';
+        COMMENT ON COLUMN usages.instanceId IS 'The instance identifier using a portion of the quota.';
+        COMMENT ON COLUMN usages.quantity IS 'The quantity used by the instance, in the quota units.';
+        COMMENT ON COLUMN usages.status IS 'The status of the usage, active or archived.';
+        COMMENT ON COLUMN usages.created IS 'The timestamp when the usage was created.';
+        COMMENT ON COLUMN usages.updated IS 'The timestamp when the usage was last updated.';
+    END;
+$partition_usages$;
+
+--- Replace the quota usage triggers, which summed the whole usages table on
+--- every write, with one that applies each change to its quota incrementally
+DROP TRIGGER IF EXISTS update_quotas_usage_on_insert_or_update ON usages;
+DROP TRIGGER IF EXISTS update_quotas_usage_on_delete ON usages;
+DROP FUNCTION IF EXISTS update_quota_usage_on_insert_or_update();
+DROP FUNCTION IF EXISTS update_quota_usage_on_delete();
+
+CREATE OR REPLACE FUNCTION update_quota_usage()
+    RETURNS trigger
+    AS $update_quota_usage$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity
+                WHERE id = NEW.quotaId;
+            RETURN NEW;
+        ELSIF (TG_OP = 'UPDATE') THEN
+            IF NEW.quotaId = OLD.quotaId THEN
+                IF NEW.quantity <> OLD.quantity THEN
+                    UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity - OLD.quantity
+                        WHERE id = NEW.quotaId;
+                END IF;
+            ELSE
+                UPDATE quotas SET usage = COALESCE(usage, 0) - OLD.quantity
+                    WHERE id = OLD.quotaId;
+                UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity
+                    WHERE id = NEW.quotaId;
+            END IF;
+            RETURN NEW;
+        ELSE
+            UPDATE quotas SET usage = COALESCE(usage, 0) - OLD.quantity
+                WHERE id = OLD.quotaId;
+            RETURN OLD;
+        END IF;
+    END;
+    $update_quota_usage$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS update_quota_usage_on_insert_update_or_delete ON usages;
+CREATE TRIGGER update_quota_usage_on_insert_update_or_delete AFTER INSERT OR UPDATE OR DELETE ON usages
+    FOR EACH ROW
+        EXECUTE PROCEDURE update_quota_usage();
+
+--- Recreate the rollup trigger, which a partitioned usages table doesn't have yet
+DROP TRIGGER IF EXISTS rollup_usage_on_insert_update_or_delete ON usages;
+CREATE TRIGGER rollup_usage_on_insert_update_or_delete AFTER INSERT OR UPDATE OR DELETE ON usages
+    FOR EACH ROW
+        EXECUTE PROCEDURE rollup_usage();
+
+--- Correct the quota usages the summing triggers computed across all quotas,
+--- including quotas whose usages were all deleted. Quotas the triggers never
+--- charged have no usage, and keep none.
+UPDATE quotas q SET usage = COALESCE(totals.usage, 0)
+    FROM quotas a
+    LEFT JOIN (SELECT u.quotaId, SUM(u.quantity) AS usage FROM usages u GROUP BY u.quotaId) totals
+        ON totals.quotaId = a.id
+    WHERE q.id = a.id
+    AND (q.usage IS NOT NULL OR totals.usage IS NOT NULL);
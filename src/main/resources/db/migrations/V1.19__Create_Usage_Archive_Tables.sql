@@ -0,0 +1,121 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the cold history table of compacted, archived usages
+CREATE TABLE IF NOT EXISTS usages_archive (
+    id integer NOT NULL,
+    object text NOT NULL,
+    quotaId integer NOT NULL,
+    instanceId text NOT NULL,
+    quantity double precision NOT NULL,
+    status text,
+    created timestamp with time zone,
+    updated timestamp with time zone,
+    archived timestamp with time zone NOT NULL DEFAULT now(),
+    PRIMARY KEY (quotaId, id)
+);
+
+ALTER TABLE usages_archive
+    ADD CONSTRAINT usages_archive_quotas_id_fk
+    FOREIGN KEY (quotaId) REFERENCES quotas (id) ON DELETE CASCADE;
+
+CREATE INDEX IF NOT EXISTS usages_archive_instanceId_idx ON usages_archive USING btree(instanceId);
+
+COMMENT ON TABLE  usages_archive IS 'Archived usages moved out of the usages table by compaction.';
+COMMENT ON COLUMN usages_archive.id IS 'The usage identifier.';
+COMMENT ON COLUMN usages_archive.object IS 'The serialized object type, set to "usage".';
+COMMENT ON COLUMN usages_archive.quotaId IS 'The quota identifier.';
+COMMENT ON COLUMN usages_archive.instanceId IS 'The instance identifier using a portion of the quota.';
+COMMENT ON COLUMN usages_archive.quantity IS 'The quantity used by the instance, in the quota units.';
+COMMENT ON COLUMN usages_archive.status IS 'The status of the usage when compacted, archived.';
+COMMENT ON COLUMN usages_archive.created IS 'The timestamp when the usage was created.';
+COMMENT ON COLUMN usages_archive.updated IS 'The timestamp when the usage was last updated.';
+COMMENT ON COLUMN usages_archive.archived IS 'The timestamp when the usage was compacted.';
+
+--- Create the per-quota summary of compacted usages
+CREATE TABLE IF NOT EXISTS usage_summaries (
+    quotaId integer PRIMARY KEY,
+    quantity double precision NOT NULL,
+    usages integer NOT NULL,
+    updated timestamp with time zone NOT NULL DEFAULT now()
+);
+
+ALTER TABLE usage_summaries
+    ADD CONSTRAINT usage_summaries_quotas_id_fk
+    FOREIGN KEY (quotaId) REFERENCES quotas (id) ON DELETE CASCADE;
+
+COMMENT ON TABLE  usage_summaries IS 'The totals of the compacted usages of each quota.';
+COMMENT ON COLUMN usage_summaries.quotaId IS 'The quota identifier.';
+COMMENT ON COLUMN usage_summaries.quantity IS 'The total quantity of the compacted usages, in the quota units.';
+COMMENT ON COLUMN usage_summaries.usages IS 'The number of compacted usages.';
+COMMENT ON COLUMN usage_summaries.updated IS 'The timestamp when usages were last compacted.';
+
+--- Let compaction find archived usages without scanning live ones
+CREATE INDEX IF NOT EXISTS usages_archived_idx ON usages USING btree(id) WHERE status = 'archived';
+
+--- Skip quota usage changes for compacted usages, which stay counted in the summaries
+CREATE OR REPLACE FUNCTION update_quota_usage()
+    RETURNS trigger
+    AS $update_quota_usage$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity
+                WHERE id = NEW.quotaId;
+            RETURN NEW;
+        ELSIF (TG_OP = 'UPDATE') THEN
+            IF NEW.quotaId = OLD.quotaId THEN
+                IF NEW.quantity <> OLD.quantity THEN
+                    UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity - OLD.quantity
+                        WHERE id = NEW.quotaId;
+                END IF;
+            ELSE
+                UPDATE quotas SET usage = COALESCE(usage, 0) - OLD.quantity
+                    WHERE id = OLD.quotaId;
+                UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.quantity
+                    WHERE id = NEW.quotaId;
+            END IF;
+            RETURN NEW;
+        ELSE
+            IF current_setting('bookkeeper.compacting', true) = 'on' THEN
+                RETURN OLD;
+            END IF;
+            UPDATE quotas SET usage = COALESCE(usage, 0) - OLD.quantity
+                WHERE id = OLD.quotaId;
+            RETURN OLD;
+        END IF;
+    END;
+    $update_quota_usage$
+    LANGUAGE plpgsql;
+
+--- Skip rollup changes for compacted usages, whose quantity wasn't released
+CREATE OR REPLACE FUNCTION rollup_usage()
+    RETURNS trigger
+    AS $rollup_usage$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity, COALESCE(NEW.created, now()));
+            RETURN NEW;
+        ELSIF (TG_OP = 'UPDATE') THEN
+            IF NEW.quotaId = OLD.quotaId THEN
+                IF NEW.quantity <> OLD.quantity THEN
+                    PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity - OLD.quantity, COALESCE(NEW.updated, now()));
+                END IF;
+            ELSE
+                -- The usage moved, so remove it from the old quota and add it to the new one
+                PERFORM add_usage_rollup(OLD.quotaId, -OLD.quantity, COALESCE(NEW.updated, now()));
+                PERFORM add_usage_rollup(NEW.quotaId, NEW.quantity, COALESCE(NEW.updated, now()));
+            END IF;
+            RETURN NEW;
+        ELSE
+            IF current_setting('bookkeeper.compacting', true) = 'on' THEN
+                RETURN OLD;
+            END IF;
+            -- Skip usages deleted along with their quota
+            IF EXISTS (SELECT 1 FROM quotas WHERE id = OLD.quotaId) THEN
+                PERFORM add_usage_rollup(OLD.quotaId, -OLD.quantity, now());
+            END IF;
+            RETURN OLD;
+        END IF;
+    END;
+    $rollup_usage$
+    LANGUAGE plpgsql;
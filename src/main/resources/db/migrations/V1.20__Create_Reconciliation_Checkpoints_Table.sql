@@ -0,0 +1,18 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the table recording how far each reconciliation job has progressed
+CREATE TABLE IF NOT EXISTS reconciliation_checkpoints (
+    name text PRIMARY KEY,
+    lastQuotaId integer NOT NULL,
+    updated timestamp with time zone NOT NULL DEFAULT now()
+);
+
+COMMENT ON TABLE  reconciliation_checkpoints IS 'The progress of keyset-ordered reconciliation passes over the quotas.';
+COMMENT ON COLUMN reconciliation_checkpoints.name IS 'The reconciliation job name.';
+COMMENT ON COLUMN reconciliation_checkpoints.lastQuotaId IS 'The last quota identifier reconciled in the current pass.';
+COMMENT ON COLUMN reconciliation_checkpoints.updated IS 'The timestamp of the last checkpoint.';
+
+--- Cover the per-quota usage sums with an index so they don't read the heap
+CREATE INDEX IF NOT EXISTS usages_quotaId_quantity_idx ON usages USING btree(quotaId, quantity);
+DROP INDEX IF EXISTS usages_quotaId_idx;
@@ -0,0 +1,49 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Account for quota limits and usages in whole base units (bytes or portals),
+--- so totals are exact integer sums instead of accumulated doubles
+ALTER TABLE quotas
+    ALTER COLUMN softLimit TYPE bigint USING round(softLimit)::bigint,
+    ALTER COLUMN hardLimit TYPE bigint USING round(hardLimit)::bigint,
+    ALTER COLUMN usage TYPE bigint USING round(usage)::bigint;
+
+ALTER TABLE usages
+    ALTER COLUMN quantity TYPE bigint USING round(quantity)::bigint;
+
+ALTER TABLE usages_archive
+    ALTER COLUMN quantity TYPE bigint USING round(quantity)::bigint;
+
+ALTER TABLE usage_summaries
+    ALTER COLUMN quantity TYPE bigint USING round(quantity)::bigint;
+
+ALTER TABLE usage_daily_rollups
+    ALTER COLUMN quantity TYPE bigint USING round(quantity)::bigint;
+
+ALTER TABLE usage_monthly_rollups
+    ALTER COLUMN quantity TYPE bigint USING round(quantity)::bigint;
+
+COMMENT ON COLUMN quotas.softLimit IS 'The soft limit of the quota, in whole quota units.';
+COMMENT ON COLUMN quotas.hardLimit IS 'The hard limit of the quota, in whole quota units.';
+COMMENT ON COLUMN quotas.usage IS 'The total usage of the quota, in whole quota units.';
+COMMENT ON COLUMN usages.quantity IS 'The quantity used by the instance, in whole quota units.';
+
+--- Replace the rollup function so usage changes are added as integers
+DROP FUNCTION IF EXISTS add_usage_rollup(integer, double precision, timestamp with time zone);
+CREATE OR REPLACE FUNCTION add_usage_rollup(
+    rollupQuotaId integer, delta bigint, changed timestamp with time zone)
+    RETURNS void
+    AS $add_usage_rollup$
+    BEGIN
+        INSERT INTO usage_daily_rollups AS r (quotaId, day, quantity, events)
+            VALUES (rollupQuotaId, (changed AT TIME ZONE 'UTC')::date, delta, 1)
+            ON CONFLICT (quotaId, day) DO UPDATE
+            SET quantity = r.quantity + EXCLUDED.quantity, events = r.events + 1;
+
+        INSERT INTO usage_monthly_rollups AS r (quotaId, month, quantity, events)
+            VALUES (rollupQuotaId, date_trunc('month', changed AT TIME ZONE 'UTC')::date, delta, 1)
+            ON CONFLICT (quotaId, month) DO UPDATE
+            SET quantity = r.quantity + EXCLUDED.quantity, events = r.events + 1;
+    END;
+    $add_usage_rollup$
+    LANGUAGE plpgsql;
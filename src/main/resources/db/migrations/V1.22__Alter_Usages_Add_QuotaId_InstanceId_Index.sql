@@ -0,0 +1,7 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Index usages by quota in byte order of instance identifier, so inventory
+--- reconciliation can walk a quota's usages with keyset-ordered pages
+CREATE INDEX IF NOT EXISTS usages_quotaId_instanceId_idx
+    ON usages USING btree(quotaId, instanceId COLLATE "C", id);
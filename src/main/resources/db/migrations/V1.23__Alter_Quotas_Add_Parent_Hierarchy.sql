@@ -0,0 +1,142 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Let quotas pool into a parent quota, such as an institution's storage shared
+--- by its member groups. A parent's usage includes the usage of its descendants.
+ALTER TABLE quotas ADD COLUMN IF NOT EXISTS parentId integer;
+ALTER TABLE quotas ADD COLUMN IF NOT EXISTS path integer[] NOT NULL DEFAULT '{}';
+
+ALTER TABLE quotas
+    ADD CONSTRAINT quotas_parent_id_fk
+    FOREIGN KEY (parentId) REFERENCES quotas (id) ON DELETE SET NULL;
+
+COMMENT ON COLUMN quotas.parentId IS 'The parent quota identifier, whose usage includes this quota''s usage.';
+COMMENT ON COLUMN quotas.path IS 'The ancestor quota identifiers, root first, maintained from parentId.';
+
+CREATE INDEX IF NOT EXISTS quotas_parentId_idx ON quotas USING btree(parentId);
+CREATE INDEX IF NOT EXISTS quotas_path_idx ON quotas USING gin(path);
+
+--- Set the ancestor path of an inserted or re-parented quota
+CREATE OR REPLACE FUNCTION set_quota_path()
+    RETURNS trigger
+    AS $set_quota_path$
+    BEGIN
+        IF NEW.parentId IS NULL THEN
+            NEW.path := '{}';
+        ELSE
+            -- A missing parent is left to the foreign key to report
+            NEW.path := COALESCE((SELECT p.path || p.id FROM quotas p WHERE p.id = NEW.parentId), '{}');
+            IF NEW.id = ANY(NEW.path) THEN
+                RAISE EXCEPTION 'Quota % can''t be a descendant of itself', NEW.id;
+            END IF;
+        END IF;
+        RETURN NEW;
+    END;
+    $set_quota_path$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS set_quota_path_on_insert_or_update ON quotas;
+CREATE TRIGGER set_quota_path_on_insert_or_update BEFORE INSERT OR UPDATE OF parentId ON quotas
+    FOR EACH ROW
+        EXECUTE PROCEDURE set_quota_path();
+
+--- Move a re-parented quota's usage to its new ancestors, and rewrite the paths
+--- of its descendants. A quota detached because its parent was deleted keeps
+--- its usage out of the old ancestors, which remove_quota already adjusted.
+--- Inserted child quotas with a starting usage charge their ancestors too.
+CREATE OR REPLACE FUNCTION move_quota()
+    RETURNS trigger
+    AS $move_quota$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            UPDATE quotas SET usage = COALESCE(usage, 0) + NEW.usage
+                WHERE id = ANY(NEW.path);
+            RETURN NEW;
+        END IF;
+        IF EXISTS (SELECT 1 FROM quotas WHERE id = OLD.parentId) THEN
+            UPDATE quotas SET usage = COALESCE(usage, 0) - COALESCE(NEW.usage, 0)
+                WHERE id = ANY(OLD.path);
+        END IF;
+        UPDATE quotas SET usage = COALESCE(usage, 0) + COALESCE(NEW.usage, 0)
+            WHERE id = ANY(NEW.path);
+        UPDATE quotas SET path = NEW.path || NEW.id || path[array_position(path, NEW.id) + 1:]
+            WHERE path @> ARRAY[NEW.id];
+        RETURN NEW;
+    END;
+    $move_quota$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS move_quota_on_update ON quotas;
+CREATE TRIGGER move_quota_on_update AFTER UPDATE OF parentId ON quotas
+    FOR EACH ROW
+    WHEN (OLD.parentId IS DISTINCT FROM NEW.parentId)
+        EXECUTE PROCEDURE move_quota();
+
+DROP TRIGGER IF EXISTS move_quota_on_insert ON quotas;
+CREATE TRIGGER move_quota_on_insert AFTER INSERT ON quotas
+    FOR EACH ROW
+    WHEN (NEW.parentId IS NOT NULL AND NEW.usage IS NOT NULL)
+        EXECUTE PROCEDURE move_quota();
+
+--- Remove a deleted quota's usage from its ancestors. When its parent was
+--- deleted too, the parent's usage already included it.
+CREATE OR REPLACE FUNCTION remove_quota()
+    RETURNS trigger
+    AS $remove_quota$
+    BEGIN
+        IF EXISTS (SELECT 1 FROM quotas WHERE id = OLD.parentId) THEN
+            UPDATE quotas SET usage = COALESCE(usage, 0) - COALESCE(OLD.usage, 0)
+                WHERE id = ANY(OLD.path);
+        END IF;
+        RETURN OLD;
+    END;
+    $remove_quota$
+    LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS remove_quota_on_delete ON quotas;
+CREATE TRIGGER remove_quota_on_delete AFTER DELETE ON quotas
+    FOR EACH ROW
+        EXECUTE PROCEDURE remove_quota();
+
+--- Charge a usage change to its quota and all of the quota's ancestors, with
+--- one indexed update across the chain
+CREATE OR REPLACE FUNCTION charge_quota_chain(chargedQuotaId integer, delta bigint)
+    RETURNS void
+    AS $charge_quota_chain$
+    DECLARE
+        chain integer[];
+    BEGIN
+        SELECT q.path || q.id INTO chain FROM quotas q WHERE q.id = chargedQuotaId;
+        UPDATE quotas SET usage = COALESCE(usage, 0) + delta
+            WHERE id = ANY(chain);
+    END;
+    $charge_quota_chain$
+    LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION update_quota_usage()
+    RETURNS trigger
+    AS $update_quota_usage$
+    BEGIN
+        IF (TG_OP = 'INSERT') THEN
+            PERFORM charge_quota_chain(NEW.quotaId, NEW.quantity);
+            RETURN NEW;
+        ELSIF (TG_OP = 'UPDATE') THEN
+            IF NEW.quotaId = OLD.quotaId THEN
+                IF NEW.quantity <> OLD.quantity THEN
+                    PERFORM charge_quota_chain(NEW.quotaId, NEW.quantity - OLD.quantity);
+                END IF;
+            ELSE
+                PERFORM charge_quota_chain(OLD.quotaId, -OLD.quantity);
+                PERFORM charge_quota_chain(NEW.quotaId, NEW.quantity);
+            END IF;
+            RETURN NEW;
+        ELSE
+            IF current_setting('bookkeeper.compacting', true) = 'on' THEN
+                RETURN OLD;
+            END IF;
+            PERFORM charge_quota_chain(OLD.quotaId, -OLD.quantity);
+            RETURN OLD;
+        END IF;
+    END;
+    $update_quota_usage$
+    LANGUAGE plpgsql;
@@ -0,0 +1,63 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Track an exponentially decayed growth rate per quota, updated on each usage
+--- write, and the projected time the quota reaches its hard limit
+ALTER TABLE quotas ADD COLUMN IF NOT EXISTS growthRate double precision;
+ALTER TABLE quotas ADD COLUMN IF NOT EXISTS growthUpdated timestamp with time zone;
+ALTER TABLE quotas ADD COLUMN IF NOT EXISTS exhaustAt timestamp with time zone;
+
+COMMENT ON COLUMN quotas.growthRate IS 'The decayed usage growth rate, in quota units per second, as of growthUpdated.';
+COMMENT ON COLUMN quotas.growthUpdated IS 'The timestamp of the last usage change included in the growth rate.';
+COMMENT ON COLUMN quotas.exhaustAt IS 'The projected time the usage reaches the hard limit, as of growthUpdated.';
+
+--- Serve the soonest to exhaust listing from an index
+CREATE INDEX IF NOT EXISTS quotas_exhaustAt_idx ON quotas USING btree(exhaustAt)
+    WHERE exhaustAt IS NOT NULL;
+
+--- Decay a growth rate to now and add a usage change. Changes are weighted by
+--- exp(-age / 7 days), so a steady growth of r units per second converges to r.
+CREATE OR REPLACE FUNCTION decayed_growth_rate(
+    rate double precision, updated timestamp with time zone, delta bigint)
+    RETURNS double precision
+    AS $decayed_growth_rate$
+        SELECT COALESCE(rate, 0) *
+            exp(-GREATEST(date_part('epoch', now() - COALESCE(updated, now())), 0) / 604800.0) +
+            delta / 604800.0;
+    $decayed_growth_rate$
+    LANGUAGE sql STABLE;
+
+--- Project the seconds until a usage reaches a hard limit at a growth rate.
+--- Quotas that aren't growing, or won't fill within a century, have no projection.
+CREATE OR REPLACE FUNCTION quota_time_to_limit(
+    usage bigint, hardLimit bigint, rate double precision)
+    RETURNS bigint
+    AS $quota_time_to_limit$
+        SELECT CASE
+            WHEN COALESCE(usage, 0) >= hardLimit THEN 0
+            WHEN rate > 0 AND (hardLimit - COALESCE(usage, 0)) / rate < 3153600000
+                THEN ceil((hardLimit - COALESCE(usage, 0)) / rate)::bigint
+            ELSE NULL
+        END;
+    $quota_time_to_limit$
+    LANGUAGE sql IMMUTABLE;
+
+--- Charge a usage change to the quota chain, updating each quota's growth rate
+--- and projected exhaustion in the same indexed update
+CREATE OR REPLACE FUNCTION charge_quota_chain(chargedQuotaId integer, delta bigint)
+    RETURNS void
+    AS $charge_quota_chain$
+    DECLARE
+        chain integer[];
+    BEGIN
+        SELECT q.path || q.id INTO chain FROM quotas q WHERE q.id = chargedQuotaId;
+        UPDATE quotas SET
+            usage = COALESCE(usage, 0) + delta,
+            growthRate = decayed_growth_rate(growthRate, growthUpdated, delta),
+            growthUpdated = now(),
+            exhaustAt = now() + quota_time_to_limit(COALESCE(usage, 0) + delta, hardLimit,
+                decayed_growth_rate(growthRate, growthUpdated, delta)) * interval '1 second'
+            WHERE id = ANY(chain);
+    END;
+    $charge_quota_chain$
+    LANGUAGE plpgsql;
@@ -0,0 +1,11 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Index usages by instance identifier and then quota, so finding a repository
+--- object's usage for a quota name reads one index entry per matching quota
+--- before joining to quotas by primary key. The composite index also serves
+--- lookups by instanceId alone, so it replaces usages_instanceId_idx.
+CREATE INDEX IF NOT EXISTS usages_instanceId_quotaId_idx
+    ON usages USING btree(instanceId, quotaId);
+
+DROP INDEX IF EXISTS usages_instanceId_idx;
@@ -0,0 +1,14 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Index product descriptions by trigram, so description searches can use the
+--- index for patterns with a leading wildcard, and rank matches by word
+--- similarity. Creating the extension needs a superuser, or a DBA can create
+--- it before the migration runs.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS products_description_trgm_idx
+    ON products USING gin(description gin_trgm_ops);
+
+--- The btree index only served exact and prefix matches
+DROP INDEX IF EXISTS products_description_idx;
@@ -0,0 +1,53 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the order items table
+CREATE SEQUENCE order_items_id_seq;
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id integer DEFAULT nextval('order_items_id_seq') PRIMARY KEY,
+    orderId integer NOT NULL,
+    object text NOT NULL,
+    amount integer,
+    currency text,
+    description text,
+    parent integer,
+    quantity integer,
+    type text
+);
+ALTER SEQUENCE order_items_id_seq OWNED BY order_items.id;
+
+ALTER TABLE order_items
+    ADD CONSTRAINT order_items_order_id_fk
+    FOREIGN KEY (orderId) REFERENCES orders (id) ON DELETE CASCADE;
+
+CREATE INDEX order_items_orderId_idx ON order_items USING btree(orderId);
+CREATE INDEX order_items_parent_idx ON order_items USING btree(parent);
+
+COMMENT ON TABLE  order_items IS 'Line items of orders, in order of their identifiers.';
+COMMENT ON COLUMN order_items.id IS 'The unique order item identifier.';
+COMMENT ON COLUMN order_items.orderId IS 'The order identifier.';
+COMMENT ON COLUMN order_items.object IS 'The serialized object type, set to "order_item".';
+COMMENT ON COLUMN order_items.amount IS 'The order item amount in the smallest unit of the currency.';
+COMMENT ON COLUMN order_items.currency IS 'The order item currency code.';
+COMMENT ON COLUMN order_items.description IS 'The order item description.';
+COMMENT ON COLUMN order_items.parent IS 'The order item parent product identifier.';
+COMMENT ON COLUMN order_items.quantity IS 'The order item quantity.';
+COMMENT ON COLUMN order_items.type IS 'The order item type (sku, tax, shipping, discount).';
+
+--- Move the order items JSON arrays into the table, keeping their order
+INSERT INTO order_items (orderId, object, amount, currency, description, parent, quantity, type)
+    SELECT o.id,
+        COALESCE(i.item->>'object', 'order_item'),
+        (i.item->>'amount')::integer,
+        i.item->>'currency',
+        i.item->>'description',
+        (i.item->>'parent')::integer,
+        (i.item->>'quantity')::integer,
+        i.item->>'type'
+    FROM orders o,
+        json_array_elements(CASE WHEN json_typeof(o.items) = 'array' THEN o.items ELSE '[]' END)
+        WITH ORDINALITY AS i(item, position)
+    ORDER BY o.id, i.position;
+
+ALTER TABLE orders DROP COLUMN items;
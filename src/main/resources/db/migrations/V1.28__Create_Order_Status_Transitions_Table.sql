@@ -0,0 +1,37 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the append-only order status transitions table
+CREATE SEQUENCE order_status_transitions_id_seq;
+
+CREATE TABLE IF NOT EXISTS order_status_transitions (
+    id integer DEFAULT nextval('order_status_transitions_id_seq') PRIMARY KEY,
+    orderId integer NOT NULL,
+    status text NOT NULL,
+    at timestamp with time zone NOT NULL
+);
+ALTER SEQUENCE order_status_transitions_id_seq OWNED BY order_status_transitions.id;
+
+ALTER TABLE order_status_transitions
+    ADD CONSTRAINT order_status_transitions_order_id_fk
+    FOREIGN KEY (orderId) REFERENCES orders (id) ON DELETE CASCADE;
+
+CREATE INDEX order_status_transitions_orderId_at_idx ON order_status_transitions USING btree(orderId, at);
+CREATE INDEX order_status_transitions_status_at_idx ON order_status_transitions USING btree(status, at);
+
+COMMENT ON TABLE  order_status_transitions IS 'The append-only history of order status changes.';
+COMMENT ON COLUMN order_status_transitions.id IS 'The unique transition identifier.';
+COMMENT ON COLUMN order_status_transitions.orderId IS 'The order identifier.';
+COMMENT ON COLUMN order_status_transitions.status IS 'The order status entered (created, paid, canceled, fulfilled, returned).';
+COMMENT ON COLUMN order_status_transitions.at IS 'The date the order entered the status.';
+
+--- Move the order status transitions JSON objects into the table
+INSERT INTO order_status_transitions (orderId, status, at)
+    SELECT o.id, t.key, to_timestamp(t.value::double precision)
+    FROM orders o,
+        json_each_text(CASE WHEN json_typeof(o.statusTransitions) = 'object'
+            THEN o.statusTransitions ELSE '{}' END) AS t
+    WHERE t.value IS NOT NULL
+    ORDER BY o.id, 3;
+
+ALTER TABLE orders DROP COLUMN statusTransitions;
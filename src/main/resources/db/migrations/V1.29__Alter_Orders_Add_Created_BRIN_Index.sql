@@ -0,0 +1,7 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Index order creation dates with a BRIN index. Orders are appended in
+--- creation order, so block ranges of created dates stay narrow and the index
+--- stays a few pages even for millions of orders.
+CREATE INDEX orders_created_brin_idx ON orders USING brin(created);
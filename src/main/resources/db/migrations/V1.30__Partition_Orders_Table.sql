@@ -0,0 +1,235 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Range partition the orders table by month of creation, and keep old months
+--- in the archive schema. Reads of orders only touch the recent partitions,
+--- and each month keeps its own small indexes and is vacuumed independently.
+--- Partitioning needs PostgreSQL 11 or later (default partitions, row triggers,
+--- and foreign keys on partitioned tables), so older servers keep the
+--- unpartitioned table, an empty archive, and no-op maintenance functions.
+--- The tests run on PostgreSQL 11, like production, so they run the partitioning path.
+CREATE SCHEMA IF NOT EXISTS archive;
+
+--- Create the monthly orders partitions from this month through a number of
+--- months ahead, and for the months of any orders in the default partition,
+--- returning the number created. Months already archived are skipped. Orders of
+--- a month in the default partition are moved into its new partition, which is
+--- attached afterwards, since a partition can't be added for rows the default holds.
+CREATE OR REPLACE FUNCTION create_orders_partitions(months integer)
+    RETURNS integer
+    AS $create_orders_partitions$
+    DECLARE
+        month timestamp with time zone;
+        name text;
+        made integer := 0;
+    BEGIN
+        IF current_setting('server_version_num')::integer < 110000 THEN
+            RETURN 0;
+        END IF;
+
+        --- The moved orders are briefly outside of the orders table
+        SET CONSTRAINTS delete_order_id_on_delete DEFERRED;
+
+        FOR month IN
+            SELECT date_trunc('month', now()) + m * interval '1 month' FROM generate_series(0, months) m
+            UNION
+            SELECT DISTINCT date_trunc('month', created) FROM orders_default
+            ORDER BY 1
+        LOOP
+            name := 'orders_' || to_char(month, '"y"YYYY"m"MM');
+            IF to_regclass(name) IS NULL AND to_regclass('archive.' || name) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I (LIKE orders INCLUDING DEFAULTS)', name);
+                EXECUTE format('WITH moved AS (' ||
+                        'DELETE FROM orders_default WHERE created >= %L AND created < %L RETURNING *) ' ||
+                        'INSERT INTO %I SELECT * FROM moved',
+                    month, month + interval '1 month', name);
+                EXECUTE format('ALTER TABLE orders ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                    name, month, month + interval '1 month');
+                made := made + 1;
+            END IF;
+        END LOOP;
+        RETURN made;
+    END;
+    $create_orders_partitions$
+    LANGUAGE plpgsql;
+
+--- Move the monthly orders partitions that end before a date into the archive,
+--- returning the number moved. Their items and status transitions stay in place.
+CREATE OR REPLACE FUNCTION archive_orders_partitions(before timestamp with time zone)
+    RETURNS integer
+    AS $archive_orders_partitions$
+    DECLARE
+        part record;
+        month timestamp with time zone;
+        archived integer := 0;
+    BEGIN
+        IF current_setting('server_version_num')::integer < 110000 THEN
+            RETURN 0;
+        END IF;
+
+        FOR part IN
+            SELECT c.relname FROM pg_inherits i
+            INNER JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'orders'::regclass
+            AND c.relname ~ '^orders_y[0-9]{4}m[0-9]{2}$'
+            ORDER BY c.relname
+        LOOP
+            month := to_timestamp(substring(part.relname from 8), '"y"YYYY"m"MM');
+            IF month + interval '1 month' <= before THEN
+                EXECUTE format('ALTER TABLE orders DETACH PARTITION %I', part.relname);
+                EXECUTE format('ALTER TABLE %I SET SCHEMA archive', part.relname);
+                EXECUTE format('ALTER TABLE archive.%I ALTER COLUMN id DROP DEFAULT', part.relname);
+                EXECUTE format('ALTER TABLE archive.orders ATTACH PARTITION archive.%I FOR VALUES FROM (%L) TO (%L)',
+                    part.relname, month, month + interval '1 month');
+                archived := archived + 1;
+            END IF;
+        END LOOP;
+        RETURN archived;
+    END;
+    $archive_orders_partitions$
+    LANGUAGE plpgsql;
+
+--- Register the id of an inserted order, rejecting ids already used by another
+--- order, recent or archived. Rows moved between partitions by an update are
+--- deleted and reinserted, so their id is already registered to themselves.
+CREATE OR REPLACE FUNCTION insert_order_id()
+    RETURNS trigger
+    AS $insert_order_id$
+    BEGIN
+        INSERT INTO order_ids (id) VALUES (NEW.id) ON CONFLICT DO NOTHING;
+        IF (SELECT count(*) FROM orders WHERE id = NEW.id) +
+            (SELECT count(*) FROM archive.orders WHERE id = NEW.id) > 1 THEN
+            RAISE EXCEPTION 'duplicate order id %', NEW.id USING ERRCODE = 'unique_violation';
+        END IF;
+        RETURN NULL;
+    END;
+    $insert_order_id$
+    LANGUAGE plpgsql;
+
+--- Release the id of a deleted order, deleting its items and status transitions
+--- through their foreign keys. Orders moved between partitions are skipped.
+CREATE OR REPLACE FUNCTION delete_order_id()
+    RETURNS trigger
+    AS $delete_order_id$
+    BEGIN
+        IF NOT EXISTS (SELECT 1 FROM orders WHERE id = OLD.id)
+            AND NOT EXISTS (SELECT 1 FROM archive.orders WHERE id = OLD.id) THEN
+            DELETE FROM order_ids WHERE id = OLD.id;
+        END IF;
+        RETURN NULL;
+    END;
+    $delete_order_id$
+    LANGUAGE plpgsql;
+
+DO $partition_orders$
+    DECLARE
+        month timestamp with time zone;
+    BEGIN
+        IF current_setting('server_version_num')::integer < 110000 THEN
+            RAISE NOTICE 'Partitioning orders needs PostgreSQL 11, leaving orders unpartitioned';
+            CREATE TABLE archive.orders (LIKE orders);
+            RETURN;
+        END IF;
+
+        --- The partition key must be part of the primary key, so (id, created) doesn't
+        --- keep ids unique across partitions. Each order id is registered here instead,
+        --- and the order items and status transitions reference it.
+        CREATE TABLE order_ids (
+            id integer PRIMARY KEY
+        );
+        INSERT INTO order_ids (id) SELECT id FROM orders;
+
+        ALTER TABLE order_items DROP CONSTRAINT order_items_order_id_fk;
+        ALTER TABLE order_items
+            ADD CONSTRAINT order_items_order_id_fk
+            FOREIGN KEY (orderId) REFERENCES order_ids (id) ON DELETE CASCADE;
+        ALTER TABLE order_status_transitions DROP CONSTRAINT order_status_transitions_order_id_fk;
+        ALTER TABLE order_status_transitions
+            ADD CONSTRAINT order_status_transitions_order_id_fk
+            FOREIGN KEY (orderId) REFERENCES order_ids (id) ON DELETE CASCADE;
+
+        ALTER TABLE orders RENAME TO orders_unpartitioned;
+        ALTER TABLE orders_unpartitioned RENAME CONSTRAINT orders_pkey TO orders_unpartitioned_pkey;
+        ALTER TABLE orders_unpartitioned
+            RENAME CONSTRAINT orders_customer_id_fk TO orders_unpartitioned_customer_id_fk;
+        ALTER INDEX orders_customer_idx RENAME TO orders_unpartitioned_customer_idx;
+        ALTER INDEX orders_email_idx RENAME TO orders_unpartitioned_email_idx;
+        ALTER INDEX orders_status_idx RENAME TO orders_unpartitioned_status_idx;
+        ALTER INDEX orders_created_brin_idx RENAME TO orders_unpartitioned_created_brin_idx;
+
+        CREATE TABLE orders (
+            id integer NOT NULL DEFAULT nextval('orders_id_seq'),
+            object text NOT NULL,
+            amount integer,
+            amountReturned integer,
+            charge json,
+            created timestamp with time zone NOT NULL DEFAULT now(),
+            currency text,
+            customer integer,
+            email text,
+            metadata json,
+            status text,
+            updated timestamp with time zone,
+            PRIMARY KEY (id, created)
+        ) PARTITION BY RANGE (created);
+
+        --- Orders outside of the monthly partitions, such as those far in the future
+        EXECUTE 'CREATE TABLE orders_default PARTITION OF orders DEFAULT';
+
+        FOR month IN
+            SELECT generate_series(date_trunc('month', COALESCE(m.earliest, now())),
+                date_trunc('month', now()), interval '1 month')
+            FROM (SELECT min(COALESCE(created, updated)) AS earliest FROM orders_unpartitioned) m
+        LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                'orders_' || to_char(month, '"y"YYYY"m"MM'), month, month + interval '1 month');
+        END LOOP;
+
+        CREATE INDEX orders_customer_idx ON orders USING btree(customer);
+        CREATE INDEX orders_email_idx ON orders USING btree(email);
+        CREATE INDEX orders_status_idx ON orders USING btree(status);
+        CREATE INDEX orders_created_brin_idx ON orders USING brin(created);
+
+        ALTER TABLE orders
+            ADD CONSTRAINT orders_customer_id_fk
+            FOREIGN KEY (customer) REFERENCES customers (id) ON DELETE CASCADE;
+
+        INSERT INTO orders (id, object, amount, amountReturned, charge, created,
+            currency, customer, email, metadata, status, updated)
+            SELECT id, object, amount, amountReturned, charge, COALESCE(created, updated, now()),
+                currency, customer, email, metadata, status, updated
+            FROM orders_unpartitioned;
+
+        ALTER SEQUENCE orders_id_seq OWNED BY orders.id;
+        DROP TABLE orders_unpartitioned;
+
+        --- The archive has the same layout, and gets whole monthly partitions. It takes
+        --- no inserts, so it has no defaults tying it to the orders id sequence
+        CREATE TABLE archive.orders (LIKE orders, PRIMARY KEY (id, created))
+            PARTITION BY RANGE (created);
+        CREATE INDEX orders_customer_idx ON archive.orders USING btree(customer);
+
+        CREATE TRIGGER insert_order_id_on_insert AFTER INSERT ON orders
+            FOR EACH ROW
+                EXECUTE PROCEDURE insert_order_id();
+
+        --- Deletes are checked at the end of the statement, or at commit when deferred
+        --- while partition maintenance moves orders out of the default partition
+        CREATE CONSTRAINT TRIGGER delete_order_id_on_delete AFTER DELETE ON orders
+            DEFERRABLE INITIALLY IMMEDIATE
+            FOR EACH ROW
+                EXECUTE PROCEDURE delete_order_id();
+        CREATE CONSTRAINT TRIGGER delete_archived_order_id_on_delete AFTER DELETE ON archive.orders
+            DEFERRABLE INITIALLY IMMEDIATE
+            FOR EACH ROW
+                EXECUTE PROCEDURE delete_order_id();
+
+        PERFORM create_orders_partitions(3);
+
+        COMMENT ON TABLE  orders IS 'Orders of products by customers, range partitioned by month of creation.';
+        COMMENT ON COLUMN orders.created IS 'The order creation date, and the partition key.';
+        COMMENT ON TABLE  archive.orders IS 'Orders of past months, moved out of the orders table.';
+        COMMENT ON TABLE  order_ids IS 'The unique identifiers of recent and archived orders.';
+        COMMENT ON COLUMN order_ids.id IS 'The order identifier, referenced by the order items and status transitions.';
+    END;
+$partition_orders$;
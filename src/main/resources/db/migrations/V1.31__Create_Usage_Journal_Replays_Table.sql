@@ -0,0 +1,14 @@
+--- Note that this is completed in k8s via the Dockerfile
+--- or via a shell script in non-k8s development envs
+
+--- Create the table recording the usage journal entries already replayed
+CREATE TABLE IF NOT EXISTS usage_journal_replays (
+    entryId uuid PRIMARY KEY,
+    replayed timestamp with time zone NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS usage_journal_replays_replayed_idx ON usage_journal_replays USING brin(replayed);
+
+COMMENT ON TABLE  usage_journal_replays IS 'The usage journal entries replayed, so each is inserted once.';
+COMMENT ON COLUMN usage_journal_replays.entryId IS 'The unique journal entry identifier.';
+COMMENT ON COLUMN usage_journal_replays.replayed IS 'The timestamp when the entry was replayed.';
@@ -34,6 +34,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 
 import static org.junit.jupiter.api.Assertions.fail;
@@ -76,6 +77,7 @@ public class BaseTestCase {
             // Try to optimize the PG database for testing with anti-persistence
             // options (fsync, full_page_writes)
             pg = EmbeddedPostgres.builder()
+                .setPgBinaryResolver(BaseTestCase::getPgBinary)
                 .setPort(5432)
                 .setServerConfig("shared_buffers", "1024MB")
                 .setServerConfig("work_mem", "25MB")
@@ -107,6 +109,7 @@ public class BaseTestCase {
             // Initialize a dbi instance for tests to use
             dbi = new JdbiFactory(new TimedAnnotationNameStrategy())
                 .build(environment, dataSourceFactory, "postgresql");
+            dbi.registerArrayType(Integer.class, "integer");
 
             // Start all managed objects in the environment
 /*
@@ -121,6 +124,24 @@ public class BaseTestCase {
         }
     }
 
+    /**
+     * Get the PostgreSQL binaries to test with. The PostgreSQL 11 binaries match the
+     * production database, and run the migrations that need PostgreSQL 11. They are
+     * only packaged for Linux, so other systems fall back to the bundled PostgreSQL 10.
+     * @param system  the operating system name, such as Linux
+     * @param machineHardware  the machine hardware name, such as x86_64
+     * @return binaries  the compressed PostgreSQL installation
+     */
+    private static InputStream getPgBinary(String system, String machineHardware) {
+        InputStream binaries = BaseTestCase.class.getResourceAsStream(
+            String.format("/postgres-%s-%s.txz", system.toLowerCase(), machineHardware));
+        if ( binaries == null ) {
+            binaries = EmbeddedPostgres.class.getResourceAsStream(
+                String.format("/postgresql-%s-%s.txz", system, machineHardware));
+        }
+        return binaries;
+    }
+
     /**
      * Clean up after all tests as needed
      */
@@ -134,10 +155,8 @@ public class BaseTestCase {
                 lifeCycle.stop();
             }
 
-            // Clean the database
-            flyway.clean();
-
-            // Close the database
+            // Close the database, which removes its data directory. Flyway 5.2 can't
+            // clean PostgreSQL 11 databases, as it reads the removed pg_proc.proisagg
             pg.close();
 
         } catch (IOException e) {
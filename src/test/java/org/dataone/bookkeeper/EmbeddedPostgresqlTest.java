@@ -36,6 +36,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 
 /**
@@ -62,6 +63,32 @@ public class EmbeddedPostgresqlTest extends BaseTestCase {
         }
     }
 
+    /**
+     * Test that the migrations run on PostgreSQL 11, like production, where
+     * the partitioning migrations take effect
+     */
+    @DisplayName("Test PostgreSQL 11 partitioning")
+    @Test
+    public void testPartitionedTables() {
+        assumeTrue(System.getProperty("os.name").equals("Linux") &&
+            System.getProperty("os.arch").equals("amd64"));
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SHOW server_version_num");
+            assertTrue(resultSet.next());
+            assertTrue(resultSet.getInt(1) >= 110000);
+
+            resultSet = statement.executeQuery("SELECT count(*) FROM pg_partitioned_table " +
+                "WHERE partrelid IN ('orders'::regclass, 'usages'::regclass)");
+            assertTrue(resultSet.next());
+            assertEquals(2, resultSet.getInt(1));
+
+        } catch (SQLException sqle) {
+            sqle.printStackTrace();
+            fail();
+        }
+    }
+
     /**
      * Test the quota table integrity
      */
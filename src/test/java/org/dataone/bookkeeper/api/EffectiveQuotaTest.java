@@ -0,0 +1,83 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static io.dropwizard.testing.FixtureHelpers.fixture;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the effective quota model
+ */
+class EffectiveQuotaTest {
+    private final static ObjectMapper MAPPER = Jackson.newObjectMapper();
+    static {
+        MAPPER.setSerializationInclusion(Include.NON_NULL);
+        MAPPER.setSerializationInclusion(Include.NON_EMPTY);
+    }
+    private final static String EFFECTIVE_QUOTA_JSON = "fixtures/effectiveQuota.json";
+    private static final String NAME = "storage";
+    private static final String UNIT = "byte";
+    private static final Long SOFTLIMIT = 1500000000L;
+    private static final Long HARDLIMIT = 1600000000L;
+    private static final Long USAGE = 250000000L;
+    private static final Integer QUOTA_COUNT = 2;
+    private static final Integer QUOTA_ID = 2;
+    private static final String SUBJECT = "CN=some-group,DC=dataone,DC=org";
+
+    /**
+     * Test serialization to JSON
+     */
+    @Test
+    @DisplayName("Test EffectiveQuota model serialization")
+    public void serializesToJSON() throws Exception {
+        // Build the EffectiveQuota instance
+        final EffectiveQuota effectiveQuota = new EffectiveQuota(NAME, UNIT, SOFTLIMIT, HARDLIMIT,
+            USAGE, QUOTA_COUNT, QUOTA_ID, SUBJECT);
+        // Test the EffectiveQuota instance
+        final String expected = MAPPER.writeValueAsString(
+            MAPPER.readValue(fixture(EFFECTIVE_QUOTA_JSON), EffectiveQuota.class));
+        assertThat(MAPPER.writeValueAsString(effectiveQuota)).isEqualTo(expected);
+    }
+
+    /**
+     * Test deserialization from JSON
+     */
+    @Test
+    @DisplayName("Test EffectiveQuota model deserialization")
+    public void deserializesFromJSON() throws Exception {
+        // Build the EffectiveQuota instance
+        final EffectiveQuota effectiveQuota = new EffectiveQuota(NAME, UNIT, SOFTLIMIT, HARDLIMIT,
+            USAGE, QUOTA_COUNT, QUOTA_ID, SUBJECT);
+
+        // Test the EffectiveQuota instance
+        final EffectiveQuota deserializedEffectiveQuota =
+            MAPPER.readValue(fixture(EFFECTIVE_QUOTA_JSON), EffectiveQuota.class);
+        assertThat(deserializedEffectiveQuota).isEqualTo(effectiveQuota);
+    }
+}
@@ -49,8 +49,8 @@ class FeatureTest {
         null,
         "quota",
         "portal",
-        3.0,
-        3.0,
+        3L,
+        3L,
         null,
         "portal",
         null,
@@ -24,6 +24,7 @@ package org.dataone.bookkeeper.api;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import io.dropwizard.jackson.Jackson;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -32,6 +33,7 @@ import javax.validation.constraints.NotNull;
 
 import static io.dropwizard.testing.FixtureHelpers.fixture;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Test the quota model
@@ -46,9 +48,9 @@ class QuotaTest {
     private static final Integer ID = 1;
     private static final String OBJECT = "quota";
     private static final String NAME = "portal";
-    private static final @NotNull Double SOFTLIMIT = 3.0;
-    private static final @NotNull Double HARDLIMIT = 3.0;
-    private static final Double USAGE = null;
+    private static final @NotNull Long SOFTLIMIT = 3L;
+    private static final @NotNull Long HARDLIMIT = 3L;
+    private static final Long USAGE = null;
     private static final String UNIT =  "portal";
     private static final Integer SUBSCRIPTION_ID = null;
     private static final String SUBJECT = null;
@@ -84,4 +86,34 @@ class QuotaTest {
             MAPPER.readValue(fixture("fixtures/quota.json"), Quota.class);
         assertThat(deserializedQuota).isEqualTo(quota);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that quotas read at different times are equal despite their derived forecasts
+     */
+    @Test
+    @DisplayName("Test Quota equality without derived fields")
+    public void equalsWithoutDerivedFields() {
+        final Quota quota = new Quota(ID, OBJECT, NAME, SOFTLIMIT, HARDLIMIT,
+            USAGE, UNIT, SUBSCRIPTION_ID, SUBJECT);
+        quota.setGrowthRate(2.0);
+        quota.setTimeToLimit(86400L);
+        final Quota later = new Quota(ID, OBJECT, NAME, SOFTLIMIT, HARDLIMIT,
+            USAGE, UNIT, SUBSCRIPTION_ID, SUBJECT);
+        later.setGrowthRate(1.5);
+        later.setTimeToLimit(172800L);
+        assertThat(later).isEqualTo(quota);
+        assertThat(later.hashCode()).isEqualTo(quota.hashCode());
+    }
+
+    /**
+     * Test rejecting fractional limits with the default mapper
+     */
+    @Test
+    @DisplayName("Test rejecting fractional Quota limits")
+    public void rejectsFractionalLimits() {
+        assertThrows(MismatchedInputException.class, () ->
+            MAPPER.readValue("{\"softLimit\": 1, \"hardLimit\": 2.5}", Quota.class));
+        assertThrows(MismatchedInputException.class, () ->
+            MAPPER.readValue("{\"softLimit\": 1.5, \"hardLimit\": 2}", Quota.class));
+    }
+}
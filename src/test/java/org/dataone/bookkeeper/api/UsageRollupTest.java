@@ -0,0 +1,81 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.api;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static io.dropwizard.testing.FixtureHelpers.fixture;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the usage rollup model
+ */
+class UsageRollupTest {
+    private final static ObjectMapper MAPPER = Jackson.newObjectMapper();
+    static {
+        MAPPER.setSerializationInclusion(Include.NON_NULL);
+        MAPPER.setSerializationInclusion(Include.NON_EMPTY);
+    }
+    private final static String USAGE_ROLLUP_JSON = "fixtures/usageRollup.json";
+    private static final Integer QUOTA_ID = 1;
+    private static final String INTERVAL = "day";
+    private static final Integer START = 1577836800;
+    private static final Long QUANTITY = 25000L;
+    private static final Integer EVENTS = 3;
+    private static final Long USAGE = 125000L;
+
+    /**
+     * Test serialization to JSON
+     */
+    @Test
+    @DisplayName("Test UsageRollup model serialization")
+    public void serializesToJSON() throws Exception {
+        // Build the UsageRollup instance
+        final UsageRollup usageRollup =
+            new UsageRollup(QUOTA_ID, INTERVAL, START, QUANTITY, EVENTS, USAGE);
+        // Test the UsageRollup instance
+        final String expected = MAPPER.writeValueAsString(
+            MAPPER.readValue(fixture(USAGE_ROLLUP_JSON), UsageRollup.class));
+        assertThat(MAPPER.writeValueAsString(usageRollup)).isEqualTo(expected);
+    }
+
+    /**
+     * Test deserialization from JSON
+     */
+    @Test
+    @DisplayName("Test UsageRollup model deserialization")
+    public void deserializesFromJSON() throws Exception {
+        // Build the UsageRollup instance
+        final UsageRollup usageRollup =
+            new UsageRollup(QUOTA_ID, INTERVAL, START, QUANTITY, EVENTS, USAGE);
+
+        // Test the UsageRollup instance
+        final UsageRollup deserializedUsageRollup =
+            MAPPER.readValue(fixture(USAGE_ROLLUP_JSON), UsageRollup.class);
+        assertThat(deserializedUsageRollup).isEqualTo(usageRollup);
+    }
+}
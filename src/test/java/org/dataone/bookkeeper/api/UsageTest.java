@@ -24,6 +24,7 @@ package org.dataone.bookkeeper.api;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import io.dropwizard.jackson.Jackson;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -32,6 +33,7 @@ import javax.validation.constraints.NotNull;
 
 import static io.dropwizard.testing.FixtureHelpers.fixture;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Test the usage model
@@ -47,7 +49,7 @@ class UsageTest {
     private static final String OBJECT = "usage";
     private static final Integer QUOTA_ID = 1;
     private static final String INSTANCE_ID = "urn:uuid:56925d4b-9e46-49ec-96ea-38dc9ed0a64c";
-    private static final @NotNull Double QUANTITY = 1.0;
+    private static final @NotNull Long QUANTITY = 1L;
     private static final String STATUS = "active";
 
 
@@ -79,4 +81,14 @@ class UsageTest {
             MAPPER.readValue(fixture("fixtures/usage.json"), Usage.class);
         assertThat(deserializedUsage).isEqualTo(usage);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test rejecting fractional quantities with the default mapper
+     */
+    @Test
+    @DisplayName("Test rejecting fractional Usage quantities")
+    public void rejectsFractionalQuantity() {
+        assertThrows(MismatchedInputException.class, () ->
+            MAPPER.readValue("{\"quotaId\": 1, \"quantity\": 3.5}", Usage.class));
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.dropwizard.jackson.Jackson;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Benchmark concurrent usage writes that contend for the same quotas.
+ *
+ * Each scenario runs a number of writer threads for a fixed duration, each
+ * inserting usages against a randomly chosen quota from a pool of 1, 10, or
+ * 1000 quotas. The usage triggers charge every insert to its quota row, so
+ * smaller pools mean more writers queue on the same row lock. Writers call
+ * UsageStore.insert directly, so only the insert and its triggers are measured,
+ * not the cache and event work of QuotasResource.updateUsage.
+ *
+ * Run with {@code mvn -P benchmark test}. Settings are read from system properties:
+ * {@code benchmark.threads} (default 16), {@code benchmark.duration} in seconds
+ * (default 10), {@code benchmark.warmup} in seconds (default 2),
+ * {@code benchmark.quotas} (default "1,10,1000"), and {@code benchmark.output}
+ * (default target/benchmarks/usage-writes.json).
+ */
+public class UsageWriteBenchmark extends BaseTestCase {
+
+    /* The Postgres error code for a detected deadlock */
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    /* The Postgres error code for a failed lock wait */
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    /* How often to sample waiting sessions, in milliseconds */
+    private static final long SAMPLE_INTERVAL = 100L;
+
+    /* The quotas created by the current scenario */
+    private List<Integer> quotaIds = new ArrayList<Integer>();
+
+    /**
+     * Remove the benchmark quotas, along with their usages
+     */
+    @AfterEach
+    public void tearDown() {
+        for (Integer quotaId : this.quotaIds) {
+            try {
+                dbi.useHandle(handle -> handle.execute("DELETE FROM usages WHERE quotaId = ?", quotaId));
+                QuotaHelper.removeTestQuota(quotaId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+        this.quotaIds.clear();
+    }
+
+    /**
+     * Run each quota pool size and write the results as JSON
+     */
+    @Test
+    @DisplayName("Benchmark concurrent usage writes")
+    public void benchmarkUsageWrites() throws Exception {
+        int threads = Integer.getInteger("benchmark.threads", 16);
+        int duration = Integer.getInteger("benchmark.duration", 10);
+        int warmup = Integer.getInteger("benchmark.warmup", 2);
+        String quotaCounts = System.getProperty("benchmark.quotas", "1,10,1000");
+        File output = new File(System.getProperty("benchmark.output", "target/benchmarks/usage-writes.json"));
+
+        // Writers need their own connections, since the test dbi has a single connection pool
+        Jdbi writers = Jdbi.create("jdbc:postgresql://localhost:5432/postgres", "postgres", "postgres");
+        writers.installPlugin(new SqlObjectPlugin());
+
+        List<Map<String, Object>> scenarios = new ArrayList<Map<String, Object>>();
+        for (String quotaCount : quotaCounts.split(",")) {
+            int count = Integer.parseInt(quotaCount.trim());
+            createQuotas(count);
+            if ( warmup > 0 ) {
+                runScenario(writers, threads, warmup);
+            }
+            Map<String, Object> scenario = runScenario(writers, threads, duration);
+            scenarios.add(scenario);
+
+            // Every successful write must have been charged to its quota
+            Long charged = dbi.withHandle(handle ->
+                handle.createQuery("SELECT SUM(usage)::bigint FROM quotas WHERE id IN (<ids>)")
+                    .bindList("ids", this.quotaIds)
+                    .mapTo(Long.class)
+                    .one()
+            );
+            Long written = dbi.withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM usages WHERE quotaId IN (<ids>)")
+                    .bindList("ids", this.quotaIds)
+                    .mapTo(Long.class)
+                    .one()
+            );
+            assertEquals(written, charged);
+            tearDown();
+        }
+
+        Map<String, Object> results = new LinkedHashMap<String, Object>();
+        results.put("benchmark", "usage-writes");
+        results.put("timestamp", System.currentTimeMillis() / 1000L);
+        results.put("threads", threads);
+        results.put("durationSeconds", duration);
+        results.put("scenarios", scenarios);
+
+        File directory = output.getAbsoluteFile().getParentFile();
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        ObjectMapper mapper = Jackson.newObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(output, results);
+    }
+
+    /**
+     * Create the pool of quotas written to by a scenario
+     * @param count  the number of quotas
+     */
+    private void createQuotas(int count) {
+        QuotaStore quotaStore = dbi.onDemand(QuotaStore.class);
+        for (int i = 0; i < count; i++) {
+            Quota quota = new Quota(null, "quota", "storage", Long.MAX_VALUE / 2, Long.MAX_VALUE / 2,
+                null, "byte", null, "urn:uuid:" + UUID.randomUUID());
+            this.quotaIds.add(quotaStore.insert(quota));
+        }
+    }
+
+    /**
+     * Insert usages from concurrent writers, sampling lock waits as they run
+     * @param writers  the Jdbi instance for writer connections
+     * @param threads  the number of writer threads
+     * @param duration  the scenario duration, in seconds
+     * @return scenario  the scenario results
+     */
+    private Map<String, Object> runScenario(Jdbi writers, int threads, int duration)
+        throws InterruptedException {
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Writer[] workers = new Writer[threads];
+        final Integer[] quotas = this.quotaIds.toArray(new Integer[0]);
+
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Writer(writers, quotas, running, ready, start);
+            workers[i].start();
+        }
+        ready.await();
+
+        long deadlocksBefore = getServerDeadlocks();
+        int lockWaitSamples = 0;
+        long lockWaitTotal = 0L;
+        int lockWaitMax = 0;
+
+        long startTime = System.nanoTime();
+        long endTime = startTime + TimeUnit.SECONDS.toNanos(duration);
+        start.countDown();
+        try (Handle sampler = writers.open()) {
+            while ( System.nanoTime() < endTime ) {
+                Thread.sleep(SAMPLE_INTERVAL);
+                int waiting = sampler.createQuery(
+                    "SELECT COUNT(*) FROM pg_stat_activity " +
+                    "WHERE wait_event_type = 'Lock' AND datname = current_database()")
+                    .mapTo(Integer.class)
+                    .one();
+                lockWaitSamples++;
+                lockWaitTotal += waiting;
+                lockWaitMax = Math.max(lockWaitMax, waiting);
+            }
+        }
+        running.set(false);
+        for (Writer worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        // Merge the per-thread latencies
+        int writes = 0;
+        int failures = 0;
+        int deadlocks = 0;
+        int lockFailures = 0;
+        for (Writer worker : workers) {
+            writes += worker.count;
+            failures += worker.failures;
+            deadlocks += worker.deadlocks;
+            lockFailures += worker.lockFailures;
+        }
+        long[] latencies = new long[writes];
+        int offset = 0;
+        for (Writer worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            offset += worker.count;
+        }
+        Arrays.sort(latencies);
+
+        Map<String, Object> scenario = new LinkedHashMap<String, Object>();
+        scenario.put("quotas", quotas.length);
+        scenario.put("threads", threads);
+        scenario.put("writes", writes);
+        scenario.put("failures", failures);
+        scenario.put("throughputPerSecond", writes / (elapsed / 1e9));
+        scenario.put("latencyP50Millis", percentile(latencies, 0.50));
+        scenario.put("latencyP99Millis", percentile(latencies, 0.99));
+        scenario.put("latencyMaxMillis", writes == 0 ? 0.0 : latencies[writes - 1] / 1e6);
+        scenario.put("deadlocks", deadlocks);
+        scenario.put("serverDeadlocks", getServerDeadlocks() - deadlocksBefore);
+        scenario.put("lockFailures", lockFailures);
+        scenario.put("lockWaitsMean", lockWaitSamples == 0 ? 0.0 : (double) lockWaitTotal / lockWaitSamples);
+        scenario.put("lockWaitsMax", lockWaitMax);
+        return scenario;
+    }
+
+    /**
+     * Get the number of deadlocks the server has detected in this database
+     * @return deadlocks  the deadlock count
+     */
+    private long getServerDeadlocks() {
+        return dbi.withHandle(handle ->
+            handle.createQuery("SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()")
+                .mapTo(Long.class)
+                .one()
+        );
+    }
+
+    /**
+     * Get a percentile of sorted latencies in milliseconds, by the nearest rank
+     * @param latencies  the sorted latencies, in nanoseconds
+     * @param percentile  the percentile, between 0 and 1
+     * @return latency  the latency, in milliseconds
+     */
+    private static double percentile(long[] latencies, double percentile) {
+        if ( latencies.length == 0 ) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile * latencies.length);
+        return latencies[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    /**
+     * A writer thread, inserting usages on its own connection until stopped
+     */
+    private static class Writer extends Thread {
+
+        private final Jdbi jdbi;
+        private final Integer[] quotas;
+        private final AtomicBoolean running;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+
+        /* Write latencies in nanoseconds, valid up to count */
+        private long[] latencies = new long[1024];
+        private int count;
+        private int failures;
+        private int deadlocks;
+        private int lockFailures;
+
+        Writer(Jdbi jdbi, Integer[] quotas, AtomicBoolean running,
+               CountDownLatch ready, CountDownLatch start) {
+            this.jdbi = jdbi;
+            this.quotas = quotas;
+            this.running = running;
+            this.ready = ready;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try (Handle handle = jdbi.open()) {
+                UsageStore usageStore = handle.attach(UsageStore.class);
+                ready.countDown();
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while ( running.get() ) {
+                    Integer quotaId = quotas[random.nextInt(quotas.length)];
+                    Usage usage = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + UUID.randomUUID());
+                    long begin = System.nanoTime();
+                    try {
+                        usageStore.insert(usage);
+                    } catch (RuntimeException e) {
+                        record(e);
+                        continue;
+                    }
+                    if ( count == latencies.length ) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - begin;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Classify a failed write by its Postgres error code
+         * @param e  the write failure
+         */
+        private void record(RuntimeException e) {
+            failures++;
+            Throwable cause = e;
+            while ( cause != null && ! (cause instanceof SQLException) ) {
+                cause = cause.getCause();
+            }
+            String state = cause == null ? null : ((SQLException) cause).getSQLState();
+            if ( DEADLOCK_DETECTED.equals(state) ) {
+                deadlocks++;
+            } else if ( LOCK_NOT_AVAILABLE.equals(state) ) {
+                lockFailures++;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Product;
+import org.dataone.bookkeeper.helpers.ProductHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.jdbi.ProductStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test loading and writing through the product catalog
+ */
+public class ProductCatalogTest extends BaseTestCase {
+
+    // The product store used to load the catalog
+    private ProductStore productStore;
+
+    // The catalog to test
+    private ProductCatalog productCatalog;
+
+    // A list of product ids used in testing
+    private List<Integer> productIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the catalog for testing
+     */
+    @BeforeEach
+    public void init() {
+        productStore = dbi.onDemand(ProductStore.class);
+        productCatalog = new ProductCatalog(productStore);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        for (Integer productId : this.productIds) {
+            try {
+                ProductHelper.removeTestProduct(productId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Test loading the catalog at startup
+     */
+    @Test
+    @DisplayName("Test loading the product catalog")
+    public void testStart() {
+        Integer productId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(productId);
+
+        productCatalog.start();
+        assertEquals(1L, productCatalog.getVersion());
+        assertEquals(productStore.getProduct(productId), productCatalog.getProduct(productId));
+        assertEquals(1, productCatalog.getTemplate(productId).getQuotaCount());
+        assertTrue(productCatalog.listProducts().contains(productCatalog.getProduct(productId)));
+        assertTrue(productCatalog.findProductsByName("Organization").contains(
+            productCatalog.getProduct(productId)));
+        assertTrue(productCatalog.findProductsByActiveStatus(false).isEmpty());
+    }
+
+    /**
+     * Test writing products through to the catalog
+     */
+    @Test
+    @DisplayName("Test writing through the product catalog")
+    public void testWriteThrough() {
+        productCatalog.start();
+        long version = productCatalog.getVersion();
+        Integer productId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(productId);
+        assertNull(productCatalog.getProduct(productId));
+
+        productCatalog.put(productStore.getProduct(productId));
+        assertEquals(version + 1, productCatalog.getVersion());
+        assertNotNull(productCatalog.getProduct(productId));
+
+        Product product = productStore.getProduct(productId);
+        product.setActive(false);
+        productStore.update(product);
+        productCatalog.put(productStore.getProduct(productId));
+        assertEquals(version + 2, productCatalog.getVersion());
+        assertTrue(productCatalog.findProductsByActiveStatus(false).contains(product));
+
+        productCatalog.remove(productId);
+        assertEquals(version + 3, productCatalog.getVersion());
+        assertNull(productCatalog.getProduct(productId));
+        assertNull(productCatalog.getTemplate(productId));
+    }
+
+    /**
+     * Test loading products missing from the catalog
+     */
+    @Test
+    @DisplayName("Test getting products missing from the catalog")
+    public void testGetProducts() {
+        Integer cachedId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(cachedId);
+        productCatalog.start();
+        long version = productCatalog.getVersion();
+
+        // Products added by another server are loaded in one change
+        Integer missingId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(missingId);
+        Map<Integer, Product> products = productCatalog.getProducts(
+            Arrays.asList(cachedId, missingId, StoreHelper.getRandomId()));
+        assertEquals(2, products.size());
+        assertEquals(productStore.getProduct(missingId), products.get(missingId));
+        assertEquals(version + 1, productCatalog.getVersion());
+        assertNotNull(productCatalog.getTemplate(missingId));
+
+        // Products in the catalog don't change it
+        productCatalog.getProducts(Arrays.asList(cachedId, missingId));
+        assertEquals(version + 1, productCatalog.getVersion());
+    }
+
+    /**
+     * Test finding products by description patterns
+     */
+    @Test
+    @DisplayName("Test finding catalog products by description")
+    public void testFindProductsByDescription() {
+        Integer productId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(productId);
+        productCatalog.start();
+        Product product = productCatalog.getProduct(productId);
+
+        assertTrue(productCatalog.findProductsByDescription("Create multiple portals%").contains(product));
+        assertTrue(productCatalog.findProductsByDescription("%your _ata%").contains(product));
+        assertTrue(productCatalog.findProductsByDescription("%(your data)%").isEmpty());
+
+        // Search terms are matched by similarity, so misspellings still match
+        assertTrue(productCatalog.findProductsByDescription("multiple portals").contains(product));
+        assertTrue(productCatalog.findProductsByDescription("multiple portls").contains(product));
+        assertTrue(productCatalog.findProductsByDescription("xqzvw").isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.ProductList;
+import org.dataone.bookkeeper.helpers.ProductHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.jdbi.ProductStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test rendering and revalidating serialized catalog responses
+ */
+public class ProductResponseCacheTest extends BaseTestCase {
+
+    private final ObjectMapper mapper = Jackson.newObjectMapper();
+
+    // The product store used to load the catalog
+    private ProductStore productStore;
+
+    // The catalog the responses are rendered from
+    private ProductCatalog productCatalog;
+
+    // The cache to test
+    private ProductResponseCache productResponses;
+
+    // A list of product ids used in testing
+    private List<Integer> productIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the catalog and cache for testing
+     */
+    @BeforeEach
+    public void init() {
+        productStore = dbi.onDemand(ProductStore.class);
+        productCatalog = new ProductCatalog(productStore);
+        productResponses = new ProductResponseCache(productCatalog, mapper);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        for (Integer productId : this.productIds) {
+            try {
+                ProductHelper.removeTestProduct(productId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Test rendering a listing once per catalog version
+     */
+    @Test
+    @DisplayName("Test rendering catalog listings")
+    public void testGet() throws IOException {
+        Integer productId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(productId);
+        productCatalog.start();
+
+        ProductResponseCache.Rendered rendered =
+            productResponses.get("", catalog -> new ProductList(catalog.listProducts()));
+        assertArrayEquals(mapper.writeValueAsBytes(new ProductList(productCatalog.listProducts())),
+            rendered.getBytes());
+        assertNotNull(rendered.getGzipped());
+        assertArrayEquals(rendered.getBytes(), gunzip(rendered.getGzipped()));
+        assertSame(rendered, productResponses.get("", catalog -> fail("Rendered twice")));
+
+        // A catalog change renders a new listing with a new ETag
+        productCatalog.remove(productId);
+        ProductResponseCache.Rendered changed =
+            productResponses.get("", catalog -> new ProductList(catalog.listProducts()));
+        assertNotEquals(rendered.getEtag(false), changed.getEtag(false));
+        assertFalse(changed.matches(rendered.getEtag(false)));
+    }
+
+    /**
+     * Test matching If-None-Match headers
+     */
+    @Test
+    @DisplayName("Test matching catalog listing ETags")
+    public void testMatches() {
+        productCatalog.start();
+        ProductResponseCache.Rendered rendered =
+            productResponses.get("status=false", catalog ->
+                new ProductList(catalog.findProductsByActiveStatus(false)));
+        String etag = rendered.getEtag(false);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertTrue(rendered.matches(etag));
+        assertTrue(rendered.matches("\"other\", W/" + etag));
+        assertTrue(rendered.matches(rendered.getEtag(true)));
+        assertTrue(rendered.matches("*"));
+        assertFalse(rendered.matches("\"other\""));
+        assertFalse(rendered.matches(null));
+    }
+
+    /* Decompress a gzipped response */
+    private byte[] gunzip(byte[] gzipped) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ( (read = in.read(buffer)) > 0 ) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
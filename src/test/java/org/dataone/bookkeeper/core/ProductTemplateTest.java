@@ -0,0 +1,94 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.dropwizard.jackson.Jackson;
+import org.dataone.bookkeeper.api.Feature;
+import org.dataone.bookkeeper.api.Product;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.helpers.ProductHelper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test compiling and provisioning product quota templates
+ */
+class ProductTemplateTest {
+
+    private final ObjectMapper mapper = Jackson.newObjectMapper();
+
+    /**
+     * Test provisioning a product's quota for a subject
+     */
+    @Test
+    @DisplayName("Test provisioning product quotas")
+    public void testProvision() throws Exception {
+        Product product = ProductHelper.createTestProduct(1);
+        ProductTemplate template = ProductTemplate.compile(product, mapper);
+        assertEquals(1, template.getQuotaCount());
+
+        List<Quota> quotas = template.provision("http://orcid.org/0000-0002-8121-2341");
+        assertEquals(1, quotas.size());
+        Quota quota = quotas.get(0);
+        assertNull(quota.getId());
+        assertEquals("portal", quota.getName());
+        assertEquals(3L, quota.getSoftLimit());
+        assertEquals(3L, quota.getHardLimit());
+        assertEquals(0L, quota.getUsage());
+        assertEquals("http://orcid.org/0000-0002-8121-2341", quota.getSubject());
+
+        // Each provisioning gets its own quotas
+        List<Quota> others = template.provision("CN=some-group,DC=dataone,DC=org");
+        assertNotSame(quota, others.get(0));
+        assertEquals("CN=some-group,DC=dataone,DC=org", others.get(0).getSubject());
+        assertEquals("http://orcid.org/0000-0002-8121-2341", quota.getSubject());
+    }
+
+    /**
+     * Test combining the quotas of features with the same quota name
+     */
+    @Test
+    @DisplayName("Test combining product quotas by name")
+    public void testCombine() throws Exception {
+        Product product = ProductHelper.createTestProduct(1);
+        Feature extra = new Feature();
+        extra.setName("extra_portals");
+        extra.setLabel("Extra Portals");
+        extra.setDescription("Create more portals.");
+        extra.setQuota(new Quota(null, "quota", "portal", 2L, 4L, null, "portal", null, null));
+        ((ArrayNode) product.getMetadata().get("features")).add(mapper.valueToTree(extra));
+
+        ProductTemplate template = ProductTemplate.compile(product, mapper);
+        assertEquals(1, template.getQuotaCount());
+        Quota quota = template.provision("CN=some-group,DC=dataone,DC=org").get(0);
+        assertEquals(5L, quota.getSoftLimit());
+        assertEquals(7L, quota.getHardLimit());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test refreshing and invalidating quota snapshots
+ */
+public class QuotaCacheTest extends BaseTestCase {
+
+    // The QuotaStore backing the cache
+    private QuotaStore quotaStore;
+
+    // The QuotaCache to test
+    private QuotaCache quotaCache;
+
+    // The quota used in testing
+    private Integer quotaId;
+
+    // The subject of the quota
+    private String subject;
+
+    // The usage ids used in testing
+    private List<Integer> usageIds = new ArrayList<Integer>();
+
+    /**
+     * Set up a quota and an empty cache
+     */
+    @BeforeEach
+    public void init() {
+        quotaStore = dbi.onDemand(QuotaStore.class);
+        quotaCache = new QuotaCache(quotaStore, CaffeineSpec.parse("maximumSize=100"));
+        subject = "http://orcid.org/0000-0000-0000-" + StoreHelper.getRandomId();
+        try {
+            quotaId = QuotaHelper.insertTestQuotaWithSubject(StoreHelper.getRandomId(), null, subject);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            for (Integer usageId : this.usageIds) {
+                UsageHelper.removeTestUsage(usageId);
+            }
+            QuotaHelper.removeTestQuota(this.quotaId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test that writers refreshing out of order leave the latest total cached
+     */
+    @Test
+    @DisplayName("Test refreshing quotas out of write order")
+    public void testRefreshOutOfOrder() {
+        try {
+            assertNull(quotaCache.getQuota(quotaId).getUsage());
+            assertEquals(1, quotaCache.findQuotasBySubjects(Collections.singletonList(subject)).size());
+
+            // The first writer reads its snapshot, then the second writes and refreshes first
+            this.usageIds.add(UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 1L));
+            Quota first = quotaStore.getQuota(quotaId);
+            this.usageIds.add(UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 2L));
+            assertEquals(3L, (long) quotaCache.refresh(quotaId).getUsage());
+            assertEquals(1L, (long) first.getUsage());
+
+            // The first writer's late refresh doesn't bring back its older total
+            quotaCache.refresh(first.getId());
+            assertEquals(3L, (long) quotaCache.getQuotaIfPresent(quotaId).getUsage());
+            assertEquals(3L, (long) quotaCache.findQuotasBySubjects(
+                Collections.singletonList(subject)).get(0).getUsage());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test invalidating quotas and refreshing deleted quotas
+     */
+    @Test
+    @DisplayName("Test invalidating quotas")
+    public void testInvalidate() {
+        try {
+            Quota quota = quotaCache.getQuota(quotaId);
+            quotaCache.invalidate(quota);
+            assertNull(quotaCache.getQuotaIfPresent(quotaId));
+
+            // A refreshed quota that no longer exists isn't cached
+            Integer deletedId = QuotaHelper.insertTestQuotaWithSubject(StoreHelper.getRandomId(), null, subject);
+            quotaCache.getQuota(deletedId);
+            QuotaHelper.removeTestQuota(deletedId);
+            assertNull(quotaCache.refresh(deletedId));
+            assertNull(quotaCache.getQuotaIfPresent(deletedId));
+            assertEquals(1, quotaCache.findQuotasBySubjects(Collections.singletonList(subject)).size());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+}
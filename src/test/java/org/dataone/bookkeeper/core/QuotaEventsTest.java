@@ -0,0 +1,180 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.QuotaEvent;
+import org.dataone.bookkeeper.config.QuotaEventsConfiguration;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the detection of quota threshold crossings
+ */
+class QuotaEventsTest {
+
+    private final QuotaEvents quotaEvents = new QuotaEvents(new QuotaEventsConfiguration());
+
+    /**
+     * Create a storage quota with a soft limit of 90 and a hard limit of 100
+     */
+    private Quota createQuota(Long usage) {
+        return new Quota(1, "quota", "storage", 90L, 100L, usage, "byte", null,
+            "CN=some-group,DC=dataone,DC=org");
+    }
+
+    /**
+     * Test crossing thresholds upward
+     */
+    @Test
+    @DisplayName("Test exceeding quota thresholds")
+    public void testExceeded() {
+        List<QuotaEvent> events = quotaEvents.crossings(createQuota(50L), createQuota(95L));
+        assertEquals(2, events.size());
+        assertEquals("80%", events.get(0).getThreshold());
+        assertEquals(80L, events.get(0).getLimit());
+        assertEquals("exceeded", events.get(0).getDirection());
+        assertEquals("softLimit", events.get(1).getThreshold());
+
+        events = quotaEvents.crossings(createQuota(95L), createQuota(100L));
+        assertEquals(1, events.size());
+        assertEquals("hardLimit", events.get(0).getThreshold());
+    }
+
+    /**
+     * Test crossing thresholds downward, and changes that cross nothing
+     */
+    @Test
+    @DisplayName("Test clearing quota thresholds")
+    public void testCleared() {
+        List<QuotaEvent> events = quotaEvents.crossings(createQuota(85L), createQuota(null));
+        assertEquals(1, events.size());
+        assertEquals("80%", events.get(0).getThreshold());
+        assertEquals("cleared", events.get(0).getDirection());
+
+        assertEquals(0, quotaEvents.crossings(createQuota(81L), createQuota(82L)).size());
+        assertEquals(0, quotaEvents.crossings(null, createQuota(82L)).size());
+    }
+
+    /**
+     * Test rejecting unparseable thresholds
+     */
+    @Test
+    @DisplayName("Test parsing quota thresholds")
+    public void testParseThresholds() {
+        QuotaEventsConfiguration configuration = new QuotaEventsConfiguration();
+        configuration.setThresholds(Arrays.asList("50%", "nearly"));
+        assertThrows(IllegalArgumentException.class, () -> new QuotaEvents(configuration));
+    }
+
+    /**
+     * Test that clients that never complete a send don't hold up other subscribers
+     */
+    @Test
+    @DisplayName("Test sending past stalled subscribers")
+    public void testStalledSubscriber() throws InterruptedException {
+        QuotaEvents events = new QuotaEvents(new QuotaEventsConfiguration());
+        events.start();
+        try {
+            Sse sse = new TestSse();
+            // More stalled clients than sender threads
+            events.subscribe(new TestSink(null), sse, null);
+            events.subscribe(new TestSink(null), sse, null);
+            events.subscribe(new TestSink(null), sse, null);
+            CountDownLatch received = new CountDownLatch(2);
+            events.subscribe(new TestSink(received), sse, null);
+
+            events.usageChanged(createQuota(50L), createQuota(85L));
+            events.usageChanged(createQuota(85L), createQuota(95L));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertEquals(4, events.getSubscriberCount());
+        } finally {
+            events.stop();
+        }
+    }
+
+    /**
+     * An SSE context building Jersey outbound events
+     */
+    private static class TestSse implements Sse {
+
+        @Override
+        public OutboundSseEvent.Builder newEventBuilder() {
+            return new OutboundEvent.Builder();
+        }
+
+        @Override
+        public SseBroadcaster newBroadcaster() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An event sink that counts sent events, or never completes a send when stalled
+     */
+    private static class TestSink implements SseEventSink {
+
+        /* The count of events to receive, or null if the client is stalled */
+        private final CountDownLatch received;
+
+        private volatile boolean closed = false;
+
+        TestSink(CountDownLatch received) {
+            this.received = received;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return this.closed;
+        }
+
+        @Override
+        public CompletionStage<?> send(OutboundSseEvent event) {
+            if ( this.received == null ) {
+                return new CompletableFuture<Void>();
+            }
+            this.received.countDown();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
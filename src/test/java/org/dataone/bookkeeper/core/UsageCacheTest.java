@@ -0,0 +1,120 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test caching and invalidating usages by instance and quota name
+ */
+public class UsageCacheTest extends BaseTestCase {
+
+    // The UsageCache to test
+    private UsageCache usageCache;
+
+    // The portal quota used in testing
+    private Integer quotaId;
+
+    // The usage used in testing
+    private Integer usageId;
+
+    /**
+     * Set up a quota and an empty cache
+     */
+    @BeforeEach
+    public void init() {
+        QuotaCache quotaCache = new QuotaCache(dbi.onDemand(QuotaStore.class), CaffeineSpec.parse("maximumSize=100"));
+        usageCache = new UsageCache(dbi.onDemand(UsageStore.class), quotaCache,
+            CaffeineSpec.parse("maximumSize=100"));
+        try {
+            quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            if ( usageId != null ) {
+                UsageHelper.removeTestUsage(usageId);
+            }
+            QuotaHelper.removeTestQuota(quotaId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test that instances without a usage aren't cached
+     */
+    @Test
+    @DisplayName("Test not caching missing usages")
+    public void testSkipMissingUsage() throws SQLException {
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        assertNull(usageCache.getUsage(instanceId, "portal"));
+        assertEquals(0, usageCache.getCount());
+
+        usageId = UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 1L);
+        assertEquals(usageId, usageCache.getUsage(instanceId, "portal").getId());
+    }
+
+    /**
+     * Test invalidating the previous instance of a usage that moved to another instance
+     */
+    @Test
+    @DisplayName("Test invalidating cached usages")
+    public void testInvalidate() throws SQLException {
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        String movedId = "urn:uuid:" + StoreHelper.getRandomId();
+        usageId = UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 1L);
+        Usage previous = usageCache.getUsage(instanceId, "portal");
+        assertEquals(usageId, previous.getId());
+
+        dbi.useHandle(handle -> handle.execute("UPDATE usages SET instanceId = ? WHERE id = ?", movedId, usageId));
+        // Still cached until invalidated
+        assertEquals(usageId, usageCache.getUsage(instanceId, "portal").getId());
+        usageCache.invalidate(previous);
+        assertNull(usageCache.getUsage(instanceId, "portal"));
+        assertEquals(usageId, usageCache.getUsage(movedId, "portal").getId());
+    }
+}
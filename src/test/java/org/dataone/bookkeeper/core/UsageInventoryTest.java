@@ -0,0 +1,190 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test reconciling usages against a storage inventory
+ */
+public class UsageInventoryTest extends BaseTestCase {
+
+    // The UsageStore used to reconcile
+    private UsageStore usageStore;
+
+    // The quota used in testing
+    private Integer quotaId;
+
+    // The instance ids used in testing
+    private List<String> instanceIds = new ArrayList<String>();
+
+    /**
+     * Set up a quota with usages a, b, c (archived), and d
+     */
+    @BeforeEach
+    public void init() {
+        usageStore = dbi.onDemand(UsageStore.class);
+        try {
+            quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            for (String name : Arrays.asList("a", "b", "c", "d", "e")) {
+                instanceIds.add("urn:uuid:" + quotaId + "-" + name);
+            }
+            for (int index = 0; index < 4; index++) {
+                UsageHelper.insertTestUsage(
+                    StoreHelper.getRandomId(), quotaId, instanceIds.get(index), (long) index + 1);
+            }
+            Usage archived = UsageHelper.getUsageById(
+                UsageHelper.getUsageIdsByInstanceId(quotaId, instanceIds.get(2)).get(0));
+            archived.setStatus("archived");
+            usageStore.update(archived);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            for (String instanceId : this.instanceIds) {
+                for (Integer usageId : UsageHelper.getUsageIdsByInstanceId(this.quotaId, instanceId)) {
+                    UsageHelper.removeTestUsage(usageId);
+                }
+            }
+            QuotaHelper.removeTestQuota(this.quotaId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test reconciling a CSV inventory in several sort runs and batches
+     */
+    @Test
+    @DisplayName("Test reconciling a CSV inventory")
+    public void testReconcileCSV(@TempDir Path directory) throws Exception {
+        Path inventory = directory.resolve("inventory.csv");
+        Files.write(inventory, Arrays.asList(
+            "instanceId,quantity",
+            instanceIds.get(4) + ",7",
+            instanceIds.get(1) + ",5",
+            instanceIds.get(0) + ",1",
+            "\"" + instanceIds.get(2) + "\",3",
+            instanceIds.get(0) + ",1"
+        ), StandardCharsets.UTF_8);
+
+        UsageInventory.Result result = new UsageInventory(usageStore, 2, 2)
+            .reconcile(quotaId, inventory, UsageInventory.Format.of(inventory), false);
+        assertEquals(5, result.getRead());
+        assertEquals(1, result.getDuplicates());
+        assertEquals(1, result.getMatched());
+        assertEquals(1, result.getInserted());
+        assertEquals(2, result.getUpdated());
+        assertEquals(1, result.getArchived());
+
+        // a, b, c, and e are active, and d is archived, which still counts toward the quota
+        assertEquals(1L + 5L + 3L + 4L + 7L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+        Usage archived = UsageHelper.getUsageById(
+            UsageHelper.getUsageIdsByInstanceId(quotaId, instanceIds.get(3)).get(0));
+        assertEquals("archived", archived.getStatus());
+
+        // Reconciling again finds no changes
+        result = new UsageInventory(usageStore, 2, 2)
+            .reconcile(quotaId, inventory, UsageInventory.Format.CSV, false);
+        assertEquals(4, result.getMatched());
+        assertEquals(0, result.getInserted() + result.getUpdated() + result.getArchived());
+    }
+
+    /**
+     * Test that instances compacted into the archive aren't inserted again
+     */
+    @Test
+    @DisplayName("Test reconciling compacted instances")
+    public void testReconcileCompacted(@TempDir Path directory) throws Exception {
+        // The archived usage of c moves to the archive, and still counts toward the quota
+        assertEquals(1, usageStore.compactArchivedUsages(quotaId, 10));
+        assertEquals(1L + 2L + 3L + 4L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+
+        Path inventory = directory.resolve("inventory.csv");
+        Files.write(inventory, Arrays.asList(
+            instanceIds.get(0) + ",1",
+            instanceIds.get(1) + ",2",
+            instanceIds.get(2) + ",3",
+            instanceIds.get(3) + ",4"
+        ), StandardCharsets.UTF_8);
+        UsageInventory.Result result = new UsageInventory(usageStore, 10, 10)
+            .reconcile(quotaId, inventory, UsageInventory.Format.CSV, false);
+        assertEquals(3, result.getMatched());
+        assertEquals(1, result.getCompacted());
+        assertEquals(0, result.getInserted());
+
+        // c is counted once, through the usage summary
+        assertEquals(0, UsageHelper.getUsageIdsByInstanceId(quotaId, instanceIds.get(2)).size());
+        assertEquals(1L + 2L + 3L + 4L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+    }
+
+    /**
+     * Test a dry run with an NDJSON inventory
+     */
+    @Test
+    @DisplayName("Test a dry run of an NDJSON inventory")
+    public void testDryRunNDJSON(@TempDir Path directory) throws Exception {
+        Path inventory = directory.resolve("inventory.ndjson");
+        Files.write(inventory, Arrays.asList(
+            "{\"instanceId\": \"" + instanceIds.get(0) + "\", \"quantity\": 2}",
+            "{\"instanceId\": \"" + instanceIds.get(4) + "\", \"quantity\": 7}"
+        ), StandardCharsets.UTF_8);
+
+        UsageInventory.Result result = new UsageInventory(usageStore, 10, 10)
+            .reconcile(quotaId, inventory, UsageInventory.Format.of(inventory), true);
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(2, result.getArchived());
+
+        // Nothing was written
+        assertEquals(1L + 2L + 3L + 4L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+        assertEquals(0, UsageHelper.getUsageIdsByInstanceId(quotaId, instanceIds.get(4)).size());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import org.dataone.bookkeeper.api.Usage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test the usage journal
+ */
+class UsageJournalTest {
+
+    // A small segment size so that tests roll segments
+    private static final int SEGMENT_SIZE = 1024;
+
+    /**
+     * Create a usage for the given instance
+     */
+    private Usage createUsage(String instanceId) {
+        Usage usage = new Usage();
+        usage.setObject("usage");
+        usage.setQuotaId(1);
+        usage.setInstanceId(instanceId);
+        usage.setQuantity(1L);
+        usage.setStatus("active");
+        return usage;
+    }
+
+    /**
+     * List the journal segment files
+     */
+    private List<Path> listSegments(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Test appending, reading, and committing across segments
+     */
+    @Test
+    @DisplayName("Test replaying journaled usages")
+    public void testReplay(@TempDir Path directory) throws Exception {
+        UsageJournal journal = new UsageJournal(directory, SEGMENT_SIZE, false);
+        for (int i = 0; i < 20; i++) {
+            journal.append(createUsage("urn:uuid:" + i));
+        }
+        assertEquals(20, journal.getDepth());
+        assertEquals(true, listSegments(directory).size() > 1);
+
+        List<UsageJournal.Entry> entries = journal.read(15);
+        assertEquals(15, entries.size());
+        assertEquals("urn:uuid:0", entries.get(0).getUsage().getInstanceId());
+        journal.commit(entries.get(14), 15);
+        assertEquals(5, journal.getDepth());
+
+        entries = journal.read(15);
+        assertEquals(5, entries.size());
+        assertEquals("urn:uuid:15", entries.get(0).getUsage().getInstanceId());
+        journal.commit(entries.get(4), 5);
+        assertEquals(0, journal.getDepth());
+        assertEquals(0, journal.read(15).size());
+
+        // Replayed segments are deleted
+        assertEquals(1, listSegments(directory).size());
+    }
+
+    /**
+     * Test recovering the depth and replay position after a restart
+     */
+    @Test
+    @DisplayName("Test reopening a journal")
+    public void testReopen(@TempDir Path directory) throws Exception {
+        UsageJournal journal = new UsageJournal(directory, SEGMENT_SIZE, true);
+        for (int i = 0; i < 10; i++) {
+            journal.append(createUsage("urn:uuid:" + i));
+        }
+        journal.commit(journal.read(4).get(3), 4);
+        UUID entryId = journal.read(1).get(0).getId();
+        journal.close();
+
+        UsageJournal reopened = new UsageJournal(directory, SEGMENT_SIZE, true);
+        assertEquals(6, reopened.getDepth());
+        reopened.append(createUsage("urn:uuid:10"));
+        List<UsageJournal.Entry> entries = reopened.read(100);
+        assertEquals(7, entries.size());
+        assertEquals("urn:uuid:4", entries.get(0).getUsage().getInstanceId());
+        assertEquals("urn:uuid:10", entries.get(6).getUsage().getInstanceId());
+
+        // Entries keep their unique ids across restarts
+        assertEquals(entryId, entries.get(0).getId());
+        assertEquals(7, entries.stream().map(UsageJournal.Entry::getId).distinct().count());
+    }
+
+    /**
+     * Test ignoring a record whose CRC doesn't match, such as a torn write
+     */
+    @Test
+    @DisplayName("Test dropping a corrupt record")
+    public void testCorruptRecord(@TempDir Path directory) throws Exception {
+        UsageJournal journal = new UsageJournal(directory, SEGMENT_SIZE, true);
+        journal.append(createUsage("urn:uuid:0"));
+        journal.append(createUsage("urn:uuid:1"));
+        journal.close();
+
+        // Corrupt the last byte of the second record's payload
+        Path segment = listSegments(directory).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int length = file.readInt();
+            file.seek(8 + length);
+            int secondLength = file.readInt();
+            long last = 8 + length + 8 + secondLength - 1;
+            file.seek(last);
+            int value = file.read();
+            file.seek(last);
+            file.write(value ^ 0xff);
+        }
+
+        UsageJournal reopened = new UsageJournal(directory, SEGMENT_SIZE, true);
+        assertEquals(1, reopened.getDepth());
+        reopened.append(createUsage("urn:uuid:2"));
+        List<UsageJournal.Entry> entries = reopened.read(10);
+        assertEquals(2, entries.size());
+        assertEquals("urn:uuid:2", entries.get(1).getUsage().getInstanceId());
+    }
+}
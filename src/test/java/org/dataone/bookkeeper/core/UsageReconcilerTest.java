@@ -0,0 +1,155 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.config.UsageReconciliationConfiguration;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.ReconciliationStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test reconciling quota usages in checkpointed, throttled chunks
+ */
+public class UsageReconcilerTest extends BaseTestCase {
+
+    // The ReconciliationStore used by the reconcilers
+    private ReconciliationStore reconciliationStore;
+
+    // The QuotaCache refreshed by the reconcilers
+    private QuotaCache quotaCache;
+
+    // The reconciliation configuration, one quota per chunk
+    private UsageReconciliationConfiguration configuration;
+
+    // Two quotas with consecutive ids
+    private Integer firstId;
+    private Integer secondId;
+
+    // A usage of each quota
+    private Integer firstUsageId;
+    private Integer secondUsageId;
+
+    /**
+     * Set up two drifted quotas, with the checkpoint just before them
+     */
+    @BeforeEach
+    public void init() {
+        reconciliationStore = dbi.onDemand(ReconciliationStore.class);
+        quotaCache = new QuotaCache(dbi.onDemand(QuotaStore.class), CaffeineSpec.parse("maximumSize=100"));
+        configuration = new UsageReconciliationConfiguration();
+        configuration.setChunkSize(1);
+        try {
+            firstId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            secondId = QuotaHelper.insertTestQuotaWithSubscription(firstId + 1, null);
+            firstUsageId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), firstId, StoreHelper.getRandomId().toString(), 1L);
+            secondUsageId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), secondId, StoreHelper.getRandomId().toString(), 1L);
+        } catch (SQLException e) {
+            fail(e);
+        }
+        dbi.useHandle(handle ->
+            handle.execute("UPDATE quotas SET usage = 5 WHERE id IN (?, ?)", firstId, secondId)
+        );
+        reconciliationStore.saveCheckpoint(UsageReconciler.CHECKPOINT, firstId - 1);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            UsageHelper.removeTestUsage(firstUsageId);
+            UsageHelper.removeTestUsage(secondUsageId);
+            QuotaHelper.removeTestQuota(firstId);
+            QuotaHelper.removeTestQuota(secondId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+        dbi.useHandle(handle ->
+            handle.execute("DELETE FROM reconciliation_checkpoints WHERE name = ?", UsageReconciler.CHECKPOINT)
+        );
+    }
+
+    /**
+     * Test stopping between chunks and resuming from the checkpoint after a restart
+     */
+    @Test
+    @DisplayName("Test resuming reconciliation from the checkpoint")
+    public void testResumeFromCheckpoint() throws Exception {
+        // A tiny duty cycle pauses for a long time after the first chunk
+        configuration.setDutyCycle(0.0001);
+        UsageReconciler reconciler = new UsageReconciler(
+            reconciliationStore, quotaCache, configuration, new MetricRegistry());
+        reconciler.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( ! firstId.equals(reconciliationStore.getCheckpoint(UsageReconciler.CHECKPOINT)) &&
+            System.currentTimeMillis() < deadline ) {
+            Thread.sleep(20);
+        }
+
+        // Stopping drops the paused chunk rather than waiting to run it
+        long stopping = System.currentTimeMillis();
+        reconciler.stop();
+        assertTrue(System.currentTimeMillis() - stopping < 5000);
+        assertEquals(firstId, reconciliationStore.getCheckpoint(UsageReconciler.CHECKPOINT));
+        assertEquals(1L, (long) QuotaHelper.getQuotaById(firstId).getUsage());
+        assertEquals(5L, (long) QuotaHelper.getQuotaById(secondId).getUsage());
+
+        // A new reconciler resumes after the first quota
+        UsageReconciler restarted = new UsageReconciler(
+            reconciliationStore, quotaCache, configuration, new MetricRegistry());
+        assertTrue(restarted.reconcileChunk());
+        assertEquals(secondId, reconciliationStore.getCheckpoint(UsageReconciler.CHECKPOINT));
+        assertEquals(1L, (long) QuotaHelper.getQuotaById(secondId).getUsage());
+    }
+
+    /**
+     * Test the pause that keeps the job within its duty cycle
+     */
+    @Test
+    @DisplayName("Test throttling to the duty cycle")
+    public void testPause() {
+        configuration.setDutyCycle(0.05);
+        UsageReconciler reconciler = new UsageReconciler(
+            reconciliationStore, quotaCache, configuration, new MetricRegistry());
+        assertEquals(190L, reconciler.getPause(10L));
+        configuration.setDutyCycle(1.0);
+        assertEquals(0L, reconciler.getPause(10L));
+    }
+}
@@ -27,7 +27,9 @@ import io.dropwizard.jackson.Jackson;
 import org.dataone.bookkeeper.BaseTestCase;
 import org.dataone.bookkeeper.api.Order;
 import org.dataone.bookkeeper.api.OrderItem;
+import org.dataone.bookkeeper.jdbi.OrderItemsReducer;
 import org.dataone.bookkeeper.jdbi.mappers.OrderMapper;
+import org.jdbi.v3.core.mapper.reflect.BeanMapper;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -136,9 +138,10 @@ public class OrderHelper {
      * @param orderId
      */
     public static void removeTestOrder(Integer orderId) throws SQLException {
-        BaseTestCase.dbi.useHandle(handle ->
-            handle.execute("DELETE FROM orders WHERE id = ?", orderId)
-        );
+        BaseTestCase.dbi.useHandle(handle -> {
+            handle.execute("DELETE FROM orders WHERE id = ?", orderId);
+            handle.execute("DELETE FROM archive.orders WHERE id = ?", orderId);
+        });
     }
 
     /**
@@ -163,14 +166,12 @@ public class OrderHelper {
                     "currency, " +
                     "customer, " +
                     "email, " +
-                    "items, " +
                     "metadata, " +
                     "status, " +
-                    "statusTransitions, " +
                     "updated " +
                     ") VALUES (" +
                     "?, ?, ?, ?, ?::json, to_timestamp(?), " +
-                    "?, ?, ?, ?::json, ?::json, ?, ?::json, to_timestamp(?))",
+                    "?, ?, ?, ?::json, ?, to_timestamp(?))",
                     order.getId(),
                     order.getObject(),
                     order.getAmount(),
@@ -180,13 +181,13 @@ public class OrderHelper {
                     order.getCurrency(),
                     order.getCustomer(),
                     order.getEmail(),
-                    order.getItemsJSON(),
                     order.getMetadataJSON(),
                     order.getStatus(),
-                    order.getStatusTransitionsJSON(),
                     order.getUpdated()
                 )
             );
+            OrderHelper.insertTestOrderItems(order);
+            OrderHelper.insertTestStatusTransitions(order);
         } catch (IOException e) {
             fail(e);
         }
@@ -212,14 +213,12 @@ public class OrderHelper {
                         "currency, " +
                         "customer, " +
                         "email, " +
-                        "items, " +
-                        "metadata, " +
+                            "metadata, " +
                         "status, " +
-                        "statusTransitions, " +
-                        "updated " +
+                            "updated " +
                         ") VALUES (" +
                         "?, ?, ?, ?, ?::json, to_timestamp(?), " +
-                        "?, ?, ?, ?::json, ?::json, ?, ?::json, to_timestamp(?))",
+                        "?, ?, ?, ?::json, ?, to_timestamp(?))",
                     order.getId(),
                     order.getObject(),
                     order.getAmount(),
@@ -229,19 +228,62 @@ public class OrderHelper {
                     order.getCurrency(),
                     order.getCustomer(),
                     order.getEmail(),
-                    order.getItemsJSON(),
                     order.getMetadataJSON(),
                     order.getStatus(),
-                    order.getStatusTransitionsJSON(),
                     order.getUpdated()
                 )
             );
+            OrderHelper.insertTestOrderItems(order);
+            OrderHelper.insertTestStatusTransitions(order);
         } catch (IOException e) {
             fail(e);
         }
         return order;
     }
 
+    /**
+     * Insert the items of a test order
+     * @param order the order whose items to insert
+     */
+    public static void insertTestOrderItems(Order order) {
+        BaseTestCase.dbi.useHandle(handle -> {
+            for (OrderItem item : order.getItems()) {
+                handle.execute("INSERT INTO order_items " +
+                    "(orderId, object, amount, currency, description, parent, quantity, type) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    order.getId(),
+                    item.getObject(),
+                    item.getAmount(),
+                    item.getCurrency(),
+                    item.getDescription(),
+                    item.getParent(),
+                    item.getQuantity(),
+                    item.getType()
+                );
+            }
+        });
+    }
+
+    /**
+     * Insert the status transitions of a test order
+     * @param order the order whose status transitions to insert
+     */
+    public static void insertTestStatusTransitions(Order order) {
+        if ( order.getStatusTransitions() == null ) {
+            return;
+        }
+        BaseTestCase.dbi.useHandle(handle ->
+            order.getStatusTransitions().fields().forEachRemaining(transition ->
+                handle.execute("INSERT INTO order_status_transitions (orderId, status, at) " +
+                    "VALUES (?, ?, to_timestamp(?))",
+                    order.getId(),
+                    transition.getKey(),
+                    transition.getValue().asInt()
+                )
+            )
+        );
+    }
+
     /**
      * Get the number of orders for a given order id
      * @param orderId the order id
@@ -265,24 +307,36 @@ public class OrderHelper {
     public static Order getTestOrderById(Integer orderId) {
         Order order = BaseTestCase.dbi.withHandle(handle ->
             handle.createQuery("SELECT " +
-                "id, " +
-                "object, " +
-                "amount, " +
-                "amountReturned, " +
-                "charge, " +
-                "date_part('epoch', created)::int AS created, " +
-                "currency, " +
-                "customer, " +
-                "email, " +
-                "items, " +
-                "metadata, " +
-                "status, " +
-                "statusTransitions, " +
-                "date_part('epoch',updated)::int AS updated " +
-                "FROM orders WHERE id = :id")
+                "o.id, " +
+                "o.object, " +
+                "o.amount, " +
+                "o.amountReturned, " +
+                "o.charge, " +
+                "date_part('epoch', o.created)::int AS created, " +
+                "o.currency, " +
+                "o.customer, " +
+                "o.email, " +
+                "o.metadata, " +
+                "o.status, " +
+                "(SELECT json_object_agg(t.status, date_part('epoch', t.at)::int ORDER BY t.at, t.id) " +
+                    "FROM order_status_transitions t WHERE t.orderId = o.id) AS statusTransitions, " +
+                "date_part('epoch', o.updated)::int AS updated, " +
+                "i.id AS i_id, " +
+                "i.object AS i_object, " +
+                "i.amount AS i_amount, " +
+                "i.currency AS i_currency, " +
+                "i.description AS i_description, " +
+                "i.parent AS i_parent, " +
+                "i.quantity AS i_quantity, " +
+                "i.type AS i_type " +
+                "FROM orders o LEFT JOIN order_items i ON i.orderId = o.id " +
+                "WHERE o.id = :id ORDER BY i.id")
                 .bind("id", orderId)
-                .map(new OrderMapper())
-                .one()
+                .registerRowMapper(new OrderMapper())
+                .registerRowMapper(BeanMapper.factory(OrderItem.class, "i"))
+                .reduceRows(new OrderItemsReducer())
+                .findFirst()
+                .orElse(null)
         );
         return order;
     }
@@ -31,6 +31,7 @@ import org.dataone.bookkeeper.api.Product;
 import org.dataone.bookkeeper.api.Quota;
 import org.dataone.bookkeeper.jdbi.mappers.ProductMapper;
 
+import java.io.IOException;
 import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.fail;
@@ -102,9 +103,9 @@ public class ProductHelper {
         Integer quota_id = 1;
         String quota_type = "quota";
         String quota_name = "portal";
-        @javax.validation.constraints.NotNull Double quota_soft_limit = 3.0;
-        @javax.validation.constraints.NotNull Double quota_hard_limit = 3.0;
-        Double quota_usage = null;
+        @javax.validation.constraints.NotNull Long quota_soft_limit = 3L;
+        @javax.validation.constraints.NotNull Long quota_hard_limit = 3L;
+        Long quota_usage = null;
         String quota_unit = "portal";
         Integer quota_customer_id = null;
         String quota_subject = null;
@@ -138,8 +139,16 @@ public class ProductHelper {
         feature6.setDescription("Vote on the direction and priorities at DataONE Community meetings.");
 
         // Add the feature list to the metadata object
+        // Parse the quota feature from JSON text, so its whole numbers are read as
+        // they are from the database, rather than as the Long fields they came from
+        ObjectNode quotaFeature = null;
+        try {
+            quotaFeature = (ObjectNode) mapper.readTree(mapper.writeValueAsString(feature1));
+        } catch (IOException e) {
+            fail(e);
+        }
         metadata.putArray("features")
-            .add(mapper.convertValue(feature1, ObjectNode.class))
+            .add(quotaFeature)
             .add(mapper.convertValue(feature2, ObjectNode.class))
             .add(mapper.convertValue(feature3, ObjectNode.class))
             .add(mapper.convertValue(feature4, ObjectNode.class))
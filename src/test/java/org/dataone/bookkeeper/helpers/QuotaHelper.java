@@ -59,8 +59,8 @@ public class QuotaHelper {
                 quotaId,
                 "quota",
                 "portal",
-                5.0,
-                10.0,
+                5L,
+                10L,
                 null,
                 "portal",
                 subscriptionId,
@@ -87,8 +87,8 @@ public class QuotaHelper {
                 quotaId,
                 "quota",
                 "portal",
-                5.0,
-                5.0,
+                5L,
+                5L,
                 null,
                 "portal",
                 subscriptionId,
@@ -166,8 +166,8 @@ public class QuotaHelper {
         quota.setId(quotaId);
         quota.setObject("quota");
         quota.setName("storage" + quotaId);
-        quota.setSoftLimit(4000000.0);
-        quota.setHardLimit(5000000.0);
+        quota.setSoftLimit(4000000L);
+        quota.setHardLimit(5000000L);
         quota.setUsage(null);
         quota.setUnit("megabyte");
         quota.setSubscriptionId(subscriptionId);
@@ -180,8 +180,8 @@ public class QuotaHelper {
         quota.setId(quotaId);
         quota.setObject("quota");
         quota.setName("test_portal_quota_" + quotaId);
-        quota.setSoftLimit(3.0);
-        quota.setHardLimit(3.0);
+        quota.setSoftLimit(3L);
+        quota.setHardLimit(3L);
         quota.setUsage(null);
         quota.setUnit("portal");
         quota.setSubscriptionId(subscriptionId);
@@ -242,7 +242,7 @@ public class QuotaHelper {
     public static Quota getQuotaById(Integer quotaId) {
         Quota quota = BaseTestCase.dbi.withHandle(handle ->
             handle.createQuery("SELECT id, object, name, softLimit, hardLimit, usage, unit, " +
-                "subscriptionId, subject " +
+                "subscriptionId, subject, parentId " +
                 "FROM quotas WHERE id = :id")
                 .bind("id", quotaId)
                 .mapToBean(Quota.class)
@@ -0,0 +1,166 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.helpers;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Usage;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A delegate class with helper methods for manipulating the usages table during testing
+ */
+public class UsageHelper {
+
+    /**
+     * Insert a test usage with the given id, quota id, instance id, and quantity
+     * @param usageId
+     * @param quotaId
+     * @param instanceId
+     * @param quantity
+     * @return
+     */
+    public static Integer insertTestUsage(
+        Integer usageId, Integer quotaId, String instanceId, Long quantity) throws SQLException {
+        BaseTestCase.dbi.useHandle(handle ->
+            handle.execute("INSERT INTO usages " +
+                "(id, object, quotaId, instanceId, quantity, status) " +
+                "VALUES " +
+                "(?, ?, ?, ?, ?, ?)",
+                usageId,
+                "usage",
+                quotaId,
+                instanceId,
+                quantity,
+                "active")
+        );
+        return usageId;
+    }
+
+    /**
+     * Create a test Usage instance given the quota id and instance id
+     * @param usageId
+     * @param quotaId
+     * @param instanceId
+     * @return
+     */
+    public static Usage createTestUsage(Integer usageId, Integer quotaId, String instanceId) {
+        Usage usage = new Usage();
+        usage.setId(usageId);
+        usage.setObject("usage");
+        usage.setQuotaId(quotaId);
+        usage.setInstanceId(instanceId);
+        usage.setQuantity(1L);
+        usage.setStatus("active");
+        return usage;
+    }
+
+    /**
+     * Remove a test usage given its id
+     * @param usageId
+     */
+    public static void removeTestUsage(Integer usageId) throws SQLException {
+        BaseTestCase.dbi.useHandle(handle ->
+            handle.execute("DELETE FROM usages WHERE id = ?", usageId)
+        );
+    }
+
+    /**
+     * Return the number of usages for the given usage id
+     * @param usageId
+     * @return
+     */
+    public static Integer getUsageCountById(Integer usageId) {
+        Integer count = BaseTestCase.dbi.withHandle(handle ->
+            handle.createQuery("SELECT count(*) FROM usages WHERE id = :id")
+                .bind("id", usageId)
+                .mapTo(Integer.class)
+                .one()
+        );
+        return count;
+    }
+
+    /**
+     * Return a usage instance given a usage id
+     * @param usageId
+     * @return
+     */
+    public static Usage getUsageById(Integer usageId) {
+        Usage usage = BaseTestCase.dbi.withHandle(handle ->
+            handle.createQuery("SELECT id, object, quotaId, instanceId, quantity, status " +
+                "FROM usages WHERE id = :id")
+                .bind("id", usageId)
+                .mapToBean(Usage.class)
+                .one()
+        );
+        return usage;
+    }
+
+    /**
+     * Return the number of archived usages for the given usage id
+     * @param usageId
+     * @return
+     */
+    public static Integer getArchivedUsageCountById(Integer usageId) {
+        Integer count = BaseTestCase.dbi.withHandle(handle ->
+            handle.createQuery("SELECT count(*) FROM usages_archive WHERE id = :id")
+                .bind("id", usageId)
+                .mapTo(Integer.class)
+                .one()
+        );
+        return count;
+    }
+
+    /**
+     * Return the summarized quantity of compacted usages for the given quota id
+     * @param quotaId
+     * @return
+     */
+    public static Long getUsageSummaryQuantity(Integer quotaId) {
+        Long quantity = BaseTestCase.dbi.withHandle(handle ->
+            handle.createQuery("SELECT quantity FROM usage_summaries WHERE quotaId = :quotaId")
+                .bind("quotaId", quotaId)
+                .mapTo(Long.class)
+                .findOne()
+                .orElse(null)
+        );
+        return quantity;
+    }
+
+    /**
+     * Return the ids of the usages for the given quota id and instance id
+     * @param quotaId
+     * @param instanceId
+     * @return
+     */
+    public static List<Integer> getUsageIdsByInstanceId(Integer quotaId, String instanceId) {
+        List<Integer> usageIds = BaseTestCase.dbi.withHandle(handle ->
+            handle.createQuery("SELECT id FROM usages WHERE quotaId = :quotaId AND instanceId = :instanceId")
+                .bind("quotaId", quotaId)
+                .bind("instanceId", instanceId)
+                .mapTo(Integer.class)
+                .list()
+        );
+        return usageIds;
+    }
+}
@@ -22,12 +22,20 @@
 package org.dataone.bookkeeper.jdbi;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.dataone.bookkeeper.BaseTestCase;
 import org.dataone.bookkeeper.api.Customer;
 import org.dataone.bookkeeper.api.Order;
+import org.dataone.bookkeeper.api.OrderItem;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Subscription;
 import org.dataone.bookkeeper.helpers.CustomerHelper;
 import org.dataone.bookkeeper.helpers.StoreHelper;
 import org.dataone.bookkeeper.helpers.OrderHelper;
+import org.dataone.bookkeeper.helpers.ProductHelper;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.SubscriptionHelper;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -36,9 +44,13 @@ import org.junit.jupiter.api.Test;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -261,6 +273,314 @@ public class OrderStoreTest extends BaseTestCase {
         }
     }
 
+    /**
+     * Test paging through orders filtered by status and created range
+     */
+    @Test
+    @DisplayName("Test finding pages of orders")
+    public void testFindOrders() {
+        try {
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+
+            // Three paid orders and a canceled one, a day apart
+            List<Integer> paidIds = new ArrayList<Integer>();
+            String[] statuses = {"paid", "paid", "canceled", "paid"};
+            for (int i = 0; i < statuses.length; i++) {
+                Order order = OrderHelper.createTestOrder(
+                    null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+                order.setStatus(statuses[i]);
+                order.setCreated(1559768309 + i * 86400);
+                Integer orderId = orderStore.insert(order);
+                this.orderIds.add(orderId);
+                if ( statuses[i].equals("paid") ) {
+                    paidIds.add(orderId);
+                }
+            }
+
+            // Page through the paid orders two at a time
+            List<Order> page = orderStore.findOrders(customerId, "paid", null, null, 0, 2);
+            assertEquals(paidIds.subList(0, 2),
+                Arrays.asList(page.get(0).getId(), page.get(1).getId()));
+            assertEquals(1, page.get(0).getItems().size());
+            page = orderStore.findOrders(customerId, "paid", null, null, page.get(1).getId(), 2);
+            assertEquals(1, page.size());
+            assertEquals(paidIds.get(2), page.get(0).getId());
+
+            // Filter by the created range of the second and third orders
+            page = orderStore.findOrders(customerId, null, 1559768309 + 86400, 1559768309 + 3 * 86400, 0, 10);
+            assertEquals(2, page.size());
+            assertEquals("canceled", page.get(1).getStatus());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test finding orders including the archive, and maintaining partitions
+     */
+    @Test
+    @DisplayName("Test finding orders with history")
+    public void testFindOrdersWithHistory() {
+        try {
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+            List<Integer> ids = new ArrayList<Integer>();
+            for (int i = 0; i < 3; i++) {
+                Order order = OrderHelper.createTestOrder(
+                    null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+                Integer orderId = orderStore.insert(order);
+                this.orderIds.add(orderId);
+                ids.add(orderId);
+            }
+
+            // Recent orders are found with or without history
+            assertEquals(ids.get(0), orderStore.getOrderWithHistory(ids.get(0)).getId());
+            assertEquals(1, orderStore.getOrderWithHistory(ids.get(0)).getItems().size());
+            List<Order> page = orderStore.findOrdersWithHistory(customerId, null, null, null, 0, 2);
+            assertEquals(ids.subList(0, 2), Arrays.asList(page.get(0).getId(), page.get(1).getId()));
+            page = orderStore.findOrdersWithHistory(customerId, null, null, null, page.get(1).getId(), 2);
+            assertEquals(1, page.size());
+
+            // Maintenance never archives the partitions of recent orders
+            assertTrue(orderStore.createPartitions(3) >= 0);
+            assertEquals(0, (int) orderStore.archivePartitions(1559768309 - 86400));
+            assertEquals(3, orderStore.findOrders(customerId, null, null, null, 0, 10).size());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test totaling order item revenue by product
+     */
+    @Test
+    @DisplayName("Test finding revenue by product")
+    public void testFindRevenueByProduct() {
+        try {
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+            Integer productId = StoreHelper.getRandomId();
+
+            // A paid order with two SKUs of the product and a tax item
+            Order order = OrderHelper.createTestOrder(
+                null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+            List<OrderItem> items = new ArrayList<OrderItem>();
+            for (String type : new String[] {"sku", "sku", "tax"}) {
+                OrderItem item = OrderHelper.createTestOrderItems().get(0);
+                item.setParent(productId);
+                item.setType(type);
+                items.add(item);
+            }
+            items.get(1).setAmount(25000);
+            order.setItems(items);
+            Integer orderId = orderStore.insert(order);
+            this.orderIds.add(orderId);
+
+            // The items are stored and read back in order
+            assertEquals(items, orderStore.getOrder(orderId).getItems());
+            assertEquals(75000L, orderStore.findRevenueByProduct("paid", "USD").get(productId));
+            assertNull(orderStore.findRevenueByProduct("canceled", "USD").get(productId));
+
+            // Updates replace the items
+            order.setId(orderId);
+            order.setItems(items.subList(0, 1));
+            orderStore.update(order);
+            assertEquals(1, orderStore.getOrder(orderId).getItems().size());
+            assertEquals(50000L, orderStore.findRevenueByProduct("paid", "USD").get(productId));
+
+            // The history totals the recent orders too
+            assertEquals(50000L, orderStore.findRevenueByProductWithHistory("paid", "USD").get(productId));
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test finding orders by their status transitions
+     */
+    @Test
+    @DisplayName("Test finding orders by status transition")
+    public void testFindOrdersByStatusTransition() {
+        try {
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+
+            // A new order, created a day ago without a transition history
+            Integer now = new Integer((int) Instant.now().getEpochSecond());
+            Order order = OrderHelper.createTestOrder(
+                null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+            order.setStatus("created");
+            order.setStatusTransitions(null);
+            order.setCreated(now - 86400);
+            Integer orderId = orderStore.insert(order);
+            this.orderIds.add(orderId);
+            order.setId(orderId);
+
+            // Pay it now, and update it again without a status change
+            order.setStatus("paid");
+            order.setUpdated(now);
+            orderStore.update(order);
+            order.setUpdated(now + 1);
+            orderStore.update(order);
+
+            ObjectNode statusTransitions = orderStore.getOrder(orderId).getStatusTransitions();
+            assertEquals(2, statusTransitions.size());
+            assertEquals(now - 86400, statusTransitions.get("created").asInt());
+            assertEquals((int) now, statusTransitions.get("paid").asInt());
+
+            // Only the payment is in the last hour
+            List<Order> paid = orderStore.findOrdersByStatusTransition("paid", now - 3600, now + 3600);
+            assertTrue(paid.stream().anyMatch(o -> o.getId().equals(orderId)));
+            assertTrue(orderStore.findOrdersByStatusTransition("created", now - 3600, now + 3600)
+                .stream().noneMatch(o -> o.getId().equals(orderId)));
+            assertTrue(orderStore.countStatusTransitions(now - 3600, now + 3600).get("paid") >= 1);
+
+            // The history finds the recent orders too
+            assertTrue(orderStore.findOrdersByStatusTransitionWithHistory("paid", now - 3600, now + 3600)
+                .stream().anyMatch(o -> o.getId().equals(orderId)));
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test paying an order with its subscriptions and quotas in one transaction
+     */
+    @Test
+    @DisplayName("Test paying an order")
+    public void testPay() {
+        List<Integer> subscriptionIds = new ArrayList<Integer>();
+        List<Integer> quotaIds = new ArrayList<Integer>();
+        List<Integer> productIds = new ArrayList<Integer>();
+        try {
+            // Insert a new customer and an order for them
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+            Order order = OrderHelper.insertTestOrder(
+                OrderHelper.createTestOrder(StoreHelper.getRandomId(),
+                    customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId()));
+            this.orderIds.add(order.getId());
+            order.setStatus("created");
+            orderStore.update(order);
+
+            // Subscribe the customer to two products, each with two quotas
+            List<Subscription> subscriptions = new ArrayList<Subscription>();
+            List<List<Quota>> quotas = new ArrayList<List<Quota>>();
+            for (int i = 0; i < 2; i++) {
+                Integer productId = StoreHelper.getRandomId();
+                productIds.add(productId);
+                subscriptions.add(SubscriptionHelper.createSubscription(null, customerId, productId));
+                List<Quota> subscriptionQuotas = new ArrayList<Quota>();
+                subscriptionQuotas.add(QuotaHelper.createTestStorageQuota(StoreHelper.getRandomId(), null));
+                subscriptionQuotas.add(QuotaHelper.createTestPortalQuota(StoreHelper.getRandomId(), null));
+                quotas.add(subscriptionQuotas);
+            }
+
+            // A failed quota insert rolls back the subscriptions and the order update
+            order.setStatus("paid");
+            quotas.get(1).get(1).setName(null);
+            try {
+                orderStore.pay(order, subscriptions, quotas);
+                fail("Expected the payment to fail");
+            } catch (Exception e) {
+                assertEquals("created", OrderHelper.getTestOrderById(order.getId()).getStatus());
+                assertEquals(0, (int) QuotaHelper.getQuotaCountByName(quotas.get(0).get(0).getName()));
+            }
+
+            // A valid payment inserts everything and marks the order paid
+            quotas.get(1).get(1).setName("test_portal_quota_" + StoreHelper.getRandomId());
+            orderStore.pay(order, subscriptions, quotas);
+            for (List<Quota> subscriptionQuotas : quotas) {
+                for (Quota quota : subscriptionQuotas) {
+                    quotaIds.add(quota.getId());
+                    subscriptionIds.add(quota.getSubscriptionId());
+                    assertEquals(quota.getSubscriptionId(),
+                        QuotaHelper.getQuotaById(quota.getId()).getSubscriptionId());
+                }
+            }
+            assertEquals(2, new HashSet<Integer>(subscriptionIds).size());
+            assertEquals("paid", OrderHelper.getTestOrderById(order.getId()).getStatus());
+        } catch (SQLException e) {
+            fail(e);
+        } finally {
+            try {
+                for (Integer quotaId : quotaIds) {
+                    QuotaHelper.removeTestQuota(quotaId);
+                }
+                for (Integer subscriptionId : subscriptionIds) {
+                    SubscriptionHelper.removeTestSubscription(subscriptionId);
+                }
+                for (Integer productId : productIds) {
+                    ProductHelper.removeTestProduct(productId);
+                }
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Test moving orders out of the default partition, and archiving their partitions
+     */
+    @Test
+    @DisplayName("Test archiving the partitions of old orders")
+    public void testArchivePartitions() {
+        try {
+            Integer customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+            this.customerIds.add(customerId);
+
+            // Orders of months without a partition land in the default partition
+            Order order = OrderHelper.createTestOrder(
+                null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+            Integer orderId = orderStore.insert(order);
+            this.orderIds.add(orderId);
+            Order future = OrderHelper.createTestOrder(
+                null, customerId, StoreHelper.getRandomId(), StoreHelper.getRandomId());
+            future.setCreated(2051222400);
+            Integer futureId = orderStore.insert(future);
+            this.orderIds.add(futureId);
+            assertEquals("orders_default", getPartition(futureId));
+
+            // Creating partitions moves them out of the default partition, with their items
+            assertTrue(orderStore.createPartitions(0) >= 1);
+            assertEquals("orders_y2035m01", getPartition(futureId));
+            assertEquals("orders_y2019m06", getPartition(orderId));
+            assertEquals(1, orderStore.getOrder(futureId).getItems().size());
+            assertEquals(1, orderStore.getOrder(orderId).getItems().size());
+
+            // Archive the partitions ending by July 2019
+            assertTrue(orderStore.archivePartitions(1561939200) >= 1);
+            assertNull(orderStore.getOrder(orderId));
+            assertTrue(orderStore.isArchived(orderId));
+            assertEquals(1, orderStore.getOrderWithHistory(orderId).getItems().size());
+
+            // Archived ids stay unique
+            assertThrows(UnableToExecuteStatementException.class, () -> dbi.useHandle(handle ->
+                handle.execute("INSERT INTO orders (id, object) VALUES (?, 'order')", orderId)));
+
+            // Deleting an archived order deletes its items
+            OrderHelper.removeTestOrder(orderId);
+            assertNull(orderStore.getOrderWithHistory(orderId));
+            assertEquals(0, (int) dbi.withHandle(handle ->
+                handle.createQuery("SELECT COUNT(*) FROM order_items WHERE orderId = :orderId")
+                    .bind("orderId", orderId).mapTo(Integer.class).one()));
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Get the partition of an order
+     * @param orderId  the order id
+     * @return partition  the name of the partition table
+     */
+    private String getPartition(Integer orderId) {
+        return dbi.withHandle(handle ->
+            handle.createQuery("SELECT tableoid::regclass::text FROM orders WHERE id = :orderId")
+                .bind("orderId", orderId).mapTo(String.class).one());
+    }
+
     /**
      * Test deleting an order
      */
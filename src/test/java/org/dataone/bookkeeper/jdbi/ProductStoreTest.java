@@ -102,6 +102,24 @@ public class ProductStoreTest extends BaseTestCase {
         assertTrue(returnedProduct.getId().equals(productId));
     }
 
+    /**
+     * Test getting multiple products by ID in one query
+     */
+    @Test
+    @DisplayName("Test getting products by ids")
+    public void testFindProductsByIds() {
+        Integer product1Id = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(product1Id);
+        Integer product2Id = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(product2Id);
+
+        List<Product> products = productStore.findProductsByIds(
+            new Integer[] {product1Id, product2Id, StoreHelper.getRandomId()});
+        assertTrue(products.size() == 2);
+        assertTrue(products.contains(productStore.getProduct(product1Id)));
+        assertTrue(products.contains(productStore.getProduct(product2Id)));
+    }
+
     /**
      * Test getting a single product by name
      */
@@ -118,6 +136,28 @@ public class ProductStoreTest extends BaseTestCase {
             product.getName()).get(0).getName().equals(product.getName()));
     }
 
+    /**
+     * Test searching products by description, most similar first
+     */
+    @Test
+    @DisplayName("Test searching products by description")
+    public void testSearchProductsByDescription() {
+        Integer product1Id = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+        this.productIds.add(product1Id);
+        Integer product2Id = StoreHelper.getRandomId();
+        Product product2 = ProductHelper.createTestProduct(product2Id);
+        product2.setDescription("Archive your datasets for the long term.");
+        this.productIds.add(product2Id);
+        ProductHelper.insertTestProduct(product2);
+
+        List<Product> products = productStore.searchProductsByDescription("archive datasets");
+        assertTrue(products.get(0).getId().equals(product2Id));
+        assertTrue(products.stream().noneMatch(product -> product.getId().equals(product1Id)));
+
+        // Wildcards in search terms match literally
+        assertTrue(productStore.searchProductsByDescription("100%").isEmpty());
+    }
+
     /**
      * Test getting a single product by active status
      */
@@ -24,6 +24,7 @@ package org.dataone.bookkeeper.jdbi;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.dataone.bookkeeper.BaseTestCase;
 import org.dataone.bookkeeper.api.Customer;
+import org.dataone.bookkeeper.api.EffectiveQuota;
 import org.dataone.bookkeeper.api.Quota;
 import org.dataone.bookkeeper.helpers.*;
 import org.junit.jupiter.api.AfterEach;
@@ -228,6 +229,62 @@ public class QuotaStoreTest extends BaseTestCase {
         }
     }
 
+    @Test
+    @DisplayName("Test totaling effective quotas by subjects")
+    public void testFindEffectiveQuotasBySubjects() {
+
+        Customer customer;
+        Integer subscriptionId;
+        try {
+            // Insert a customer
+            customer = CustomerHelper.insertTestCustomer(
+                CustomerHelper.createCustomer(StoreHelper.getRandomId()));
+            this.customerIds.add(customer.getId()); // To be deleted
+
+            // Insert a subscription
+            subscriptionId =
+                SubscriptionHelper.insertTestSubscription(
+                    StoreHelper.getRandomId(), customer.getId());
+            this.subscriptionIds.add(subscriptionId); // To be deleted
+
+            // Insert a customer portal quota (limit 5L) and a group portal quota (limit 5L)
+            Integer quotaOneId = QuotaHelper.insertTestQuotaWithSubject(
+                StoreHelper.getRandomId(), subscriptionId, customer.getSubject());
+            this.quotaIds.add(quotaOneId);
+
+            String groupSubject = "CN=effective-group-" + StoreHelper.getRandomId() + ",DC=dataone,DC=org";
+            Integer quotaTwoId = QuotaHelper.insertTestQuotaWithSubject(
+                StoreHelper.getRandomId(), subscriptionId, groupSubject);
+            this.quotaIds.add(quotaTwoId);
+
+            // Use up some of the customer's quota so the group quota has the most headroom
+            dbi.useHandle(handle ->
+                handle.execute("UPDATE quotas SET usage = 2 WHERE id = ?", quotaOneId));
+
+            List<String> subjects = new ArrayList<String>();
+            subjects.add(customer.getSubject());
+            subjects.add(groupSubject);
+            List<EffectiveQuota> effectiveQuotas =
+                quotaStore.findEffectiveQuotasBySubjects(subjects, null);
+            assertEquals(1, effectiveQuotas.size());
+            EffectiveQuota effectiveQuota = effectiveQuotas.get(0);
+            assertEquals("portal", effectiveQuota.getName());
+            assertEquals(2, (int) effectiveQuota.getQuotaCount());
+            assertEquals(10L, effectiveQuota.getHardLimit());
+            assertEquals(2L, effectiveQuota.getUsage());
+            assertEquals(quotaTwoId, effectiveQuota.getQuotaId());
+            assertEquals(groupSubject, effectiveQuota.getSubject());
+
+            // Filter by quota name
+            assertEquals(0, quotaStore.findEffectiveQuotasBySubjects(subjects, "storage").size());
+
+        } catch (SQLException e) {
+            fail(e);
+        } catch (JsonProcessingException e) {
+            fail(e);
+        }
+    }
+
     /**
      * Test inserting a Quota instance
      */
@@ -278,14 +335,14 @@ public class QuotaStoreTest extends BaseTestCase {
             quota.setId(quotaId);
             quota.setObject("quota");
             quota.setName("portal");
-            quota.setSoftLimit(10.0);
-            quota.setHardLimit(15.0);
+            quota.setSoftLimit(10L);
+            quota.setHardLimit(15L);
             quota.setUnit("portal");
             quota.setSubscriptionId(subscriptionId);
             quotaStore.update(quota);
             assertEquals(QuotaHelper.getQuotaById(quotaId).getName(), quota.getName());
-            assertThat(QuotaHelper.getQuotaById(quotaId).getSoftLimit() == 10.0);
-            assertThat(QuotaHelper.getQuotaById(quotaId).getHardLimit() == 15.0);
+            assertThat(QuotaHelper.getQuotaById(quotaId).getSoftLimit() == 10L);
+            assertThat(QuotaHelper.getQuotaById(quotaId).getHardLimit() == 15L);
         } catch (SQLException e) {
             fail();
         } catch (JsonProcessingException e) {
@@ -334,4 +391,114 @@ public class QuotaStoreTest extends BaseTestCase {
         }
 
     }
+
+    /**
+     * Test charging, checking, and moving pooled quotas
+     */
+    @Test
+    @DisplayName("Test pooled quota chains")
+    public void testQuotaChain() {
+        try {
+            // A root quota pooling a group quota through an intermediate pool
+            Integer rootId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(rootId);
+            Integer poolId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(poolId);
+            Integer groupId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(groupId);
+            setParent(poolId, rootId);
+            setParent(groupId, poolId);
+            dbi.useHandle(handle ->
+                handle.execute("UPDATE quotas SET hardLimit = 9 WHERE id = ?", rootId));
+
+            // Usage of the group is charged to the whole chain
+            UsageHelper.insertTestUsage(StoreHelper.getRandomId(), groupId, "urn:uuid:" + StoreHelper.getRandomId(), 3L);
+            List<Quota> chain = quotaStore.findQuotaChain(groupId);
+            assertEquals(3, chain.size());
+            assertEquals(groupId, chain.get(0).getId());
+            assertEquals(poolId, chain.get(1).getId());
+            assertEquals(rootId, chain.get(2).getId());
+            for (Quota quota : chain) {
+                assertEquals(3L, quota.getUsage());
+            }
+
+            // Only the root's hard limit is exceeded by 7 more
+            assertEquals(0, quotaStore.findExceededQuotas(groupId, 6L).size());
+            List<Quota> exceeded = quotaStore.findExceededQuotas(groupId, 7L);
+            assertEquals(1, exceeded.size());
+            assertEquals(rootId, exceeded.get(0).getId());
+
+            // Detaching the group releases its usage from the pool and root
+            setParent(groupId, null);
+            assertEquals(3L, QuotaHelper.getQuotaById(groupId).getUsage());
+            assertEquals(0L, QuotaHelper.getQuotaById(poolId).getUsage());
+            assertEquals(0L, QuotaHelper.getQuotaById(rootId).getUsage());
+            assertEquals(1, quotaStore.findQuotaChain(groupId).size());
+
+            // Reattaching charges it again, and deleting the pool releases it from the root
+            setParent(groupId, poolId);
+            assertEquals(3L, QuotaHelper.getQuotaById(rootId).getUsage());
+            QuotaHelper.removeTestQuota(poolId);
+            assertEquals(0L, QuotaHelper.getQuotaById(rootId).getUsage());
+            assertEquals(3L, QuotaHelper.getQuotaById(groupId).getUsage());
+            assertEquals(null, QuotaHelper.getQuotaById(groupId).getParentId());
+            assertEquals(1, quotaStore.findQuotaChain(groupId).size());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test forecasting the time until a quota reaches its hard limit
+     */
+    @Test
+    @DisplayName("Test quota growth forecasts")
+    public void testGrowthForecast() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            assertEquals(null, quotaStore.getQuota(quotaId).getTimeToLimit());
+
+            // 2 of 10 units in one change, so a week's decayed rate of 2 units fills the rest in 4 weeks
+            UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 2L);
+            Quota quota = quotaStore.getQuota(quotaId);
+            assertEquals(2.0 / 7, quota.getGrowthRate(), 0.001);
+            long fourWeeks = 4 * 7 * 86400;
+            assertThat(quota.getTimeToLimit()).isBetween(fourWeeks, fourWeeks + 60);
+
+            int now = (int) (System.currentTimeMillis() / 1000);
+            List<Integer> exhausting = new ArrayList<Integer>();
+            for (Quota listed : quotaStore.listExhaustingQuotas(now + (int) fourWeeks + 3600, 1000)) {
+                exhausting.add(listed.getId());
+            }
+            assertThat(exhausting).contains(quotaId);
+            exhausting.clear();
+            for (Quota listed : quotaStore.listExhaustingQuotas(now + (int) fourWeeks - 3600, 1000)) {
+                exhausting.add(listed.getId());
+            }
+            assertThat(exhausting).doesNotContain(quotaId);
+
+            // Doubling the headroom doubles the projection
+            quota.setHardLimit(18L);
+            quotaStore.update(quota);
+            exhausting.clear();
+            for (Quota listed : quotaStore.listExhaustingQuotas(now + 2 * (int) fourWeeks + 3600, 1000)) {
+                exhausting.add(listed.getId());
+            }
+            assertThat(exhausting).contains(quotaId);
+            exhausting.clear();
+            for (Quota listed : quotaStore.listExhaustingQuotas(now + 2 * (int) fourWeeks - 3600, 1000)) {
+                exhausting.add(listed.getId());
+            }
+            assertThat(exhausting).doesNotContain(quotaId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /* Set the parent of a test quota */
+    private void setParent(Integer quotaId, Integer parentId) {
+        dbi.useHandle(handle ->
+            handle.execute("UPDATE quotas SET parentId = ? WHERE id = ?", parentId, quotaId));
+    }
 }
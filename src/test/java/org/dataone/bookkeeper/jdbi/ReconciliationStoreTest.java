@@ -0,0 +1,131 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.jdbi;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test the Reconciliation data access object
+ */
+public class ReconciliationStoreTest extends BaseTestCase {
+
+    // The checkpoint name used in testing
+    private static final String CHECKPOINT = "test-checkpoint";
+
+    // The ReconciliationStore to test
+    private ReconciliationStore reconciliationStore;
+
+    // A list of quota ids used in testing
+    private List<Integer> quotaIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the Store for testing
+     */
+    @BeforeEach
+    public void init() {
+        reconciliationStore = dbi.onDemand(ReconciliationStore.class);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        // Remove test quota entries, cascading to their usages
+        for (Integer quotaId : this.quotaIds) {
+            try {
+                QuotaHelper.removeTestQuota(quotaId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+        dbi.useHandle(handle ->
+            handle.execute("DELETE FROM reconciliation_checkpoints WHERE name = ?", CHECKPOINT)
+        );
+    }
+
+    /**
+     * Test finding and correcting a drifted quota usage total
+     */
+    @Test
+    @DisplayName("Test reconciling a drifted quota")
+    public void testReconcileQuota() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 2L);
+            dbi.useHandle(handle ->
+                handle.execute("UPDATE quotas SET usage = 5, exhaustAt = NULL WHERE id = ?", quotaId)
+            );
+
+            Map<Integer, Long> drifts = reconciliationStore.findDrifts(quotaId - 1, 1);
+            assertEquals(-3L, drifts.get(quotaId));
+
+            assertEquals(-3L, reconciliationStore.reconcileQuota(quotaId));
+            assertEquals(2L, QuotaHelper.getQuotaById(quotaId).getUsage());
+            assertEquals(0L, reconciliationStore.findDrifts(quotaId - 1, 1).get(quotaId));
+
+            // The projection is recomputed from the corrected usage: 8 units at 2 units a week
+            Long projected = dbi.withHandle(handle ->
+                handle.createQuery("SELECT date_part('epoch', exhaustAt - growthUpdated)::bigint " +
+                    "FROM quotas WHERE id = :id")
+                    .bind("id", quotaId)
+                    .mapTo(Long.class)
+                    .one()
+            );
+            assertThat(projected).isBetween(4 * 604800L, 4 * 604800L + 1);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test saving and getting a checkpoint
+     */
+    @Test
+    @DisplayName("Test saving a checkpoint")
+    public void testSaveCheckpoint() {
+        assertNull(reconciliationStore.getCheckpoint(CHECKPOINT));
+        reconciliationStore.saveCheckpoint(CHECKPOINT, 5);
+        assertEquals(5, (int) reconciliationStore.getCheckpoint(CHECKPOINT));
+        reconciliationStore.saveCheckpoint(CHECKPOINT, 7);
+        assertEquals(7, (int) reconciliationStore.getCheckpoint(CHECKPOINT));
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.jdbi;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.api.UsageRollup;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test the Usage data access object
+ */
+public class UsageStoreTest extends BaseTestCase {
+
+    // The UsageStore to test
+    private UsageStore usageStore;
+
+    // A list of usage ids used in testing
+    private List<Integer> usageIds = new ArrayList<Integer>();
+
+    // A list of quota ids used in testing
+    private List<Integer> quotaIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the Store for testing
+     */
+    @BeforeEach
+    public void init() {
+        usageStore = dbi.onDemand(UsageStore.class);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        // Remove test usage entries
+        for (Integer usageId : this.usageIds) {
+            try {
+                UsageHelper.removeTestUsage(usageId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+
+        // Remove test quota entries
+        for (Integer quotaId : this.quotaIds) {
+            try {
+                QuotaHelper.removeTestQuota(quotaId);
+            } catch (SQLException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Test getting a single usage by ID
+     */
+    @Test
+    @DisplayName("Test getting a usage")
+    public void testGetUsage() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            Integer usageId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 1L);
+            this.usageIds.add(usageId);
+
+            assertEquals(usageId, usageStore.getUsage(usageId).getId());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test finding a usage by instance identifier and quota name
+     */
+    @Test
+    @DisplayName("Test finding a usage by instance and quota name")
+    public void testFindUsageByInstanceIdAndQuotaName() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+            Integer usageId = UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 1L);
+            this.usageIds.add(usageId);
+
+            Usage usage = usageStore.findUsageByInstanceIdAndQuotaName(instanceId, "portal");
+            assertEquals(usageId, usage.getId());
+            assertEquals(quotaId, usage.getQuotaId());
+            assertNull(usageStore.findUsageByInstanceIdAndQuotaName(instanceId, "storage"));
+            assertNull(usageStore.findUsageByInstanceIdAndQuotaName(
+                "urn:uuid:" + StoreHelper.getRandomId(), "portal"));
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test inserting a Usage instance
+     */
+    @Test
+    @DisplayName("Test inserting a usage")
+    public void testInsert() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            Usage usage = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + StoreHelper.getRandomId());
+            Integer usageId = usageStore.insert(usage);
+            this.usageIds.add(usageId);
+
+            assertEquals(1, (int) UsageHelper.getUsageCountById(usageId));
+            assertEquals(1L, QuotaHelper.getQuotaById(quotaId).getUsage());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test updating a Usage instance
+     */
+    @Test
+    @DisplayName("Test updating a usage")
+    public void testUpdate() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            Integer usageId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 1L);
+            this.usageIds.add(usageId);
+
+            Usage usage = UsageHelper.getUsageById(usageId);
+            usage.setQuantity(2L);
+            usage.setStatus("archived");
+            usageStore.update(usage);
+            assertEquals(2L, UsageHelper.getUsageById(usageId).getQuantity());
+            assertEquals("archived", UsageHelper.getUsageById(usageId).getStatus());
+            assertEquals(2L, QuotaHelper.getQuotaById(quotaId).getUsage());
+
+            // Usages can't be updated through another quota
+            usage.setQuotaId(QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null));
+            this.quotaIds.add(usage.getQuotaId());
+            assertNull(usageStore.update(usage));
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test deleting a Usage instance
+     */
+    @Test
+    @DisplayName("Test deleting a usage")
+    public void testDelete() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            Integer usageId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 1L);
+
+            usageStore.delete(quotaId, usageId);
+            assertEquals(0, (int) UsageHelper.getUsageCountById(usageId));
+            assertEquals(0L, QuotaHelper.getQuotaById(quotaId).getUsage());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test finding the daily and monthly rollups of timestamped usages
+     */
+    @Test
+    @DisplayName("Test finding usage rollups")
+    public void testFindRollups() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+
+            // 2020-01-15 and 2020-02-10 UTC
+            Integer[] created = {1579046400, 1581292800};
+            for (Integer timestamp : created) {
+                Usage usage = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + StoreHelper.getRandomId());
+                usage.setQuantity(2L);
+                usage.setCreated(timestamp);
+                this.usageIds.add(usageStore.insert(usage));
+            }
+
+            // From 2020-01-01 to 2020-03-01 UTC
+            List<UsageRollup> daily = usageStore.findDailyRollups(quotaId, 1577836800, 1583020800);
+            assertEquals(2, daily.size());
+            assertEquals(1579046400, (int) daily.get(0).getStart());
+            assertEquals(2L, daily.get(0).getUsage());
+            assertEquals(4L, daily.get(1).getUsage());
+
+            // Only February, with the level still including January
+            List<UsageRollup> monthly = usageStore.findMonthlyRollups(quotaId, 1580601600, 1583020800);
+            assertEquals(1, monthly.size());
+            assertEquals(1580515200, (int) monthly.get(0).getStart());
+            assertEquals(2L, monthly.get(0).getQuantity());
+            assertEquals(1, (int) monthly.get(0).getEvents());
+            assertEquals(4L, monthly.get(0).getUsage());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test compacting archived usages
+     */
+    @Test
+    @DisplayName("Test compacting archived usages")
+    public void testCompactArchivedUsages() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            Integer activeId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 1L);
+            this.usageIds.add(activeId);
+            Integer archivedId = UsageHelper.insertTestUsage(
+                StoreHelper.getRandomId(), quotaId, "urn:uuid:" + StoreHelper.getRandomId(), 2L);
+            this.usageIds.add(archivedId);
+            Usage archived = UsageHelper.getUsageById(archivedId);
+            archived.setStatus("archived");
+            usageStore.update(archived);
+
+            // Compact only this quota's usages, leaving other tests' archived usages alone
+            assertEquals(1, usageStore.compactArchivedUsages(quotaId, 1));
+            assertEquals(0, usageStore.compactArchivedUsages(quotaId, 1));
+
+            // The archived usage moved, and the quota total still includes it
+            assertEquals(1, (int) UsageHelper.getUsageCountById(activeId));
+            assertEquals(0, (int) UsageHelper.getUsageCountById(archivedId));
+            assertEquals(1, (int) UsageHelper.getArchivedUsageCountById(archivedId));
+            assertEquals(2L, UsageHelper.getUsageSummaryQuantity(quotaId));
+            assertEquals(3L, QuotaHelper.getQuotaById(quotaId).getUsage());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test replaying journaled usages more than once, alongside a direct usage of the instance
+     */
+    @Test
+    @DisplayName("Test replaying journaled usages")
+    public void testReplay() {
+        try {
+            Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+            this.quotaIds.add(quotaId);
+            String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+            usageStore.insert(UsageHelper.createTestUsage(null, quotaId, instanceId));
+
+            // Two separate journaled inserts of the instance in the same second
+            Integer created = (int) (System.currentTimeMillis() / 1000);
+            List<UUID> entryIds = new ArrayList<UUID>();
+            List<Usage> usages = new ArrayList<Usage>();
+            for (int i = 0; i < 2; i++) {
+                Usage usage = UsageHelper.createTestUsage(null, quotaId, instanceId);
+                usage.setCreated(created);
+                entryIds.add(UUID.randomUUID());
+                usages.add(usage);
+            }
+
+            // Like direct inserts, journaled inserts are added alongside the existing usage,
+            // and since replay is at-least-once, a second replay must be a no-op
+            usageStore.replay(entryIds, usages);
+            usageStore.replay(entryIds, usages);
+            List<Integer> usageIds = UsageHelper.getUsageIdsByInstanceId(quotaId, instanceId);
+            this.usageIds.addAll(usageIds);
+            assertEquals(3, usageIds.size());
+            assertEquals(3L, QuotaHelper.getQuotaById(quotaId).getUsage());
+
+            // The replayed entries are forgotten after a while
+            assertTrue(usageStore.deleteReplays(created + 3600) >= 2);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+}
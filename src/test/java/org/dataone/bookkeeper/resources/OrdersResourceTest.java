@@ -0,0 +1,203 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.resources;
+
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Customer;
+import org.dataone.bookkeeper.api.Order;
+import org.dataone.bookkeeper.config.DataONEConfiguration;
+import org.dataone.bookkeeper.core.ProductCatalog;
+import org.dataone.bookkeeper.helpers.CustomerHelper;
+import org.dataone.bookkeeper.helpers.OrderHelper;
+import org.dataone.bookkeeper.helpers.ProductHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.jdbi.OrderStore;
+import org.dataone.bookkeeper.jdbi.ProductStore;
+import org.dataone.bookkeeper.security.DataONEAuthHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import java.security.Principal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test the order resource against the test database
+ */
+public class OrdersResourceTest extends BaseTestCase {
+
+    /* The administrative subject used in testing */
+    private static final String ADMIN_SUBJECT = "CN=urn:node:CNUNMTEST,DC=dataone,DC=org";
+
+    // The resource to test
+    private OrdersResource ordersResource;
+
+    // A security context with an administrative caller
+    private SecurityContext adminContext;
+
+    // The product ordered in testing
+    private Integer productId;
+
+    // The customer ordering in testing
+    private Integer customerId;
+
+    // A list of order ids used in testing
+    private List<Integer> orderIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the resource, a product, and a customer for testing
+     */
+    @BeforeEach
+    public void init() {
+        DataONEConfiguration configuration = new DataONEConfiguration();
+        configuration.setAdminSubjects(Collections.singletonList(ADMIN_SUBJECT));
+        DataONEAuthHelper authHelper = new DataONEAuthHelper();
+        authHelper.setConfiguration(configuration);
+        ordersResource = new OrdersResource(dbi, authHelper, new ProductCatalog(dbi.onDemand(ProductStore.class)));
+
+        Customer caller = new Customer();
+        caller.setSubject(ADMIN_SUBJECT);
+        adminContext = new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return caller;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return true;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return SecurityContext.BASIC_AUTH;
+            }
+        };
+
+        try {
+            productId = ProductHelper.insertTestProduct(StoreHelper.getRandomId());
+            customerId = CustomerHelper.insertTestCustomer(StoreHelper.getRandomId());
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            for (Integer orderId : this.orderIds) {
+                OrderHelper.removeTestOrder(orderId);
+            }
+            CustomerHelper.removeTestCustomer(customerId);
+            ProductHelper.removeTestProduct(productId);
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Test that a created order only records the transitions the server made
+     */
+    @Test
+    @DisplayName("Test ignoring client status transitions on order creation")
+    public void testCreateIgnoresStatusTransitions() {
+        Order order = OrderHelper.createTestOrder(null, customerId, StoreHelper.getRandomId(), null);
+        order.getItems().get(0).setParent(productId);
+        // A client claiming the order was already paid
+        assertThat(order.getStatusTransitions().has("paid")).isTrue();
+
+        Order created = ordersResource.create(adminContext, order);
+        this.orderIds.add(created.getId());
+        assertThat(created.getStatus()).isEqualTo("created");
+        assertThat(created.getStatusTransitions().size()).isEqualTo(1);
+        assertThat(created.getStatusTransitions().has("created")).isTrue();
+    }
+
+    /**
+     * Test rejecting filters that listing by subject doesn't apply
+     */
+    @Test
+    @DisplayName("Test rejecting filters of orders listed by subject")
+    public void testListBySubjectRejectsFilters() {
+        String subject = CustomerHelper.getCustomerById(customerId).getSubject();
+        assertEquals(0, ordersResource.listOrders(adminContext, 0, 1000, subject, null,
+            null, null, null, 0, false).getOrders().size());
+
+        WebApplicationException rejected = assertThrows(WebApplicationException.class, () ->
+            ordersResource.listOrders(adminContext, 0, 1000, subject, null, "paid", null, null, 0, false));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), rejected.getResponse().getStatus());
+        rejected = assertThrows(WebApplicationException.class, () ->
+            ordersResource.listOrders(adminContext, 0, 1000, subject, null, null, null, null, 10, false));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), rejected.getResponse().getStatus());
+    }
+
+    /**
+     * Test that archived orders are read, but not changed
+     */
+    @Test
+    @DisplayName("Test rejecting changes to archived orders")
+    public void testArchivedOrdersAreReadOnly() {
+        // Test orders are created in June 2019, archived here with the partitions ending by July 2019
+        OrderStore orderStore = dbi.onDemand(OrderStore.class);
+        Order order = OrderHelper.createTestOrder(null, customerId, StoreHelper.getRandomId(), null);
+        order.getItems().get(0).setParent(productId);
+        Integer orderId = orderStore.insert(order);
+        this.orderIds.add(orderId);
+        orderStore.createPartitions(0);
+        assertThat(orderStore.archivePartitions(1561939200)).isGreaterThanOrEqualTo(1);
+
+        Order archived = ordersResource.retrieve(adminContext, orderId, true);
+        assertEquals(orderId, archived.getId());
+
+        WebApplicationException rejected = assertThrows(WebApplicationException.class, () ->
+            ordersResource.update(adminContext, archived));
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), rejected.getResponse().getStatus());
+        rejected = assertThrows(WebApplicationException.class, () ->
+            ordersResource.pay(adminContext, orderId));
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), rejected.getResponse().getStatus());
+        rejected = assertThrows(WebApplicationException.class, () ->
+            ordersResource.delete(orderId));
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), rejected.getResponse().getStatus());
+        assertTrue(orderStore.isArchived(orderId));
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * This work was created by participants in the DataONE project, and is
+ * jointly copyrighted by participating institutions in DataONE. For
+ * more information on DataONE, see our web site at http://dataone.org.
+ *
+ *   Copyright 2020. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dataone.bookkeeper.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.dataone.bookkeeper.BaseTestCase;
+import org.dataone.bookkeeper.api.Customer;
+import org.dataone.bookkeeper.api.Quota;
+import org.dataone.bookkeeper.api.Usage;
+import org.dataone.bookkeeper.config.DataONEConfiguration;
+import org.dataone.bookkeeper.config.QuotaEventsConfiguration;
+import org.dataone.bookkeeper.core.QuotaCache;
+import org.dataone.bookkeeper.core.QuotaEvents;
+import org.dataone.bookkeeper.core.UsageCache;
+import org.dataone.bookkeeper.core.UsageJournal;
+import org.dataone.bookkeeper.core.UsageJournalReplayer;
+import org.dataone.bookkeeper.helpers.QuotaHelper;
+import org.dataone.bookkeeper.helpers.StoreHelper;
+import org.dataone.bookkeeper.helpers.UsageHelper;
+import org.dataone.bookkeeper.jdbi.QuotaStore;
+import org.dataone.bookkeeper.jdbi.UsageStore;
+import org.dataone.bookkeeper.security.DataONEAuthHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test the quota resource against the test database
+ */
+public class QuotasResourceTest extends BaseTestCase {
+
+    /* The administrative subject used in testing */
+    private static final String ADMIN_SUBJECT = "CN=urn:node:CNUNMTEST,DC=dataone,DC=org";
+
+    /* The size of the journal segments used in testing */
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    // The quota cache used by the resource
+    private QuotaCache quotaCache;
+
+    // The usage cache used by the resource
+    private UsageCache usageCache;
+
+    // The DataONE authentication helper used by the resource
+    private DataONEAuthHelper authHelper;
+
+    // A security context with an administrative caller
+    private SecurityContext adminContext;
+
+    // A list of usage ids used in testing
+    private List<Integer> usageIds = new ArrayList<Integer>();
+
+    // A list of quota ids used in testing
+    private List<Integer> quotaIds = new ArrayList<Integer>();
+
+    /**
+     * Set up the resource collaborators for testing
+     */
+    @BeforeEach
+    public void init() {
+        quotaCache = new QuotaCache(dbi.onDemand(QuotaStore.class), CaffeineSpec.parse("maximumSize=100"));
+        usageCache = new UsageCache(dbi.onDemand(UsageStore.class), quotaCache,
+            CaffeineSpec.parse("maximumSize=100"));
+        DataONEConfiguration configuration = new DataONEConfiguration();
+        configuration.setAdminSubjects(Collections.singletonList(ADMIN_SUBJECT));
+        authHelper = new DataONEAuthHelper();
+        authHelper.setConfiguration(configuration);
+        adminContext = createContext(ADMIN_SUBJECT);
+    }
+
+    /**
+     * Tear down resources
+     */
+    @AfterEach
+    public void tearDown() {
+        try {
+            for (Integer usageId : this.usageIds) {
+                UsageHelper.removeTestUsage(usageId);
+            }
+            for (Integer quotaId : this.quotaIds) {
+                QuotaHelper.removeTestQuota(quotaId);
+            }
+        } catch (SQLException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Create a security context for a caller with the given subject
+     */
+    private SecurityContext createContext(String subject) {
+        Customer caller = new Customer();
+        caller.setSubject(subject);
+        return new SecurityContext() {
+            @Override
+            public Principal getUserPrincipal() {
+                return caller;
+            }
+
+            @Override
+            public boolean isUserInRole(String role) {
+                return false;
+            }
+
+            @Override
+            public boolean isSecure() {
+                return true;
+            }
+
+            @Override
+            public String getAuthenticationScheme() {
+                return SecurityContext.BASIC_AUTH;
+            }
+        };
+    }
+
+    /**
+     * Create a quota resource with the given usage journal
+     */
+    private QuotasResource createResource(UsageJournal journal) {
+        return createResource(journal, new QuotaEvents(new QuotaEventsConfiguration()));
+    }
+
+    /**
+     * Create a quota resource with the given usage journal and quota events
+     */
+    private QuotasResource createResource(UsageJournal journal, QuotaEvents quotaEvents) {
+        return new QuotasResource(dbi, authHelper, quotaCache, usageCache, quotaEvents, journal);
+    }
+
+    /**
+     * Create a journal replayer with the given usage journal and quota events
+     */
+    private UsageJournalReplayer createReplayer(UsageJournal journal, QuotaEvents quotaEvents) {
+        return new UsageJournalReplayer(journal, dbi.onDemand(UsageStore.class),
+            dbi.onDemand(QuotaStore.class), quotaCache, usageCache, quotaEvents, 10, 1000,
+            new MetricRegistry());
+    }
+
+    /**
+     * Quota events that record the usage changes they are given
+     */
+    private static class RecordingQuotaEvents extends QuotaEvents {
+
+        /* The quotas before and after each change, by quota id */
+        private final Map<Integer, List<Quota[]>> changes = new HashMap<Integer, List<Quota[]>>();
+
+        RecordingQuotaEvents() {
+            super(new QuotaEventsConfiguration());
+        }
+
+        @Override
+        public void usageChanged(Quota before, Quota after) {
+            changes.computeIfAbsent(after.getId(), id -> new ArrayList<Quota[]>())
+                .add(new Quota[] {before, after});
+            super.usageChanged(before, after);
+        }
+
+        /* Get the last change of a quota */
+        Quota[] getLastChange(Integer quotaId) {
+            List<Quota[]> quotaChanges = changes.get(quotaId);
+            return quotaChanges == null ? null : quotaChanges.get(quotaChanges.size() - 1);
+        }
+    }
+
+    /**
+     * Test that a usage update made while earlier updates are journaled is applied after them
+     */
+    @Test
+    @DisplayName("Test ordering direct usage updates after journaled updates")
+    public void testUpdateUsageBehindJournal(@TempDir Path directory) throws Exception {
+        Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(quotaId);
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        Integer usageId = UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 1L);
+        this.usageIds.add(usageId);
+
+        // An update journaled while the database was unavailable
+        UsageJournal journal = new UsageJournal(directory, SEGMENT_SIZE, false);
+        Usage journaled = UsageHelper.createTestUsage(usageId, quotaId, instanceId);
+        journaled.setQuantity(5L);
+        journaled.setCreated((int) (System.currentTimeMillis() / 1000));
+        journal.append(journaled);
+
+        // A later update once the database is back queues behind it
+        QuotasResource resource = createResource(journal);
+        Usage later = UsageHelper.createTestUsage(usageId, quotaId, instanceId);
+        later.setQuantity(7L);
+        Response response = resource.updateUsage(adminContext, quotaId, later);
+        assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+        assertEquals(1L, (long) UsageHelper.getUsageById(usageId).getQuantity());
+
+        UsageJournalReplayer replayer = createReplayer(journal, new QuotaEvents(new QuotaEventsConfiguration()));
+        assertEquals(2, replayer.replay());
+        assertEquals(7L, (long) UsageHelper.getUsageById(usageId).getQuantity());
+        assertEquals(7L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+
+        // With the journal drained, updates are written directly
+        Usage direct = UsageHelper.createTestUsage(usageId, quotaId, instanceId);
+        direct.setQuantity(3L);
+        response = resource.updateUsage(adminContext, quotaId, direct);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(3L, (long) UsageHelper.getUsageById(usageId).getQuantity());
+        assertEquals(3L, (long) QuotaHelper.getQuotaById(quotaId).getUsage());
+    }
+
+    /**
+     * Test that updating the instance of a usage invalidates its previous instance
+     */
+    @Test
+    @DisplayName("Test invalidating the previous instance of an updated usage")
+    public void testUpdateUsageInstance() throws Exception {
+        Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(quotaId);
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        Integer usageId = UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 1L);
+        this.usageIds.add(usageId);
+        assertEquals(usageId, usageCache.getUsage(instanceId, "portal").getId());
+
+        String movedId = "urn:uuid:" + StoreHelper.getRandomId();
+        Usage moved = UsageHelper.createTestUsage(usageId, quotaId, movedId);
+        createResource(null).updateUsage(adminContext, quotaId, moved);
+        assertNull(usageCache.getUsage(instanceId, "portal"));
+        assertEquals(usageId, usageCache.getUsage(movedId, "portal").getId());
+    }
+
+    /**
+     * Set the parent of a quota directly in the database
+     */
+    private void setParent(Integer quotaId, Integer parentId) {
+        dbi.useHandle(handle -> handle.execute("UPDATE quotas SET parentId = ? WHERE id = ?", parentId, quotaId));
+    }
+
+    /**
+     * Test that re-parenting and deleting a quota refreshes the cached snapshots of
+     * its old and new ancestors and its children
+     */
+    @Test
+    @DisplayName("Test refreshing quota chains on quota changes")
+    public void testRefreshQuotaChains() throws Exception {
+        Integer oldParentId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(oldParentId);
+        Integer newParentId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(newParentId);
+        QuotasResource resource = createResource(null);
+
+        Quota quota = QuotaHelper.createTestPortalQuota(null, null);
+        quota.setParentId(oldParentId);
+        quota = resource.create(adminContext, quota);
+        Integer quotaId = quota.getId();
+        this.quotaIds.add(quotaId);
+        Integer childId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(childId);
+        setParent(childId, quotaId);
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        Usage usage = UsageHelper.createTestUsage(null, quotaId, instanceId);
+        usage.setQuantity(3L);
+        resource.updateUsage(adminContext, quotaId, usage);
+        this.usageIds.addAll(UsageHelper.getUsageIdsByInstanceId(quotaId, instanceId));
+
+        // The snapshots cached before the changes
+        assertEquals(3L, (long) quotaCache.getQuota(oldParentId).getUsage());
+        assertNull(quotaCache.getQuota(newParentId).getUsage());
+        assertEquals(quotaId, quotaCache.getQuota(childId).getParentId());
+
+        quota.setParentId(newParentId);
+        resource.update(adminContext, quota);
+        assertEquals(0L, (long) quotaCache.getQuota(oldParentId).getUsage());
+        assertEquals(3L, (long) quotaCache.getQuota(newParentId).getUsage());
+
+        resource.delete(adminContext, quotaId);
+        assertEquals(0L, (long) quotaCache.getQuota(newParentId).getUsage());
+        assertNull(quotaCache.getQuota(childId).getParentId());
+    }
+
+    /**
+     * Test checking a requested usage against the hard limits of a quota chain
+     */
+    @Test
+    @DisplayName("Test checking the remaining usage of a quota chain")
+    public void testHasRemaining() throws Exception {
+        String subject = "http://orcid.org/0000-0002-8121-" + StoreHelper.getRandomId();
+        Integer parentId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(parentId);
+        Integer quotaId = QuotaHelper.insertTestQuotaWithSubject(StoreHelper.getRandomId(), null, subject);
+        this.quotaIds.add(quotaId);
+        setParent(quotaId, parentId);
+        // The parent's hard limit is 10, and the quota's is 5
+        dbi.useHandle(handle -> handle.execute("UPDATE quotas SET usage = 8 WHERE id = ?", parentId));
+        QuotasResource resource = createResource(null);
+
+        assertEquals(quotaId, resource.hasRemaining(adminContext, subject, "portal", 2L).getId());
+        WebApplicationException exceeded = assertThrows(WebApplicationException.class,
+            () -> resource.hasRemaining(adminContext, subject, "portal", 3L));
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), exceeded.getResponse().getStatus());
+
+        // Other callers may only check their own quotas
+        SecurityContext otherContext = createContext("http://orcid.org/0000-0002-8121-0000");
+        WebApplicationException forbidden = assertThrows(WebApplicationException.class,
+            () -> resource.hasRemaining(otherContext, subject, "portal", 1L));
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), forbidden.getResponse().getStatus());
+    }
+
+    /**
+     * Test that usage changes compare each quota in the chain against its total read
+     * before the write, rather than a missing or stale cached snapshot
+     */
+    @Test
+    @DisplayName("Test publishing usage changes against the totals before the write")
+    public void testUpdateUsagePreviousTotals() throws Exception {
+        Integer parentId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(parentId);
+        Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(quotaId);
+        setParent(quotaId, parentId);
+        RecordingQuotaEvents quotaEvents = new RecordingQuotaEvents();
+        QuotasResource resource = createResource(null, quotaEvents);
+
+        // Cache the parent, then charge it behind the cache's back
+        assertEquals(0L, (long) quotaCache.getQuota(parentId).getUsage());
+        String instanceId = "urn:uuid:" + StoreHelper.getRandomId();
+        this.usageIds.add(UsageHelper.insertTestUsage(StoreHelper.getRandomId(), quotaId, instanceId, 3L));
+
+        Usage usage = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + StoreHelper.getRandomId());
+        usage.setQuantity(2L);
+        resource.updateUsage(adminContext, quotaId, usage);
+        this.usageIds.addAll(UsageHelper.getUsageIdsByInstanceId(quotaId, usage.getInstanceId()));
+        Quota[] change = quotaEvents.getLastChange(parentId);
+        assertEquals(3L, (long) change[0].getUsage());
+        assertEquals(5L, (long) change[1].getUsage());
+        change = quotaEvents.getLastChange(quotaId);
+        assertEquals(3L, (long) change[0].getUsage());
+        assertEquals(5L, (long) change[1].getUsage());
+
+        // Quotas that aren't cached still have a previous total
+        quotaCache.invalidateAll();
+        usage = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + StoreHelper.getRandomId());
+        usage.setQuantity(1L);
+        resource.updateUsage(adminContext, quotaId, usage);
+        this.usageIds.addAll(UsageHelper.getUsageIdsByInstanceId(quotaId, usage.getInstanceId()));
+        change = quotaEvents.getLastChange(parentId);
+        assertEquals(5L, (long) change[0].getUsage());
+        assertEquals(6L, (long) change[1].getUsage());
+    }
+
+    /**
+     * Test that replaying journaled usages refreshes the snapshots of the charged
+     * quotas and their ancestors, and publishes their usage changes
+     */
+    @Test
+    @DisplayName("Test refreshing quota chains on journal replay")
+    public void testReplayRefreshesQuotaChains(@TempDir Path directory) throws Exception {
+        Integer parentId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(parentId);
+        Integer quotaId = QuotaHelper.insertTestQuotaWithSubscription(StoreHelper.getRandomId(), null);
+        this.quotaIds.add(quotaId);
+        setParent(quotaId, parentId);
+        assertEquals(0L, (long) quotaCache.getQuota(parentId).getUsage());
+
+        UsageJournal journal = new UsageJournal(directory, SEGMENT_SIZE, false);
+        Usage journaled = UsageHelper.createTestUsage(null, quotaId, "urn:uuid:" + StoreHelper.getRandomId());
+        journaled.setQuantity(4L);
+        journaled.setCreated((int) (System.currentTimeMillis() / 1000));
+        journal.append(journaled);
+
+        RecordingQuotaEvents quotaEvents = new RecordingQuotaEvents();
+        assertEquals(1, createReplayer(journal, quotaEvents).replay());
+        this.usageIds.addAll(UsageHelper.getUsageIdsByInstanceId(quotaId, journaled.getInstanceId()));
+        assertEquals(4L, (long) quotaCache.getQuotaIfPresent(parentId).getUsage());
+        Quota[] change = quotaEvents.getLastChange(parentId);
+        assertEquals(0L, (long) change[0].getUsage());
+        assertEquals(4L, (long) change[1].getUsage());
+        change = quotaEvents.getLastChange(quotaId);
+        assertNull(change[0].getUsage());
+        assertEquals(4L, (long) change[1].getUsage());
+    }
+}